@@ -0,0 +1,506 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.inrae.toulouse.metexplore.met4j_chemUtils.chemicalSimilarity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
+import fr.inrae.toulouse.metexplore.met4j_core.utils.StringUtils;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.concurrent.ParallelLoop;
+
+
+/**
+ * Cache for chemical fingerprints, avoiding to parse the same structure several times.
+ * Fingerprints are stored by fingerprint type and structure (trimmed InChI, or SMILES if the InChI is not set) in a
+ * bounded in-memory tier, evicting the least recently used entries first.
+ * An optional on-disk store can be added as second tier, allowing fingerprints to be reused across runs. The store is an append-only
+ * file, memory-mapped when opened, that can be shared between fingerprint types. Fingerprints added to the store afterwards are
+ * read back from the file, so only the in-memory tier holds fingerprint words.
+ * Structures for which no fingerprint can be computed are also cached.
+ *
+ * @author clement
+ */
+public class FingerprintCache implements Closeable {
+
+	/** Constant <code>DEFAULT_CAPACITY=10000</code> */
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	/** marker for structures without fingerprint */
+	private static final long[] NO_FINGERPRINT = new long[0];
+
+	private final int fingerprintType;
+
+	/** the in-memory tier, ordered by access */
+	private final LinkedHashMap<String, long[]> memory;
+
+	/** the on-disk store, null if not used */
+	private final Path store;
+
+	/** the content of the store when opened */
+	private MappedByteBuffer mapped;
+
+	/** the position of each stored fingerprint in the mapped content */
+	private final HashMap<String, Integer> mappedIndex = new HashMap<>();
+
+	/** the position in the store file of each fingerprint added since the store has been opened */
+	private final HashMap<String, Long> appendedIndex = new HashMap<>();
+
+	/** the channel used to add fingerprints to the store */
+	private FileChannel storeChannel;
+
+	/** one fingerprint builder per thread, since CDK fingerprinters are not thread-safe */
+	private final ThreadLocal<FingerprintBuilder> builder;
+
+	/** the number of threads, 0 to use the common pool */
+	private int threads = 0;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong computed = new AtomicLong();
+
+	/**
+	 * Instantiates a new in-memory fingerprint cache, with default capacity
+	 *
+	 * @param fingerprintType the fingerprint type, see {@link FingerprintBuilder}
+	 */
+	public FingerprintCache(int fingerprintType) {
+		this(fingerprintType, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Instantiates a new in-memory fingerprint cache
+	 *
+	 * @param fingerprintType the fingerprint type, see {@link FingerprintBuilder}
+	 * @param capacity the maximal number of fingerprints kept in memory
+	 */
+	public FingerprintCache(int fingerprintType, int capacity) {
+		if(capacity<=0) throw new IllegalArgumentException("cache capacity must be strictly positive");
+		this.fingerprintType = fingerprintType;
+		this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+				return size() > capacity;
+			}
+		};
+		this.store = null;
+		this.builder = ThreadLocal.withInitial(() -> new FingerprintBuilder(fingerprintType));
+	}
+
+	/**
+	 * Instantiates a new fingerprint cache, backed by an on-disk store.
+	 * The store file is created if it does not exist. A truncated last entry, left by an interrupted run, is discarded.
+	 *
+	 * @param fingerprintType the fingerprint type, see {@link FingerprintBuilder}
+	 * @param capacity the maximal number of fingerprints kept in memory
+	 * @param store the path to the store file
+	 * @throws IOException if the store can't be read or created
+	 */
+	public FingerprintCache(int fingerprintType, int capacity, Path store) throws IOException {
+		if(capacity<=0) throw new IllegalArgumentException("cache capacity must be strictly positive");
+		this.fingerprintType = fingerprintType;
+		this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+				return size() > capacity;
+			}
+		};
+		this.store = store;
+		this.builder = ThreadLocal.withInitial(() -> new FingerprintBuilder(fingerprintType));
+		openStore();
+	}
+
+	/**
+	 * Map the store content and index its entries. Each entry is stored as the key length and UTF-8 key, followed by
+	 * the number of words and the fingerprint words (-1 words for structures without fingerprint).
+	 *
+	 * @throws IOException if the store can't be read or created
+	 */
+	private void openStore() throws IOException {
+		storeChannel = FileChannel.open(store, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		long size = storeChannel.size();
+		if(size>Integer.MAX_VALUE) throw new IllegalArgumentException("fingerprint store too large: "+store);
+		mapped = storeChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		int pos = 0;
+		while(pos<size){
+			if(size-pos<4) break;
+			int keyLength = mapped.getInt(pos);
+			if(keyLength<0 || size-pos-4<(long) keyLength+4) break;
+			byte[] key = new byte[keyLength];
+			mapped.get(pos+4, key);
+			int wordsPos = pos+4+keyLength;
+			int nbOfWords = mapped.getInt(wordsPos);
+			long end = wordsPos+4L+8L*Math.max(nbOfWords, 0);
+			if(end>size) break;
+			mappedIndex.put(new String(key, StandardCharsets.UTF_8), wordsPos);
+			pos = (int) end;
+		}
+		if(pos<size){
+			System.err.println("Warning: discarding truncated entry in fingerprint store "+store);
+			storeChannel.truncate(pos);
+		}
+		storeChannel.position(pos);
+	}
+
+	/**
+	 * Set the number of threads used to compute missing fingerprints in bulk. By default, the common fork-join pool is used.
+	 *
+	 * @param threads the number of threads, 0 to use the common pool
+	 * @return this instance
+	 */
+	public FingerprintCache setThreads(int threads) {
+		this.threads = ParallelLoop.checkThreads(threads);
+		return this;
+	}
+
+	/**
+	 * @return the fingerprint type
+	 */
+	public int getFingerprintType() {
+		return fingerprintType;
+	}
+
+	/**
+	 * @return the number of fingerprints retrieved from the cache
+	 */
+	public long getNumberOfHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of fingerprints computed since the cache creation
+	 */
+	public long getNumberOfComputedFingerprints() {
+		return computed.get();
+	}
+
+	/**
+	 * Returns the fingerprint from:
+	 * - the inchi of the metabolite if set
+	 * - the smiles if the inchi is not set
+	 *
+	 * @param e the metabolite
+	 * @return the fingerprint, or null if no structure is available or if the fingerprint can't be computed
+	 */
+	public BitSet getFingerprint(BioMetabolite e){
+		String inchi = e.getInchi();
+		if(!StringUtils.isVoid(inchi)) return getFingerprintFromInChi(inchi);
+		String smiles = e.getSmiles();
+		if(!StringUtils.isVoid(smiles)) return getFingerprintFromSmiles(smiles);
+		return null;
+	}
+
+	/**
+	 * Gets the fingerprint from an InChI
+	 *
+	 * @param inchi the InChI
+	 * @return the fingerprint, or null if it can't be computed
+	 */
+	public BitSet getFingerprintFromInChi(String inchi){
+		return get(inchi.trim(), true);
+	}
+
+	/**
+	 * Gets the fingerprint from a SMILES
+	 *
+	 * @param smiles the SMILES
+	 * @return the fingerprint, or null if it can't be computed
+	 */
+	public BitSet getFingerprintFromSmiles(String smiles){
+		return get(smiles.trim(), false);
+	}
+
+	/**
+	 * Gets the fingerprints of a set of metabolites. Missing fingerprints are computed in parallel, each distinct structure being computed once.
+	 *
+	 * @param metabolites the metabolites
+	 * @return a map with metabolites as key and fingerprints as value, null if no structure is available or if the fingerprint can't be computed
+	 */
+	public Map<BioMetabolite, BitSet> getFingerprints(Collection<BioMetabolite> metabolites){
+		HashMap<BioMetabolite, BitSet> fingerprints = new HashMap<>();
+		HashMap<BioMetabolite, String> keys = new HashMap<>();
+		HashMap<String, String> structures = new HashMap<>();
+		HashSet<String> fromInchi = new HashSet<>();
+		ArrayList<String> missing = new ArrayList<>();
+		for(BioMetabolite e : metabolites){
+			String structure;
+			boolean isInchi = false;
+			if(!StringUtils.isVoid(e.getInchi())){
+				structure = e.getInchi().trim();
+				isInchi = true;
+			}else if(!StringUtils.isVoid(e.getSmiles())){
+				structure = e.getSmiles().trim();
+			}else{
+				fingerprints.put(e, null);
+				continue;
+			}
+			String key = key(structure, isInchi);
+			keys.put(e, key);
+			if(structures.put(key, structure)==null){
+				if(isInchi) fromInchi.add(key);
+				if(lookup(key)==null) missing.add(key);
+			}
+		}
+
+		//compute missing fingerprints, each distinct structure once
+		long[][] words = new long[missing.size()][];
+		if(!missing.isEmpty()){
+			ParallelLoop.forEach(threads, missing.size(), i ->
+					words[i] = compute(structures.get(missing.get(i)), fromInchi.contains(missing.get(i))));
+		}
+		HashMap<String, long[]> computedWords = new HashMap<>();
+		for(int i=0; i<missing.size(); i++){
+			put(missing.get(i), words[i]);
+			computedWords.put(missing.get(i), words[i]);
+		}
+
+		for(Map.Entry<BioMetabolite, String> entry : keys.entrySet()){
+			String key = entry.getValue();
+			long[] w = computedWords.get(key);
+			if(w==null){
+				w = lookup(key);
+				if(w!=null){
+					hits.incrementAndGet();
+				}else{
+					//evicted from memory by the fingerprints computed above
+					w = compute(structures.get(key), fromInchi.contains(key));
+					put(key, w);
+					computedWords.put(key, w);
+				}
+			}
+			fingerprints.put(entry.getKey(), toBitSet(w));
+		}
+		return fingerprints;
+	}
+
+	/**
+	 * Gets a fingerprint from the cache, computing it if absent
+	 *
+	 * @param structure the structure
+	 * @param fromInchi if the structure is an InChI, SMILES otherwise
+	 * @return the fingerprint
+	 */
+	private BitSet get(String structure, boolean fromInchi){
+		String key = key(structure, fromInchi);
+		long[] words = lookup(key);
+		if(words!=null){
+			hits.incrementAndGet();
+		}else{
+			words = compute(structure, fromInchi);
+			put(key, words);
+		}
+		return toBitSet(words);
+	}
+
+	/**
+	 * Build the cache key
+	 *
+	 * @param structure the structure
+	 * @param fromInchi if the structure is an InChI, SMILES otherwise
+	 * @return the key
+	 */
+	private String key(String structure, boolean fromInchi){
+		return fingerprintType + (fromInchi ? "|I|" : "|S|") + structure;
+	}
+
+	/**
+	 * Compute a fingerprint
+	 *
+	 * @param structure the structure
+	 * @param fromInchi if the structure is an InChI, SMILES otherwise
+	 * @return the fingerprint words
+	 */
+	private long[] compute(String structure, boolean fromInchi){
+		computed.incrementAndGet();
+		BitSet fingerprint = fromInchi ? builder.get().getFingerprintFromInChi(structure) : builder.get().getFingerprintFromSmiles(structure);
+		//keep trailing empty words, so the bitset size is preserved
+		return fingerprint==null ? NO_FINGERPRINT : Arrays.copyOf(fingerprint.toLongArray(), (fingerprint.size()+63)/64);
+	}
+
+	/**
+	 * Retrieve fingerprint words from memory or from the store
+	 *
+	 * @param key the key
+	 * @return the fingerprint words, or null if not cached
+	 */
+	private synchronized long[] lookup(String key){
+		long[] words = memory.get(key);
+		if(words!=null || store==null) return words;
+		Long appendedPos = appendedIndex.get(key);
+		if(appendedPos!=null){
+			words = readAppended(appendedPos);
+			if(words==null) return null;
+		}else{
+			Integer pos = mappedIndex.get(key);
+			if(pos==null) return null;
+			int nbOfWords = mapped.getInt(pos);
+			if(nbOfWords<0){
+				words = NO_FINGERPRINT;
+			}else{
+				words = new long[nbOfWords];
+				for(int i=0; i<nbOfWords; i++){
+					words[i] = mapped.getLong(pos+4+8*i);
+				}
+			}
+		}
+		memory.put(key, words);
+		return words;
+	}
+
+	/**
+	 * Read fingerprint words added to the store since it has been opened
+	 *
+	 * @param pos the position of the number of words in the store file
+	 * @return the fingerprint words, or null if the store can't be read anymore
+	 */
+	private long[] readAppended(long pos){
+		if(!storeChannel.isOpen()) return null;
+		try {
+			ByteBuffer header = ByteBuffer.allocate(4);
+			readFully(header, pos);
+			int nbOfWords = header.getInt(0);
+			if(nbOfWords<0) return NO_FINGERPRINT;
+			ByteBuffer buffer = ByteBuffer.allocate(8*nbOfWords);
+			readFully(buffer, pos+4);
+			buffer.flip();
+			long[] words = new long[nbOfWords];
+			buffer.asLongBuffer().get(words);
+			return words;
+		} catch (IOException e) {
+			closeOnError("unable to read fingerprint from store "+store+", fingerprints added to the store will be computed again", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Fill a buffer from the store file, without changing the write position
+	 *
+	 * @param buffer the buffer
+	 * @param pos the position in the store file
+	 * @throws IOException if the store can't be read
+	 */
+	private void readFully(ByteBuffer buffer, long pos) throws IOException {
+		while(buffer.hasRemaining()){
+			if(storeChannel.read(buffer, pos+buffer.position())<0) throw new IOException("unexpected end of file");
+		}
+	}
+
+	/**
+	 * Report a store error and stop using the store for new fingerprints, so that the error is reported once
+	 *
+	 * @param message the error message
+	 * @param e the error
+	 */
+	private void closeOnError(String message, IOException e){
+		System.err.println("Error: "+message+": "+e.getMessage());
+		appendedIndex.clear();
+		try {
+			storeChannel.close();
+		} catch (IOException ignored) {
+			//already reported
+		}
+	}
+
+	/**
+	 * Add fingerprint words to memory and to the store
+	 *
+	 * @param key the key
+	 * @param words the fingerprint words
+	 */
+	private synchronized void put(String key, long[] words){
+		memory.put(key, words);
+		if(store==null || !storeChannel.isOpen() || appendedIndex.containsKey(key) || mappedIndex.containsKey(key)) return;
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(8+keyBytes.length+8*words.length);
+		buffer.putInt(keyBytes.length);
+		buffer.put(keyBytes);
+		buffer.putInt(words==NO_FINGERPRINT ? -1 : words.length);
+		for(long w : words){
+			buffer.putLong(w);
+		}
+		buffer.flip();
+		try {
+			long wordsPos = storeChannel.position()+4+keyBytes.length;
+			while(buffer.hasRemaining()){
+				storeChannel.write(buffer);
+			}
+			appendedIndex.put(key, wordsPos);
+		} catch (IOException e) {
+			//stop writing, so that a partial entry can only be the last one, discarded when the store is opened again
+			closeOnError("unable to write fingerprint in store "+store+", new fingerprints will not be stored", e);
+		}
+	}
+
+	/**
+	 * @return the number of fingerprints held in memory
+	 */
+	synchronized int getNumberOfFingerprintsInMemory() {
+		return memory.size();
+	}
+
+	/**
+	 * Convert fingerprint words to a new BitSet, with the same size as the computed fingerprint
+	 *
+	 * @param words the fingerprint words
+	 * @return the fingerprint, or null for structures without fingerprint
+	 */
+	private static BitSet toBitSet(long[] words){
+		if(words==NO_FINGERPRINT) return null;
+		BitSet fingerprint = new BitSet(words.length*64);
+		fingerprint.or(BitSet.valueOf(words));
+		return fingerprint;
+	}
+
+	/**
+	 * Close the on-disk store, if any. Fingerprints remain available from memory and from the store content mapped when opened,
+	 * fingerprints added to the store since then are computed again once evicted from memory.
+	 *
+	 * @throws IOException if the store can't be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if(storeChannel!=null) storeChannel.close();
+	}
+}
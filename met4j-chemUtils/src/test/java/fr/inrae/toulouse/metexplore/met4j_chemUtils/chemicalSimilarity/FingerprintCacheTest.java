@@ -0,0 +1,189 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.inrae.toulouse.metexplore.met4j_chemUtils.chemicalSimilarity;
+
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+public class FingerprintCacheTest {
+
+    public static BioMetabolite m2 = new BioMetabolite("m2");
+
+    @BeforeClass
+    public static void beforeClass() {
+        m2.setSmiles("OC(=O)CC(O)(CC(O)=O)C(O)=O");
+    }
+
+    @Test
+    public void getCachedFingerprint() {
+        FingerprintCache cache = new FingerprintCache(FingerprintBuilder.EXTENDED);
+        BitSet expected = new FingerprintBuilder(FingerprintBuilder.EXTENDED).getFingerprint(m2);
+        Assert.assertNotNull(expected);
+        Assert.assertEquals(expected, cache.getFingerprint(m2));
+        Assert.assertEquals(expected, cache.getFingerprintFromSmiles(" " + m2.getSmiles()));
+        Assert.assertEquals(1, cache.getNumberOfComputedFingerprints());
+        Assert.assertEquals(1, cache.getNumberOfHits());
+        Assert.assertEquals(expected.size(), cache.getFingerprint(m2).size());
+
+        //returned fingerprints can be modified without altering the cache
+        cache.getFingerprint(m2).clear();
+        Assert.assertEquals(expected, cache.getFingerprint(m2));
+
+        Assert.assertNull(cache.getFingerprint(new BioMetabolite("m3")));
+        Assert.assertNull(cache.getFingerprintFromSmiles("not a smiles"));
+        Assert.assertNull(cache.getFingerprintFromSmiles("not a smiles"));
+        Assert.assertEquals(2, cache.getNumberOfComputedFingerprints());
+    }
+
+    @Test
+    public void getCachedFingerprints() {
+        FingerprintCache cache = new FingerprintCache(FingerprintBuilder.MACCS, 2).setThreads(2);
+        String[] smiles = {"CCO", "OC(=O)CC(O)(CC(O)=O)C(O)=O", "c1ccccc1", "CC(=O)O", "CCO"};
+        List<BioMetabolite> metabolites = new ArrayList<>();
+        for (int i = 0; i < smiles.length; i++) {
+            BioMetabolite m = new BioMetabolite("m" + i);
+            m.setSmiles(smiles[i]);
+            metabolites.add(m);
+        }
+        metabolites.add(new BioMetabolite("noStruct"));
+
+        Map<BioMetabolite, BitSet> fingerprints = cache.getFingerprints(metabolites);
+        Assert.assertEquals(metabolites.size(), fingerprints.size());
+        Assert.assertEquals(4, cache.getNumberOfComputedFingerprints());
+        FingerprintBuilder builder = new FingerprintBuilder(FingerprintBuilder.MACCS);
+        for (int i = 0; i < smiles.length; i++) {
+            Assert.assertEquals(builder.getFingerprintFromSmiles(smiles[i]), fingerprints.get(metabolites.get(i)));
+        }
+        Assert.assertNull(fingerprints.get(metabolites.get(smiles.length)));
+    }
+
+    @Test
+    public void getStoredFingerprint() throws IOException {
+        Path store = Files.createTempFile("fingerprints", ".bin");
+        try {
+            BitSet expected;
+            try (FingerprintCache cache = new FingerprintCache(FingerprintBuilder.MACCS, 10, store)) {
+                expected = cache.getFingerprint(m2);
+                Assert.assertNull(cache.getFingerprintFromSmiles("not a smiles"));
+                Assert.assertEquals(2, cache.getNumberOfComputedFingerprints());
+            }
+            Assert.assertTrue(Files.size(store) > 0);
+
+            //interrupted write
+            try (OutputStream out = Files.newOutputStream(store, StandardOpenOption.APPEND)) {
+                out.write(new byte[]{0, 0, 0, 42, 1});
+            }
+
+            try (FingerprintCache cache = new FingerprintCache(FingerprintBuilder.MACCS, 10, store)) {
+                Assert.assertEquals(expected, cache.getFingerprint(m2));
+                Assert.assertNull(cache.getFingerprintFromSmiles("not a smiles"));
+                Assert.assertEquals(0, cache.getNumberOfComputedFingerprints());
+                Assert.assertEquals(2, cache.getNumberOfHits());
+            }
+            try (FingerprintCache cache = new FingerprintCache(FingerprintBuilder.EXTENDED, 10, store)) {
+                cache.getFingerprint(m2);
+                Assert.assertEquals(1, cache.getNumberOfComputedFingerprints());
+            }
+        } finally {
+            Files.delete(store);
+        }
+    }
+
+    @Test
+    public void getStoredFingerprintBeyondCapacity() throws IOException {
+        String[] smiles = {"CCO", "OC(=O)CC(O)(CC(O)=O)C(O)=O", "c1ccccc1", "CC(=O)O", "not a smiles"};
+        FingerprintBuilder builder = new FingerprintBuilder(FingerprintBuilder.MACCS);
+        Path store = Files.createTempFile("fingerprints", ".bin");
+        try (FingerprintCache cache = new FingerprintCache(FingerprintBuilder.MACCS, 2, store)) {
+            for (String s : smiles) {
+                cache.getFingerprintFromSmiles(s);
+                Assert.assertTrue(cache.getNumberOfFingerprintsInMemory() <= 2);
+            }
+            Assert.assertEquals(smiles.length, cache.getNumberOfComputedFingerprints());
+
+            //evicted fingerprints are read back from the store
+            for (String s : smiles) {
+                Assert.assertEquals(builder.getFingerprintFromSmiles(s), cache.getFingerprintFromSmiles(s));
+                Assert.assertTrue(cache.getNumberOfFingerprintsInMemory() <= 2);
+            }
+            Assert.assertEquals(smiles.length, cache.getNumberOfComputedFingerprints());
+            Assert.assertEquals(smiles.length, cache.getNumberOfHits());
+        } finally {
+            Files.delete(store);
+        }
+    }
+
+    @Test
+    public void getCachedFingerprintWithEmptyHighWords() throws IOException {
+        //water only sets low bits, the last words of its fingerprint are empty
+        BitSet expected = new FingerprintBuilder(FingerprintBuilder.EXTENDED).getFingerprintFromSmiles("O");
+        Assert.assertTrue(expected.length() < expected.size() - 64);
+
+        Path store = Files.createTempFile("fingerprints", ".bin");
+        try {
+            try (FingerprintCache cache = new FingerprintCache(FingerprintBuilder.EXTENDED, 10, store)) {
+                BitSet computed = cache.getFingerprintFromSmiles("O");
+                Assert.assertEquals(expected, computed);
+                Assert.assertEquals(expected.size(), computed.size());
+                BitSet cached = cache.getFingerprintFromSmiles("O");
+                Assert.assertEquals(1, cache.getNumberOfHits());
+                Assert.assertEquals(expected, cached);
+                Assert.assertEquals(expected.size(), cached.size());
+            }
+            try (FingerprintCache cache = new FingerprintCache(FingerprintBuilder.EXTENDED, 10, store)) {
+                BitSet stored = cache.getFingerprintFromSmiles("O");
+                Assert.assertEquals(0, cache.getNumberOfComputedFingerprints());
+                Assert.assertEquals(expected, stored);
+                Assert.assertEquals(expected.size(), stored.size());
+            }
+        } finally {
+            Files.delete(store);
+        }
+    }
+}
@@ -73,6 +73,21 @@ public class BioNetwork extends BioEntity {
 
     private final BioCollection<BioEnzymeParticipant> enzymeParticipants = new BioCollection<>();
 
+    /**
+     * Reverse index : metabolite id -> reactions having this metabolite in their left side
+     */
+    private final Map<String, BioCollection<BioReaction>> leftIndex = new HashMap<>();
+
+    /**
+     * Reverse index : metabolite id -> reactions having this metabolite in their right side
+     */
+    private final Map<String, BioCollection<BioReaction>> rightIndex = new HashMap<>();
+
+    /**
+     * Reverse index : reaction id -> pathways containing this reaction
+     */
+    private final Map<String, BioCollection<BioPathway>> pathwayIndex = new HashMap<>();
+
     /**
      * <p>Constructor for BioNetwork.</p>
      *
@@ -254,7 +269,12 @@ public class BioNetwork extends BioEntity {
             }
         }
 
-        BioCollection<BioReaction> reactionSet = this.reactions.stream().filter(r -> {
+        // all the matching reactions involve the first metabolite, the reverse index gives the candidates
+        Collection<BioReaction> candidates = metabolites.isEmpty()
+                ? this.reactions
+                : this.getReactionsFromMetabolite(metabolites.iterator().next());
+
+        BioCollection<BioReaction> reactionSet = candidates.stream().filter(r -> {
             BioCollection<BioMetabolite> rightsView = r.getRightsView();
             BioCollection<BioMetabolite> leftsView = r.getLeftsView();
 
@@ -282,21 +302,21 @@ public class BioNetwork extends BioEntity {
      */
     private BioCollection<BioReaction> getReactionsFromSubstrateOrProduct(@NonNull BioMetabolite m, @NonNull Boolean isSubstrate) {
 
-        return this.reactions.stream().filter(r -> {
-            boolean flag;
+        BioCollection<BioReaction> sameSide = (isSubstrate ? this.leftIndex : this.rightIndex).get(m.getId());
+        BioCollection<BioReaction> otherSide = (isSubstrate ? this.rightIndex : this.leftIndex).get(m.getId());
 
-            BioCollection<BioMetabolite> lefts = r.getLeftsView();
-            BioCollection<BioMetabolite> rights = r.getRightsView();
+        BioCollection<BioReaction> reactions = new BioCollection<>();
 
-            if (!r.isReversible()) {
-                flag = isSubstrate ? lefts.contains(m) : rights.contains(m);
-            } else {
-                flag = lefts.contains(m) || rights.contains(m);
-            }
+        if (sameSide != null) {
+            reactions.addAll(sameSide);
+        }
 
-            return flag;
+        // a reversible reaction can consume (or produce) the metabolites of both sides
+        if (otherSide != null) {
+            otherSide.stream().filter(BioReaction::isReversible).forEach(reactions::add);
+        }
 
-        }).collect(Collectors.toCollection(BioCollection::new));
+        return reactions;
 
     }
 
@@ -336,10 +356,26 @@ public class BioNetwork extends BioEntity {
             }
         }
 
-        return this.getPathwaysView().stream().
-                filter(p -> all ? p.getMetabolites().containsAll(metabolites)
-                        : !Collections.disjoint(metabolites, p.getMetabolites()))
-                .collect(Collectors.toCollection(BioCollection::new));
+        if (metabolites.isEmpty()) {
+            return all ? this.getPathwaysView() : new BioCollection<>();
+        }
+
+        BioCollection<BioPathway> pathways = null;
+
+        for (BioMetabolite m : metabolites) {
+            BioCollection<BioPathway> pathwaysOfMetabolite = new BioCollection<>();
+            this.getReactionsFromMetabolite(m).forEach(r -> pathwaysOfMetabolite.addAll(this.getIndexedPathways(r)));
+
+            if (pathways == null) {
+                pathways = pathwaysOfMetabolite;
+            } else if (all) {
+                pathways.retainAll(pathwaysOfMetabolite);
+            } else {
+                pathways.addAll(pathwaysOfMetabolite);
+            }
+        }
+
+        return pathways;
 
     }
 
@@ -533,8 +569,51 @@ public class BioNetwork extends BioEntity {
             }
         }
 
-        return this.pathways.stream().
-                filter(p -> all ? p.getGenes().containsAll(genes) : !Collections.disjoint(p.getGenes(), genes))
+        if (genes.isEmpty()) {
+            return all ? this.getPathwaysView() : new BioCollection<>();
+        }
+
+        // genes are linked to reactions through proteins and enzymes: the enzymes coded by the genes are
+        // collected first, then the pathways of their reactions are read from the pathway index
+        Map<String, BioCollection<BioGene>> genesOfEnzymes = new HashMap<>();
+
+        for (BioEnzyme e : this.enzymes) {
+            for (BioEnzymeParticipant ep : e.getParticipantsView()) {
+                if (ep.getPhysicalEntity() instanceof BioProtein) {
+                    BioGene g = ((BioProtein) ep.getPhysicalEntity()).getGene();
+
+                    if (g != null && genes.contains(g)) {
+                        genesOfEnzymes.computeIfAbsent(e.getId(), k -> new BioCollection<>()).add(g);
+                    }
+                }
+            }
+        }
+
+        Map<String, BioCollection<BioGene>> genesOfPathways = new HashMap<>();
+
+        if (!genesOfEnzymes.isEmpty()) {
+            for (BioReaction r : this.reactions) {
+                BioCollection<BioPathway> pathwaysOfReaction = this.pathwayIndex.get(r.getId());
+
+                if (pathwaysOfReaction == null) {
+                    continue;
+                }
+
+                for (BioEnzyme e : r.getEnzymes()) {
+                    BioCollection<BioGene> genesOfEnzyme = genesOfEnzymes.get(e.getId());
+
+                    if (genesOfEnzyme != null) {
+                        for (BioPathway p : pathwaysOfReaction) {
+                            genesOfPathways.computeIfAbsent(p.getId(), k -> new BioCollection<>()).addAll(genesOfEnzyme);
+                        }
+                    }
+                }
+            }
+        }
+
+        return genesOfPathways.entrySet().stream()
+                .filter(e -> !all || e.getValue().containsAll(genes))
+                .map(e -> this.pathways.get(e.getKey()))
                 .collect(Collectors.toCollection(BioCollection::new));
 
     }
@@ -554,11 +633,23 @@ public class BioNetwork extends BioEntity {
             }
         }
 
-        return this.pathways.stream().
-                filter(p -> all
-                        ? p.getReactions().containsAll(reactions)
-                        : !Collections.disjoint(p.getReactions(), reactions))
-                .collect(Collectors.toCollection(BioCollection::new));
+        if (reactions.isEmpty()) {
+            return all ? this.getPathwaysView() : new BioCollection<>();
+        }
+
+        BioCollection<BioPathway> pathways = null;
+
+        for (BioReaction r : reactions) {
+            if (pathways == null) {
+                pathways = new BioCollection<>(this.getIndexedPathways(r));
+            } else if (all) {
+                pathways.retainAll(this.getIndexedPathways(r));
+            } else {
+                pathways.addAll(this.getIndexedPathways(r));
+            }
+        }
+
+        return pathways;
 
     }
 
@@ -575,15 +666,7 @@ public class BioNetwork extends BioEntity {
             throw new IllegalArgumentException("Reaction " + r + " not present in the network");
         }
 
-        HashSet<BioPathway> pathwaySet = this.pathways.stream().filter(p -> {
-
-            Set<String> reactionRefIds = p.getReactions().getIds();
-
-            return reactionRefIds.contains(r.getId());
-
-        }).collect(Collectors.toCollection(HashSet::new));
-
-        return new BioCollection<>(pathwaySet);
+        return new BioCollection<>(this.getIndexedPathways(r));
 
     }
 
@@ -740,8 +823,15 @@ public class BioNetwork extends BioEntity {
 
         BioCollection<BioReaction> reactions = new BioCollection<>();
 
-        reactions.addAll(this.getReactionsFromSubstrate(m));
-        reactions.addAll(this.getReactionsFromProduct(m));
+        BioCollection<BioReaction> lefts = this.leftIndex.get(m.getId());
+        BioCollection<BioReaction> rights = this.rightIndex.get(m.getId());
+
+        if (lefts != null) {
+            reactions.addAll(lefts);
+        }
+        if (rights != null) {
+            reactions.addAll(rights);
+        }
 
         return reactions;
     }
@@ -1217,7 +1307,7 @@ public class BioNetwork extends BioEntity {
     private void removeOnCascade(@NonNull BioEntity e) {
 
         if (e instanceof BioPathway) {
-            this.pathways.remove(e);
+            this.removePathwayOnCascade((BioPathway) e);
         } else if (e instanceof BioMetabolite) {
             this.removeMetaboliteOnCascade((BioMetabolite) e);
         } else if (e instanceof BioProtein) {
@@ -1260,6 +1350,18 @@ public class BioNetwork extends BioEntity {
         }
     }
 
+    /**
+     * Remove a pathway from the network and from the pathway index of its reactions
+     *
+     * @param p a {@link BioPathway}
+     */
+    private void removePathwayOnCascade(@NonNull BioPathway p) {
+
+        p.getReactions().forEach(r -> this.removeFromIndex(this.pathwayIndex, r.getId(), p));
+
+        this.pathways.remove(p);
+    }
+
     /**
      * Remove on cascade an enzyme : remove also the enzymes in the reactions
      *
@@ -1336,12 +1438,17 @@ public class BioNetwork extends BioEntity {
                 }
             }
 
+            r.invalidateSignature();
+
             if (r.getLeftReactantsView().isEmpty() && r.getRightReactantsView().isEmpty()) {
                 this.removeReactionOnCascade(r);
             }
 
         });
 
+        this.leftIndex.remove(m.getId());
+        this.rightIndex.remove(m.getId());
+
         BioCollection<BioCompartment> cpts = this.getCompartmentsOf(m);
 
         cpts.forEach(c -> {
@@ -1419,6 +1526,11 @@ public class BioNetwork extends BioEntity {
             }
 
         });
+
+        this.pathwayIndex.remove(r.getId());
+
+        this.unindexReaction(r);
+
         this.reactions.remove(r);
     }
 
@@ -1496,6 +1608,8 @@ public class BioNetwork extends BioEntity {
 
         reaction.removeSide(e, localisation, side);
 
+        this.unindexReactant(reaction, e, side);
+
     }
 
     /**
@@ -1577,6 +1691,8 @@ public class BioNetwork extends BioEntity {
         }
 
         p.removeReaction(r);
+
+        this.removeFromIndex(this.pathwayIndex, r.getId(), p);
     }
 
     /**
@@ -1822,6 +1938,9 @@ public class BioNetwork extends BioEntity {
                 reaction.getRightReactants().add(reactant);
             }
         }
+        reaction.invalidateSignature();
+
+        this.indexReactant(reaction, reactant.getMetabolite(), side);
     }
 
 
@@ -2025,6 +2144,8 @@ public class BioNetwork extends BioEntity {
 
         pathway.addReaction(reaction);
 
+        this.pathwayIndex.computeIfAbsent(reaction.getId(), k -> new BioCollection<>()).add(pathway);
+
     }
 
     /**
@@ -2130,4 +2251,80 @@ public class BioNetwork extends BioEntity {
         enzymeParticipant.setQuantity(quantity);
     }
 
+
+    // ----------------------------------------
+    // REVERSE INDEX
+    // ----------------------------------------
+
+    /**
+     * Register a reaction in the reverse index of a metabolite
+     *
+     * @param reaction   a {@link BioReaction}
+     * @param metabolite a {@link BioMetabolite} present in one side of the reaction
+     * @param side       the {@link BioReaction.Side} where the metabolite is
+     */
+    private void indexReactant(@NonNull BioReaction reaction, @NonNull BioMetabolite metabolite, @NonNull BioReaction.Side side) {
+        Map<String, BioCollection<BioReaction>> index = side.equals(BioReaction.Side.LEFT) ? this.leftIndex : this.rightIndex;
+        index.computeIfAbsent(metabolite.getId(), k -> new BioCollection<>()).add(reaction);
+    }
+
+    /**
+     * Remove a reaction from the reverse index of a metabolite, if the metabolite is no longer
+     * involved in the given side of the reaction (it can still be present in another compartment)
+     *
+     * @param reaction   a {@link BioReaction}
+     * @param metabolite a {@link BioMetabolite}
+     * @param side       the {@link BioReaction.Side} from which the metabolite has been removed
+     */
+    private void unindexReactant(@NonNull BioReaction reaction, @NonNull BioMetabolite metabolite, @NonNull BioReaction.Side side) {
+
+        BioCollection<BioReactant> reactants = side.equals(BioReaction.Side.LEFT) ? reaction.getLeftReactants() : reaction.getRightReactants();
+
+        if (reactants.stream().anyMatch(reactant -> reactant.getMetabolite().getId().equals(metabolite.getId()))) {
+            return;
+        }
+
+        this.removeFromIndex(side.equals(BioReaction.Side.LEFT) ? this.leftIndex : this.rightIndex, metabolite.getId(), reaction);
+    }
+
+    /**
+     * Remove a reaction from the reverse index of all its metabolites
+     *
+     * @param reaction a {@link BioReaction}
+     */
+    private void unindexReaction(@NonNull BioReaction reaction) {
+        for (BioReactant reactant : reaction.getLeftReactants()) {
+            this.removeFromIndex(this.leftIndex, reactant.getMetabolite().getId(), reaction);
+        }
+        for (BioReactant reactant : reaction.getRightReactants()) {
+            this.removeFromIndex(this.rightIndex, reactant.getMetabolite().getId(), reaction);
+        }
+    }
+
+    /**
+     * Remove an entity from the entry of a reverse index, and the entry itself if it becomes empty
+     *
+     * @param index  a reverse index
+     * @param key    the id of the indexed entity
+     * @param entity the {@link BioEntity} to remove from the entry
+     * @param <E>    the type of the entities in the entries
+     */
+    private <E extends BioEntity> void removeFromIndex(Map<String, BioCollection<E>> index, String key, E entity) {
+        BioCollection<E> indexed = index.get(key);
+        if (indexed != null) {
+            indexed.remove(entity);
+            if (indexed.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * @param r a {@link BioReaction}
+     * @return the pathways containing the reaction, read from the pathway index (do not modify)
+     */
+    private BioCollection<BioPathway> getIndexedPathways(@NonNull BioReaction r) {
+        return this.pathwayIndex.getOrDefault(r.getId(), new BioCollection<>());
+    }
+
 }
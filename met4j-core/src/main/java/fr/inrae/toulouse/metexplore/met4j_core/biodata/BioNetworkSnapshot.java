@@ -0,0 +1,339 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.inrae.toulouse.metexplore.met4j_core.biodata;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Immutable, index-based view of the structure of a {@link BioNetwork}, for read-only analyses.
+ * <p>
+ * Metabolites, reactions and compartments are interned to dense integer indexes, and the stoichiometry is stored in
+ * compressed sparse row arrays:
+ * <ul>
+ * <li>reaction to reactants: for each reaction r, reactants are stored in [{@link #reactantStart(int)}, {@link #reactantEnd(int)}),
+ * left reactants first, then right reactants from {@link #rightStart(int)}. Each reactant has a metabolite index, a compartment
+ * index and a signed stoichiometric coefficient (negative for substrates, positive for products).</li>
+ * <li>metabolite to reactions: for each metabolite m, the distinct reactions it is involved in, by increasing index, are stored in
+ * [{@link #reactionStart(int)}, {@link #reactionEnd(int)}).</li>
+ * </ul>
+ * Entities are indexed following the iteration order of the network views at build time. Later changes to the network
+ * are not reflected in the snapshot.
+ *
+ * @author clement
+ */
+public class BioNetworkSnapshot {
+
+    private final BioNetwork network;
+
+    private final BioMetabolite[] metabolites;
+    private final BioReaction[] reactions;
+    private final BioCompartment[] compartments;
+
+    private final HashMap<String, Integer> metaboliteIndex;
+    private final HashMap<String, Integer> reactionIndex;
+    private final HashMap<String, Integer> compartmentIndex;
+
+    private final boolean[] reversible;
+
+    /** reaction to reactants offsets, of size numReactions+1 */
+    private final int[] reactantOffsets;
+    /** position of the first right reactant of each reaction */
+    private final int[] rightOffsets;
+    private final int[] reactantMetabolites;
+    private final int[] reactantCompartments;
+    private final double[] stoichiometry;
+
+    /** metabolite to reactions offsets, of size numMetabolites+1 */
+    private final int[] reactionOffsets;
+    private final int[] metaboliteReactions;
+
+    /**
+     * Build a snapshot of a network
+     *
+     * @param network the network
+     * @throws IllegalArgumentException if a reaction involves a metabolite that is not in the network
+     */
+    public BioNetworkSnapshot(@NonNull BioNetwork network) {
+        this.network = network;
+        this.metabolites = network.getMetabolitesView().toArray(new BioMetabolite[0]);
+        this.reactions = network.getReactionsView().toArray(new BioReaction[0]);
+        this.compartments = network.getCompartmentsView().toArray(new BioCompartment[0]);
+        this.metaboliteIndex = index(metabolites);
+        this.reactionIndex = index(reactions);
+        this.compartmentIndex = index(compartments);
+
+        int nR = reactions.length;
+        int nM = metabolites.length;
+        reversible = new boolean[nR];
+        reactantOffsets = new int[nR + 1];
+        rightOffsets = new int[nR];
+        for (int r = 0; r < nR; r++) {
+            reversible[r] = reactions[r].isReversible();
+            rightOffsets[r] = reactantOffsets[r] + reactions[r].getLeftReactantsView().size();
+            reactantOffsets[r + 1] = rightOffsets[r] + reactions[r].getRightReactantsView().size();
+        }
+
+        int nnz = reactantOffsets[nR];
+        reactantMetabolites = new int[nnz];
+        reactantCompartments = new int[nnz];
+        stoichiometry = new double[nnz];
+        int k = 0;
+        for (BioReaction r : reactions) {
+            for (BioReactant reactant : r.getLeftReactantsView()) {
+                setReactant(k++, r, reactant, -reactant.getQuantity());
+            }
+            for (BioReactant reactant : r.getRightReactantsView()) {
+                setReactant(k++, r, reactant, reactant.getQuantity());
+            }
+        }
+
+        //transpose, skipping metabolites found several times in a same reaction
+        reactionOffsets = new int[nM + 1];
+        int[] lastReaction = new int[nM];
+        Arrays.fill(lastReaction, -1);
+        for (int r = 0; r < nR; r++) {
+            for (int i = reactantOffsets[r]; i < reactantOffsets[r + 1]; i++) {
+                int m = reactantMetabolites[i];
+                if (lastReaction[m] != r) {
+                    lastReaction[m] = r;
+                    reactionOffsets[m + 1]++;
+                }
+            }
+        }
+        for (int m = 0; m < nM; m++) {
+            reactionOffsets[m + 1] += reactionOffsets[m];
+        }
+        metaboliteReactions = new int[reactionOffsets[nM]];
+        int[] fill = Arrays.copyOf(reactionOffsets, nM);
+        Arrays.fill(lastReaction, -1);
+        for (int r = 0; r < nR; r++) {
+            for (int i = reactantOffsets[r]; i < reactantOffsets[r + 1]; i++) {
+                int m = reactantMetabolites[i];
+                if (lastReaction[m] != r) {
+                    lastReaction[m] = r;
+                    metaboliteReactions[fill[m]++] = r;
+                }
+            }
+        }
+    }
+
+    private void setReactant(int k, BioReaction r, BioReactant reactant, double coef) {
+        Integer m = metaboliteIndex.get(reactant.getMetabolite().getId());
+        if (m == null) {
+            throw new IllegalArgumentException("Metabolite " + reactant.getMetabolite().getId() + " of reaction " + r.getId() + " not present in the network");
+        }
+        reactantMetabolites[k] = m;
+        Integer c = reactant.getLocation() == null ? null : compartmentIndex.get(reactant.getLocation().getId());
+        reactantCompartments[k] = c == null ? -1 : c;
+        stoichiometry[k] = coef;
+    }
+
+    private static HashMap<String, Integer> index(BioEntity[] entities) {
+        HashMap<String, Integer> index = new HashMap<>(entities.length * 2);
+        for (int i = 0; i < entities.length; i++) {
+            index.put(entities[i].getId(), i);
+        }
+        return index;
+    }
+
+    /**
+     * @return the network the snapshot has been built from
+     */
+    public BioNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * @return the number of metabolites
+     */
+    public int numMetabolites() {
+        return metabolites.length;
+    }
+
+    /**
+     * @return the number of reactions
+     */
+    public int numReactions() {
+        return reactions.length;
+    }
+
+    /**
+     * @return the number of compartments
+     */
+    public int numCompartments() {
+        return compartments.length;
+    }
+
+    /**
+     * @return the total number of reactants, i.e. the number of non-zero entries of the stoichiometric matrix
+     */
+    public int numReactants() {
+        return stoichiometry.length;
+    }
+
+    /**
+     * @param m the metabolite index
+     * @return the metabolite
+     */
+    public BioMetabolite getMetabolite(int m) {
+        return metabolites[m];
+    }
+
+    /**
+     * @param r the reaction index
+     * @return the reaction
+     */
+    public BioReaction getReaction(int r) {
+        return reactions[r];
+    }
+
+    /**
+     * @param c the compartment index
+     * @return the compartment
+     */
+    public BioCompartment getCompartment(int c) {
+        return compartments[c];
+    }
+
+    /**
+     * @param id the metabolite identifier
+     * @return the metabolite index, or -1 if absent
+     */
+    public int indexOfMetabolite(String id) {
+        return metaboliteIndex.getOrDefault(id, -1);
+    }
+
+    /**
+     * @param id the reaction identifier
+     * @return the reaction index, or -1 if absent
+     */
+    public int indexOfReaction(String id) {
+        return reactionIndex.getOrDefault(id, -1);
+    }
+
+    /**
+     * @param id the compartment identifier
+     * @return the compartment index, or -1 if absent
+     */
+    public int indexOfCompartment(String id) {
+        return compartmentIndex.getOrDefault(id, -1);
+    }
+
+    /**
+     * @param r the reaction index
+     * @return true if the reaction is reversible
+     */
+    public boolean isReversible(int r) {
+        return reversible[r];
+    }
+
+    /**
+     * @param r the reaction index
+     * @return the position of the first reactant of the reaction
+     */
+    public int reactantStart(int r) {
+        return reactantOffsets[r];
+    }
+
+    /**
+     * @param r the reaction index
+     * @return the position of the first right reactant of the reaction, equal to {@link #reactantEnd(int)} if there is none
+     */
+    public int rightStart(int r) {
+        return rightOffsets[r];
+    }
+
+    /**
+     * @param r the reaction index
+     * @return the position after the last reactant of the reaction
+     */
+    public int reactantEnd(int r) {
+        return reactantOffsets[r + 1];
+    }
+
+    /**
+     * @param k the reactant position
+     * @return the index of the reactant's metabolite
+     */
+    public int reactantMetabolite(int k) {
+        return reactantMetabolites[k];
+    }
+
+    /**
+     * @param k the reactant position
+     * @return the index of the reactant's compartment, or -1 if the compartment is not in the network
+     */
+    public int reactantCompartment(int k) {
+        return reactantCompartments[k];
+    }
+
+    /**
+     * @param k the reactant position
+     * @return the signed stoichiometric coefficient, negative for left reactants and positive for right reactants
+     */
+    public double stoichiometry(int k) {
+        return stoichiometry[k];
+    }
+
+    /**
+     * @param m the metabolite index
+     * @return the position of the first reaction involving the metabolite
+     */
+    public int reactionStart(int m) {
+        return reactionOffsets[m];
+    }
+
+    /**
+     * @param m the metabolite index
+     * @return the position after the last reaction involving the metabolite
+     */
+    public int reactionEnd(int m) {
+        return reactionOffsets[m + 1];
+    }
+
+    /**
+     * @param k the position in the metabolite to reactions arrays
+     * @return the reaction index
+     */
+    public int metaboliteReaction(int k) {
+        return metaboliteReactions[k];
+    }
+
+}
@@ -78,6 +78,9 @@ public class BioReaction extends BioEntity {
 
 	final private BioCollection<BioEnzyme> enzymes;
 
+	/** cached signature of the reactants, null if it must be recomputed */
+	private long[] signature;
+
 	public enum Side {
 		LEFT, RIGHT
 	}
@@ -187,6 +190,73 @@ public class BioReaction extends BioEntity {
 	 */
 	public void setReversible(boolean reversible) {
 		this.reversible = reversible;
+		this.invalidateSignature();
+	}
+
+	/**
+	 * Get the canonical signature of the reaction: a 128-bit hash of its reactants (metabolite, compartment and
+	 * stoichiometry) and of its direction. The signature does not depend on the order of the reactants nor, for
+	 * reversible reactions, on the side they are written on. Redundant reactions share the same signature, so it can be
+	 * used to index reactions before comparing them.
+	 * The signature is cached, and recomputed after a change of the reactants or of the reversibility.
+	 *
+	 * @return the two 64-bit halves of the signature
+	 */
+	public long[] getSignature() {
+		long[] sig = this.signature;
+		if (sig == null) {
+			sig = computeSignature();
+			this.signature = sig;
+		}
+		return sig.clone();
+	}
+
+	/**
+	 * Reset the cached signature, must be called when the reactants change
+	 */
+	protected void invalidateSignature() {
+		this.signature = null;
+	}
+
+	private long[] computeSignature() {
+		long[] l = sideSignature(this.left);
+		long[] r = sideSignature(this.right);
+		if (this.reversible && (l[0] > r[0] || (l[0] == r[0] && l[1] > r[1]))) {
+			long[] tmp = l;
+			l = r;
+			r = tmp;
+		}
+		long tag = this.reversible ? 0x5851F42D4C957F2DL : 0x14057B7EF767814FL;
+		return new long[]{
+				mix(tag ^ mix(l[0]) * 31 + r[0]),
+				mix(~tag ^ mix(l[1]) * 31 + r[1])};
+	}
+
+	/**
+	 * Order-independent hash of a set of reactants, computed from their ids which carry the metabolite, the
+	 * stoichiometry and the compartment
+	 */
+	private static long[] sideSignature(BioCollection<BioReactant> reactants) {
+		long h1 = 0, h2 = 0;
+		for (BioReactant reactant : reactants) {
+			long h = 0xcbf29ce484222325L;
+			String id = reactant.getId();
+			for (int i = 0; i < id.length(); i++) {
+				h = (h ^ id.charAt(i)) * 0x100000001b3L;
+			}
+			h1 += mix(h);
+			h2 += mix(h ^ 0x9E3779B97F4A7C15L);
+		}
+		return new long[]{h1, h2};
+	}
+
+	/**
+	 * splitmix64 finalizer
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
 	}
 
 	/**
@@ -432,6 +502,7 @@ public class BioReaction extends BioEntity {
 				}
 			}
 		}
+		this.invalidateSignature();
 	}
 
 	//Get list of genes
@@ -41,7 +41,10 @@ import fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollection;
 import lombok.NonNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 /**
  * <p>BioNetworkUtils class.</p>
@@ -53,40 +56,14 @@ public class BioNetworkUtils {
     /**
      * Return choke reactions
      * A choke reaction involves metabolites
-     * that are consumed or produced only by this reaction
+     * that are consumed or produced only by this reaction.
+     * See {@link ChokeReactions} to evaluate knockouts without recomputing the whole analysis.
      *
      * @param network a {@link fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetwork}
      * @return a {@link fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollection} of {@link fr.inrae.toulouse.metexplore.met4j_core.biodata.BioReaction}
      */
     public static BioCollection<BioReaction> getChokeReactions(@NonNull BioNetwork network) {
-
-        BioCollection<BioReaction> chokeReactions = new BioCollection<>();
-
-        BioCollection<BioReaction> reactions = network.getReactionsView();
-
-        for (BioReaction r : reactions) {
-
-            BioCollection<BioMetabolite> metabolites = network.getLefts(r);
-            metabolites.addAll(network.getRights(r));
-
-            for (BioMetabolite m : metabolites) {
-
-                BioCollection<BioReaction> reactionsAsSubstrate = network.getReactionsFromSubstrate(m);
-                BioCollection<BioReaction> reactionsAsProduct = network.getReactionsFromProduct(m);
-
-                reactionsAsSubstrate.remove(r);
-                reactionsAsProduct.remove(r);
-
-                if (reactionsAsSubstrate.size() == 0 || reactionsAsProduct.size() == 0) {
-                    chokeReactions.add(r);
-                    break;
-                }
-
-            }
-        }
-
-        return chokeReactions;
-
+        return new ChokeReactions(network).getChokeReactions();
     }
 
     /**
@@ -104,23 +81,64 @@ public class BioNetworkUtils {
     }
 
     /**
-     * Remove from a network all duplicated reactions
+     * Get the groups of redundant reactions of a network.
+     * Reactions are first gathered by {@link BioReactionUtils#getSignature(BioNetwork, BioReaction, boolean)}, and only the
+     * reactions sharing a signature are compared with {@link BioReactionUtils#areRedundant(BioNetwork, BioReaction, BioReaction, boolean)}.
+     *
+     * @param network      a {@link fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetwork}
+     * @param checkSameGPR if reactions should be considered non-redundant if they share same reactants but have different GPR
+     * @return the groups of at least two redundant reactions
+     */
+    public static List<BioCollection<BioReaction>> getRedundantReactions(@NonNull BioNetwork network, boolean checkSameGPR) {
+        List<BioCollection<BioReaction>> redundant = new ArrayList<>();
+        for (List<BioReaction> group : groupRedundantReactions(network, checkSameGPR)) {
+            redundant.add(new BioCollection<>(group));
+        }
+        return redundant;
+    }
+
+    /**
+     * Groups of at least two redundant reactions, each group following the iteration order of the reactions of the network
+     */
+    private static List<List<BioReaction>> groupRedundantReactions(BioNetwork network, boolean checkSameGPR) {
+
+        LinkedHashMap<List<Long>, List<List<BioReaction>>> buckets = new LinkedHashMap<>();
+        for (BioReaction r : network.getReactionsView()) {
+            long[] signature = BioReactionUtils.getSignature(network, r, checkSameGPR);
+            List<List<BioReaction>> groups = buckets.computeIfAbsent(Arrays.asList(signature[0], signature[1]), k -> new ArrayList<>());
+            // signature collisions are resolved by an exact comparison with the first reaction of each group
+            List<BioReaction> group = groups.stream()
+                    .filter(g -> BioReactionUtils.areRedundant(network, g.get(0), r, checkSameGPR))
+                    .findFirst().orElse(null);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.add(group);
+            }
+            group.add(r);
+        }
+
+        List<List<BioReaction>> redundant = new ArrayList<>();
+        for (List<List<BioReaction>> groups : buckets.values()) {
+            for (List<BioReaction> group : groups) {
+                if (group.size() > 1) redundant.add(group);
+            }
+        }
+        return redundant;
+    }
+
+    /**
+     * Remove from a network all duplicated reactions, the last reaction of each group of redundant reactions is kept.
+     * Reversible reactions written in opposite directions are duplicates.
      *
      * @param network a {@link fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetwork}
      * @param checkSameGPR if reactions should be considered non-redundant if they share same reactants but have different GPR
+     * @see #getRedundantReactions(BioNetwork, boolean)
      */
     public static void removeDuplicatedReactions(@NonNull BioNetwork network, boolean checkSameGPR) {
-        //1- for each reaction, create an id from equation and, optionally, GPR
-        //2- put id-reaction pairs in map, each new reaction overrides its duplicates, if any
-        //3- remove from network all reactions not in map
-        HashMap<String,BioReaction> indexedReaction = new HashMap<>();
-        BioCollection<BioReaction> toRemove = new BioCollection<>(network.getReactionsView());
-        for (BioReaction r : network.getReactionsView()){
-            String uniqId = BioReactionUtils.getEquation(r,false,true);
-            if(checkSameGPR) uniqId = uniqId+BioReactionUtils.getGPR(network,r);
-            indexedReaction.put(uniqId,r);
+        BioCollection<BioReaction> toRemove = new BioCollection<>();
+        for (List<BioReaction> group : groupRedundantReactions(network, checkSameGPR)) {
+            toRemove.addAll(group.subList(0, group.size() - 1));
         }
-        toRemove.removeAll(indexedReaction.values());
         network.removeOnCascade(toRemove);
     }
 
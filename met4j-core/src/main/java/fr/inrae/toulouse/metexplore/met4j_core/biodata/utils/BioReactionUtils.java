@@ -78,6 +78,11 @@ public class BioReactionUtils {
             return false;
         }
 
+        // redundant reactions share the same signature, which is cached on the reactions
+        if (!Arrays.equals(r1.getSignature(), r2.getSignature())) {
+            return false;
+        }
+
         BioCollection<BioReactant> leftR1 = network.getLeftReactants(r1);
         BioCollection<BioReactant> leftR2 = network.getLeftReactants(r2);
         BioCollection<BioReactant> rightR1 = network.getRightReactants(r1);
@@ -118,6 +123,39 @@ public class BioReactionUtils {
     }
 
 
+    /**
+     * Get the canonical signature of a reaction, optionally including its gene association.
+     * Redundant reactions (see {@link #areRedundant(BioNetwork, BioReaction, BioReaction, boolean)}) share the same signature.
+     *
+     * @param network      a {@link fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetwork}
+     * @param r            a {@link fr.inrae.toulouse.metexplore.met4j_core.biodata.BioReaction}
+     * @param checkSameGPR if the gene association must be part of the signature
+     * @return the two 64-bit halves of the signature
+     * @throws java.lang.IllegalArgumentException if the reaction is not in the network
+     * @see BioReaction#getSignature()
+     */
+    public static long[] getSignature(@NonNull BioNetwork network, @NonNull BioReaction r, boolean checkSameGPR) {
+
+        if (!network.contains(r)) {
+            throw new IllegalArgumentException(r.getId() + " is not present in the network");
+        }
+
+        long[] signature = r.getSignature();
+
+        if (checkSameGPR) {
+            // the gene association can change without the reaction being notified, so it is not cached
+            String gpr = getGPR(network, r);
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < gpr.length(); i++) {
+                h = (h ^ gpr.charAt(i)) * 0x100000001b3L;
+            }
+            signature[0] ^= h;
+            signature[1] ^= Long.rotateLeft(h, 32) * 0x9E3779B97F4A7C15L;
+        }
+
+        return signature;
+    }
+
     /**
      * get Gene association of a reaction in string format
      *
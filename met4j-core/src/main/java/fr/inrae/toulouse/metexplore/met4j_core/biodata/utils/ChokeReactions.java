@@ -0,0 +1,263 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.inrae.toulouse.metexplore.met4j_core.biodata.utils;
+
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetwork;
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetworkSnapshot;
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioReaction;
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollection;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Choke reactions analysis, supporting reaction knockouts.
+ * A choke reaction involves metabolites that are consumed or produced only by this reaction. Reversible reactions both
+ * consume and produce their reactants.
+ * <p>
+ * The number of reactions consuming and producing each metabolite is computed once, and each reaction is then classified
+ * in a single pass over its reactants. Knocking out (or restoring) reactions only updates the counts of their reactants, and
+ * only reclassifies the reactions sharing one of them, so many knockout scenarios can be evaluated from the same analysis.
+ * The analysis is based on a {@link BioNetworkSnapshot}: later changes to the network are not reflected.
+ *
+ * @author clement
+ */
+public class ChokeReactions {
+
+    private final BioNetworkSnapshot sn;
+
+    /** number of active reactions consuming each metabolite */
+    private final int[] consumers;
+    /** number of active reactions producing each metabolite */
+    private final int[] producers;
+
+    private final boolean[] knockedOut;
+    private final boolean[] choke;
+
+    /** marks of metabolites consumed and produced by the reaction being processed */
+    private final int[] consumedMark;
+    private final int[] producedMark;
+    private int epoch = 0;
+
+    /** marks of reactions already reclassified after an update */
+    private final int[] reactionMark;
+    private int reactionEpoch = 0;
+
+    /**
+     * Compute the choke reactions of a network
+     *
+     * @param network the network
+     */
+    public ChokeReactions(@NonNull BioNetwork network) {
+        this(new BioNetworkSnapshot(network));
+    }
+
+    /**
+     * Compute the choke reactions of a network snapshot
+     *
+     * @param sn the network snapshot
+     */
+    public ChokeReactions(@NonNull BioNetworkSnapshot sn) {
+        this.sn = sn;
+        int nM = sn.numMetabolites();
+        int nR = sn.numReactions();
+        consumers = new int[nM];
+        producers = new int[nM];
+        consumedMark = new int[nM];
+        producedMark = new int[nM];
+        knockedOut = new boolean[nR];
+        choke = new boolean[nR];
+        reactionMark = new int[nR];
+
+        for (int r = 0; r < nR; r++) {
+            updateCounts(r, 1);
+        }
+        for (int r = 0; r < nR; r++) {
+            choke[r] = classify(r);
+        }
+    }
+
+    /**
+     * Mark the metabolites consumed and produced by a reaction with a new epoch
+     */
+    private void mark(int r) {
+        epoch++;
+        boolean reversible = sn.isReversible(r);
+        for (int k = sn.reactantStart(r); k < sn.reactantEnd(r); k++) {
+            int m = sn.reactantMetabolite(k);
+            boolean left = k < sn.rightStart(r);
+            if (left || reversible) consumedMark[m] = epoch;
+            if (!left || reversible) producedMark[m] = epoch;
+        }
+    }
+
+    /**
+     * Add (or remove) a reaction to the consumers and producers counts of its reactants
+     */
+    private void updateCounts(int r, int delta) {
+        mark(r);
+        for (int k = sn.reactantStart(r); k < sn.reactantEnd(r); k++) {
+            int m = sn.reactantMetabolite(k);
+            if (consumedMark[m] == epoch) {
+                consumers[m] += delta;
+                //count each metabolite once per reaction
+                consumedMark[m] = 0;
+            }
+            if (producedMark[m] == epoch) {
+                producers[m] += delta;
+                producedMark[m] = 0;
+            }
+        }
+    }
+
+    /**
+     * Check if a reaction is the only one consuming or producing one of its reactants
+     */
+    private boolean classify(int r) {
+        mark(r);
+        for (int k = sn.reactantStart(r); k < sn.reactantEnd(r); k++) {
+            int m = sn.reactantMetabolite(k);
+            int otherConsumers = consumers[m] - (consumedMark[m] == epoch ? 1 : 0);
+            int otherProducers = producers[m] - (producedMark[m] == epoch ? 1 : 0);
+            if (otherConsumers == 0 || otherProducers == 0) return true;
+        }
+        return false;
+    }
+
+    private int indexOf(BioReaction r) {
+        int i = sn.indexOfReaction(r.getId());
+        if (i < 0) {
+            throw new IllegalArgumentException("Reaction " + r.getId() + " not present in the network");
+        }
+        return i;
+    }
+
+    /**
+     * Knock out reactions, and update the classification of the remaining ones
+     *
+     * @param reactions the reactions to knock out, for example the ones catalyzed only by deleted genes
+     * @throws IllegalArgumentException if a reaction is not in the network
+     */
+    public void knockOut(@NonNull Collection<BioReaction> reactions) {
+        update(reactions, true);
+    }
+
+    /**
+     * Restore knocked out reactions, and update the classification of the other ones
+     *
+     * @param reactions the reactions to restore
+     * @throws IllegalArgumentException if a reaction is not in the network
+     */
+    public void restore(@NonNull Collection<BioReaction> reactions) {
+        update(reactions, false);
+    }
+
+    /**
+     * Restore all knocked out reactions
+     */
+    public void restoreAll() {
+        List<BioReaction> all = new ArrayList<>();
+        for (int r = 0; r < knockedOut.length; r++) {
+            if (knockedOut[r]) all.add(sn.getReaction(r));
+        }
+        restore(all);
+    }
+
+    private void update(Collection<BioReaction> reactions, boolean knockOut) {
+        List<Integer> changed = new ArrayList<>();
+        for (BioReaction reaction : reactions) {
+            int r = indexOf(reaction);
+            if (knockedOut[r] != knockOut) {
+                knockedOut[r] = knockOut;
+                updateCounts(r, knockOut ? -1 : 1);
+                choke[r] = false;
+                changed.add(r);
+            }
+        }
+        //only reactions sharing a reactant with an updated reaction can change
+        reactionEpoch++;
+        for (int r : changed) {
+            for (int k = sn.reactantStart(r); k < sn.reactantEnd(r); k++) {
+                int m = sn.reactantMetabolite(k);
+                for (int i = sn.reactionStart(m); i < sn.reactionEnd(m); i++) {
+                    int other = sn.metaboliteReaction(i);
+                    if (!knockedOut[other] && reactionMark[other] != reactionEpoch) {
+                        reactionMark[other] = reactionEpoch;
+                        choke[other] = classify(other);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if a reaction is a choke reaction. Knocked out reactions are not choke reactions.
+     *
+     * @param r the reaction
+     * @return true if the reaction is a choke reaction
+     * @throws IllegalArgumentException if the reaction is not in the network
+     */
+    public boolean isChokeReaction(@NonNull BioReaction r) {
+        return choke[indexOf(r)];
+    }
+
+    /**
+     * Check if a reaction is knocked out
+     *
+     * @param r the reaction
+     * @return true if the reaction is knocked out
+     * @throws IllegalArgumentException if the reaction is not in the network
+     */
+    public boolean isKnockedOut(@NonNull BioReaction r) {
+        return knockedOut[indexOf(r)];
+    }
+
+    /**
+     * Get the choke reactions, among reactions that are not knocked out
+     *
+     * @return a {@link BioCollection} of {@link BioReaction}
+     */
+    public BioCollection<BioReaction> getChokeReactions() {
+        BioCollection<BioReaction> chokeReactions = new BioCollection<>();
+        for (int r = 0; r < choke.length; r++) {
+            if (choke[r]) chokeReactions.add(sn.getReaction(r));
+        }
+        return chokeReactions;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.inrae.toulouse.metexplore.met4j_core.biodata;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class BioNetworkSnapshotTest {
+
+    BioNetwork network;
+    BioReaction r1, r2;
+    BioMetabolite a, b, c;
+    BioCompartment cpt1, cpt2;
+
+    @Before
+    public void init() {
+        network = new BioNetwork();
+        a = new BioMetabolite("a");
+        b = new BioMetabolite("b");
+        c = new BioMetabolite("c");
+        cpt1 = new BioCompartment("cpt1");
+        cpt2 = new BioCompartment("cpt2");
+        r1 = new BioReaction("r1");
+        r2 = new BioReaction("r2");
+        r1.setReversible(false);
+        r2.setReversible(true);
+        network.add(a, b, c, cpt1, cpt2, r1, r2);
+        network.affectToCompartment(cpt1, a, b, c);
+        network.affectToCompartment(cpt2, a);
+
+        // 2 a + b -> c
+        network.affectLeft(r1, 2.0, cpt1, a);
+        network.affectLeft(r1, 1.0, cpt1, b);
+        network.affectRight(r1, 1.0, cpt1, c);
+        // a[cpt1] <-> a[cpt2]
+        network.affectLeft(r2, 1.0, cpt1, a);
+        network.affectRight(r2, 1.0, cpt2, a);
+    }
+
+    @Test
+    public void testStructure() {
+        BioNetworkSnapshot sn = new BioNetworkSnapshot(network);
+
+        assertEquals(3, sn.numMetabolites());
+        assertEquals(2, sn.numReactions());
+        assertEquals(2, sn.numCompartments());
+        assertEquals(5, sn.numReactants());
+        assertSame(network, sn.getNetwork());
+        assertEquals(-1, sn.indexOfMetabolite("x"));
+
+        int ri1 = sn.indexOfReaction("r1");
+        assertSame(r1, sn.getReaction(ri1));
+        assertFalse(sn.isReversible(ri1));
+        assertEquals(2, sn.rightStart(ri1) - sn.reactantStart(ri1));
+        assertEquals(1, sn.reactantEnd(ri1) - sn.rightStart(ri1));
+        for (int k = sn.reactantStart(ri1); k < sn.rightStart(ri1); k++) {
+            BioMetabolite m = sn.getMetabolite(sn.reactantMetabolite(k));
+            assertEquals(m == a ? -2.0 : -1.0, sn.stoichiometry(k), 0.0);
+            assertSame(cpt1, sn.getCompartment(sn.reactantCompartment(k)));
+        }
+        assertSame(c, sn.getMetabolite(sn.reactantMetabolite(sn.rightStart(ri1))));
+        assertEquals(1.0, sn.stoichiometry(sn.rightStart(ri1)), 0.0);
+
+        int ri2 = sn.indexOfReaction("r2");
+        assertTrue(sn.isReversible(ri2));
+        assertEquals(sn.indexOfCompartment("cpt2"), sn.reactantCompartment(sn.rightStart(ri2)));
+
+        // a is involved twice in r2, but r2 is only listed once
+        int ia = sn.indexOfMetabolite("a");
+        Set<BioReaction> reactionsOfA = new HashSet<>();
+        for (int k = sn.reactionStart(ia); k < sn.reactionEnd(ia); k++) {
+            reactionsOfA.add(sn.getReaction(sn.metaboliteReaction(k)));
+        }
+        assertEquals(2, sn.reactionEnd(ia) - sn.reactionStart(ia));
+        assertEquals(network.getReactionsFromMetabolite(a).size(), reactionsOfA.size());
+        assertTrue(reactionsOfA.contains(r1));
+        assertTrue(reactionsOfA.contains(r2));
+
+        int ic = sn.indexOfMetabolite("c");
+        assertEquals(1, sn.reactionEnd(ic) - sn.reactionStart(ic));
+        assertEquals(ri1, sn.metaboliteReaction(sn.reactionStart(ic)));
+    }
+
+    @Test
+    public void testImmutable() {
+        BioNetworkSnapshot sn = new BioNetworkSnapshot(network);
+        network.add(new BioMetabolite("d"));
+        assertEquals(3, sn.numMetabolites());
+        assertEquals(-1, sn.indexOfMetabolite("d"));
+    }
+
+}
@@ -42,6 +42,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.*;
@@ -1308,6 +1309,33 @@ public class BioNetworkTest {
 
         assertEquals("Reaction not removed from pathway", 0, pathway.getReactions().size());
 
+        assertEquals("Pathway still associated to the reaction", 0, network.getPathwaysFromReaction(reaction).size());
+
+    }
+
+    @Test
+    public void testGetPathwaysFromReactionAfterRemovals() {
+
+        BioReaction reaction = new BioReaction("reacId");
+        BioReaction reaction2 = new BioReaction("reacId2");
+        BioPathway pathway = new BioPathway("pathwayId");
+        BioPathway pathway2 = new BioPathway("pathwayId2");
+
+        network.add(reaction, reaction2, pathway, pathway2);
+
+        network.affectToPathway(pathway, reaction, reaction2);
+        network.affectToPathway(pathway2, reaction);
+
+        assertEquals("Bad number of pathways for the reaction", 2, network.getPathwaysFromReaction(reaction).size());
+
+        network.removeOnCascade(pathway2);
+        assertEquals("Removed pathway still associated to the reaction", 1, network.getPathwaysFromReaction(reaction).size());
+
+        network.removeOnCascade(reaction);
+        network.add(reaction);
+        assertEquals("Removed reaction still associated to the pathway", 0, network.getPathwaysFromReaction(reaction).size());
+        assertEquals("Bad number of pathways for the reaction", 1, network.getPathwaysFromReaction(reaction2).size());
+
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -1494,6 +1522,33 @@ public class BioNetworkTest {
 
     }
 
+    @Test
+    public void testGetReactionsFromMetaboliteAfterRemovals() {
+        BioReaction r1 = addTestReactionToNetwork();
+        r1.setReversible(false);
+
+        BioCompartment cpt2 = new BioCompartment("cpt2");
+        network.add(cpt2);
+        network.affectToCompartment(cpt2, s1);
+        network.affectLeft(r1, 1.0, cpt2, s1);
+
+        // s1 is still a substrate in cpt2
+        network.removeLeft(s1, cpt, r1);
+        assertEquals("Reaction must still be indexed for s1", 1, network.getReactionsFromSubstrate(s1).size());
+
+        network.removeLeft(s1, cpt2, r1);
+        assertEquals("Reaction must not be indexed anymore for s1", 0, network.getReactionsFromSubstrate(s1).size());
+        assertEquals("Reaction must not be indexed anymore for s1", 0, network.getReactionsFromMetabolite(s1).size());
+
+        network.removeOnCascade(p1);
+        assertEquals("Removed metabolite must not be indexed anymore", 0, network.getReactionsFromProduct(p1).size());
+        assertEquals("Reaction must still be indexed for p2", 1, network.getReactionsFromProduct(p2).size());
+
+        network.removeOnCascade(r1);
+        assertEquals("Removed reaction must not be indexed anymore", 0, network.getReactionsFromSubstrate(s2).size());
+        assertEquals("Removed reaction must not be indexed anymore", 0, network.getReactionsFromProduct(p2).size());
+    }
+
     @Test
     public void testGetReactionsFromSubstrates() {
         BioReaction r1 = addTestReactionToNetwork();
@@ -1902,6 +1957,17 @@ public class BioNetworkTest {
 
         assertEquals("Bad number of pathways with at east one of these genes", 1, pathways.size());
 
+        genes.remove(g3);
+        pathways = network.getPathwaysFromGenes(genes, true);
+
+        assertEquals("Bad number of pathways with all these genes", 1, pathways.size());
+        assertTrue("Bad pathway with all these genes",
+                pathways.contains(network.getPathway("pathway1")));
+
+        pathways = network.getPathwaysFromGenes(new BioCollection<>(List.of(g3)), false);
+
+        assertEquals("No pathway with a gene coding no enzyme", 0, pathways.size());
+
     }
 
     @Test(expected = IllegalArgumentException.class)
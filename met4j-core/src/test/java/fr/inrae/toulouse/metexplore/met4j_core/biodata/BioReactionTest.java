@@ -37,6 +37,8 @@ package fr.inrae.toulouse.metexplore.met4j_core.biodata;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.internal.ArrayComparisonFailure;
@@ -255,4 +257,39 @@ public class BioReactionTest {
 
 	}
 
+	/**
+	 * Test method for
+	 * {@link BioReaction#getSignature()}
+	 */
+	@Test
+	public void testGetSignature() {
+		BioReaction copy = new BioReaction("copy");
+		network.add(copy);
+		network.affectRight(copy, r2Reactant, r1Reactant);
+		network.affectLeft(copy, l2Reactant, l1Reactant);
+		assertArrayEquals(reaction.getSignature(), copy.getSignature());
+
+		BioReaction reverse = new BioReaction("reverse");
+		network.add(reverse);
+		network.affectLeft(reverse, r1Reactant, r2Reactant);
+		network.affectRight(reverse, l1Reactant, l2Reactant);
+		assertArrayEquals(reaction.getSignature(), reverse.getSignature());
+
+		reverse.setReversible(false);
+		assertFalse(Arrays.equals(reaction.getSignature(), reverse.getSignature()));
+		reaction.setReversible(false);
+		assertFalse(Arrays.equals(reaction.getSignature(), reverse.getSignature()));
+		assertFalse(Arrays.equals(reaction.getSignature(), copy.getSignature()));
+		copy.setReversible(false);
+		assertArrayEquals(reaction.getSignature(), copy.getSignature());
+
+		network.removeLeft(l1, cpt1, copy);
+		assertFalse(Arrays.equals(reaction.getSignature(), copy.getSignature()));
+		network.affectLeft(copy, 2.0, cpt1, l1);
+		assertFalse(Arrays.equals(reaction.getSignature(), copy.getSignature()));
+		network.removeLeft(l1, cpt1, copy);
+		network.affectLeft(copy, l1Reactant);
+		assertArrayEquals(reaction.getSignature(), copy.getSignature());
+	}
+
 }
@@ -41,6 +41,9 @@ import static org.junit.Assert.*;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.*;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.List;
+
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollection;
 
 public class BioNetworkUtilsTest {
@@ -119,6 +122,43 @@ public class BioNetworkUtilsTest {
         assertFalse("Duplicated reaction (considering GPR)  not removed",network.containsReaction("R3"));
     }
 
+    @Test
+    public void testGetRedundantReactions() {
+        BioNetwork network = miniNetwork();
+        // same reactants as R1, in another order
+        BioReaction r3 = new BioReaction("R3");
+        // R2 written in the opposite direction
+        BioReaction r4 = new BioReaction("R4");
+        // same as R2 but irreversible
+        BioReaction r5 = new BioReaction("R5");
+        r5.setReversible(false);
+        network.add(r3, r4, r5);
+        network.affectRight(r3, 1.0, c1, m2);
+        network.affectLeft(r3, 2.0, c1, m1);
+        network.affectLeft(r4, 2.0, c1, m4);
+        network.affectRight(r4, 1.0, c1, m3);
+        network.affectLeft(r5, 1.0, c1, m3);
+        network.affectRight(r5, 2.0, c1, m4);
+
+        List<BioCollection<BioReaction>> redundant = BioNetworkUtils.getRedundantReactions(network, false);
+        assertEquals(2, redundant.size());
+        assertTrue(redundant.contains(new BioCollection<>(Arrays.asList(r1, r3))));
+        assertTrue(redundant.contains(new BioCollection<>(Arrays.asList(r2, r4))));
+
+        // R3 has no gene association
+        redundant = BioNetworkUtils.getRedundantReactions(network, true);
+        assertEquals(1, redundant.size());
+        assertTrue(redundant.contains(new BioCollection<>(Arrays.asList(r2, r4))));
+
+        // the cached signatures are updated when the reactants change
+        network.removeLeft(m4, c1, r4);
+        network.affectLeft(r4, 1.0, c1, m2);
+        r5.setReversible(true);
+        redundant = BioNetworkUtils.getRedundantReactions(network, false);
+        assertEquals(2, redundant.size());
+        assertTrue(redundant.contains(new BioCollection<>(Arrays.asList(r2, r5))));
+    }
+
     @Test
     public void removeNotConnectedMetabolites() {
 
@@ -0,0 +1,202 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.inrae.toulouse.metexplore.met4j_core.biodata.utils;
+
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioCompartment;
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetwork;
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioReaction;
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollection;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ChokeReactionsTest {
+
+    BioNetwork network;
+    BioReaction r1, r2, r3;
+    BioMetabolite a, b, c, d;
+    BioCompartment cpt;
+
+    @Before
+    public void init() {
+        network = new BioNetwork();
+        a = new BioMetabolite("a");
+        b = new BioMetabolite("b");
+        c = new BioMetabolite("c");
+        d = new BioMetabolite("d");
+        cpt = new BioCompartment("cpt");
+        r1 = new BioReaction("r1");
+        r2 = new BioReaction("r2");
+        r3 = new BioReaction("r3");
+        r1.setReversible(false);
+        r2.setReversible(false);
+        r3.setReversible(true);
+        network.add(a, b, c, d, cpt, r1, r2, r3);
+        network.affectToCompartment(cpt, a, b, c, d);
+
+        // a -> b, a -> b, b <-> c + d
+        network.affectLeft(r1, 1.0, cpt, a);
+        network.affectRight(r1, 1.0, cpt, b);
+        network.affectLeft(r2, 1.0, cpt, a);
+        network.affectRight(r2, 1.0, cpt, b);
+        network.affectLeft(r3, 1.0, cpt, b);
+        network.affectRight(r3, 1.0, cpt, c);
+        network.affectRight(r3, 1.0, cpt, d);
+    }
+
+    @Test
+    public void testGetChokeReactions() {
+        ChokeReactions choke = new ChokeReactions(network);
+        // a is never produced, so r1 and r2 are choke reactions
+        assertEquals(new HashSet<>(Arrays.asList(r1, r2, r3)), new HashSet<>(choke.getChokeReactions()));
+
+        BioReaction r4 = new BioReaction("r4");
+        r4.setReversible(true);
+        network.add(r4);
+        network.affectLeft(r4, 1.0, cpt, a);
+        network.affectRight(r4, 1.0, cpt, b);
+        choke = new ChokeReactions(network);
+        // r3 is the only one involving c and d, r4 is the only one producing a
+        assertEquals(new HashSet<>(Arrays.asList(r3, r4)), new HashSet<>(choke.getChokeReactions()));
+        assertTrue(choke.isChokeReaction(r3));
+        assertFalse(choke.isChokeReaction(r1));
+    }
+
+    @Test
+    public void testKnockOut() {
+        BioReaction r4 = new BioReaction("r4");
+        r4.setReversible(true);
+        network.add(r4);
+        network.affectLeft(r4, 1.0, cpt, a);
+        network.affectRight(r4, 1.0, cpt, b);
+        ChokeReactions choke = new ChokeReactions(network);
+
+        // r4 is the only reaction producing a
+        choke.knockOut(Collections.singleton(r4));
+        assertTrue(choke.isKnockedOut(r4));
+        assertFalse(choke.isChokeReaction(r4));
+        assertEquals(new HashSet<>(Arrays.asList(r1, r2, r3)), new HashSet<>(choke.getChokeReactions()));
+
+        choke.restoreAll();
+        assertFalse(choke.isKnockedOut(r4));
+        assertEquals(new HashSet<>(Arrays.asList(r3, r4)), new HashSet<>(choke.getChokeReactions()));
+
+        // r3 becomes the only reaction consuming b
+        choke.knockOut(Arrays.asList(r4));
+        choke.restore(Arrays.asList(r4));
+        choke.knockOut(Arrays.asList(r1, r2, r4));
+        assertEquals(Collections.singleton(r3), new HashSet<>(choke.getChokeReactions()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKnockOutUnknownReaction() {
+        new ChokeReactions(network).knockOut(Collections.singleton(new BioReaction("unknown")));
+    }
+
+    @Test
+    public void testRandomKnockOuts() {
+        Random rand = new Random(42);
+        BioNetwork bn = new BioNetwork();
+        BioCompartment cpt = new BioCompartment("cpt");
+        bn.add(cpt);
+        List<BioMetabolite> metabolites = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            BioMetabolite m = new BioMetabolite("m" + i);
+            bn.add(m);
+            bn.affectToCompartment(cpt, m);
+            metabolites.add(m);
+        }
+        List<BioReaction> reactions = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            BioReaction r = new BioReaction("r" + i);
+            r.setReversible(rand.nextInt(3) == 0);
+            bn.add(r);
+            for (int j = 0; j <= rand.nextInt(2); j++) {
+                bn.affectLeft(r, 1.0, cpt, metabolites.get(rand.nextInt(metabolites.size())));
+            }
+            for (int j = 0; j <= rand.nextInt(2); j++) {
+                bn.affectRight(r, 1.0, cpt, metabolites.get(rand.nextInt(metabolites.size())));
+            }
+            reactions.add(r);
+        }
+
+        ChokeReactions choke = new ChokeReactions(bn);
+        assertEquals(new HashSet<>(BioNetworkUtils.getChokeReactions(bn)), naiveChokeReactions(bn, Collections.emptySet()));
+
+        Set<BioReaction> knockedOut = new HashSet<>();
+        for (int step = 0; step < 30; step++) {
+            List<BioReaction> update = new ArrayList<>();
+            for (int j = 0; j < 3; j++) {
+                update.add(reactions.get(rand.nextInt(reactions.size())));
+            }
+            if (rand.nextBoolean()) {
+                choke.knockOut(update);
+                knockedOut.addAll(update);
+            } else {
+                choke.restore(update);
+                knockedOut.removeAll(update);
+            }
+            assertEquals(naiveChokeReactions(bn, knockedOut), new HashSet<>(choke.getChokeReactions()));
+        }
+    }
+
+    private static Set<BioReaction> naiveChokeReactions(BioNetwork bn, Set<BioReaction> knockedOut) {
+        Set<BioReaction> chokeReactions = new HashSet<>();
+        for (BioReaction r : bn.getReactionsView()) {
+            if (knockedOut.contains(r)) continue;
+            BioCollection<BioMetabolite> metabolites = bn.getLefts(r);
+            metabolites.addAll(bn.getRights(r));
+            for (BioMetabolite m : metabolites) {
+                BioCollection<BioReaction> asSubstrate = bn.getReactionsFromSubstrate(m);
+                BioCollection<BioReaction> asProduct = bn.getReactionsFromProduct(m);
+                asSubstrate.remove(r);
+                asProduct.remove(r);
+                asSubstrate.removeAll(knockedOut);
+                asProduct.removeAll(knockedOut);
+                if (asSubstrate.isEmpty() || asProduct.isEmpty()) {
+                    chokeReactions.add(r);
+                    break;
+                }
+            }
+        }
+        return chokeReactions;
+    }
+}
@@ -38,14 +38,15 @@ package fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioEntity;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.utils.ComputeAdjacencyMatrix;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.BioGraph;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.CsrGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.BioMatrix;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.EjmlMatrix;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
+import java.util.function.IntConsumer;
 
 /**
  * compute several measures of the proximity or relatedness of two nodes
@@ -56,15 +57,109 @@ public class GraphLocalMeasure<V extends BioEntity, E extends Edge<V>, G extends
 	
 	/** The graph. */
 	private final G g;
+
+	/** The graph snapshot, built on first use. */
+	private CsrGraph<V, E> csr;
+
+	/** The distinct neighbors (predecessors or successors) of each vertex, by increasing index */
+	private int[][] neighbors;
+
+	/** The distinct successors of each vertex, by increasing index */
+	private int[][] successors;
+
+	/** The degree of each vertex, i.e. the number of incoming and outgoing edges */
+	private int[] degree;
 	
 	/**
 	 * Instantiates a new graph local measure.
+	 * Measures are computed on a snapshot of the graph taken at first computation, so the graph should not be modified afterward.
 	 *
 	 * @param g the graph
 	 */
 	public GraphLocalMeasure(G g) {
 		this.g=g;
 	}
+
+	/**
+	 * Build the snapshot of the graph and the sorted adjacency lists of each vertex
+	 */
+	private void init(){
+		if(csr!=null) return;
+		CsrGraph<V, E> snapshot = new CsrGraph<>(g);
+		int n = snapshot.numVertices();
+		int[] inDegree = new int[n];
+		for(int arc=0; arc<snapshot.numArcs(); arc++){
+			inDegree[snapshot.target(arc)]++;
+		}
+		int[][] adjacent = new int[n][];
+		int[] size = new int[n];
+		degree = new int[n];
+		successors = new int[n][];
+		for(int v=0; v<n; v++){
+			degree[v] = snapshot.outDegree(v)+inDegree[v];
+			adjacent[v] = new int[degree[v]];
+			int[] out = new int[snapshot.outDegree(v)];
+			for(int arc=snapshot.arcStart(v); arc<snapshot.arcEnd(v); arc++){
+				out[arc-snapshot.arcStart(v)] = snapshot.target(arc);
+			}
+			successors[v] = sortedDistinct(out, out.length);
+		}
+		for(int arc=0; arc<snapshot.numArcs(); arc++){
+			int u = snapshot.source(arc);
+			int v = snapshot.target(arc);
+			adjacent[u][size[u]++] = v;
+			adjacent[v][size[v]++] = u;
+		}
+		neighbors = new int[n][];
+		for(int v=0; v<n; v++){
+			neighbors[v] = sortedDistinct(adjacent[v], size[v]);
+		}
+		csr = snapshot;
+	}
+
+	private static int[] sortedDistinct(int[] values, int length){
+		Arrays.sort(values, 0, length);
+		int k = 0;
+		for(int i=0; i<length; i++){
+			if(k==0 || values[i]!=values[k-1]) values[k++] = values[i];
+		}
+		return Arrays.copyOf(values, k);
+	}
+
+	private int indexOf(V v){
+		init();
+		int i = csr.indexOf(v);
+		if(i<0) throw new IllegalArgumentException("no such vertex in graph: " + v.toString());
+		return i;
+	}
+
+	/**
+	 * Apply an action to each common neighbor of two vertices, by merging their sorted neighbor lists
+	 *
+	 * @return the number of common neighbors
+	 */
+	private int forEachCommonNeighbor(int v1, int v2, IntConsumer action){
+		int[] n1 = neighbors[v1];
+		int[] n2 = neighbors[v2];
+		int i = 0, j = 0, count = 0;
+		while(i<n1.length && j<n2.length){
+			if(n1[i]<n2[j]){
+				i++;
+			}else if(n1[i]>n2[j]){
+				j++;
+			}else{
+				action.accept(n1[i]);
+				count++;
+				i++;
+				j++;
+			}
+		}
+		return count;
+	}
+
+	private boolean areConnected(int v1, int v2){
+		return Arrays.binarySearch(successors[v1], v2)>=0;
+	}
 	
 	/**
 	 * Compute the number of common neighbors of two nodes
@@ -74,13 +169,7 @@ public class GraphLocalMeasure<V extends BioEntity, E extends Edge<V>, G extends
 	 * @return the number of common neighbors
 	 */
 	public double getCommonNeighbor(V v1, V v2){
-		double commonNeighbor = 0.0;
-		Set<V> neighbors1 = g.neighborListOf(v1);
-		Set<V> neighbors2 = g.neighborListOf(v2);
-		for(V n : neighbors1){
-			if(neighbors2.contains(n)) commonNeighbor++;
-		}
-		return commonNeighbor;
+		return forEachCommonNeighbor(indexOf(v1), indexOf(v2), n -> {});
 	}
 	
 	/**
@@ -92,15 +181,9 @@ public class GraphLocalMeasure<V extends BioEntity, E extends Edge<V>, G extends
 	 * @return the Adamic-Adar index
 	 */
 	public double getAdamicAdar(V v1, V v2){
-		double aaIndex = 0.0;
-		Set<V> neighbors1 = g.neighborListOf(v1);
-		Set<V> neighbors2 = g.neighborListOf(v2);
-		for(V n : neighbors1){
-			if(neighbors2.contains(n)){
-				aaIndex+=(1/ StrictMath.log10(g.degreeOf(n)));
-			}
-		}
-		return aaIndex;
+		double[] aaIndex = new double[1];
+		forEachCommonNeighbor(indexOf(v1), indexOf(v2), n -> aaIndex[0]+=(1/ StrictMath.log10(degree[n])));
+		return aaIndex[0];
 	}
 	
 	/**
@@ -111,8 +194,10 @@ public class GraphLocalMeasure<V extends BioEntity, E extends Edge<V>, G extends
 	 * @return the Salton index
 	 */
 	public double getSaltonIndex(V v1, V v2){
-		double commonNeighbor = this.getCommonNeighbor(v1, v2);
-		double salton = commonNeighbor/Math.sqrt(g.neighborListOf(v1).size()* g.neighborListOf(v2).size());
+		int i1 = indexOf(v1);
+		int i2 = indexOf(v2);
+		double commonNeighbor = forEachCommonNeighbor(i1, i2, n -> {});
+		double salton = commonNeighbor/Math.sqrt(neighbors[i1].length* neighbors[i2].length);
 		//note that using degree here can cause false results if graph is directed, and one neighbor is connected through both incoming and outgoing edges
 		return salton;
 	}
@@ -125,13 +210,14 @@ public class GraphLocalMeasure<V extends BioEntity, E extends Edge<V>, G extends
 	 * @return the vertex local clustering coefficient
 	 */
 	public double getLocalClusteringCoeff(V v1){
-		ArrayList<V> neighbors = new ArrayList<>(g.neighborListOf(v1));
-		double numberOfNeighbors = neighbors.size();
+		int i1 = indexOf(v1);
+		int[] neighbors = this.neighbors[i1];
+		double numberOfNeighbors = neighbors.length;
 		if(numberOfNeighbors==1 || numberOfNeighbors==0) return 0;
 		double connectedNeighbors = 0;
-		for(V n1 : neighbors){
-			for(V n2 : neighbors){
-				if(n1!=n2 && g.areConnected(n1, n2)) connectedNeighbors++;
+		for(int n1 : neighbors){
+			for(int n2 : neighbors){
+				if(n1!=n2 && areConnected(n1, n2)) connectedNeighbors++;
 			}
 		}
 		
@@ -147,15 +233,16 @@ public class GraphLocalMeasure<V extends BioEntity, E extends Edge<V>, G extends
 	 * @return the vertex local clustering coefficient (undirected)
 	 */
 	public double getUndirectedLocalClusteringCoeff(V v1){
-		ArrayList<V> neighbors = new ArrayList<>(g.neighborListOf(v1));
-		double numberOfNeighbors = neighbors.size();
+		int i1 = indexOf(v1);
+		int[] neighbors = this.neighbors[i1];
+		double numberOfNeighbors = neighbors.length;
 		if(numberOfNeighbors==1 || numberOfNeighbors==0) return 0;
 		double connectedNeighbors = 0;
-		for(int i=0; i<neighbors.size(); i++){
-			V n1 = neighbors.get(i);
-			for(int j=i; j<neighbors.size(); j++){
-				V n2 = neighbors.get(j);
-				if(n1!=n2 && (g.areConnected(n1, n2) || g.areConnected(n2, n1))) connectedNeighbors++;
+		for(int i=0; i<neighbors.length; i++){
+			int n1 = neighbors[i];
+			for(int j=i+1; j<neighbors.length; j++){
+				int n2 = neighbors[j];
+				if(areConnected(n1, n2) || areConnected(n2, n1)) connectedNeighbors++;
 			}
 		}
 		
@@ -37,13 +37,14 @@ package fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze;
 
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioEntity;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.centrality.PathBasedCentrality;
+import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.DistanceStatistics;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.FloydWarshall;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.BioGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.BioPath;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.CsrGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.concurrent.ParallelLoop;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.BioMatrix;
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
-import org.jgrapht.alg.connectivity.ConnectivityInspector;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -78,6 +79,15 @@ public class GraphMeasure<V extends BioEntity, E extends Edge<V>> {
 	/** if the graph is directed */
 	private boolean directed = true;
 
+	/** The graph snapshot, built on first use. */
+	private CsrGraph<V, E> csr;
+
+	/** The shortest paths distances statistics, computed on first use. */
+	private DistanceStatistics<V, E> distances;
+
+	/** the number of threads, 0 to use the common pool */
+	private int threads = 0;
+
 
 	/**
 	 * Instantiates a new graph measure.
@@ -99,7 +109,45 @@ public class GraphMeasure<V extends BioEntity, E extends Edge<V>> {
 	 * @return the connected component
 	 */
 	public static <V extends BioEntity, E extends Edge<V>> List<Set<V>> getConnectedComponents(BioGraph<V,E> g){
-		return new ConnectivityInspector<>(g).connectedSets();
+		CsrGraph<V, E> undirected = new CsrGraph<>(g, true);
+		int n = undirected.numVertices();
+		int[] component = new int[n];
+		Arrays.fill(component, -1);
+		int[] queue = new int[n];
+		List<Set<V>> components = new ArrayList<>();
+		for(int v=0; v<n; v++){
+			if(component[v]<0) components.add(getComponent(undirected, v, components.size(), component, queue));
+		}
+		return components;
+	}
+
+	/**
+	 * Breadth-first traversal of the component containing a vertex, on an undirected snapshot
+	 *
+	 * @param undirected the undirected snapshot
+	 * @param v the start vertex index
+	 * @param id the component identifier
+	 * @param component the component identifier of each vertex, -1 if not yet visited
+	 * @param queue the queue buffer
+	 * @return the vertices in the component
+	 */
+	private static <V extends BioEntity, E extends Edge<V>> Set<V> getComponent(CsrGraph<V, E> undirected, int v, int id, int[] component, int[] queue){
+		Set<V> set = new HashSet<>();
+		int head = 0, tail = 0;
+		queue[tail++] = v;
+		component[v] = id;
+		while(head<tail){
+			int u = queue[head++];
+			set.add(undirected.getVertex(u));
+			for(int arc=undirected.arcStart(u); arc<undirected.arcEnd(u); arc++){
+				int w = undirected.target(arc);
+				if(component[w]<0){
+					component[w] = id;
+					queue[tail++] = w;
+				}
+			}
+		}
+		return set;
 	}
 	/**
 	 * Get a set of all vertices that are in the maximally connected component together with the specified vertex.
@@ -112,7 +160,12 @@ public class GraphMeasure<V extends BioEntity, E extends Edge<V>> {
 	 */
 	//public static <V extends BioEntity, E extends Edge<V>,  BioEntity<T>> Set<V>> getConnectedSetOf(BioGraph<V,E> g, Vertex <T>){
 	public static <V extends BioEntity, E extends Edge<V>> Set<V> getConnectedSetOf(BioGraph<V,E> g, V t){
-		return new ConnectivityInspector<>(g).connectedSetOf(t);
+		CsrGraph<V, E> undirected = new CsrGraph<>(g, true);
+		int v = undirected.indexOf(t);
+		if(v<0) throw new IllegalArgumentException("no such vertex in graph: " + t.toString());
+		int[] component = new int[undirected.numVertices()];
+		Arrays.fill(component, -1);
+		return getComponent(undirected, v, 0, component, new int[undirected.numVertices()]);
 	}
 
 	/**
@@ -125,16 +178,14 @@ public class GraphMeasure<V extends BioEntity, E extends Edge<V>> {
 	 * @return the component containing the vertex and output component ranking in the console.
 	 */
 	public static <V extends BioEntity, E extends Edge<V>> Set<V> isPartofNComponent(BioGraph<V,E> g, V t){
-		//init connectivity inspector
-		ConnectivityInspector CI  = new ConnectivityInspector<>(g);
 		//Sort the list of components by size
-		List<Set<V>> components = CI.connectedSets();
+		List<Set<V>> components = getConnectedComponents(g);
 		//sort with lambdafunction
 		Comparator<Set<V>> reversedComparator = (s1,s2) -> Integer.valueOf(s2.size()).compareTo(s1.size());
 		List<Set<V>> componentsReverseOrder = components.stream().sorted(reversedComparator).collect(Collectors.toList());
 		// Collections.sort(components,Comparator.reverseOrder());
 		//Get the set of all vertices maximally connected to the target vertex
-		Set<V> SetOfT = CI.connectedSetOf(t);
+		Set<V> SetOfT = getConnectedSetOf(g, t);
 		int counter = 0;
 		for(Set s:componentsReverseOrder){
 			counter++;
@@ -163,10 +214,22 @@ public class GraphMeasure<V extends BioEntity, E extends Edge<V>> {
 	 * @return the number of edges in this component
 	 */
 	public static <V extends BioEntity, E extends Edge<V>> Integer getNumberEdgesOfComponent(BioGraph<V,E> g, Set<V> comp){
-		Integer n_edges = 0;
-		for(V v1 : comp) {
-			for(V v2 : comp) {
-				if((v1 != v2) && (g.containsEdge(v1, v2))) {
+		CsrGraph<V, E> csr = new CsrGraph<>(g);
+		boolean[] inComp = new boolean[csr.numVertices()];
+		for(V v : comp){
+			int i = csr.indexOf(v);
+			if(i>=0) inComp[i] = true;
+		}
+		//count distinct linked pairs, parallel edges are counted once
+		int[] stamp = new int[csr.numVertices()];
+		Arrays.fill(stamp, -1);
+		int n_edges = 0;
+		for(int v1=0; v1<csr.numVertices(); v1++){
+			if(!inComp[v1]) continue;
+			for(int arc=csr.arcStart(v1); arc<csr.arcEnd(v1); arc++){
+				int v2 = csr.target(arc);
+				if(v2!=v1 && inComp[v2] && stamp[v2]!=v1){
+					stamp[v2] = v1;
 					n_edges++;
 				}
 			}
@@ -199,30 +262,54 @@ public class GraphMeasure<V extends BioEntity, E extends Edge<V>> {
 
 	/**
 	 * Gets the diameter of the graph, i.e. the maximum length of a shortest path between two node in the graph
-	 * If the graph is disconnected, return the longest distance found in any connected component
+	 * If the graph is disconnected, return the longest distance found in any connected component.
+	 * Negative edge weights are supported, using the Floyd-Warshall algorithm, as long as the graph has no negative cycle.
 	 * @return the diameter
 	 */
 	public double getDiameter(){
 		if(diameter !=null) return diameter;
-		FloydWarshall distComputor = new FloydWarshall(this.g);
-		BioMatrix distM = distComputor.getDistances();
+		if(getSnapshot().hasNegativeWeight()){
+			diameter = (double) (int) getMaxDistance(new FloydWarshall<>(g).getDistances());
+		}else{
+			diameter = (double) (int) getDistanceStatistics().getDiameter();
+		}
+		return diameter;
+	}
 
-		//  compute distance stats
-		DescriptiveStatistics distStats = new DescriptiveStatistics();
-		//  gather all elements in matrix, remove infinity
+	/**
+	 * Gets the largest finite distance between two distinct nodes
+	 *
+	 * @param distM the distance matrix
+	 * @return the largest distance, 0 if no pair of nodes is connected
+	 */
+	private static double getMaxDistance(BioMatrix distM){
+		double max = Double.NEGATIVE_INFINITY;
 		for(int i=0; i<distM.numRows(); i++){
 			for(int j=0; j<distM.numCols(); j++){
-				if(i!=j){
-					Double d=distM.get(i,j);
-					if(!d.equals(Double.POSITIVE_INFINITY)){
-						distStats.addValue(d);
-					}
-				}
+				double d = distM.get(i,j);
+				if(i!=j && d!=Double.POSITIVE_INFINITY && d>max) max = d;
 			}
 		}
+		return max==Double.NEGATIVE_INFINITY ? 0.0 : max;
+	}
 
-		int diameter = (int) distStats.getMax();
-		return diameter;
+	/**
+	 * Gets the radius of the graph, i.e. the minimum eccentricity of a node, the eccentricity being the maximum length of a
+	 * shortest path from this node. Nodes that can't reach any other node are ignored.
+	 * @return the radius
+	 * @throws IllegalArgumentException if an edge weight is negative or NaN
+	 */
+	public double getRadius(){
+		return getDistanceStatistics().getRadius();
+	}
+
+	/**
+	 * Gets the average length of the shortest paths between two nodes, ignoring unconnected pairs.
+	 * @return the average shortest path length
+	 * @throws IllegalArgumentException if an edge weight is negative or NaN
+	 */
+	public double getAverageShortestPathLength(){
+		return getDistanceStatistics().getAverageDistance();
 	}
 
 	/**
@@ -265,10 +352,12 @@ public class GraphMeasure<V extends BioEntity, E extends Edge<V>> {
 	 */
 	public double getLength(){
 		if(this.length !=null) return this.length;
-        length =0.0;
-		for(E e : g.edgeSet()){
-            length += g.getEdgeWeight(e);
+		CsrGraph<V, E> csr = getSnapshot();
+		double sum = 0.0;
+		for(int arc=0; arc<csr.numArcs(); arc++){
+			sum += csr.weight(arc);
 		}
+		length = sum;
 		return length;
 	}
 
@@ -297,11 +386,10 @@ public class GraphMeasure<V extends BioEntity, E extends Edge<V>> {
 	 * where n is the number of nodes in the network, C∗ is the highest value of closeness centrality and Cx the closeness centrality for the node x
 	 *
 	 * @return the OCCI
+	 * @throws IllegalArgumentException if an edge weight is negative or NaN
 	 */
 	public double getOCCI(){
-		PathBasedCentrality<V, E, BioGraph<V, E>> centralityComputor = new PathBasedCentrality<>(g);
-		Set<BioPath<V, E>> paths = centralityComputor.getAllShortestPaths();
-		Map<V, Double> closenessIndex = centralityComputor.getInCloseness(paths);
+		Map<V, Double> closenessIndex = getDistanceStatistics().getInCloseness();
 
 		double max = 0.0;
 		for(Double closeness : closenessIndex.values()){
@@ -353,11 +441,52 @@ public class GraphMeasure<V extends BioEntity, E extends Edge<V>> {
 	 * adjust the edge count for multigraph. Edges having the same source and target will be counted as one edge.
 	 */
 	public void adjustEdgeCountForMultiGraph(){
-		HashSet<String> links = new HashSet<>();
-		for(E edge : g.edgeSet()){
-			links.add(edge.getV1().getId()+"_"+edge.getV2().getId());
+		CsrGraph<V, E> csr = getSnapshot();
+		int[] stamp = new int[csr.numVertices()];
+		Arrays.fill(stamp, -1);
+		int links = 0;
+		for(int v1=0; v1<csr.numVertices(); v1++){
+			for(int arc=csr.arcStart(v1); arc<csr.arcEnd(v1); arc++){
+				int v2 = csr.target(arc);
+				if(stamp[v2]!=v1){
+					stamp[v2] = v1;
+					links++;
+				}
+			}
 		}
-        this.numberOfEdges =links.size();
+        this.numberOfEdges =links;
+	}
+
+	/**
+	 * Gets the compressed sparse row snapshot of the graph, built on first use. As other measures, it is computed once, so
+	 * the graph should not be modified after the first computation.
+	 *
+	 * @return the graph snapshot
+	 */
+	private CsrGraph<V, E> getSnapshot(){
+		if(csr==null) csr = new CsrGraph<>(g);
+		return csr;
+	}
+
+	/**
+	 * Gets the shortest paths distances statistics, computed on first use with one search per node, without storing distances.
+	 *
+	 * @return the distances statistics
+	 */
+	private DistanceStatistics<V, E> getDistanceStatistics(){
+		if(distances==null) distances = new DistanceStatistics<>(getSnapshot()).setThreads(threads).compute();
+		return distances;
+	}
+
+	/**
+	 * Set the number of threads used for shortest paths computations. By default, the common fork-join pool is used.
+	 *
+	 * @param threads the number of threads, 0 to use the common pool
+	 * @return this instance
+	 */
+	public GraphMeasure<V, E> setThreads(int threads) {
+		this.threads = ParallelLoop.checkThreads(threads);
+		return this;
 	}
 
 	/**
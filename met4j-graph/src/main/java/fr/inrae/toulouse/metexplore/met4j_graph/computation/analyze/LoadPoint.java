@@ -36,15 +36,14 @@
 package fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze;
 
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioEntity;
-import fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.centrality.PathBasedCentrality;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.KShortestPath;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.BioGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.BioPath;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.concurrent.ParallelLoop;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Class to compute load points, i.e. hotspot in metabolic networks.
@@ -56,6 +55,9 @@ import java.util.Set;
 public class LoadPoint<V extends BioEntity, E extends Edge<V>, G extends BioGraph<V, E>> {
 	
 	final G g;
+
+	/** the number of threads, 0 to use the common pool */
+	private int threads = 0;
 	
 	/**
 	 * Instantiate load points computor
@@ -65,6 +67,17 @@ public class LoadPoint<V extends BioEntity, E extends Edge<V>, G extends BioGrap
 	public LoadPoint(G g) {
 		this.g=g;
 	}
+
+	/**
+	 * Set the number of threads used for paths computation. By default, the common fork-join pool is used.
+	 *
+	 * @param threads the number of threads, 0 to use the common pool
+	 * @return this instance
+	 */
+	public LoadPoint<V, E, G> setThreads(int threads) {
+		this.threads = ParallelLoop.checkThreads(threads);
+		return this;
+	}
 	
 	/**
 	 * From Rahman et al. Observing local and global properties of metabolic pathways: ‘load points’ and ‘choke points’ in the metabolic networks. Bioinf. (2006):
@@ -75,6 +88,7 @@ public class LoadPoint<V extends BioEntity, E extends Edge<V>, G extends BioGrap
 	 * P is the total number of shortest paths;
 	 * K is the sum of links in the metabolic network of M metabolites (where M is the number of metabolites in the network).
 	 * Use of the logarithm makes the relevant values more distinguishable.
+	 * Paths are counted as they are computed, in parallel over sources, and are not kept in memory.
 	 *
 	 * @param k number of shortest paths to consider
 	 * @return loads values map
@@ -82,15 +96,34 @@ public class LoadPoint<V extends BioEntity, E extends Edge<V>, G extends BioGrap
 	public HashMap<V, Double> getLoads(int k){
 		HashMap<V, Double> loadsMap = new HashMap<>();
 		
-		Set<BioPath<V,E>> paths = (new KShortestPath<>(g)).getAllShortestPaths(k);
-		Map<V, Integer> numberOfPathPassingThrough = (new PathBasedCentrality<>(g)).getBetweenness(paths);
+		//count paths with one accumulator per thread
+		HashMap<V, Integer> index = new HashMap<>();
+		for(V vertex : g.vertexSet()){
+			index.put(vertex, index.size());
+		}
+		ConcurrentLinkedQueue<PathCounter> counters = new ConcurrentLinkedQueue<>();
+		ThreadLocal<PathCounter> counter = ThreadLocal.withInitial(() -> {
+			PathCounter c = new PathCounter(index);
+			counters.add(c);
+			return c;
+		});
+		new KShortestPath<>(g).setThreads(threads).forEachKShortestPaths(g.vertexSet(), g.vertexSet(), k, paths -> counter.get().add(paths));
+		int[] passingThrough = new int[index.size()];
+		long totalNbOfPaths = 0;
+		for(PathCounter c : counters){
+			for(int i=0; i<passingThrough.length; i++){
+				passingThrough[i]+=c.passingThrough[i];
+			}
+			totalNbOfPaths+=c.nbOfPaths;
+		}
+
 		double degreeSum = getDegreeSum();
-		double totalNbOfSp = paths.size();
+		double totalNbOfSp = totalNbOfPaths;
 		
 		double averageLoad = totalNbOfSp/degreeSum;
 		
 		for(V vertex: g.vertexSet()){
-			double nbOfPath = numberOfPathPassingThrough.get(vertex).doubleValue();
+			double nbOfPath = passingThrough[index.get(vertex)];
 			double degree = g.degreeOf(vertex);
 			double load = nbOfPath/degree;
 			load = load/averageLoad;
@@ -110,5 +143,34 @@ public class LoadPoint<V extends BioEntity, E extends Edge<V>, G extends BioGrap
 		
 		return degreeSum;
 	}
-	
+
+	/**
+	 * Thread-confined count of paths, and of paths passing through each vertex
+	 */
+	private class PathCounter {
+		final Map<V, Integer> index;
+		final int[] passingThrough;
+		long nbOfPaths = 0;
+
+		PathCounter(Map<V, Integer> index){
+			this.index = index;
+			this.passingThrough = new int[index.size()];
+		}
+
+		/**
+		 * Count the k-shortest paths of a pair of vertices, ignoring duplicates
+		 */
+		void add(List<BioPath<V, E>> paths){
+			Collection<BioPath<V, E>> distinctPaths = paths.size()>1 ? new LinkedHashSet<>(paths) : paths;
+			for(BioPath<V, E> path : distinctPaths){
+				nbOfPaths++;
+				for(V vertex : path.getVertexList()){
+					if(!vertex.equals(path.getStartVertex()) && !vertex.equals(path.getEndVertex())){
+						passingThrough[index.get(vertex)]++;
+					}
+				}
+			}
+		}
+	}
+
 }
@@ -41,6 +41,7 @@ import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioReaction;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollection;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.bipartite.BipartiteEdge;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.bipartite.BipartiteGraph;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.concurrent.ParallelLoop;
 
 import java.util.*;
  
@@ -143,21 +144,85 @@ public class ScopeCompounds{
    * @throws java.lang.IllegalArgumentException if any.
    */
   public BipartiteGraph getScopeNetwork() throws IllegalArgumentException{
+    return getScopeNetwork(getIndex().expand(seedCpds), traceExpansion ? trace : null);
+  }
 
-    int step = 1;
+  /**
+   * Gets the scope networks of several sets of seeds, using the same bipartite graph, bootstrap compounds, compounds to reach
+   * and reactions to avoid. The graph is indexed once and the expansions are run in parallel, which is much faster than
+   * creating a new instance for each set of seeds. The expansion history is not stored in batch mode.
+   *
+   * @param seedSets the sets of available compounds
+   * @return the scope networks, in the same order as the sets of seeds
+   * @throws java.lang.IllegalArgumentException if the network structure is not consistent, or if a set of seeds contains a bootstrap compound
+   */
+  public List<BipartiteGraph> getScopeNetworks(List<? extends Collection<BioMetabolite>> seedSets) throws IllegalArgumentException{
+    for(Collection<BioMetabolite> seeds : seedSets){
+      if(!Collections.disjoint(seeds,bootstrapCpds)) throw new IllegalArgumentException("A compound can not be simultaneously seed and bootstrap");
+    }
+    Index index = getIndex();
+    BipartiteGraph[] scopes = new BipartiteGraph[seedSets.size()];
+    ParallelLoop.forEach(threads, scopes.length, i -> scopes[i] = getScopeNetwork(index.expand(seedSets.get(i)), null));
+    return new ArrayList<>(Arrays.asList(scopes));
+  }
 
-    //check network consistency
-    if(!this.g.isConsistent()) throw new IllegalArgumentException("The network structure must be consistent with reaction reactant lists") ;
+  /**
+   * Set the number of threads used by {@link #getScopeNetworks(List)}. By default, the common fork-join pool is used.
+   *
+   * @param threads the number of threads, 0 to use the common pool
+   * @return this instance
+   */
+  public ScopeCompounds setThreads(int threads) {
+    this.threads = ParallelLoop.checkThreads(threads);
+    return this;
+  }
 
+  /** the number of threads, 0 to use the common pool */
+  private int threads = 0;
+
+  /** the index of the bipartite graph, built on first expansion */
+  private Index index;
+
+  /** the graph modification count, and the reactions to avoid and bootstrap compounds, when the index was built */
+  private long indexedModificationCount;
+  private Set<String> indexedReactionToAvoid;
+  private Set<String> indexedBootstrapCpds;
+
+  /**
+   * Get the index of the bipartite graph. The index is rebuilt if the graph, the reactions to avoid or the bootstrap
+   * compounds have changed since the last expansion.
+   *
+   * @return the index
+   */
+  private synchronized Index getIndex(){
+    if(index==null || indexedModificationCount!=g.getModificationCount()
+            || !indexedReactionToAvoid.equals(reactionToAvoid.getIds())
+            || !indexedBootstrapCpds.equals(bootstrapCpds.getIds())){
+      //check network consistency
+      if(!this.g.isConsistent()) throw new IllegalArgumentException("The network structure must be consistent with reaction reactant lists") ;
+      indexedModificationCount = g.getModificationCount();
+      indexedReactionToAvoid = new HashSet<>(reactionToAvoid.getIds());
+      indexedBootstrapCpds = new HashSet<>(bootstrapCpds.getIds());
+      index = new Index();
+    }
+    return index;
+  }
+
+  /**
+   * Build the scope network from the visited reactions
+   *
+   * @param visited the visited reactions, in visit order
+   * @param trace the expansion history to fill, or null
+   * @return the scope network
+   */
+  private BipartiteGraph getScopeNetwork(List<BioReaction> visited, HashMap<BioEntity,Integer> trace){
+
+    int step = 1;
     BipartiteGraph scopeNetwork = new BipartiteGraph();
-    //Instantiate a custom iterator for the bipartite graph, similar to Breath first search, but a reaction can be visited only if all predecessors have already been visited 
-    Traversal traversal = new Traversal();
-     
-    //Go until their is no reaction with all its substrate available. 
-    while(traversal.hasNext()){   
-      BioReaction r = traversal.next();
-      if(traceExpansion) trace.put(r,step);
-       
+
+    for(BioReaction r : visited){
+      if(trace!=null) trace.put(r,step);
+
       //if a reaction is visited, all its reactants are available, consequently we add to the scope network the reaction and its neighborhood from the original graph 
       for(BipartiteEdge e : g.edgesOf(r)){
         BioEntity v1 = e.getV1();
@@ -165,11 +230,11 @@ public class ScopeCompounds{
         if(includeBootstraps || (!bootstrapCpds.contains(v1) && !bootstrapCpds.contains(v2))){ //bootstrap compounds are not added to the scope network
           if(!scopeNetwork.containsVertex(v1)){
             scopeNetwork.addVertex(v1);
-            if(traceExpansion && !trace.containsKey(v1)) trace.put(v1,step);
+            if(trace!=null && !trace.containsKey(v1)) trace.put(v1,step);
           } 
           if(!scopeNetwork.containsVertex(v2)){
             scopeNetwork.addVertex(v2);
-            if(traceExpansion && !trace.containsKey(v2)) trace.put(v2,step);
+            if(trace!=null && !trace.containsKey(v2)) trace.put(v2,step);
           } 
           scopeNetwork.addEdge(v1, v2, e);
         }
@@ -184,157 +249,218 @@ public class ScopeCompounds{
   } 
    
   /** 
-   * Prunning step, iteratively remove reactions available but that do not lead to any target compoudns 
+   * Prunning step, iteratively remove reactions available but that do not lead to any target compoudns.
+   * Out-degrees are decremented as sinks are removed, so only the predecessors of removed vertices are checked again.
    * 
    * @param scopeNetwork the scope network 
    */ 
   private void pruning(BipartiteGraph scopeNetwork){
-    BioCollection<BioEntity> vertexToRemove = new BioCollection<>();
-     
+    HashMap<BioEntity,Integer> outDegree = new HashMap<>();
+    Deque<BioEntity> sinks = new ArrayDeque<>();
+    Set<BioEntity> vertexToRemove = new HashSet<>();
+
     //retreive sinks that are not in the set of target 
     for(BioEntity e : scopeNetwork.vertexSet()){
-      if(scopeNetwork.outDegreeOf(e)==0 && !cpdToReach.contains(e)) vertexToRemove.add(e);
+      int d = scopeNetwork.outDegreeOf(e);
+      outDegree.put(e,d);
+      if(d==0 && !cpdToReach.contains(e)){
+        sinks.add(e);
+        vertexToRemove.add(e);
+      }
+    }
 
-    } 
-     
-    //go until their is no sink that do not belong to the target set 
-    while(!vertexToRemove.isEmpty()){
-      scopeNetwork.removeAllVertices(vertexToRemove); //remove sinks, potentially creating new sinks. 
-      //reset sink list 
-      vertexToRemove = new BioCollection<>();
-      //retreive sinks that are not in the set of target 
-      for(BioEntity e : scopeNetwork.vertexSet()){
-        if(scopeNetwork.outDegreeOf(e)==0 && !cpdToReach.contains(e)) vertexToRemove.add(e);
-      } 
-    } 
- 
+    //go until their is no sink that do not belong to the target set, removing a sink potentially creates new sinks
+    while(!sinks.isEmpty()){
+      BioEntity sink = sinks.poll();
+      for(BipartiteEdge e : scopeNetwork.incomingEdgesOf(sink)){
+        BioEntity pred = e.getV1();
+        int d = outDegree.get(pred)-1;
+        outDegree.put(pred,d);
+        if(d==0 && !cpdToReach.contains(pred) && vertexToRemove.add(pred)) sinks.add(pred);
+      }
+    }
+    scopeNetwork.removeAllVertices(vertexToRemove);
   } 
    
    
   /** 
-   * A custom iterator for the bipartite graph, similar to Breath first search, but a reaction can be visited only if all predecessors have already been visited 
+   * Index-based view of the bipartite graph used for scope expansion, similar to Breath first search, but a reaction can be
+   * visited only if all predecessors have already been visited.
+   * For each reaction, the number of substrates (and products if reversible) not yet available is decremented as compounds
+   * are reached, so reaction availability is checked in constant time.
    */ 
-  private class Traversal implements Iterator<BioReaction>{ 
-     
-    /** The visited compounds. */ 
-    private final BioCollection<BioMetabolite> visitedCompounds = new BioCollection<>();
-     
-    /** The visited reactions. */ 
-    private final BioCollection<BioReaction> visitedReactions = new BioCollection<>();
-       
-      /** The reaction queue. */ 
-      private final Queue<BioReaction> reactionQueue = new LinkedList<>();
-       
-      /** 
-       * Instantiates a new traversal. 
+  private class Index {
+
+    /** The compounds and reactions of the graph */
+    private final BioMetabolite[] compounds;
+    private final BioReaction[] reactions;
+    private final HashMap<BioEntity,Integer> compoundIndex = new HashMap<>();
+
+    /** The number of distinct substrates and products of each reaction */
+    private final int[] nbLefts;
+    private final int[] nbRights;
+
+    /** The reactions consuming (resp. producing) each compound */
+    private final int[][] leftOf;
+    private final int[][] rightOf;
+
+    /** The substrates and products of each reaction */
+    private final int[][] lefts;
+    private final int[][] rights;
+
+    /** The reactions to add to the queue when a compound is visited */
+    private final int[][] triggers;
+
+    private final boolean[] reversible;
+    private final boolean[] bootstrap;
+
+    Index(){
+      compounds = g.compoundVertexSet().toArray(new BioMetabolite[0]);
+      for(int i=0; i<compounds.length; i++) compoundIndex.put(compounds[i],i);
+      reactions = g.reactionVertexSet().toArray(new BioReaction[0]);
+      HashMap<BioEntity,Integer> reactionIndex = new HashMap<>();
+      for(int i=0; i<reactions.length; i++) reactionIndex.put(reactions[i],i);
+
+      nbLefts = new int[reactions.length];
+      nbRights = new int[reactions.length];
+      lefts = new int[reactions.length][];
+      rights = new int[reactions.length][];
+      reversible = new boolean[reactions.length];
+      int[] nbLeftOf = new int[compounds.length];
+      int[] nbRightOf = new int[compounds.length];
+      for(int r=0; r<reactions.length; r++){
+        reversible[r]=reactions[r].isReversible();
+        lefts[r]=toIndexes(reactions[r].getLeftsView());
+        rights[r]=toIndexes(reactions[r].getRightsView());
+        nbLefts[r]=lefts[r].length;
+        nbRights[r]=rights[r].length;
+        for(int c : lefts[r]) nbLeftOf[c]++;
+        for(int c : rights[r]) nbRightOf[c]++;
+      }
+      leftOf = new int[compounds.length][];
+      rightOf = new int[compounds.length][];
+      for(int c=0; c<compounds.length; c++){
+        leftOf[c] = new int[nbLeftOf[c]];
+        rightOf[c] = new int[nbRightOf[c]];
+      }
+      for(int r=0; r<reactions.length; r++){
+        for(int c : lefts[r]) leftOf[c][--nbLeftOf[c]]=r;
+        for(int c : rights[r]) rightOf[c][--nbRightOf[c]]=r;
+      }
+
+      triggers = new int[compounds.length][];
+      bootstrap = new boolean[compounds.length];
+      for(int c=0; c<compounds.length; c++){
+        bootstrap[c]=bootstrapCpds.contains(compounds[c]);
+        Set<BioEntity> successor = g.successorListOf(compounds[c]);
+        triggers[c] = g.neighborListOf(compounds[c]).stream()
+                .map(BioReaction.class::cast)
+                .filter(r -> successor.contains(r) || r.isReversible()) //if irreversible reaction, only consider reaction successor in the graph
+                .filter(r -> !reactionToAvoid.contains(r))
+                .mapToInt(reactionIndex::get)
+                .distinct()
+                .toArray();
+      }
+    }
+
+    private int[] toIndexes(Collection<BioMetabolite> cpds){
+      return cpds.stream().mapToInt(compoundIndex::get).distinct().toArray();
+    }
+
+    /**
+     * Run the scope expansion from the given seeds
+     *
+     * @param seeds the available compounds
+     * @return the visited reactions, in visit order
+     */
+    List<BioReaction> expand(Collection<BioMetabolite> seeds){
+      Expansion exp = new Expansion();
+      for(BioMetabolite cpd : seeds){
+        Integer c = compoundIndex.get(cpd);
+        if(c==null) throw new IllegalArgumentException("Seed compound "+cpd.getId()+" is not in the graph");
+        exp.makeAvailable(c);
+      }
+      for(int c=0; c<compounds.length; c++){
+        if(bootstrap[c]) exp.makeAvailable(c);
+      }
+      for(BioMetabolite cpd : seeds){
+        exp.visit(compoundIndex.get(cpd));
+      }
+      return exp.run();
+    }
+
+    /**
+     * The state of a single expansion
+     */
+    private class Expansion {
+
+      /** The number of substrates and products not yet available */
+      private final int[] missingLefts = nbLefts.clone();
+      private final int[] missingRights = nbRights.clone();
+
+      /** The visited compounds and reactions. */
+      private final boolean[] available = new boolean[compounds.length];
+      private final boolean[] visited = new boolean[reactions.length];
+
+      /** The reaction queue, as a circular buffer. A reaction can not be queued twice. */
+      private final boolean[] queued = new boolean[reactions.length];
+      private final int[] queue = new int[reactions.length];
+      private int head = 0;
+      private int size = 0;
+
+      private void makeAvailable(int c){
+        if(available[c]) return;
+        available[c]=true;
+        for(int r : leftOf[c]) missingLefts[r]--;
+        for(int r : rightOf[c]) missingRights[r]--;
+      }
+
+      /**
+       * Add consuming reaction of visited compound to the queue of reactions, and mark the compound as available
+       *
+       * @param c the compound index
        */
-      Traversal() {
-          this.visitedCompounds.addAll(seedCpds);
-          this.visitedCompounds.addAll(bootstrapCpds);
-          for(BioMetabolite cpd : seedCpds){
-              visit(cpd);
-          } 
-      } 
- 
-      /* (non-Javadoc) 
-       * @see java.util.Iterator#hasNext() 
-       */ 
-      @Override 
-      public boolean hasNext() { 
-        if(reactionQueue.isEmpty()) return false; //no remaining reaction
-        while(!reactionQueue.isEmpty()){
-          BioReaction r = reactionQueue.peek();
-          if(this.visitedCompounds.containsAll(r.getLeftsView())){ //check susbtrate availability
-            return true; 
-          }else if(r.isReversible() && this.visitedCompounds.containsAll(r.getRightsView())){ //check product availability if reversible
-            return true; 
+      private void visit(int c){
+        if(!includeBootstraps || !bootstrap[c] || expandThroughBootstraps){ //skip bootstrap compounds
+          for(int r : triggers[c]){
+            if(!visited[r] && !queued[r]){
+              queued[r]=true;
+              queue[(head+size)%queue.length]=r;
+              size++;
+            }
           }
-            reactionQueue.remove(); //remove unavailable reaction from the queue
-        } 
-        return false; //all reaction from the original queue are unavailable 
-      } 
-       
-      /** 
-       * Add consuming reaction of visited compound to the queue of reactions 
-       * 
-       * @param entity the entity 
-       */ 
-      private void visit(BioMetabolite entity){
-        if(!includeBootstraps || !bootstrapCpds.contains(entity) || expandThroughBootstraps){ //skip bootstrap compounds
-          Set<BioEntity> successor = g.successorListOf(entity);
-          for (BioEntity neighbor : g.neighborListOf(entity)) {
-              BioReaction r = null; 
-              if(neighbor instanceof BioReaction){ 
-                r = (BioReaction)neighbor; 
-              } 
-              if(successor.contains(r) || r.isReversible()){ //if irreversible reaction, only consider reaction successor in the graph 
-                  if (!reactionToAvoid.contains(r) && !this.visitedReactions.contains(r) && !this.reactionQueue.contains(r)) {
-                      this.reactionQueue.add(r);
-                  } 
-              } 
-            } 
         }
+        makeAvailable(c);
+      }
 
-          this.visitedCompounds.add(entity);
-      } 
- 
-      /* (non-Javadoc) 
-       * @see java.util.Iterator#next() 
-       */ 
-      @Override 
-      public BioReaction next() { 
-          //removes from front of queue
-        BioReaction nextReaction = reactionQueue.remove();
-        boolean available = false; 
-        boolean reverse = false; 
-         
-        //check if all substrate have already been visited 
-        if(this.visitedCompounds.containsAll(nextReaction.getLeftsView())){
-          available=true; 
-          reverse=false; 
-        }else if(nextReaction.isReversible() && this.visitedCompounds.containsAll(nextReaction.getRightsView())){ //check product availability if reversible
-          available=true; 
-          reverse=true; 
-        } 
-         
-        //iteratively remove reaction until one available one is found. If the method hasNext() has been called before, and an available reaction exist, head of queue should be available, so the loop is skipped 
-        while(!available && !reactionQueue.isEmpty()){
-          nextReaction = reactionQueue.remove();
-          if(this.visitedCompounds.containsAll(nextReaction.getLeftsView())){
-            available=true; 
-            reverse=false; 
-          }else if(nextReaction.isReversible() && this.visitedCompounds.containsAll(nextReaction.getRightsView())){
-            available=true; 
-            reverse=true; 
-          } 
-        } 
-        if(!available) return null; //no available reaction
-
-        visitedReactions.add(nextReaction); //mark visited reaction
-         
-        //mark products as visited and add products' consuming reactions to the queue 
-        if(!reverse){
-          for(BioMetabolite neighbor : nextReaction.getRightsView()) {
-            if (!visitedCompounds.contains(neighbor)) {
-              visit(neighbor);
-            } else if (expandThroughBootstraps && bootstrapCpds.contains(neighbor)) {
-              visit(neighbor);
-            }
+      private List<BioReaction> run(){
+        List<BioReaction> visitedReactions = new ArrayList<>();
+        while(size>0){
+          int r = queue[head];
+          head = (head+1)%queue.length;
+          size--;
+          queued[r]=false;
+
+          //check if all substrate have already been visited, or all products if reversible. Unavailable reactions are removed from the queue
+          int[] products;
+          if(missingLefts[r]==0){
+            products = rights[r];
+          }else if(reversible[r] && missingRights[r]==0){
+            products = lefts[r];
+          }else{
+            continue;
           }
-        }else{
-          for(BioMetabolite neighbor : nextReaction.getLeftsView()) {
-//              this.visitedCompounds.add(neighbor);
-//              visit(neighbor);
-//        }
-            if (!visitedCompounds.contains(neighbor)) {
-              visit(neighbor);
-            } else if (expandThroughBootstraps && bootstrapCpds.contains(neighbor)) {
-              visit(neighbor);
-            }
+
+          visited[r]=true; //mark visited reaction
+          visitedReactions.add(reactions[r]);
+
+          //mark products as visited and add products' consuming reactions to the queue
+          for(int p : products){
+            if(!available[p] || (expandThroughBootstraps && bootstrap[p])) visit(p);
           }
         }
-        //return the available reaction 
-        return nextReaction; 
-      } 
+        return visitedReactions;
+      }
+    }
   } 
 }
@@ -41,9 +41,9 @@ import fr.inrae.toulouse.metexplore.met4j_graph.core.BioGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.BioMatrix;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.EjmlMatrix;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.SparseMatrix;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Class to compute the eigen vector centrality of each vertex in a BioGraph.
@@ -140,15 +140,45 @@ public class EigenVectorCentrality<V extends BioEntity, E extends Edge<V>, G ext
 		return result;
 	}
 
+	/**
+	 * Gets a map with all nodes id as key and global page rank, using the power iteration method.
+	 * The adjacency matrix is left unchanged, see {@link SparsePageRank}
+	 *
+	 * @param dampingFactor the damping factor
+	 * @param maxNbOfIter the maximum number of iteration
+	 * @param tolerance the tolerance for convergence
+	 * @return the map with node identifier and corresponding centrality
+	 */
 	public HashMap<String, Double> computePowerMethodPageRank(double dampingFactor, int maxNbOfIter, double tolerance){
-		BioMatrix tmp = adjacencyMatrix.copy();
-		Set<String> allNodes = adjacencyMatrix.getRowLabelMap().keySet();
-		addJumpProb(allNodes,1 - dampingFactor);
-		Map<String, Double> seeds = allNodes.stream().collect(Collectors.toMap(k -> k, k -> 1.0 / allNodes.size()));
+		return new SparsePageRank(adjacencyMatrix).compute(dampingFactor, maxNbOfIter, tolerance);
+	}
 
-		HashMap<String, Double> result = powerIteration(seeds, maxNbOfIter, tolerance);
-		adjacencyMatrix = tmp;
-		return result;
+	/**
+	 * Gets a map with all nodes id as key and personalized page rank, using the power iteration method.
+	 * The personalization vector is used both as jump probabilities and as starting vector.
+	 * The adjacency matrix is left unchanged, see {@link SparsePageRank}
+	 *
+	 * @param seeds the personalization vector, with node identifier as key. All the vector values as to sum up to 1.
+	 * @param dampingFactor the damping factor
+	 * @param maxNbOfIter the maximum number of iteration
+	 * @param tolerance the tolerance for convergence
+	 * @return the map with node identifier and corresponding centrality
+	 */
+	public HashMap<String, Double> computePersonalizedPageRank(Map<String, Double> seeds, double dampingFactor, int maxNbOfIter, double tolerance){
+		return new SparsePageRank(adjacencyMatrix).compute(seeds, dampingFactor, maxNbOfIter, tolerance);
+	}
+
+	/**
+	 * Gets personalized page ranks for several personalization vectors, sharing a single transition matrix.
+	 *
+	 * @param seeds the list of personalization vectors, with node identifier as key. For each vector, all values as to sum up to 1.
+	 * @param dampingFactor the damping factor
+	 * @param maxNbOfIter the maximum number of iteration
+	 * @param tolerance the tolerance for convergence
+	 * @return the list of maps with node identifier and corresponding centrality, in the same order as the personalization vectors
+	 */
+	public List<HashMap<String, Double>> computePersonalizedPageRank(List<? extends Map<String, Double>> seeds, double dampingFactor, int maxNbOfIter, double tolerance){
+		return new SparsePageRank(adjacencyMatrix).compute(seeds, dampingFactor, maxNbOfIter, tolerance);
 	}
 
 	/**
@@ -167,6 +197,8 @@ public class EigenVectorCentrality<V extends BioEntity, E extends Edge<V>, G ext
 		for (String node : roots) {
 			cols.add(adjacencyMatrix.getColumnFromLabel(node));
 		}
+		//sorted columns allow sparse rows to be filled in order
+		Collections.sort(cols);
 
 		//update transition probability
 		for (Map.Entry<Integer,List<Integer>> entry : nonZero.entrySet()){
@@ -263,6 +295,17 @@ public class EigenVectorCentrality<V extends BioEntity, E extends Edge<V>, G ext
 	 */
 	private Map<Integer, List<Integer>> getNonZeroValues(){
 		Map<Integer, List<Integer>> nonZero = new HashMap<>();
+		if(adjacencyMatrix instanceof SparseMatrix){
+			SparseMatrix sparse = (SparseMatrix) adjacencyMatrix;
+			for(int i = 0; i< adjacencyMatrix.numRows(); i++){
+				ArrayList<Integer> colsIndex = new ArrayList<>();
+				for(int j : sparse.getNonZeroColumns(i)){
+					colsIndex.add(j);
+				}
+				nonZero.put(i, colsIndex);
+			}
+			return nonZero;
+		}
 		for(int i = 0; i< adjacencyMatrix.numRows(); i++){
 			ArrayList<Integer> colsIndex = new ArrayList<>();
 			for(int j = 0; j< adjacencyMatrix.numCols(); j++){
@@ -335,28 +378,44 @@ public class EigenVectorCentrality<V extends BioEntity, E extends Edge<V>, G ext
 	 * @return map with node id as key and eigen vector centrality as value
 	 */
 	public HashMap<String, Double> powerIteration(Map<String, Double> seeds, int maxIter, double tol){
-		BioMatrix rank = new EjmlMatrix(1, adjacencyMatrix.numCols());
+		double[] rank = new double[adjacencyMatrix.numCols()];
 		for(Map.Entry<String,Integer> entry : adjacencyMatrix.getRowLabelMap().entrySet()){
 			String e = entry.getKey();
 			int index = entry.getValue();
-			rank.set(0, index, seeds.getOrDefault(e, 0.0));
+			rank[index] = seeds.getOrDefault(e, 0.0);
 		}
 
 		int i=0;
 		double maxDelta = Double.MAX_VALUE;
 		while(i<maxIter && maxDelta>tol){
-			BioMatrix newRank = rank.mult(adjacencyMatrix);
-			maxDelta= getMaxDelta(rank.getRow(0), newRank.getRow(0));
+			double[] newRank = leftMult(rank);
+			maxDelta= getMaxDelta(rank, newRank);
 			rank = newRank;
 			i++;
 		}
 
 		HashMap<String, Double> finalRank = new HashMap<>();
 		for(Map.Entry<String,Integer> entry : adjacencyMatrix.getRowLabelMap().entrySet()){
-			finalRank.put(entry.getKey(), rank.get(0, entry.getValue()));
+			finalRank.put(entry.getKey(), rank[entry.getValue()]);
 		}
 		return finalRank;
 	}
+
+	/**
+	 * Compute the product of a row vector by the adjacency matrix.
+	 * Sparse matrices are handled directly, without building a dense copy.
+	 *
+	 * @param rank the row vector
+	 * @return the resulting row vector
+	 */
+	private double[] leftMult(double[] rank){
+		if(adjacencyMatrix instanceof SparseMatrix) return ((SparseMatrix) adjacencyMatrix).leftMult(rank);
+		BioMatrix rankM = new EjmlMatrix(1, rank.length);
+		for(int j=0; j<rank.length; j++){
+			rankM.set(0, j, rank[j]);
+		}
+		return rankM.mult(adjacencyMatrix).getRow(0);
+	}
 	
 	
 	/**
@@ -37,18 +37,27 @@ package fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.centrality;
 
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioEntity;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.ShortestPath;
+import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.SingleSourceShortestPath;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.BioGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.BioPath;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.CsrGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.concurrent.ParallelLoop;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.BioMatrix;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
 
 /**
- * The Class used to compute several centrality measure and other classical vertex' global measures
+ * The Class used to compute several centrality measure and other classical vertex' global measures.
+ * Geodesic measures are computed from one single source shortest path search per vertex, run in parallel, using Brandes'
+ * accumulation scheme, without storing the paths themselves.
  *
  * @author clement
  * @param <V> the vertex type
@@ -62,6 +71,12 @@ public class PathBasedCentrality<V extends BioEntity,E extends Edge<V>, G extend
 	
 	/** The shortest paths. */
 	private Set<BioPath<V,E>> allShortestPaths;
+
+	/** the number of threads, 0 to use the common pool */
+	private int threads = 0;
+
+	/** The geodesic measures, computed once from all sources */
+	private GeodesicMeasures geodesic;
 	
 	
 	/**
@@ -101,12 +116,84 @@ public class PathBasedCentrality<V extends BioEntity,E extends Edge<V>, G extend
 	}
 	
 	/**
-	 * Gets the geodesic betweenness.
+	 * Set the number of threads used for geodesic measures computation. By default, the common fork-join pool is used.
+	 *
+	 * @param threads the number of threads, 0 to use the common pool
+	 * @return this instance
+	 */
+	public PathBasedCentrality<V, E, G> setThreads(int threads) {
+		this.threads = ParallelLoop.checkThreads(threads);
+		return this;
+	}
+
+	/**
+	 * Gets the geodesic betweenness, i.e. the number of shortest paths passing through a given node, considering one
+	 * shortest path per pair of nodes.
 	 *
 	 * @return the geodesic betweenness
 	 */
 	public Map<V, Integer> getGeodesicBetweenness(){
-		return getBetweenness(this.getAllShortestPaths());
+		GeodesicMeasures m = getGeodesicMeasures();
+		Map<V, Integer> betweenness = new HashMap<>();
+		for(int i=0; i<m.csr.numVertices(); i++){
+			betweenness.put(m.csr.getVertex(i), (int) m.passingThrough[i]);
+		}
+		return betweenness;
+	}
+
+	/**
+	 * Gets the exact betweenness using Brandes' algorithm.
+	 * The betweenness of a node is the sum, over all ordered pairs of other nodes, of the fraction of shortest paths between
+	 * them that pass through this node. Contrary to {@link #getGeodesicBetweenness()}, all equivalent shortest paths are considered.
+	 *
+	 * @return the betweenness
+	 * @throws IllegalArgumentException if the graph has negative or NaN weights
+	 */
+	public Map<V, Double> getBrandesBetweenness(){
+		GeodesicMeasures m = getGeodesicMeasures();
+		return toMap(m.csr, m.betweenness);
+	}
+
+	/**
+	 * Gets an approximation of the betweenness, by only accumulating shortest paths from a random sample of sources.
+	 * The sum is then extrapolated to all sources by multiplying by n/k, with n the number of nodes and k the sample size.
+	 *
+	 * @param nbOfSources the number of sampled sources
+	 * @param seed the random seed
+	 * @return the approximated betweenness
+	 * @throws IllegalArgumentException if the graph has negative or NaN weights
+	 */
+	public Map<V, Double> getApproximateBetweenness(int nbOfSources, long seed){
+		return getApproximateBetweenness(nbOfSources, new Random(seed));
+	}
+
+	/**
+	 * Gets an approximation of the betweenness, by only accumulating shortest paths from a random sample of sources.
+	 * The sum is then extrapolated to all sources by multiplying by n/k, with n the number of nodes and k the sample size.
+	 *
+	 * @param nbOfSources the number of sampled sources
+	 * @param random the random number generator used for sampling
+	 * @return the approximated betweenness
+	 * @throws IllegalArgumentException if the graph has negative or NaN weights
+	 */
+	public Map<V, Double> getApproximateBetweenness(int nbOfSources, Random random){
+		if(nbOfSources<=0) throw new IllegalArgumentException("number of sources must be strictly positive");
+		CsrGraph<V, E> csr = geodesic!=null ? geodesic.csr : snapshot();
+		int n = csr.numVertices();
+		if(nbOfSources>=n) return getBrandesBetweenness();
+		//partial Fisher-Yates shuffle
+		int[] sources = IntStream.range(0, n).toArray();
+		for(int i=0; i<nbOfSources; i++){
+			int j = i+random.nextInt(n-i);
+			int tmp = sources[i]; sources[i] = sources[j]; sources[j] = tmp;
+		}
+		GeodesicMeasures m = new GeodesicMeasures(csr);
+		m.compute(Arrays.copyOf(sources, nbOfSources));
+		double scale = (double) n / nbOfSources;
+		for(int i=0; i<n; i++){
+			m.betweenness[i]*=scale;
+		}
+		return toMap(csr, m.betweenness);
 	}
 	
 	/**
@@ -138,7 +225,12 @@ public class PathBasedCentrality<V extends BioEntity,E extends Edge<V>, G extend
 	 * @return the geodesic neighborhood centrality
 	 */
 	public Map<V, Integer> getGeodesicNeighborhoodCentrality(){
-		return getNeighborhoodCentrality(this.getAllShortestPaths());
+		GeodesicMeasures m = getGeodesicMeasures();
+		Map<V, Integer> centrality = new HashMap<>();
+		for(int i=0; i<m.csr.numVertices(); i++){
+			centrality.put(m.csr.getVertex(i), m.reached[i]);
+		}
+		return centrality;
 	}
 	
 	/**
@@ -164,6 +256,20 @@ public class PathBasedCentrality<V extends BioEntity,E extends Edge<V>, G extend
 		return farness;
 	}
 	
+	/**
+	 * Gets the farness computed from shortest paths, i.e. the sum of the distances from all other nodes.
+	 *
+	 * @return the farness
+	 */
+	public Map<V, Double> getGeodesicFarness(){
+		GeodesicMeasures m = getGeodesicMeasures();
+		Map<V, Double> farness = new HashMap<>();
+		for(int i=0; i<m.csr.numVertices(); i++){
+			farness.put(m.csr.getVertex(i), m.reachedBy[i]==0 ? Double.POSITIVE_INFINITY : m.inDistance[i]);
+		}
+		return farness;
+	}
+
 	/**
 	 * Gets the closeness.
 	 * The closeness of a node is the sum of reciprocal of its distances from all other nodes.
@@ -291,7 +397,12 @@ public class PathBasedCentrality<V extends BioEntity,E extends Edge<V>, G extend
 	 * @return a {@link java.util.Map} object.
 	 */
 	public Map<V, Double> getGeodesicCloseness(){
-		return getCloseness(this.getAllShortestPaths());
+		GeodesicMeasures m = getGeodesicMeasures();
+		Map<V, Double> closeness = new HashMap<>();
+		for(int i=0; i<m.csr.numVertices(); i++){
+			closeness.put(m.csr.getVertex(i), 1.0 / (m.inDistance[i]+m.outDistance[i]));
+		}
+		return closeness;
 	}
 	
 	/**
@@ -324,6 +435,20 @@ public class PathBasedCentrality<V extends BioEntity,E extends Edge<V>, G extend
 		return eccentricity;
 	}
 
+	/**
+	 * Gets the eccentricity computed from shortest paths, i.e. the largest distance from another node.
+	 *
+	 * @return the eccentricity
+	 */
+	public Map<V, Double> getGeodesicEccentricity(){
+		GeodesicMeasures m = getGeodesicMeasures();
+		Map<V, Double> eccentricity = new HashMap<>();
+		for(int i=0; i<m.csr.numVertices(); i++){
+			eccentricity.put(m.csr.getVertex(i), m.reachedBy[i]==0 ? Double.POSITIVE_INFINITY : m.eccentricity[i]);
+		}
+		return eccentricity;
+	}
+
 	/**
 	 * <p>Getter for the field <code>allShortestPaths</code>.</p>
 	 *
@@ -337,4 +462,132 @@ public class PathBasedCentrality<V extends BioEntity,E extends Edge<V>, G extend
 		return allShortestPaths;
 	}
 	
+	private CsrGraph<V, E> snapshot(){
+		CsrGraph<V, E> csr = new CsrGraph<>(g);
+		csr.checkWeights();
+		return csr;
+	}
+
+	private GeodesicMeasures getGeodesicMeasures(){
+		if(geodesic==null){
+			GeodesicMeasures m = new GeodesicMeasures(snapshot());
+			m.compute(IntStream.range(0, m.csr.numVertices()).toArray());
+			geodesic = m;
+		}
+		return geodesic;
+	}
+
+	private Map<V, Double> toMap(CsrGraph<V, E> csr, double[] values){
+		Map<V, Double> map = new HashMap<>();
+		for(int i=0; i<csr.numVertices(); i++){
+			map.put(csr.getVertex(i), values[i]);
+		}
+		return map;
+	}
+
+	/**
+	 * Per-vertex measures accumulated over the shortest path searches from a set of sources.
+	 * Each thread accumulates into its own buffers, which are summed once all searches are done.
+	 */
+	private class GeodesicMeasures {
+
+		final CsrGraph<V, E> csr;
+		/** fractional betweenness (Brandes) */
+		final double[] betweenness;
+		/** number of nodes in the shortest path tree below each node, summed over sources */
+		final double[] passingThrough;
+		/** sum of distances from other nodes */
+		final double[] inDistance;
+		/** sum of distances to other nodes */
+		final double[] outDistance;
+		/** largest distance from other nodes */
+		final double[] eccentricity;
+		/** number of nodes reachable from each node */
+		final int[] reached;
+		/** number of nodes that can reach each node */
+		final int[] reachedBy;
+
+		GeodesicMeasures(CsrGraph<V, E> csr){
+			this.csr = csr;
+			int n = csr.numVertices();
+			betweenness = new double[n];
+			passingThrough = new double[n];
+			inDistance = new double[n];
+			outDistance = new double[n];
+			eccentricity = new double[n];
+			reached = new int[n];
+			reachedBy = new int[n];
+		}
+
+		void compute(int[] sources){
+			ConcurrentLinkedQueue<Accumulator> accumulators = new ConcurrentLinkedQueue<>();
+			ThreadLocal<Accumulator> workspace = ThreadLocal.withInitial(() -> {
+				Accumulator acc = new Accumulator();
+				accumulators.add(acc);
+				return acc;
+			});
+			ParallelLoop.forEach(threads, sources.length, i -> workspace.get().accumulate(sources[i]));
+			for(Accumulator acc : accumulators){
+				for(int v=0; v<csr.numVertices(); v++){
+					betweenness[v]+=acc.betweenness[v];
+					passingThrough[v]+=acc.passingThrough[v];
+					inDistance[v]+=acc.inDistance[v];
+					eccentricity[v] = Math.max(eccentricity[v], acc.eccentricity[v]);
+					reachedBy[v]+=acc.reachedBy[v];
+				}
+			}
+		}
+
+		/**
+		 * Thread-confined search workspace and partial sums
+		 */
+		private class Accumulator {
+			final SingleSourceShortestPath<V, E> search = new SingleSourceShortestPath<>(csr);
+			final double[] betweenness = new double[csr.numVertices()];
+			final double[] passingThrough = new double[csr.numVertices()];
+			final double[] inDistance = new double[csr.numVertices()];
+			final double[] eccentricity = new double[csr.numVertices()];
+			final int[] reachedBy = new int[csr.numVertices()];
+			/** dependency of the source on each node */
+			final double[] delta = new double[csr.numVertices()];
+			/** size of the shortest path tree rooted at each node */
+			final int[] subtree = new int[csr.numVertices()];
+
+			void accumulate(int s){
+				search.run(s);
+				int nSettled = search.getNumberOfSettled();
+				double out = 0.0;
+				for(int k=0; k<nSettled; k++){
+					int v = search.getSettled(k);
+					delta[v] = 0.0;
+					subtree[v] = 1;
+					if(v!=s){
+						double d = search.getDistance(v);
+						out+=d;
+						inDistance[v]+=d;
+						if(d>eccentricity[v]) eccentricity[v] = d;
+						reachedBy[v]++;
+					}
+				}
+				//vertices are settled by non-decreasing distance, so dependencies can be back-propagated in reverse order
+				for(int k=nSettled-1; k>0; k--){
+					int v = search.getSettled(k);
+					double dv = search.getDistance(v);
+					double sv = search.getNumberOfShortestPaths(v);
+					for(int arc=csr.arcStart(v); arc<csr.arcEnd(v); arc++){
+						int w = csr.target(arc);
+						if(search.getDistance(w)==dv+csr.weight(arc) && w!=s){
+							delta[v]+=sv/search.getNumberOfShortestPaths(w)*(1.0+delta[w]);
+						}
+					}
+					betweenness[v]+=delta[v];
+					passingThrough[v]+=subtree[v]-1;
+					subtree[csr.source(search.getPredecessorArc(v))]+=subtree[v];
+				}
+				GeodesicMeasures.this.outDistance[s] = out;
+				GeodesicMeasures.this.reached[s] = nSettled-1;
+			}
+		}
+	}
+
 }
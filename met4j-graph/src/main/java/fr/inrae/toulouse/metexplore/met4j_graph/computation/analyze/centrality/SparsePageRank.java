@@ -0,0 +1,404 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.centrality;
+
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioEntity;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.BioGraph;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.CsrGraph;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.concurrent.ParallelLoop;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.BioMatrix;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.SparseMatrix;
+
+import java.util.*;
+
+/**
+ * PageRank computor working on a sparse transition matrix.
+ * The transition matrix is stored once, by column, in primitive arrays, and is never modified: the damping factor and the
+ * probability of leaving sinks (vertices without outgoing transition) are applied implicitly at each iteration, instead of
+ * being written in the matrix as in {@link EigenVectorCentrality#addJumpProb(Map, double)}.
+ * From a non-sink vertex, the walker follows an outgoing transition with a probability equal to the damping factor, and jumps to a
+ * vertex drawn from the personalization vector otherwise. From a sink, the walker always jumps.
+ * Several personalization vectors can be processed by a single call, sharing the same matrix. They are iterated by blocks,
+ * and blocks are computed in parallel.
+ *
+ * @author clement
+ */
+public class SparsePageRank {
+
+	/** the number of personalization vectors iterated together, interleaved in the same array */
+	private static final int BLOCK_SIZE = 8;
+
+	/** The vertices labels, by index */
+	private final String[] labels;
+
+	/** The label to index map */
+	private final HashMap<String, Integer> index;
+
+	/** The position of the first incoming transition of each vertex, with an additional final entry equal to the number of transitions */
+	private final int[] offsets;
+
+	/** The transitions source vertex index */
+	private final int[] sources;
+
+	/** The transitions probability */
+	private final double[] weights;
+
+	/** if the vertex has no outgoing transition */
+	private final boolean[] sink;
+
+	/** the number of threads, 0 to use the common pool */
+	private int threads = 0;
+
+	/**
+	 * Instantiates a new PageRank computor from a graph. Edges weights are used as transition probabilities,
+	 * and vertices are labelled by their identifier.
+	 *
+	 * @param g the graph
+	 * @param <V> the vertex type
+	 * @param <E> the edge type
+	 */
+	public <V extends BioEntity, E extends Edge<V>> SparsePageRank(BioGraph<V, E> g){
+		CsrGraph<V, E> csr = new CsrGraph<>(g);
+		int n = csr.numVertices();
+		labels = new String[n];
+		index = new HashMap<>(n * 2);
+		sink = new boolean[n];
+		for(int i=0; i<n; i++){
+			labels[i] = csr.getVertex(i).getId();
+			index.put(labels[i], i);
+			sink[i] = true;
+		}
+		offsets = new int[n+1];
+		for(int arc=0; arc<csr.numArcs(); arc++){
+			if(csr.weight(arc)!=0.0) offsets[csr.target(arc)+1]++;
+		}
+		for(int i=0; i<n; i++){
+			offsets[i+1]+=offsets[i];
+		}
+		sources = new int[offsets[n]];
+		weights = new double[offsets[n]];
+		int[] cursor = Arrays.copyOf(offsets, n);
+		for(int arc=0; arc<csr.numArcs(); arc++){
+			double w = csr.weight(arc);
+			if(w==0.0) continue;
+			int k = cursor[csr.target(arc)]++;
+			sources[k] = csr.source(arc);
+			weights[k] = w;
+			sink[csr.source(arc)] = false;
+		}
+	}
+
+	/**
+	 * Instantiates a new PageRank computor from a transition matrix, where rows are the sources and columns the targets.
+	 * Vertices are labelled by the matrix row labels.
+	 *
+	 * @param transitionMatrix the transition matrix
+	 * @throws java.lang.IllegalArgumentException if matrix not square.
+	 */
+	public SparsePageRank(BioMatrix transitionMatrix){
+		if(transitionMatrix.numRows()!=transitionMatrix.numCols()) throw new IllegalArgumentException("transition matrix must be square");
+		int n = transitionMatrix.numRows();
+		labels = new String[n];
+		index = new HashMap<>(n * 2);
+		for(Map.Entry<Integer, String> entry : transitionMatrix.getRowIndexMap().entrySet()){
+			labels[entry.getKey()] = entry.getValue();
+			index.put(entry.getValue(), entry.getKey());
+		}
+
+		//collect non-zero entries by row
+		int[][] cols = new int[n][];
+		for(int i=0; i<n; i++){
+			if(transitionMatrix instanceof SparseMatrix){
+				cols[i] = ((SparseMatrix) transitionMatrix).getNonZeroColumns(i);
+			}else{
+				int[] nz = new int[n];
+				int size = 0;
+				for(int j=0; j<n; j++){
+					if(transitionMatrix.get(i, j)!=0.0) nz[size++] = j;
+				}
+				cols[i] = Arrays.copyOf(nz, size);
+			}
+		}
+
+		//transpose
+		sink = new boolean[n];
+		offsets = new int[n+1];
+		for(int i=0; i<n; i++){
+			sink[i] = cols[i].length==0;
+			for(int j : cols[i]){
+				offsets[j+1]++;
+			}
+		}
+		for(int j=0; j<n; j++){
+			offsets[j+1]+=offsets[j];
+		}
+		sources = new int[offsets[n]];
+		weights = new double[offsets[n]];
+		int[] cursor = Arrays.copyOf(offsets, n);
+		for(int i=0; i<n; i++){
+			for(int j : cols[i]){
+				int k = cursor[j]++;
+				sources[k] = i;
+				weights[k] = transitionMatrix.get(i, j);
+			}
+		}
+	}
+
+	/**
+	 * Set the number of threads used when several personalization vectors are processed. By default, the common fork-join pool is used.
+	 *
+	 * @param threads the number of threads, 0 to use the common pool
+	 * @return this instance
+	 */
+	public SparsePageRank setThreads(int threads) {
+		this.threads = ParallelLoop.checkThreads(threads);
+		return this;
+	}
+
+	/**
+	 * @return the number of vertices
+	 */
+	public int numVertices(){
+		return labels.length;
+	}
+
+	/**
+	 * Compute the global PageRank, using a uniform personalization vector.
+	 *
+	 * @param dampingFactor the probability to follow an outgoing transition
+	 * @param maxIter the maximum number of iteration, if this number is reached, the result is returned
+	 * @param tol the tolerance, if the max delta between two iteration is below this value, the result is returned
+	 * @return map with vertex label as key and PageRank as value
+	 */
+	public HashMap<String, Double> compute(double dampingFactor, int maxIter, double tol){
+		HashMap<String, Double> uniform = new HashMap<>();
+		for(String label : labels){
+			uniform.put(label, 1.0 / labels.length);
+		}
+		return compute(uniform, dampingFactor, maxIter, tol);
+	}
+
+	/**
+	 * Compute the personalized PageRank. The personalization vector is used both as jump probabilities and as starting vector.
+	 *
+	 * @param seeds the personalization vector, with vertex label as key. All the vector values as to sum up to 1.
+	 * @param dampingFactor the probability to follow an outgoing transition
+	 * @param maxIter the maximum number of iteration, if this number is reached, the result is returned
+	 * @param tol the tolerance, if the max delta between two iteration is below this value, the result is returned
+	 * @return map with vertex label as key and PageRank as value
+	 */
+	public HashMap<String, Double> compute(Map<String, Double> seeds, double dampingFactor, int maxIter, double tol){
+		return compute(seeds, seeds, dampingFactor, maxIter, tol);
+	}
+
+	/**
+	 * Compute the personalized PageRank, starting from a given vector.
+	 *
+	 * @param start the starting vector, with vertex label as key. Missing vertices start with 0.
+	 * @param seeds the personalization vector, with vertex label as key. All the vector values as to sum up to 1.
+	 * @param dampingFactor the probability to follow an outgoing transition
+	 * @param maxIter the maximum number of iteration, if this number is reached, the result is returned
+	 * @param tol the tolerance, if the max delta between two iteration is below this value, the result is returned
+	 * @return map with vertex label as key and PageRank as value
+	 */
+	public HashMap<String, Double> compute(Map<String, Double> start, Map<String, Double> seeds, double dampingFactor, int maxIter, double tol){
+		return compute(List.of(start), List.of(seeds), dampingFactor, maxIter, tol).get(0);
+	}
+
+	/**
+	 * Compute the personalized PageRank for several personalization vectors, sharing the same transition matrix.
+	 * Each personalization vector is used both as jump probabilities and as starting vector.
+	 *
+	 * @param seeds the list of personalization vectors, with vertex label as key. For each vector, all values as to sum up to 1.
+	 * @param dampingFactor the probability to follow an outgoing transition
+	 * @param maxIter the maximum number of iteration, if this number is reached, the result is returned
+	 * @param tol the tolerance, if the max delta between two iteration is below this value, the result is returned
+	 * @return the list of maps with vertex label as key and PageRank as value, in the same order as the personalization vectors
+	 */
+	public List<HashMap<String, Double>> compute(List<? extends Map<String, Double>> seeds, double dampingFactor, int maxIter, double tol){
+		return compute(seeds, seeds, dampingFactor, maxIter, tol);
+	}
+
+	/**
+	 * Compute the personalized PageRank for several personalization vectors, sharing the same transition matrix.
+	 *
+	 * @param start the list of starting vectors, with vertex label as key. Missing vertices start with 0.
+	 * @param seeds the list of personalization vectors, with vertex label as key. For each vector, all values as to sum up to 1.
+	 * @param dampingFactor the probability to follow an outgoing transition
+	 * @param maxIter the maximum number of iteration, if this number is reached, the result is returned
+	 * @param tol the tolerance, if the max delta between two iteration is below this value, the result is returned
+	 * @return the list of maps with vertex label as key and PageRank as value, in the same order as the personalization vectors
+	 */
+	public List<HashMap<String, Double>> compute(List<? extends Map<String, Double>> start, List<? extends Map<String, Double>> seeds, double dampingFactor, int maxIter, double tol){
+		if(start.size()!=seeds.size()) throw new IllegalArgumentException("the number of starting vectors and personalization vectors differ");
+		if(dampingFactor<0.0 || dampingFactor>1.0) throw new IllegalArgumentException("damping factor must be between 0 and 1");
+		int n = labels.length;
+		int nbOfVectors = seeds.size();
+		double[][] x = new double[nbOfVectors][];
+		double[][] jump = new double[nbOfVectors][];
+		for(int v=0; v<nbOfVectors; v++){
+			x[v] = toArray(start.get(v), false);
+			jump[v] = toArray(seeds.get(v), true);
+		}
+
+		int nbOfBlocks = (nbOfVectors + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		double[][] results = new double[nbOfVectors][];
+		if(nbOfBlocks==1){
+			iterate(x, jump, results, 0, nbOfVectors, dampingFactor, maxIter, tol);
+		}else if(nbOfBlocks>1){
+			ParallelLoop.forEach(threads, nbOfBlocks, b ->
+					iterate(x, jump, results, b*BLOCK_SIZE, Math.min(nbOfVectors, (b+1)*BLOCK_SIZE), dampingFactor, maxIter, tol));
+		}
+
+		List<HashMap<String, Double>> res = new ArrayList<>(nbOfVectors);
+		for(double[] rank : results){
+			HashMap<String, Double> rankMap = new HashMap<>(n * 2);
+			for(int i=0; i<n; i++){
+				rankMap.put(labels[i], rank[i]);
+			}
+			res.add(rankMap);
+		}
+		return res;
+	}
+
+	/**
+	 * Convert a vector with labels as key to an array.
+	 *
+	 * @param vector the vector
+	 * @param checkSum if the vector is a probability distribution over the vertices
+	 * @return the array
+	 */
+	private double[] toArray(Map<String, Double> vector, boolean checkSum){
+		double[] array = new double[labels.length];
+		double sum = 0;
+		for(Map.Entry<String, Double> entry : vector.entrySet()){
+			Integer i = index.get(entry.getKey());
+			if(i!=null){
+				array[i] = entry.getValue();
+			}else if(checkSum){
+				throw new IllegalArgumentException("personalization vector entry "+entry.getKey()+" not found");
+			}
+			sum+=entry.getValue();
+		}
+		if(checkSum && Math.abs(sum - 1.0) > 1.0e-9) throw new IllegalArgumentException("personalization vector must sum up to 1");
+		return array;
+	}
+
+	/**
+	 * Run the power iteration for a block of vectors, stored interleaved so a single pass over the transitions updates all of them.
+	 * Each vector stops being updated once converged.
+	 *
+	 * @param x the starting vectors
+	 * @param jump the personalization vectors
+	 * @param results the array receiving the final vectors
+	 * @param from the index of the first vector of the block
+	 * @param to the index following the last vector of the block
+	 * @param dampingFactor the probability to follow an outgoing transition
+	 * @param maxIter the maximum number of iteration
+	 * @param tol the tolerance
+	 */
+	private void iterate(double[][] x, double[][] jump, double[][] results, int from, int to, double dampingFactor, int maxIter, double tol){
+		int n = labels.length;
+		int k = to - from;
+		double[] rank = new double[n*k];
+		double[] newRank = new double[n*k];
+		double[] prior = new double[n*k];
+		for(int i=0; i<n; i++){
+			for(int v=0; v<k; v++){
+				rank[i*k+v] = x[from+v][i];
+				prior[i*k+v] = jump[from+v][i];
+			}
+		}
+		boolean[] converged = new boolean[k];
+		int nbOfActive = k;
+		double[] jumpMass = new double[k];
+		double[] acc = new double[k];
+		double[] maxDelta = new double[k];
+
+		int iter = 0;
+		while(iter<maxIter && nbOfActive>0){
+			//mass redistributed according to the personalization vector
+			Arrays.fill(jumpMass, 0.0);
+			for(int i=0; i<n; i++){
+				double p = sink[i] ? 1.0 : 1.0 - dampingFactor;
+				for(int v=0; v<k; v++){
+					jumpMass[v]+=p*rank[i*k+v];
+				}
+			}
+			//mass following transitions
+			for(int j=0; j<n; j++){
+				Arrays.fill(acc, 0.0);
+				for(int t=offsets[j]; t<offsets[j+1]; t++){
+					int s = sources[t]*k;
+					double w = dampingFactor*weights[t];
+					for(int v=0; v<k; v++){
+						acc[v]+=w*rank[s+v];
+					}
+				}
+				for(int v=0; v<k; v++){
+					newRank[j*k+v] = acc[v] + jumpMass[v]*prior[j*k+v];
+				}
+			}
+			//convergence, converged vectors are kept unchanged
+			Arrays.fill(maxDelta, Double.MIN_VALUE);
+			for(int i=0; i<n*k; i++){
+				double delta = Math.abs(rank[i]-newRank[i]);
+				int v = i%k;
+				if(delta>maxDelta[v]) maxDelta[v] = delta;
+			}
+			for(int i=0; i<n*k; i++){
+				if(!converged[i%k]) rank[i] = newRank[i];
+			}
+			for(int v=0; v<k; v++){
+				if(!converged[v] && maxDelta[v]<=tol){
+					converged[v] = true;
+					nbOfActive--;
+				}
+			}
+			iter++;
+		}
+
+		for(int v=0; v<k; v++){
+			double[] res = new double[n];
+			for(int i=0; i<n; i++){
+				res[i] = rank[i*k+v];
+			}
+			results[from+v] = res;
+		}
+	}
+}
@@ -0,0 +1,461 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.inrae.toulouse.metexplore.met4j_graph.computation.connect;
+
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioEntity;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.BioGraph;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.BioPath;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.CsrGraph;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.concurrent.ParallelLoop;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.BioMatrix;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.EjmlMatrix;
+import org.ejml.data.DenseMatrix64F;
+import org.ejml.simple.SimpleMatrix;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Compute shortest paths (or lightest paths if the graph is weighted) between many sources and targets.
+ * One single source search is run per source, in parallel on a fork-join pool, over a {@link CsrGraph} snapshot of the graph.
+ * Distances are written in a row-major block of size sources x targets, and, if paths are tracked, the shortest path tree of
+ * each source is kept as a block of predecessor arcs, from which {@link BioPath} are built on demand.
+ * Paths can also be streamed with {@link #forEachPath(Collection, Collection, Consumer)}, processing sources by batches to
+ * bound the memory used by shortest path trees.
+ *
+ * @param <V> the vertex type
+ * @param <E> the edge type
+ * @param <G> the graph type
+ * @author clement
+ */
+public class AllPairsShortestPath<V extends BioEntity, E extends Edge<V>, G extends BioGraph<V, E>> {
+
+	/** The graph. */
+	final G g;
+
+	/** if edges can be traversed in both directions */
+	private boolean asUndirected = false;
+
+	/** if shortest path trees should be kept */
+	private boolean trackPaths = false;
+
+	/** the number of threads, 0 to use the common pool */
+	private int threads = 0;
+
+	/** the maximum number of sources searched at once when streaming paths, 0 for no limit */
+	private int batchSize = 0;
+
+	/** the snapshot used by the last computation */
+	private CsrGraph<V, E> csr;
+
+	/** the sources and targets of the last computation */
+	private List<V> sources;
+	private List<V> targets;
+	private int[] sourceIndex;
+	private int[] targetIndex;
+	private HashMap<V, Integer> sourceRow;
+	private HashMap<V, Integer> targetCol;
+
+	/** the distance block, sources x targets */
+	private double[] distances;
+
+	/** the predecessor arcs block, sources x vertices */
+	private int[] predecessors;
+
+	/**
+	 * Instantiates a new all pairs shortest paths computor.
+	 *
+	 * @param g the graph
+	 */
+	public AllPairsShortestPath(G g) {
+		this.g=g;
+	}
+
+	/**
+	 * Instantiates a new all pairs shortest paths computor.
+	 *
+	 * @param g the graph
+	 * @param directed if edges direction should be considered
+	 */
+	public AllPairsShortestPath(G g, boolean directed) {
+		this.g=g;
+		this.asUndirected = !directed;
+	}
+
+	public boolean isUndirected() {
+		return asUndirected;
+	}
+
+	public void asUndirected() {
+		this.asUndirected = true;
+	}
+
+	public void asDirected() {
+		this.asUndirected = false;
+	}
+
+	/**
+	 * Keep the shortest path tree of each source, allowing to retrieve paths after computation.
+	 * This requires memory proportional to the number of sources times the number of vertices.
+	 *
+	 * @return this instance
+	 */
+	public AllPairsShortestPath<V, E, G> trackPaths() {
+		this.trackPaths = true;
+		return this;
+	}
+
+	/**
+	 * Set the number of threads used for computation. By default, the common fork-join pool is used.
+	 *
+	 * @param threads the number of threads, 0 to use the common pool
+	 * @return this instance
+	 */
+	public AllPairsShortestPath<V, E, G> setThreads(int threads) {
+		this.threads = ParallelLoop.checkThreads(threads);
+		return this;
+	}
+
+	/**
+	 * Set the maximum number of sources searched at once when streaming paths. Memory used by shortest path trees is then
+	 * proportional to the batch size times the number of vertices. By default, all sources are searched at once.
+	 *
+	 * @param batchSize the number of sources per batch, 0 for no limit
+	 * @return this instance
+	 */
+	public AllPairsShortestPath<V, E, G> setBatchSize(int batchSize) {
+		if(batchSize<0) throw new IllegalArgumentException("batch size must be positive");
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	/**
+	 * Compute shortest paths between all vertices.
+	 */
+	public void compute(){
+		compute(g.vertexSet(), g.vertexSet());
+	}
+
+	/**
+	 * Compute shortest paths from each source to each target. Results are indexed following collections iteration order.
+	 *
+	 * @param sources the sources
+	 * @param targets the targets
+	 * @throws IllegalArgumentException if a source or a target is not in the graph, or if the graph has negative or NaN weights
+	 */
+	public void compute(Collection<V> sources, Collection<V> targets) throws IllegalArgumentException{
+		init(sources, targets);
+		int n = csr.numVertices();
+		int nt = targetIndex.length;
+		distances = new double[sourceIndex.length * nt];
+		predecessors = trackPaths ? new int[sourceIndex.length * n] : null;
+
+		ThreadLocal<SingleSourceShortestPath<V, E>> workspace = ThreadLocal.withInitial(() -> new SingleSourceShortestPath<>(csr));
+		ParallelLoop.forEach(threads, sourceIndex.length, i -> {
+			SingleSourceShortestPath<V, E> search = workspace.get();
+			search.run(sourceIndex[i]);
+			search.copyDistances(targetIndex, distances, i * nt);
+			if(trackPaths) search.copyPredecessors(predecessors, i * n);
+		});
+	}
+
+	/**
+	 * Stream the shortest paths from each source to each distinct target, without keeping them nor the distances.
+	 * Sources are processed by batches of searches run in parallel, so only the shortest path trees of the current batch are
+	 * held in memory. Paths of a batch are then built and passed to the action sequentially, following sources and targets
+	 * iteration order. Unreachable targets are skipped.
+	 *
+	 * @param sources the sources
+	 * @param targets the targets
+	 * @param action the action to perform on each path
+	 * @throws IllegalArgumentException if a source or a target is not in the graph, or if the graph has negative or NaN weights
+	 * @see #setBatchSize(int)
+	 */
+	public void forEachPath(Collection<V> sources, Collection<V> targets, Consumer<BioPath<V, E>> action) throws IllegalArgumentException{
+		init(sources, targets);
+		distances = null;
+		predecessors = null;
+		int n = csr.numVertices();
+		int nt = targetIndex.length;
+		int ns = sourceIndex.length;
+		int batch = batchSize>0 ? Math.min(batchSize, ns) : ns;
+		double[] batchDistances = new double[batch * nt];
+		int[] batchPredecessors = new int[batch * n];
+
+		ThreadLocal<SingleSourceShortestPath<V, E>> workspace = ThreadLocal.withInitial(() -> new SingleSourceShortestPath<>(csr));
+		for(int first=0; first<ns; first+=batch){
+			int offset = first;
+			int size = Math.min(batch, ns-first);
+			ParallelLoop.forEach(threads, size, i -> {
+				SingleSourceShortestPath<V, E> search = workspace.get();
+				search.run(sourceIndex[offset+i]);
+				search.copyDistances(targetIndex, batchDistances, i * nt);
+				search.copyPredecessors(batchPredecessors, i * n);
+			});
+			for(int i=0; i<size; i++){
+				int s = sourceIndex[offset+i];
+				for(int j=0; j<nt; j++){
+					if(s!=targetIndex[j] && batchDistances[i * nt + j]!=Double.POSITIVE_INFINITY){
+						action.accept(SingleSourceShortestPath.buildPath(csr, s, targetIndex[j], batchPredecessors, i * n));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Build the snapshot and index sources and targets
+	 */
+	private void init(Collection<V> sources, Collection<V> targets) throws IllegalArgumentException{
+		if(!g.vertexSet().containsAll(sources)){
+			throw(new IllegalArgumentException("Error: start node not found in graph"));
+		}
+		if(!g.vertexSet().containsAll(targets)){
+			throw(new IllegalArgumentException("Error: end node not found in graph"));
+		}
+		csr = new CsrGraph<>(g, asUndirected);
+		csr.checkWeights();
+		this.sources = new ArrayList<>(sources);
+		this.targets = new ArrayList<>(targets);
+		sourceIndex = toIndexes(this.sources);
+		targetIndex = toIndexes(this.targets);
+		sourceRow = toPositions(this.sources);
+		targetCol = toPositions(this.targets);
+	}
+
+	private int[] toIndexes(List<V> vertices){
+		int[] indexes = new int[vertices.size()];
+		for(int i=0; i<indexes.length; i++){
+			indexes[i] = csr.indexOf(vertices.get(i));
+		}
+		return indexes;
+	}
+
+	private HashMap<V, Integer> toPositions(List<V> vertices){
+		HashMap<V, Integer> positions = new HashMap<>();
+		for(int i=0; i<vertices.size(); i++){
+			positions.putIfAbsent(vertices.get(i), i);
+		}
+		return positions;
+	}
+
+	private void checkComputed(){
+		if(distances==null) throw new IllegalStateException("shortest paths must be computed first");
+	}
+
+	/**
+	 * Gets the shortest path distance between a source and a target of the last computation
+	 *
+	 * @param source the source
+	 * @param target the target
+	 * @return the distance, positive infinity if the target can't be reached
+	 * @throws IllegalArgumentException if the source or the target were not part of the computation
+	 */
+	public double getDistance(V source, V target) throws IllegalArgumentException{
+		checkComputed();
+		Integer i = sourceRow.get(source);
+		Integer j = targetCol.get(target);
+		if(i==null || j==null) throw new IllegalArgumentException("source or target not used in computation");
+		return distances[i * targetIndex.length + j];
+	}
+
+	/**
+	 * Gets the shortest path between a source and a target of the last computation. Requires paths to be tracked.
+	 *
+	 * @param source the source
+	 * @param target the target
+	 * @return the path, null if the target can't be reached
+	 * @throws IllegalArgumentException if the source was not part of the computation
+	 * @throws IllegalStateException if paths were not tracked
+	 */
+	public BioPath<V, E> getPath(V source, V target) throws IllegalArgumentException{
+		checkComputed();
+		if(predecessors==null) throw new IllegalStateException("paths are not tracked");
+		Integer i = sourceRow.get(source);
+		int t = csr.indexOf(target);
+		if(i==null || t<0) throw new IllegalArgumentException("source or target not used in computation");
+		return SingleSourceShortestPath.buildPath(csr, sourceIndex[i], t, predecessors, i * csr.numVertices());
+	}
+
+	/**
+	 * Gets all the shortest paths between distinct sources and targets of the last computation. Requires paths to be tracked.
+	 *
+	 * @return the list of paths
+	 */
+	public List<BioPath<V, E>> getPaths(){
+		List<BioPath<V, E>> paths = new ArrayList<>();
+		for(BioPath<V, E> p : iteratePaths()){
+			paths.add(p);
+		}
+		return paths;
+	}
+
+	/**
+	 * Iterate over the shortest paths between distinct sources and targets of the last computation, following sources and
+	 * targets order. Each path is built only when reached by the iteration. Requires paths to be tracked.
+	 *
+	 * @return the paths
+	 * @throws IllegalStateException if paths were not tracked
+	 */
+	public Iterable<BioPath<V, E>> iteratePaths(){
+		checkComputed();
+		if(predecessors==null) throw new IllegalStateException("paths are not tracked");
+		return PathIterator::new;
+	}
+
+	/**
+	 * Iterator over the reachable (source, target) pairs of the last computation, building paths lazily
+	 */
+	private class PathIterator implements Iterator<BioPath<V, E>> {
+
+		private final int nt = targetIndex.length;
+		private int i = 0;
+		private int j = -1;
+
+		private PathIterator(){
+			if(nt==0){
+				i = sourceIndex.length;
+			}else{
+				advance();
+			}
+		}
+
+		/**
+		 * Move to the next pair of distinct and connected source and target
+		 */
+		private void advance(){
+			do{
+				j++;
+				if(j==nt){
+					j = 0;
+					i++;
+				}
+			}while(i<sourceIndex.length && (sourceIndex[i]==targetIndex[j] || distances[i * nt + j]==Double.POSITIVE_INFINITY));
+		}
+
+		@Override
+		public boolean hasNext() {
+			return i<sourceIndex.length;
+		}
+
+		@Override
+		public BioPath<V, E> next() {
+			if(!hasNext()) throw new NoSuchElementException();
+			BioPath<V, E> p = SingleSourceShortestPath.buildPath(csr, sourceIndex[i], targetIndex[j], predecessors, i * csr.numVertices());
+			advance();
+			return p;
+		}
+	}
+
+	/**
+	 * Gets the distance matrix of the last computation, with sources as rows and targets as columns, in computation order.
+	 *
+	 * @return the distance matrix
+	 */
+	public BioMatrix getDistanceMatrix(){
+		checkComputed();
+		return toMatrix(sources, targets, distances);
+	}
+
+	/**
+	 * Wrap a distance block into a labeled matrix, without copy
+	 */
+	private BioMatrix toMatrix(List<V> rows, List<V> cols, double[] block){
+		BioMatrix m = new EjmlMatrix(SimpleMatrix.wrap(DenseMatrix64F.wrap(rows.size(), cols.size(), block)));
+		for(int i=0; i<rows.size(); i++){
+			m.setRowLabel(i, rows.get(i).getId());
+		}
+		for(int j=0; j<cols.size(); j++){
+			m.setColumnLabel(j, cols.get(j).getId());
+		}
+		return m;
+	}
+
+	/**
+	 * Get full shortest paths distance matrix. Rows and columns are ordered by identifier, and only vertices connected to
+	 * at least one other vertex are kept, as in {@link ShortestPath#getShortestPathDistanceMatrix()}.
+	 *
+	 * @return a distance matrix
+	 */
+	public BioMatrix getShortestPathDistanceMatrix(){
+		List<V> ordered = new ArrayList<>(g.vertexSet());
+		ordered.sort(Comparator.comparing(V::getId));
+		compute(ordered, ordered);
+
+		//keep only vertices being start or end of a path
+		int n = ordered.size();
+		boolean[] connected = new boolean[n];
+		for(int i=0; i<n; i++){
+			for(int j=0; j<n; j++){
+				if(i!=j && distances[i * n + j]!=Double.POSITIVE_INFINITY){
+					connected[i] = true;
+					connected[j] = true;
+				}
+			}
+		}
+		int[] kept = IntStream.range(0, n).filter(i -> connected[i]).toArray();
+		if(kept.length==n) return getDistanceMatrix();
+
+		List<V> keptVertices = new ArrayList<>(kept.length);
+		double[] block = new double[kept.length * kept.length];
+		for(int i=0; i<kept.length; i++){
+			keptVertices.add(ordered.get(kept[i]));
+			for(int j=0; j<kept.length; j++){
+				block[i * kept.length + j] = distances[kept[i] * n + kept[j]];
+			}
+		}
+		return toMatrix(keptVertices, keptVertices, block);
+	}
+
+	/**
+	 * Get shortest paths distance matrix from set of sources and targets. Rows and columns are ordered by identifier,
+	 * as in {@link ShortestPath#getShortestPathDistanceMatrix(Set, Set)}.
+	 *
+	 * @param sources the sources
+	 * @param targets the targets
+	 * @return a distance matrix
+	 */
+	public BioMatrix getShortestPathDistanceMatrix(Set<V> sources, Set<V> targets){
+		List<V> orderedSources = new ArrayList<>(sources);
+		orderedSources.sort(Comparator.comparing(V::getId));
+		List<V> orderedTargets = new ArrayList<>(targets);
+		orderedTargets.sort(Comparator.comparing(V::getId));
+		compute(orderedSources, orderedTargets);
+		return getDistanceMatrix();
+	}
+}
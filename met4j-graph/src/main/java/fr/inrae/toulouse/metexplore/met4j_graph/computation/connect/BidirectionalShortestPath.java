@@ -0,0 +1,383 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.inrae.toulouse.metexplore.met4j_graph.computation.connect;
+
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioEntity;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.BioPath;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.CsrGraph;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reusable point-to-point shortest path search on a {@link CsrGraph}, exploring simultaneously from the source along outgoing
+ * arcs and from the target along incoming arcs, until both searches meet. The explored region is usually much smaller than
+ * the one of a single source search.
+ * Uses level-synchronous breadth-first traversals if the graph is unweighted, and Dijkstra's algorithm with indexed binary
+ * heaps otherwise. All buffers are allocated once, and only entries touched by a search are reset by the next one, so a same
+ * instance can be used for many successive queries. An instance is not thread-safe: use one per thread.
+ *
+ * @param <V> the vertex type
+ * @param <E> the edge type
+ * @author clement
+ */
+public class BidirectionalShortestPath<V extends BioEntity, E extends Edge<V>> {
+
+	/** The graph snapshot. */
+	private final CsrGraph<V, E> csr;
+
+	/** The position of the first incoming arc of each vertex in inArcs, with an additional final entry */
+	private final int[] inOffsets;
+
+	/** The incoming arcs positions, grouped by target vertex */
+	private final int[] inArcs;
+
+	/** The search from the source, along outgoing arcs */
+	private final Search forward;
+
+	/** The search from the target, along incoming arcs */
+	private final Search backward;
+
+	private int source = -1;
+	private int target = -1;
+
+	/** The vertex where the shortest path found so far goes through, -1 if none */
+	private int meeting = -1;
+
+	/** The length of the shortest path found so far */
+	private double best = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Instantiates a new search workspace.
+	 *
+	 * @param csr the graph snapshot
+	 */
+	public BidirectionalShortestPath(CsrGraph<V, E> csr){
+		this.csr = csr;
+		int n = csr.numVertices();
+		inOffsets = new int[n+1];
+		for(int arc=0; arc<csr.numArcs(); arc++){
+			inOffsets[csr.target(arc)+1]++;
+		}
+		for(int v=0; v<n; v++){
+			inOffsets[v+1]+=inOffsets[v];
+		}
+		inArcs = new int[csr.numArcs()];
+		int[] cursor = Arrays.copyOf(inOffsets, n);
+		for(int arc=0; arc<csr.numArcs(); arc++){
+			inArcs[cursor[csr.target(arc)]++] = arc;
+		}
+		forward = new Search(n);
+		backward = new Search(n);
+	}
+
+	/**
+	 * @return the graph snapshot
+	 */
+	public CsrGraph<V, E> getGraph() {
+		return csr;
+	}
+
+	/**
+	 * Compute the shortest path between two vertices
+	 *
+	 * @param source the source vertex index
+	 * @param target the target vertex index
+	 */
+	public void run(int source, int target){
+		forward.reset();
+		backward.reset();
+		this.source = source;
+		this.target = target;
+		meeting = -1;
+		best = Double.POSITIVE_INFINITY;
+		if(source==target){
+			meeting = source;
+			best = 0.0;
+			return;
+		}
+		forward.touch(source, 0.0, -1);
+		backward.touch(target, 0.0, -1);
+		if(csr.isUnweighted()){
+			bfs();
+		}else{
+			dijkstra();
+		}
+	}
+
+	private void bfs(){
+		forward.heap[forward.heapSize++] = source;
+		backward.heap[backward.heapSize++] = target;
+		int forwardHead = 0;
+		int backwardHead = 0;
+		while(forwardHead<forward.heapSize && backwardHead<backward.heapSize){
+			//expand a whole level of the smallest frontier
+			if(forward.heapSize-forwardHead <= backward.heapSize-backwardHead){
+				int end = forward.heapSize;
+				for(; forwardHead<end; forwardHead++){
+					int u = forward.heap[forwardHead];
+					double du = forward.dist[u]+1.0;
+					for(int arc=csr.arcStart(u); arc<csr.arcEnd(u); arc++){
+						visit(forward, backward, csr.target(arc), du, arc);
+					}
+				}
+			}else{
+				int end = backward.heapSize;
+				for(; backwardHead<end; backwardHead++){
+					int u = backward.heap[backwardHead];
+					double du = backward.dist[u]+1.0;
+					for(int k=inOffsets[u]; k<inOffsets[u+1]; k++){
+						int arc = inArcs[k];
+						visit(backward, forward, csr.source(arc), du, arc);
+					}
+				}
+			}
+			//once frontiers have met in a complete level, the best meeting vertex gives a shortest path
+			if(meeting>=0) return;
+		}
+	}
+
+	private void visit(Search side, Search other, int v, double dv, int arc){
+		if(side.dist[v]!=Double.POSITIVE_INFINITY) return;
+		side.touch(v, dv, arc);
+		side.heap[side.heapSize++] = v;
+		meet(v);
+	}
+
+	private void dijkstra(){
+		forward.push(source);
+		backward.push(target);
+		while(forward.heapSize>0 && backward.heapSize>0){
+			//no path shorter than the best found so far can be found anymore
+			if(forward.dist[forward.heap[0]]+backward.dist[backward.heap[0]]>=best) return;
+			if(forward.heapSize<=backward.heapSize){
+				int u = forward.pop();
+				//paths never go through the target
+				if(u==target) continue;
+				double du = forward.dist[u];
+				for(int arc=csr.arcStart(u); arc<csr.arcEnd(u); arc++){
+					relax(forward, csr.target(arc), du, arc);
+				}
+			}else{
+				int u = backward.pop();
+				//paths never go through the source
+				if(u==source) continue;
+				double du = backward.dist[u];
+				for(int k=inOffsets[u]; k<inOffsets[u+1]; k++){
+					int arc = inArcs[k];
+					relax(backward, csr.source(arc), du, arc);
+				}
+			}
+		}
+	}
+
+	private void relax(Search side, int v, double du, int arc){
+		double w = csr.weight(arc);
+		if(w<0 || Double.isNaN(w)){
+			throw new IllegalArgumentException("Error: edge weights must be real positive values ("+csr.getEdge(arc).getV1()+" -> "+csr.getEdge(arc).getV2()+" : "+w+")");
+		}
+		double dv = du+w;
+		//with non-negative weights, settled vertices can't be improved
+		if(dv<side.dist[v]){
+			side.touch(v, dv, arc);
+			if(side.heapPos[v]>=0){
+				side.siftUp(side.heapPos[v]);
+			}else{
+				side.push(v);
+			}
+			meet(v);
+		}
+	}
+
+	/**
+	 * Check if the paths from both searches through a vertex improve the shortest path found so far
+	 */
+	private void meet(int v){
+		double d = forward.dist[v]+backward.dist[v];
+		if(d<best){
+			best = d;
+			meeting = v;
+		}
+	}
+
+	/**
+	 * @return the length of the shortest path of the last search, or positive infinity if the target can't be reached
+	 */
+	public double getDistance(){
+		return best;
+	}
+
+	/**
+	 * @return the number of vertices reached by both searches of the last query
+	 */
+	public int getNumberOfTouched(){
+		return forward.nTouched+backward.nTouched;
+	}
+
+	/**
+	 * Build the shortest path of the last search
+	 *
+	 * @return the path, or null if the target can't be reached
+	 */
+	public BioPath<V, E> getPath(){
+		if(meeting<0) return null;
+		List<E> edges = new ArrayList<>();
+		double weight = 0.0;
+		for(int v=meeting; v!=source; ){
+			int arc = forward.pred[v];
+			edges.add(csr.getEdge(arc));
+			weight+=csr.weight(arc);
+			v = csr.source(arc);
+		}
+		Collections.reverse(edges);
+		for(int v=meeting; v!=target; ){
+			int arc = backward.pred[v];
+			edges.add(csr.getEdge(arc));
+			weight+=csr.weight(arc);
+			v = csr.target(arc);
+		}
+		return new BioPath<>(csr.getGraph(), csr.getVertex(source), csr.getVertex(target), edges, weight);
+	}
+
+	/**
+	 * The state of a search in one direction
+	 */
+	private static class Search {
+
+		/** distance from the search origin, by vertex index */
+		private final double[] dist;
+
+		/** arc used to reach each vertex, -1 if none */
+		private final int[] pred;
+
+		/** the heap (or queue in breadth-first mode) of vertex indexes */
+		private final int[] heap;
+
+		/** the position of each vertex in the heap, -1 if absent */
+		private final int[] heapPos;
+
+		/** vertices touched by the last search, to be reset */
+		private final int[] touched;
+
+		private int heapSize = 0;
+		private int nTouched = 0;
+
+		private Search(int n){
+			dist = new double[n];
+			pred = new int[n];
+			heap = new int[n];
+			heapPos = new int[n];
+			touched = new int[n];
+			Arrays.fill(dist, Double.POSITIVE_INFINITY);
+			Arrays.fill(pred, -1);
+			Arrays.fill(heapPos, -1);
+		}
+
+		private void reset(){
+			for(int k=0; k<nTouched; k++){
+				int v = touched[k];
+				dist[v] = Double.POSITIVE_INFINITY;
+				pred[v] = -1;
+				heapPos[v] = -1;
+			}
+			nTouched = 0;
+			heapSize = 0;
+		}
+
+		private void touch(int v, double d, int arc){
+			if(dist[v]==Double.POSITIVE_INFINITY) touched[nTouched++] = v;
+			dist[v] = d;
+			pred[v] = arc;
+		}
+
+		private void push(int v){
+			heap[heapSize] = v;
+			heapPos[v] = heapSize;
+			siftUp(heapSize++);
+		}
+
+		private int pop(){
+			int top = heap[0];
+			heapSize--;
+			if(heapSize>0){
+				heap[0] = heap[heapSize];
+				heapPos[heap[0]] = 0;
+				siftDown(0);
+			}
+			heapPos[top] = -1;
+			return top;
+		}
+
+		private void siftUp(int i){
+			int v = heap[i];
+			double d = dist[v];
+			while(i>0){
+				int parent = (i-1) >>> 1;
+				int p = heap[parent];
+				if(dist[p]<=d) break;
+				heap[i] = p;
+				heapPos[p] = i;
+				i = parent;
+			}
+			heap[i] = v;
+			heapPos[v] = i;
+		}
+
+		private void siftDown(int i){
+			int v = heap[i];
+			double d = dist[v];
+			int half = heapSize >>> 1;
+			while(i<half){
+				int child = 2*i+1;
+				int c = heap[child];
+				int right = child+1;
+				if(right<heapSize && dist[heap[right]]<dist[c]){
+					child = right;
+					c = heap[child];
+				}
+				if(d<=dist[c]) break;
+				heap[i] = c;
+				heapPos[c] = i;
+				i = child;
+			}
+			heap[i] = v;
+			heapPos[v] = i;
+		}
+	}
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.inrae.toulouse.metexplore.met4j_graph.computation.connect;
+
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioEntity;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.CsrGraph;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.concurrent.ParallelLoop;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Compute shortest paths distances statistics over all pairs of vertices, such as eccentricity, diameter, radius or closeness,
+ * without storing the distance matrix: distances are aggregated per vertex as soon as they are found.
+ * On unweighted graphs, breadth-first searches from 64 sources are run at once, each source being a bit of a 64 bits word
+ * attached to each vertex, so a single traversal of the arcs expands the frontiers of all the sources of a block.
+ * On weighted graphs, one Dijkstra search is run per source. In both cases, searches are run in parallel on a fork-join pool.
+ *
+ * @param <V> the vertex type
+ * @param <E> the edge type
+ * @author clement
+ */
+public class DistanceStatistics<V extends BioEntity, E extends Edge<V>> {
+
+	/** The graph snapshot. */
+	private final CsrGraph<V, E> csr;
+
+	/** the number of threads, 0 to use the common pool */
+	private int threads = 0;
+
+	/** sum of distances to reachable vertices */
+	private double[] outDistance;
+
+	/** sum of distances from vertices that can reach each vertex */
+	private double[] inDistance;
+
+	/** largest distance to a reachable vertex */
+	private double[] eccentricity;
+
+	/** number of other vertices reachable from each vertex */
+	private int[] reached;
+
+	/** number of other vertices that can reach each vertex */
+	private int[] reachedBy;
+
+	/**
+	 * Instantiates a new distance statistics computor.
+	 *
+	 * @param csr the graph snapshot, with arcs in both directions to consider the graph as undirected
+	 */
+	public DistanceStatistics(CsrGraph<V, E> csr) {
+		this.csr = csr;
+	}
+
+	/**
+	 * Set the number of threads used for computation. By default, the common fork-join pool is used.
+	 *
+	 * @param threads the number of threads, 0 to use the common pool
+	 * @return this instance
+	 */
+	public DistanceStatistics<V, E> setThreads(int threads) {
+		this.threads = ParallelLoop.checkThreads(threads);
+		return this;
+	}
+
+	/**
+	 * Compute the distances from all vertices.
+	 *
+	 * @return this instance
+	 * @throws IllegalArgumentException if the graph has negative or NaN weights
+	 */
+	public DistanceStatistics<V, E> compute() throws IllegalArgumentException{
+		csr.checkWeights();
+		int n = csr.numVertices();
+		outDistance = new double[n];
+		inDistance = new double[n];
+		eccentricity = new double[n];
+		reached = new int[n];
+		reachedBy = new int[n];
+
+		ConcurrentLinkedQueue<Workspace> workspaces = new ConcurrentLinkedQueue<>();
+		ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(() -> {
+			Workspace w = new Workspace();
+			workspaces.add(w);
+			return w;
+		});
+		if(csr.isUnweighted()){
+			ParallelLoop.forEach(threads, (n+Long.SIZE-1)/Long.SIZE, block -> workspace.get().bfs(block*Long.SIZE));
+		}else{
+			ParallelLoop.forEach(threads, n, s -> workspace.get().dijkstra(s));
+		}
+		for(Workspace w : workspaces){
+			for(int v=0; v<n; v++){
+				inDistance[v]+=w.inDistance[v];
+				reachedBy[v]+=w.reachedBy[v];
+			}
+		}
+		return this;
+	}
+
+	private void checkComputed(){
+		if(outDistance==null) throw new IllegalStateException("distances must be computed first");
+	}
+
+	/**
+	 * Gets the diameter, i.e. the largest finite distance between two vertices.
+	 *
+	 * @return the diameter, 0 if no vertex can reach another one
+	 */
+	public double getDiameter(){
+		checkComputed();
+		double max = 0.0;
+		for(double e : eccentricity){
+			if(e>max) max = e;
+		}
+		return max;
+	}
+
+	/**
+	 * Gets the radius, i.e. the smallest eccentricity. Vertices that can't reach any other vertex are ignored.
+	 *
+	 * @return the radius, 0 if no vertex can reach another one
+	 */
+	public double getRadius(){
+		checkComputed();
+		double min = Double.POSITIVE_INFINITY;
+		for(int v=0; v<eccentricity.length; v++){
+			if(reached[v]>0 && eccentricity[v]<min) min = eccentricity[v];
+		}
+		return min==Double.POSITIVE_INFINITY ? 0.0 : min;
+	}
+
+	/**
+	 * Gets the average distance between two distinct vertices, considering only pairs connected by a path.
+	 *
+	 * @return the average shortest path length, NaN if no vertex can reach another one
+	 */
+	public double getAverageDistance(){
+		checkComputed();
+		double sum = 0.0;
+		long pairs = 0;
+		for(int v=0; v<outDistance.length; v++){
+			sum+=outDistance[v];
+			pairs+=reached[v];
+		}
+		return sum/pairs;
+	}
+
+	/**
+	 * Gets the number of ordered pairs of distinct vertices connected by a path.
+	 *
+	 * @return the number of connected pairs
+	 */
+	public long getNumberOfConnectedPairs(){
+		checkComputed();
+		long pairs = 0;
+		for(int r : reached){
+			pairs+=r;
+		}
+		return pairs;
+	}
+
+	/**
+	 * Gets the eccentricity of each vertex, i.e. the largest distance to a reachable vertex.
+	 *
+	 * @return the eccentricity, 0 for vertices that can't reach any other vertex
+	 */
+	public Map<V, Double> getEccentricity(){
+		checkComputed();
+		return toMap(eccentricity);
+	}
+
+	/**
+	 * Gets the sum of distances to reachable vertices, for each vertex.
+	 *
+	 * @return the out distances sums
+	 */
+	public Map<V, Double> getOutDistanceSum(){
+		checkComputed();
+		return toMap(outDistance);
+	}
+
+	/**
+	 * Gets the sum of distances from vertices that can reach each vertex.
+	 *
+	 * @return the in distances sums
+	 */
+	public Map<V, Double> getInDistanceSum(){
+		checkComputed();
+		return toMap(inDistance);
+	}
+
+	/**
+	 * Gets the closeness, i.e. the reciprocal of the sum of distances to and from other vertices, ignoring unconnected pairs,
+	 * as {@link fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.centrality.PathBasedCentrality#getCloseness(fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.BioMatrix)}.
+	 *
+	 * @return the closeness, 0 for isolated vertices
+	 */
+	public Map<V, Double> getCloseness(){
+		checkComputed();
+		double[] closeness = new double[outDistance.length];
+		for(int v=0; v<closeness.length; v++){
+			double d = outDistance[v]+inDistance[v];
+			closeness[v] = d==0.0 ? 0.0 : 1.0/d;
+		}
+		return toMap(closeness);
+	}
+
+	/**
+	 * Gets the in closeness, i.e. the reciprocal of the sum of distances from vertices that can reach each vertex,
+	 * as {@link fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.centrality.PathBasedCentrality#getInCloseness(java.util.Set)}.
+	 *
+	 * @return the in closeness, positive infinity for vertices that can't be reached
+	 */
+	public Map<V, Double> getInCloseness(){
+		checkComputed();
+		double[] closeness = new double[inDistance.length];
+		for(int v=0; v<closeness.length; v++){
+			closeness[v] = 1.0/inDistance[v];
+		}
+		return toMap(closeness);
+	}
+
+	private Map<V, Double> toMap(double[] values){
+		Map<V, Double> map = new HashMap<>();
+		for(int i=0; i<values.length; i++){
+			map.put(csr.getVertex(i), values[i]);
+		}
+		return map;
+	}
+
+	/**
+	 * Thread-confined search buffers and partial sums of per-target statistics.
+	 * Per-source statistics are written directly, each source being handled by a single thread.
+	 */
+	private class Workspace {
+		final double[] inDistance = new double[csr.numVertices()];
+		final int[] reachedBy = new int[csr.numVertices()];
+		SingleSourceShortestPath<V, E> search;
+		long[] visited;
+		long[] frontier;
+		long[] next;
+
+		/**
+		 * Run one Dijkstra search
+		 */
+		void dijkstra(int s){
+			if(search==null) search = new SingleSourceShortestPath<>(csr);
+			search.run(s);
+			int nSettled = search.getNumberOfSettled();
+			double out = 0.0;
+			for(int k=1; k<nSettled; k++){
+				int v = search.getSettled(k);
+				double d = search.getDistance(v);
+				out+=d;
+				inDistance[v]+=d;
+				reachedBy[v]++;
+			}
+			outDistance[s] = out;
+			reached[s] = nSettled-1;
+			//vertices are settled by non-decreasing distance
+			eccentricity[s] = search.getDistance(search.getSettled(nSettled-1));
+		}
+
+		/**
+		 * Run the breadth-first searches from the block of up to 64 sources starting at a given index.
+		 * The bit b of the words of a vertex stands for the source first+b.
+		 */
+		void bfs(int first){
+			int n = csr.numVertices();
+			if(visited==null){
+				visited = new long[n];
+				frontier = new long[n];
+				next = new long[n];
+			}else{
+				Arrays.fill(visited, 0L);
+				Arrays.fill(frontier, 0L);
+			}
+			int size = Math.min(Long.SIZE, n-first);
+			double[] out = new double[size];
+			int[] count = new int[size];
+			int[] ecc = new int[size];
+			for(int b=0; b<size; b++){
+				visited[first+b] = 1L << b;
+				frontier[first+b] = 1L << b;
+			}
+
+			boolean active = true;
+			for(int d=1; active; d++){
+				active = false;
+				//propagate the frontiers of all sources through each arc at once
+				for(int u=0; u<n; u++){
+					long f = frontier[u];
+					if(f==0L) continue;
+					for(int arc=csr.arcStart(u); arc<csr.arcEnd(u); arc++){
+						next[csr.target(arc)] |= f;
+					}
+				}
+				//keep only sources reaching a vertex for the first time
+				for(int v=0; v<n; v++){
+					long reachedNow = next[v] & ~visited[v];
+					next[v] = 0L;
+					frontier[v] = reachedNow;
+					if(reachedNow==0L) continue;
+					active = true;
+					visited[v] |= reachedNow;
+					int c = Long.bitCount(reachedNow);
+					inDistance[v]+=(double) d*c;
+					reachedBy[v]+=c;
+					for(long bits=reachedNow; bits!=0L; bits &= bits-1){
+						int b = Long.numberOfTrailingZeros(bits);
+						out[b]+=d;
+						count[b]++;
+						ecc[b] = d;
+					}
+				}
+			}
+			for(int b=0; b<size; b++){
+				outDistance[first+b] = out[b];
+				reached[first+b] = count[b];
+				eccentricity[first+b] = ecc[b];
+			}
+		}
+	}
+}
@@ -41,11 +41,14 @@ import fr.inrae.toulouse.metexplore.met4j_graph.core.BioGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.BioPath;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.BioMatrix;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.EjmlMatrix;
+
+import org.ejml.simple.SimpleMatrix;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * The Class FloydWarshall. This class is used to compute all shortest paths in a graph.
@@ -113,25 +116,27 @@ public class FloydWarshall<V extends BioEntity, E extends Edge<V>, G extends Bio
 	 */
 	public BioMatrix getDistances(){
 		if(distMatrix!=null) return distMatrix;
-		distMatrix = this.matrix.copy();
-		for(int i = 0; i< g.vertexSet().size(); i++){
-			for(int j = 0; j< g.vertexSet().size(); j++){
-				if(i!=j && distMatrix.get(i, j)==0.0){
-					distMatrix.set(i, j, Double.POSITIVE_INFINITY);
+		//distances are dense, even if the adjacency matrix is sparse
+		distMatrix = new EjmlMatrix(this.matrix);
+		int n = distMatrix.numRows();
+		//work directly on the row-major backing array
+		double[] d = ((SimpleMatrix) distMatrix.getOriginal()).getMatrix().data;
+		for(int i = 0; i< n; i++){
+			for(int j = 0; j< n; j++){
+				if(i!=j && d[i*n+j]==0.0){
+					d[i*n+j] = Double.POSITIVE_INFINITY;
 				}
 			}
 		}
 		
-		for(int k = 0; k< g.vertexSet().size(); k++){
-			for(int i = 0; i< g.vertexSet().size(); i++){
-				for(int j = 0; j< g.vertexSet().size(); j++){
-					
-					double ab = distMatrix.get(i, j);
-					double ac = distMatrix.get(i, k);
-					double cb = distMatrix.get(k, j);
-					
-					if(ab>(ac+cb)){
-						distMatrix.set(i, j, (ac+cb));
+		for(int k = 0; k< n; k++){
+			for(int i = 0; i< n; i++){
+				double ac = d[i*n+k];
+				if(Double.isInfinite(ac)) continue;
+				for(int j = 0; j< n; j++){
+					double cb = d[k*n+j];
+					if(d[i*n+j]>(ac+cb)){
+						d[i*n+j] = ac+cb;
 					}
 				}
 			}
@@ -147,35 +152,33 @@ public class FloydWarshall<V extends BioEntity, E extends Edge<V>, G extends Bio
 	 */
 	public HashMap<String, HashMap<String, BioPath<V, E>>> getPaths(){
 
-
-		HashMap<Integer,HashMap<Integer,Integer>> next = new HashMap<>();
-
-		this.distMatrix = this.matrix.copy();
-		for(int i = 0; i< g.vertexSet().size(); i++){
-			next.put(i, new HashMap<>());
-			for(int j = 0; j< g.vertexSet().size(); j++){
+		this.distMatrix = new EjmlMatrix(this.matrix);
+		int n = distMatrix.numRows();
+		double[] d = ((SimpleMatrix) distMatrix.getOriginal()).getMatrix().data;
+		//next vertex on the path from i to j, -1 if none
+		int[] next = new int[n*n];
+		Arrays.fill(next, -1);
+		for(int i = 0; i< n; i++){
+			for(int j = 0; j< n; j++){
 				if(i!=j){
-					if(distMatrix.get(i, j)==0.0){
-						distMatrix.set(i, j, Double.POSITIVE_INFINITY);
+					if(d[i*n+j]==0.0){
+						d[i*n+j] = Double.POSITIVE_INFINITY;
 					}else{
-						next.get(i).put(j, j);
+						next[i*n+j] = j;
 					}
 				}
-				
 			}
 		}
 		
-		for(int k = 0; k< g.vertexSet().size(); k++){
-			for(int i = 0; i< g.vertexSet().size(); i++){
-				for(int j = 0; j< g.vertexSet().size(); j++){
-					
-					double ab = distMatrix.get(i, j);
-					double ac = distMatrix.get(i, k);
-					double cb = distMatrix.get(k, j);
-					
-					if(!Double.isInfinite(ac) && !Double.isInfinite(cb) && ab>(ac+cb)){
-						distMatrix.set(i, j, (ac+cb));
-						next.get(i).put(j, next.get(i).get(k));
+		for(int k = 0; k< n; k++){
+			for(int i = 0; i< n; i++){
+				double ac = d[i*n+k];
+				if(Double.isInfinite(ac)) continue;
+				for(int j = 0; j< n; j++){
+					double cb = d[k*n+j];
+					if(!Double.isInfinite(cb) && d[i*n+j]>(ac+cb)){
+						d[i*n+j] = ac+cb;
+						next[i*n+j] = next[i*n+k];
 					}
 				}
 			}
@@ -183,24 +186,25 @@ public class FloydWarshall<V extends BioEntity, E extends Edge<V>, G extends Bio
 		
 		
 		HashMap<String,HashMap<String,BioPath<V,E>>> res = new HashMap<>();
-		for(Map.Entry<Integer, HashMap<Integer, Integer>> entry : next.entrySet()){
-			int i = entry.getKey();
-			String iLabel = distMatrix.getRowIndexMap().get(i);
+		HashMap<Integer,String> indexMap = distMatrix.getRowIndexMap();
+		for(int i = 0; i< n; i++){
+			String iLabel = indexMap.get(i);
 			HashMap<String,BioPath<V,E>> map = new HashMap<>();
 			
-			for(int j : entry.getValue().keySet()){
+			for(int j = 0; j< n; j++){
+				if(next[i*n+j]<0) continue;
 				
-				String jLabel = distMatrix.getRowIndexMap().get(j);
+				String jLabel = indexMap.get(j);
 				List<E> path = new ArrayList<>();
 				double w = 0.0;
 				
 				int k = i;
 				while(k!=j){
-					String kLabel = distMatrix.getRowIndexMap().get(k);
+					String kLabel = indexMap.get(k);
 					V v1 = g.getVertex(kLabel);
 					
-					k = next.get(k).get(j);
-					kLabel = distMatrix.getRowIndexMap().get(k);
+					k = next[k*n+j];
+					kLabel = indexMap.get(k);
 					V v2 = g.getVertex(kLabel);
 					
 					E edge = g.getEdge(v1, v2);
@@ -38,13 +38,19 @@ package fr.inrae.toulouse.metexplore.met4j_graph.computation.connect;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioEntity;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.BioGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.BioPath;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.CsrGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.concurrent.ParallelLoop;
 import org.jgrapht.GraphPath;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * <p>KShortestPath class.</p>
+ * Paths are computed on a read-only snapshot of the graph, which is never modified, so spur path searches and searches between
+ * distinct pairs of vertices run in parallel on a fork-join pool.
  *
  * @author lcottret
  */
@@ -57,6 +63,9 @@ public class KShortestPath<V extends BioEntity, E extends Edge<V>, G extends Bio
 	public boolean isUndirected() {
 		return asUndirected;
 	}
+
+	/** the number of threads, 0 to use the common pool */
+	private int threads = 0;
 	
 	/**
 	 * Instantiates a new K-shortest paths computor.
@@ -73,6 +82,17 @@ public class KShortestPath<V extends BioEntity, E extends Edge<V>, G extends Bio
 		this.asUndirected=!directed;
 	}
 
+	/**
+	 * Set the number of threads used for computation. By default, the common fork-join pool is used.
+	 *
+	 * @param threads the number of threads, 0 to use the common pool
+	 * @return this instance
+	 */
+	public KShortestPath<V, E, G> setThreads(int threads) {
+		this.threads = ParallelLoop.checkThreads(threads);
+		return this;
+	}
+
 	
 	/**
 	 * compute the list of edges from the union of all K-shortest paths between all nodes in a given set
@@ -86,7 +106,8 @@ public class KShortestPath<V extends BioEntity, E extends Edge<V>, G extends Bio
 	}
 	
 	/**
-	 * compute the list of edges from the union of all K-shortest paths between sources and target nodes
+	 * compute the list of edges from the union of all K-shortest paths between sources and target nodes.
+	 * Pairs of vertices are processed in parallel, and paths are returned following sources and targets iteration order.
 	 *
 	 * @param startNodes the start vertex nodes
 	 * @param targetNodes the target nodes
@@ -94,19 +115,55 @@ public class KShortestPath<V extends BioEntity, E extends Edge<V>, G extends Bio
 	 * @return the list of edges involved in the k-shortest path union
 	 */
 	public List<BioPath<V,E>> getKShortestPathsUnionList(Set<V> startNodes, Set<V> targetNodes, int k){
-		ArrayList<BioPath<V,E>> shortest = new ArrayList<>();
+		CsrGraph<V, E> csr = new CsrGraph<>(g, asUndirected);
+		ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(() -> new Workspace(csr));
+		List<V> starts = new ArrayList<>();
+		List<V> ends = new ArrayList<>();
 		for(V start : startNodes){
 			for(V end : targetNodes){
 				if(start!=end){
-					shortest.addAll(getKShortest(start, end, k));
+					starts.add(start);
+					ends.add(end);
 				}
 			}
 		}
+		List<List<BioPath<V,E>>> pairPaths = new ArrayList<>(Collections.nCopies(starts.size(), null));
+		ParallelLoop.forEach(threads, starts.size(), i -> pairPaths.set(i, getKShortest(csr, workspace, starts.get(i), ends.get(i), k, false)));
+		ArrayList<BioPath<V,E>> shortest = new ArrayList<>();
+		for(List<BioPath<V,E>> paths : pairPaths){
+			shortest.addAll(paths);
+		}
 		return shortest;
 	}
 	
 	/**
-	 * compute the K-shortest paths (or lightest paths if the graph is weighted) between 2 nodes
+	 * Stream the K-shortest paths between sources and target nodes, without keeping them. Sources are processed in parallel,
+	 * and the K-shortest paths of each pair of distinct source and target are passed to the action as soon as they are computed,
+	 * from the thread that computed them. The action must therefore be thread-safe, which can be achieved using one
+	 * accumulator per thread.
+	 *
+	 * @param startNodes the start vertex nodes
+	 * @param targetNodes the target nodes
+	 * @param k the maximum ranked path to consider
+	 * @param action the action to perform on the K-shortest paths of each pair
+	 */
+	public void forEachKShortestPaths(Set<V> startNodes, Set<V> targetNodes, int k, Consumer<List<BioPath<V,E>>> action){
+		CsrGraph<V, E> csr = new CsrGraph<>(g, asUndirected);
+		ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(() -> new Workspace(csr));
+		List<V> starts = new ArrayList<>(startNodes);
+		ParallelLoop.forEach(threads, starts.size(), i -> {
+			V start = starts.get(i);
+			for(V end : targetNodes){
+				if(start!=end){
+					action.accept(getKShortest(csr, workspace, start, end, k, false));
+				}
+			}
+		});
+	}
+
+	/**
+	 * compute the K-shortest paths (or lightest paths if the graph is weighted) between 2 nodes.
+	 * Spur paths deviating from each previous path are searched in parallel.
 	 *
 	 * @param start the start vertex
 	 * @param end the end vertex
@@ -114,22 +171,38 @@ public class KShortestPath<V extends BioEntity, E extends Edge<V>, G extends Bio
 	 * @return the list of edges involved in the K-shortest path
 	 */
 	public List<BioPath<V,E>> getKShortest(V start, V end, int k){
+		CsrGraph<V, E> csr = new CsrGraph<>(g, asUndirected);
+		return getKShortest(csr, ThreadLocal.withInitial(() -> new Workspace(csr)), start, end, k, true);
+	}
+
+	/**
+	 * compute the K-shortest paths between 2 nodes on a graph snapshot, using Yen's algorithm.
+	 * Instead of removing edges from the graph, spur paths are searched while ignoring the corresponding arcs of the snapshot,
+	 * using a distinct mask for each search.
+	 *
+	 * @param csr the graph snapshot
+	 * @param workspace the search workspace of each thread
+	 * @param start the start vertex
+	 * @param end the end vertex
+	 * @param k the maximum ranked path to consider
+	 * @param parallel if spur paths should be searched in parallel
+	 * @return the list of edges involved in the K-shortest path
+	 */
+	private List<BioPath<V,E>> getKShortest(CsrGraph<V, E> csr, ThreadLocal<Workspace> workspace, V start, V end, int k, boolean parallel){
+		if(!g.containsVertex(start)){
+			throw(new IllegalArgumentException("Error: start node "+start.getId()+" not found in graph"));
+		}
+		if(!g.containsVertex(end)){
+			throw(new IllegalArgumentException("Error: end node "+end.getId()+" not found in graph"));
+		}
 		List<BioPath<V,E>> kPaths = new ArrayList<>();
-		ShortestPath<V, E, G> sp = new ShortestPath<>(g,!asUndirected);
-		BioPath<V,E> shortest = sp.getShortest(start, end);
-		if(shortest==null || shortest.isEmpty()) return new ArrayList<>();
+		if(start==end) return kPaths;
+		int target = csr.indexOf(end);
+		SingleSourceShortestPath<V, E> search = workspace.get().search;
+		search.run(csr.indexOf(start), target);
+		BioPath<V,E> shortest = search.getPath(target);
+		if(shortest==null || shortest.isEmpty()) return kPaths;
 		kPaths.add(shortest);
-//		List<ReactionEdge> sp = ShortestPath.getShortest(graph, start, end);
-//		if(sp==null || sp.isEmpty()) return new ArrayList<ReactionEdge>();
-//		double weight = 0.0;
-//		for(ReactionEdge e : sp){
-//			weight+=graph.getEdgeWeight(e);
-//		}
-//		a.add(new BioPath(graph, start, end, sp, weight));
-		
-//		DijkstraShortestPath<V, ReactionEdge> dj = new DijkstraShortestPath<V, ReactionEdge>(graph, start, end);
-//		if(dj.getPath()==null) return new ArrayList<ReactionEdge>();
-//		a.add(new BioPath(dj.getPath()));
 		
 		List<BioPath<V,E>> b = new ArrayList<>();
 
@@ -139,50 +212,19 @@ public class KShortestPath<V extends BioEntity, E extends Edge<V>, G extends Bio
 			List<V> previousPathVertex = previousPath.getVertexList();
 			
 			//for each vertex in shortest path (except target)
-			for(int i=0; i<previousPathVertex.size()-1; i++){
-				ArrayList<E> removedEdges = new ArrayList<>();
-				
-				V spur = previousPathVertex.get(i);
-				
-				//store path from source to spur node
-				List<V> rootPathVertex = previousPathVertex.subList(0, i+1);
-				
-				for(GraphPath<V, E> p : kPaths){
-					List<V> pVertexList = p.getVertexList();
-					
-					//remove spur node's outgoing edges if already present in a shortest path from previous iteration sharing same path to spur
-					if(pVertexList.size()>i+1 && (pVertexList.subList(0, i+1)).equals(rootPathVertex)){
-						for(E e : p.getEdgeList()){
-							if(e.getV1().equals(pVertexList.get(i)) && e.getV2().equals(pVertexList.get(i+1))){
-								removedEdges.add(e);
-                                g.removeEdge(e);
-							}
-						}
-					}
-				}
-				
-				//compute the shortest path from spur node to target on the updated graph
-//				DijkstraShortestPath<V, ReactionEdge> dj2 = new DijkstraShortestPath<V, ReactionEdge>(graph, spur, end);
-//				if(dj2.getPath()!=null){
-				BioPath<V,E> spurPath = sp.getShortest(spur, end);
-				if(spurPath!=null && !spurPath.isEmpty()){
-//					double weight2 = 0.0;
-//					for(ReactionEdge e : sp2){
-//						weight2+=graph.getEdgeWeight(e);
-//					}
-					BioPath<V,E> rootPath = previousPath.getSubPath(previousPath.getStartVertex(),spur);
-//					BioPath spurPath = new BioPath(dj2.getPath());
-//					BioPath spurPath = new BioPath(graph,spur,end,sp2,weight2);
-					BioPath<V,E> finalPath = rootPath.appendPath(spurPath);
-					//add path from root to spur + path from spur to target to the list of potential shortest path
-					b.add(finalPath);
+			int nbSpurs = previousPathVertex.size()-1;
+			List<BioPath<V,E>> spurPaths = new ArrayList<>(Collections.nCopies(nbSpurs, null));
+			IntConsumer spurSearch = i -> spurPaths.set(i, getDeviation(csr, workspace.get(), kPaths, previousPath, i, target));
+			if(parallel){
+				ParallelLoop.forEach(threads, nbSpurs, spurSearch);
+			}else{
+				for(int i=0; i<nbSpurs; i++){
+					spurSearch.accept(i);
 				}
-				
-				//restore graph
-				for(E e : removedEdges){
-                    g.addEdge(e.getV1(), e.getV2(), e);
-				}
-
+			}
+			//add path from root to spur + path from spur to target to the list of potential shortest path
+			for(BioPath<V,E> finalPath : spurPaths){
+				if(finalPath!=null) b.add(finalPath);
 			}
 			
 			if(b.isEmpty()) break;
@@ -194,6 +236,76 @@ public class KShortestPath<V extends BioEntity, E extends Edge<V>, G extends Bio
 		}
 		return kPaths;
 	}
+
+	/**
+	 * Compute the path deviating from a previous path at a given spur node, following the shortest path from the spur node to
+	 * the target that doesn't use the next edge of any already found path sharing the same root path.
+	 *
+	 * @param csr the graph snapshot
+	 * @param w the search workspace
+	 * @param kPaths the already found paths
+	 * @param previousPath the path to deviate from
+	 * @param i the position of the spur node in the previous path
+	 * @param target the target vertex index
+	 * @return the deviation path, or null if none exists
+	 */
+	private BioPath<V,E> getDeviation(CsrGraph<V, E> csr, Workspace w, List<BioPath<V,E>> kPaths, BioPath<V,E> previousPath, int i, int target){
+		List<V> previousPathVertex = previousPath.getVertexList();
+		ArrayList<Integer> removedEdges = new ArrayList<>();
+		
+		V spur = previousPathVertex.get(i);
+		
+		//store path from source to spur node
+		List<V> rootPathVertex = previousPathVertex.subList(0, i+1);
+		
+		for(GraphPath<V, E> p : kPaths){
+			List<V> pVertexList = p.getVertexList();
+			
+			//remove spur node's outgoing edges if already present in a shortest path from previous iteration sharing same path to spur
+			if(pVertexList.size()>i+1 && (pVertexList.subList(0, i+1)).equals(rootPathVertex)){
+				for(E e : p.getEdgeList()){
+					if(e.getV1().equals(pVertexList.get(i)) && e.getV2().equals(pVertexList.get(i+1))){
+						removeArcs(csr, e, w.removedArcs, removedEdges);
+					}
+				}
+			}
+		}
+		
+		//compute the shortest path from spur node to target on the updated graph
+		w.search.run(csr.indexOf(spur), target, w.removedArcs);
+		BioPath<V,E> spurPath = w.search.getPath(target);
+		
+		//restore graph
+		for(int arc : removedEdges){
+			w.removedArcs[arc] = false;
+		}
+		
+		if(spurPath==null || spurPath.isEmpty()) return null;
+		BioPath<V,E> rootPath = previousPath.getSubPath(previousPath.getStartVertex(),spur);
+		return rootPath.appendPath(spurPath);
+	}
+
+	/**
+	 * Mark the arcs corresponding to an edge as removed, in both directions if the snapshot is undirected
+	 *
+	 * @param csr the graph snapshot
+	 * @param e the edge
+	 * @param removedArcs the removed arcs mask
+	 * @param removed the list of newly removed arcs positions
+	 */
+	private void removeArcs(CsrGraph<V, E> csr, E e, boolean[] removedArcs, List<Integer> removed){
+		removeArcs(csr, csr.indexOf(e.getV1()), e, removedArcs, removed);
+		if(csr.isUndirected()) removeArcs(csr, csr.indexOf(e.getV2()), e, removedArcs, removed);
+	}
+
+	private void removeArcs(CsrGraph<V, E> csr, int v, E e, boolean[] removedArcs, List<Integer> removed){
+		for(int arc=csr.arcStart(v); arc<csr.arcEnd(v); arc++){
+			if(csr.getEdge(arc)==e && !removedArcs[arc]){
+				removedArcs[arc] = true;
+				removed.add(arc);
+			}
+		}
+	}
 	
 	/**
 	 * return all the k-shortest paths in the given graph
@@ -201,18 +313,20 @@ public class KShortestPath<V extends BioEntity, E extends Edge<V>, G extends Bio
 	 * @return the k-shortest paths
 	 */
 	public Set<BioPath<V,E>> getAllShortestPaths(int k){
-		HashSet<BioPath<V, E>> paths = new HashSet<>();
-		
-		KShortestPath<V, E, G> pathComputor = new KShortestPath<>(g);
-		
-		for(V v1 : g.vertexSet()){
-			for(V v2 : g.vertexSet()){
-				if(v1!=v2){
-					Collection<BioPath<V,E>> ksp = pathComputor.getKShortest(v1, v2, k);
-					if(!ksp.isEmpty()) paths.addAll(ksp);
-				}
-			}
+		KShortestPath<V, E, G> pathComputor = new KShortestPath<>(g).setThreads(threads);
+		return new HashSet<>(pathComputor.getKShortestPathsUnionList(g.vertexSet(), k));
+	}
+
+	/**
+	 * The search buffers and removed arcs mask used by one thread
+	 */
+	private class Workspace {
+		private final SingleSourceShortestPath<V, E> search;
+		private final boolean[] removedArcs;
+
+		private Workspace(CsrGraph<V, E> csr){
+			search = new SingleSourceShortestPath<>(csr);
+			removedArcs = new boolean[csr.numArcs()];
 		}
-		return paths;
 	}
 }
@@ -38,17 +38,14 @@ package fr.inrae.toulouse.metexplore.met4j_graph.computation.connect;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioEntity;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.BioGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.BioPath;
-import fr.inrae.toulouse.metexplore.met4j_graph.core.BioPathUtils;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.CsrGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.compressed.CompressedGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.compressed.PathEdge;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.BioMatrix;
-import org.jgrapht.GraphPath;
-import org.jgrapht.alg.interfaces.ManyToManyShortestPathsAlgorithm;
-import org.jgrapht.alg.shortestpath.DijkstraManyToManyShortestPaths;
-import org.jgrapht.graph.AsUndirectedGraph;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Class to use the shortest paths in a graph
@@ -86,82 +83,38 @@ public class ShortestPath<V extends BioEntity,E extends Edge<V>, G extends BioGr
 		asUndirected = !directed;
 	}
 
+	/** The maximum number of sources searched at once when computing shortest paths unions, 0 for no limit */
+	private int batchSize = 0;
+
+	/** The point-to-point search workspace of each thread, kept between computations while the graph is unchanged */
+	private final ThreadLocal<BidirectionalShortestPath<V, E>> workspace = new ThreadLocal<>();
+
 	/**
-	 * compute the shortest paths (or lightest paths if the graph is weighted) between 2 nodes
+	 * Set the maximum number of sources searched at once when computing shortest paths unions or metric closures, which bounds
+	 * the memory used by shortest path trees. By default, all sources are searched at once.
 	 *
-	 * @param start the start vertex
-	 * @param end the end vertex
-	 * @return the list of edges involved in the shortest path
-	 * @throws java.lang.IllegalArgumentException if any.
-	 * @throws java.lang.IllegalArgumentException if any.
+	 * @param batchSize the number of sources per batch, 0 for no limit
+	 * @return this instance
+	 * @see AllPairsShortestPath#setBatchSize(int)
 	 */
-	public BioPath<V, E> getShortest(V start, V end) throws IllegalArgumentException{
-		if(asUndirected) return getShortestAsUndirected(start,end);
-		if(!g.containsVertex(start)){
-			throw(new IllegalArgumentException("Error: start node "+start.getId()+" not found in graph"));
-		}
-		if(!g.containsVertex(end)){
-			throw(new IllegalArgumentException("Error: end node "+end.getId()+" not found in graph"));
-		}
-
-		HashMap<V,E> incoming = new HashMap<>();
-		HashMap<V,Double> distMap = new HashMap<>();
-		Set<V> unseen = new HashSet<>();
-		Set<V> seen = new HashSet<>();
-
-		//init dist from start
-		for(V v : g.vertexSet()){
-			distMap.put(v, Double.POSITIVE_INFINITY);
-		}
-
-		unseen.add(start);
-		distMap.put(start,0.0);
-
-
-		while (!unseen.isEmpty()) {
-
-			//get the closest node from the start vertex
-			V n = getNearest(distMap,unseen);
-			unseen.remove(n);
-			seen.add(n);
-
-
-			//add current nodes's successor to the list of node to process, if not already seen
-			//	skip outgoing edges from reaction already used in path
-			for(E e : g.outgoingEdgesOf(n)){
-				V successor = e.getV2();
-				if(successor!=end && !seen.contains(successor)) unseen.add(successor);
-				//store incoming edge minimizing the distance from start node
-				//	update distance from start node
-				double weight = g.getEdgeWeight(e);
-				if(weight<0 || Double.isNaN(weight)) throw(new IllegalArgumentException("Error: edge weights must be real positive values ("+e.getV1()+" -> "+e.getV2()+" : "+weight+")"));
-				double dist = distMap.get(n)+weight;
-				if(distMap.get(successor) > dist){
-					distMap.put(successor, dist);
-					incoming.put(successor, e);
-				}
-			}
-		}
-		if(!incoming.containsKey(end)) return null;
+	public ShortestPath<V, E, G> setBatchSize(int batchSize) {
+		if(batchSize<0) throw new IllegalArgumentException("batch size must be positive");
+		this.batchSize = batchSize;
+		return this;
+	}
 
-		//backtracking
-		double weight = 0.0;
-		List<E> sp = new ArrayList<>();
-		V currentVertex = end;
-		while(currentVertex!=start){
-			E e = incoming.get(currentVertex);
-			weight+= g.getEdgeWeight(e);
-			sp.add(e);
-			incoming.remove(currentVertex);
-			currentVertex=e.getV1();
-			if(incoming.isEmpty() && currentVertex!=start ) return null;
-		}
-		Collections.reverse(sp);
-		return new BioPath<>(g, start, end, sp, weight);
+	/**
+	 * Build a compressed sparse row snapshot of the graph, with edges traversable in both directions if the graph is considered as undirected.
+	 * A new snapshot is built at each computation, so changes in the graph between two computations are taken into account.
+	 *
+	 * @return the graph snapshot
+	 */
+	protected CsrGraph<V, E> getSnapshot(){
+		return new CsrGraph<>(g, asUndirected);
 	}
 
 	/**
-	 * compute the shortest paths (or lightest paths if the graph is weighted) between 2 nodes as if the graph was undirected
+	 * compute the shortest paths (or lightest paths if the graph is weighted) between 2 nodes
 	 *
 	 * @param start the start vertex
 	 * @param end the end vertex
@@ -169,107 +122,37 @@ public class ShortestPath<V extends BioEntity,E extends Edge<V>, G extends BioGr
 	 * @throws java.lang.IllegalArgumentException if any.
 	 * @throws java.lang.IllegalArgumentException if any.
 	 */
-	private BioPath<V, E> getShortestAsUndirected(V start, V end) throws IllegalArgumentException{
+	public BioPath<V, E> getShortest(V start, V end) throws IllegalArgumentException{
 		if(!g.containsVertex(start)){
 			throw(new IllegalArgumentException("Error: start node "+start.getId()+" not found in graph"));
 		}
 		if(!g.containsVertex(end)){
 			throw(new IllegalArgumentException("Error: end node "+end.getId()+" not found in graph"));
 		}
+		if(start==end) return null;
 
-		HashMap<V,E> incoming = new HashMap<>();
-		HashMap<V,Double> distMap = new HashMap<>();
-		Set<V> unseen = new HashSet<>();
-		Set<V> seen = new HashSet<>();
-
-		//init dist from start
-		for(V v : g.vertexSet()){
-			distMap.put(v, Double.POSITIVE_INFINITY);
-		}
-
-		unseen.add(start);
-		distMap.put(start,0.0);
-
-		while (!unseen.isEmpty()) {
-
-			//get the closest node from the start vertex
-			V n = getNearest(distMap,unseen);
-			unseen.remove(n);
-			seen.add(n);
-
-
-			//add current nodes's successor to the list of node to process, if not already seen
-			//	skip outgoing edges from reaction already used in path
-			for(E e : g.outgoingEdgesOf(n)){
-				V successor = e.getV2();
-				if(successor!=end && !seen.contains(successor)) unseen.add(successor);
-				//store incoming edge minimizing the distance from start node
-				//	update distance from start node
-				double weight = g.getEdgeWeight(e);
-				if(weight<0 || Double.isNaN(weight)) throw(new IllegalArgumentException("Error: edge weights must be real positive values ("+e.getV1()+" -> "+e.getV2()+" : "+weight+")"));
-				double dist = distMap.get(n)+weight;
-				if(distMap.get(successor) > dist){
-					distMap.put(successor, dist);
-					incoming.put(successor, e);
-				}
-			}
-			for(E e : g.incomingEdgesOf(n)){
-				V successor = e.getV1();
-				if(successor!=end && !seen.contains(successor)) unseen.add(successor);
-				//store incoming edge minimizing the distance from start node
-				//	update distance from start node
-				double weight = g.getEdgeWeight(e);
-				if(weight<0 || Double.isNaN(weight)) throw(new IllegalArgumentException("Error: edge weights must be real positive values ("+e.getV1()+" -> "+e.getV2()+" : "+weight+")"));
-				double dist = distMap.get(n)+weight;
-				if(distMap.get(successor) > dist){
-					distMap.put(successor, dist);
-					incoming.put(successor, e);
-				}
-			}
-		}
-		if(!incoming.containsKey(end)) return null;
-
-		//backtracking
-		double weight = 0.0;
-		List<E> sp = new ArrayList<>();
-		V currentVertex = end;
-		while(currentVertex!=start){
-			E e = incoming.get(currentVertex);
-			weight+= g.getEdgeWeight(e);
-			sp.add(e);
-			incoming.remove(currentVertex);
-			if(currentVertex==e.getV1()){
-				currentVertex=e.getV2();
-			}else{
-				currentVertex=e.getV1();
-			}
-			if(incoming.isEmpty() && currentVertex!=start ) return null;
-		}
-		Collections.reverse(sp);
-		return new BioPath<>(g, start, end, sp, weight);
+		BidirectionalShortestPath<V, E> search = getWorkspace();
+		CsrGraph<V, E> csr = search.getGraph();
+		search.run(csr.indexOf(start), csr.indexOf(end));
+		return search.getPath();
 	}
 
 	/**
-	 * get the nearest vertex to a given seed node from a list of node to check
+	 * Get the point-to-point search workspace of the calling thread, which is rebuilt only if the graph has been modified or the
+	 * directedness changed since the previous computation. Each thread has its own workspace, so point-to-point searches can
+	 * be run concurrently on the same instance as long as the graph is not modified.
 	 *
-	 * @param distMap the map containing the distance between seed node and each node in graph
-	 * @param unseen the list of node to check
-	 * @return the nearest vertex
+	 * @return the search workspace
 	 */
-	protected V getNearest(HashMap<V,Double> distMap, Collection<V> unseen){
-		double mindist = Double.POSITIVE_INFINITY;
-		V nearest = null;
-		for(V v : unseen){
-			double dist = distMap.get(v);
-			if(dist<mindist){
-				mindist=dist;
-				nearest=v;
-			}
+	private BidirectionalShortestPath<V, E> getWorkspace(){
+		BidirectionalShortestPath<V, E> search = workspace.get();
+		if(search==null || !search.getGraph().isUpToDate() || search.getGraph().isUndirected()!=asUndirected){
+			search = new BidirectionalShortestPath<>(getSnapshot());
+			workspace.set(search);
 		}
-		return nearest;
+		return search;
 	}
 
-
 	/**
 	 * compute the list of edges from the union of all shortest paths between all nodes in a given set
 	 *
@@ -296,24 +179,21 @@ public class ShortestPath<V extends BioEntity,E extends Edge<V>, G extends BioGr
 	 * @return the list of edges involved in the shortest path union
 	 */
 	public List<BioPath<V,E>> getShortestPathsUnionList(Set<V> startNodes, Set<V> targetNodes){
-		if(!g.vertexSet().containsAll(startNodes)){
-			throw(new IllegalArgumentException("Error: start node not found in graph"));
-		}
-		if(!g.vertexSet().containsAll(targetNodes)){
-			throw(new IllegalArgumentException("Error: end node not found in graph"));
-		}
-		DijkstraManyToManyShortestPaths<V,E> spComputor = asUndirected ? new DijkstraManyToManyShortestPaths<>(new AsUndirectedGraph<V,E>(g)) : new DijkstraManyToManyShortestPaths<>(g);
-		ManyToManyShortestPathsAlgorithm.ManyToManyShortestPaths<V, E> paths = spComputor.getManyToManyPaths(startNodes,targetNodes);
-		List<BioPath<V,E>> outputPaths = new ArrayList<>();
-		for(V start : startNodes){
-			for(V end : targetNodes){
-				if(start!=end){
-					GraphPath<V, E> p = paths.getPath(start,end);
-					if(p!=null) outputPaths.add(new BioPath<>(p));
-				}
-			}
-		}
-		return outputPaths;
+		List<BioPath<V,E>> paths = new ArrayList<>();
+		forEachShortestPath(startNodes, targetNodes, paths::add);
+		return paths;
+	}
+
+	/**
+	 * Stream the shortest paths between sources and target nodes, without keeping them. Searches from sources run in parallel,
+	 * by batches if a batch size is set, and each path is built just before being passed to the action.
+	 *
+	 * @param startNodes the start nodes
+	 * @param targetNodes the target nodes
+	 * @param action the action to perform on each path
+	 */
+	public void forEachShortestPath(Set<V> startNodes, Set<V> targetNodes, Consumer<BioPath<V,E>> action){
+		new AllPairsShortestPath<>(g, !asUndirected).setBatchSize(batchSize).forEachPath(startNodes, targetNodes, action);
 	}
 
 	/**
@@ -334,8 +214,7 @@ public class ShortestPath<V extends BioEntity,E extends Edge<V>, G extends BioGr
 				cg.addVertex(v);
 			}
 		}
-		List<BioPath<V,E>> shortestPaths = getShortestPathsUnionList(sources,targets);
-		for(BioPath<V,E> sp : shortestPaths){
+		forEachShortestPath(sources, targets, sp -> {
 			V v1 = sp.getStartVertex();
 			V v2 = sp.getEndVertex();
 			PathEdge<V, E> e = new PathEdge<>(v1, v2, sp);
@@ -345,7 +224,7 @@ public class ShortestPath<V extends BioEntity,E extends Edge<V>, G extends BioGr
 			}else{
 				cg.setEdgeWeight(e,sp.getLength());
 			}
-		}
+		});
 
 		return cg;
 	}
@@ -358,22 +237,15 @@ public class ShortestPath<V extends BioEntity,E extends Edge<V>, G extends BioGr
 	 * @return the minimum shortest path distance
 	 */
 	public HashMap<V, Double> getMinSpDistance(Set<V> sources, Set<V> targets){
-		CompressedGraph<V, E, G> closureGraph = getMetricClosureGraph(targets,sources,true);
+		AllPairsShortestPath<V, E, G> spComputor = new AllPairsShortestPath<>(g, !asUndirected);
+		spComputor.compute(targets, sources);
 		HashMap<V, Double> minSpDist = new HashMap<>();
 		for(V node : sources){
-			if(closureGraph.containsVertex(node)){
-				Set<PathEdge<V, E>> closureEdges = closureGraph.incomingEdgesOf(node);
-				if(closureEdges.isEmpty()){
-					minSpDist.put(node, Double.POSITIVE_INFINITY);
-				}else{
-					double min = Double.MAX_VALUE;
-					for(PathEdge<V, E> e : closureEdges){
-						double w = closureGraph.getEdgeWeight(e);
-						if(w<min) min=w;
-					}
-					minSpDist.put(node, min);
-				}
+			double min = Double.POSITIVE_INFINITY;
+			for(V t : targets){
+				if(t!=node) min = Math.min(min, spComputor.getDistance(t, node));
 			}
+			minSpDist.put(node, min);
 		}
 		return minSpDist;
 	}
@@ -386,21 +258,20 @@ public class ShortestPath<V extends BioEntity,E extends Edge<V>, G extends BioGr
 	 * @return the average shortest path distance
 	 */
 	public HashMap<V, Double> getAverageSpDistance(Set<V> sources, Set<V> targets){
-		CompressedGraph<V, E, G> closureGraph = getMetricClosureGraph(targets,sources,true);
+		AllPairsShortestPath<V, E, G> spComputor = new AllPairsShortestPath<>(g, !asUndirected);
+		spComputor.compute(targets, sources);
 		HashMap<V, Double> avgSpDist = new HashMap<>();
 		for(V node : sources){
-			if(closureGraph.containsVertex(node)){
-				Set<PathEdge<V, E>> closureEdges = closureGraph.incomingEdgesOf(node);
-				if(closureEdges.isEmpty()){
-					avgSpDist.put(node, Double.POSITIVE_INFINITY);
-				}else{
-					double sum = 0;
-					for(PathEdge<V, E> e : closureEdges){
-						sum+=closureGraph.getEdgeWeight(e);
-					}
-					avgSpDist.put(node, sum/(closureGraph.incomingEdgesOf(node).size()));
+			double sum = 0;
+			int count = 0;
+			for(V t : targets){
+				double d = t!=node ? spComputor.getDistance(t, node) : Double.POSITIVE_INFINITY;
+				if(d!=Double.POSITIVE_INFINITY){
+					sum+=d;
+					count++;
 				}
 			}
+			avgSpDist.put(node, count==0 ? Double.POSITIVE_INFINITY : sum/count);
 		}
 		return avgSpDist;
 	}
@@ -410,7 +281,7 @@ public class ShortestPath<V extends BioEntity,E extends Edge<V>, G extends BioGr
 	 * @return a distance matrix
 	 */
 	public BioMatrix getShortestPathDistanceMatrix(){
-		return BioPathUtils.getDistanceMatrixFromPaths(this.getAllShortestPaths());
+		return new AllPairsShortestPath<>(g, !asUndirected).getShortestPathDistanceMatrix();
 	}
 
 	/**
@@ -420,12 +291,7 @@ public class ShortestPath<V extends BioEntity,E extends Edge<V>, G extends BioGr
 	 * @return a distance matrix
 	 */
 	public BioMatrix getShortestPathDistanceMatrix(Set<V> sources, Set<V> targets){
-		List<BioPath<V, E>> paths = this.getShortestPathsUnionList(sources, targets);
-		TreeSet<V> orderedSource = new TreeSet<>(Comparator.comparing(V::getId));
-		orderedSource.addAll(sources);
-		TreeSet<V> orderedTarget = new TreeSet<>(Comparator.comparing(V::getId));
-		orderedTarget.addAll(targets);
-		return BioPathUtils.getDistanceMatrixFromPaths(orderedSource,orderedTarget,paths);
+		return new AllPairsShortestPath<>(g, !asUndirected).getShortestPathDistanceMatrix(sources, targets);
 	}
 
 }
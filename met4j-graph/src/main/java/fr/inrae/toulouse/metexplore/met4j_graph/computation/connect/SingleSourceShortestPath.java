@@ -0,0 +1,404 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.inrae.toulouse.metexplore.met4j_graph.computation.connect;
+
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioEntity;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.BioPath;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.CsrGraph;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reusable single source shortest path search on a {@link CsrGraph}.
+ * Uses a breadth-first traversal if the graph is unweighted, and Dijkstra's algorithm with an indexed binary heap otherwise.
+ * All buffers are allocated once, and only entries touched by a search are reset by the next one, so a same instance can
+ * be used for many successive searches. An instance is not thread-safe: use one per thread.
+ *
+ * @param <V> the vertex type
+ * @param <E> the edge type
+ * @author clement
+ */
+public class SingleSourceShortestPath<V extends BioEntity, E extends Edge<V>> {
+
+	/** The graph snapshot. */
+	private final CsrGraph<V, E> csr;
+
+	/** distance from source, by vertex index */
+	private final double[] dist;
+
+	/** arc used to reach each vertex, -1 if none */
+	private final int[] pred;
+
+	/** number of distinct shortest paths from source, by vertex index */
+	private final double[] sigma;
+
+	/** the heap (or queue in breadth-first mode) of vertex indexes */
+	private final int[] heap;
+
+	/** the position of each vertex in the heap, -1 if absent */
+	private final int[] heapPos;
+
+	/** vertices reached by the last search, in the order they have been settled */
+	private final int[] settled;
+
+	/** vertices touched by the last search, to be reset */
+	private final int[] touched;
+
+	private int heapSize = 0;
+	private int nSettled = 0;
+	private int nTouched = 0;
+	private int source = -1;
+
+	/** arcs ignored by the current search, null if none */
+	private boolean[] excludedArcs;
+
+	/**
+	 * Instantiates a new search workspace.
+	 *
+	 * @param csr the graph snapshot
+	 */
+	public SingleSourceShortestPath(CsrGraph<V, E> csr){
+		this.csr = csr;
+		int n = csr.numVertices();
+		dist = new double[n];
+		pred = new int[n];
+		sigma = new double[n];
+		heap = new int[n];
+		heapPos = new int[n];
+		settled = new int[n];
+		touched = new int[n];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		Arrays.fill(pred, -1);
+		Arrays.fill(heapPos, -1);
+	}
+
+	/**
+	 * @return the graph snapshot
+	 */
+	public CsrGraph<V, E> getGraph() {
+		return csr;
+	}
+
+	/**
+	 * Compute shortest paths from a source to all reachable vertices.
+	 *
+	 * @param source the source vertex index
+	 */
+	public void run(int source){
+		run(source, -1);
+	}
+
+	/**
+	 * Compute shortest paths from a source, stopping as soon as the distance to the target is final.
+	 *
+	 * @param source the source vertex index
+	 * @param target the target vertex index, or -1 to reach all vertices
+	 */
+	public void run(int source, int target){
+		run(source, target, null);
+	}
+
+	/**
+	 * Compute shortest paths from a source, ignoring some arcs, stopping as soon as the distance to the target is final.
+	 * This allows to search paths in a subgraph without modifying the graph, as in k-shortest paths algorithms.
+	 *
+	 * @param source the source vertex index
+	 * @param target the target vertex index, or -1 to reach all vertices
+	 * @param excludedArcs for each arc position, true if the arc can't be used, or null to use all arcs
+	 */
+	public void run(int source, int target, boolean[] excludedArcs){
+		reset();
+		this.source = source;
+		this.excludedArcs = excludedArcs;
+		touch(source, 0.0, -1);
+		sigma[source] = 1.0;
+		if(csr.isUnweighted()){
+			bfs(target);
+		}else{
+			dijkstra(target);
+		}
+	}
+
+	private void reset(){
+		for(int k=0; k<nTouched; k++){
+			int v = touched[k];
+			dist[v] = Double.POSITIVE_INFINITY;
+			pred[v] = -1;
+			sigma[v] = 0.0;
+			heapPos[v] = -1;
+		}
+		nTouched = 0;
+		nSettled = 0;
+		heapSize = 0;
+	}
+
+	private void touch(int v, double d, int arc){
+		if(dist[v]==Double.POSITIVE_INFINITY) touched[nTouched++] = v;
+		dist[v] = d;
+		pred[v] = arc;
+	}
+
+	private void bfs(int target){
+		int head = 0;
+		heap[heapSize++] = source;
+		while(head<heapSize){
+			int u = heap[head++];
+			settled[nSettled++] = u;
+			if(u==target) return;
+			double du = dist[u]+1.0;
+			for(int arc=csr.arcStart(u); arc<csr.arcEnd(u); arc++){
+				if(excludedArcs!=null && excludedArcs[arc]) continue;
+				int v = csr.target(arc);
+				if(dist[v]==Double.POSITIVE_INFINITY){
+					touch(v, du, arc);
+					sigma[v] = sigma[u];
+					heap[heapSize++] = v;
+				}else if(dist[v]==du){
+					sigma[v]+=sigma[u];
+				}
+			}
+		}
+	}
+
+	private void dijkstra(int target){
+		push(source);
+		while(heapSize>0){
+			int u = pop();
+			settled[nSettled++] = u;
+			if(u==target) return;
+			double du = dist[u];
+			for(int arc=csr.arcStart(u); arc<csr.arcEnd(u); arc++){
+				if(excludedArcs!=null && excludedArcs[arc]) continue;
+				double w = csr.weight(arc);
+				if(w<0 || Double.isNaN(w)){
+					throw new IllegalArgumentException("Error: edge weights must be real positive values ("+csr.getEdge(arc).getV1()+" -> "+csr.getEdge(arc).getV2()+" : "+w+")");
+				}
+				int v = csr.target(arc);
+				double dv = du+w;
+				//with non-negative weights, settled vertices can't be improved
+				if(dv<dist[v]){
+					touch(v, dv, arc);
+					sigma[v] = sigma[u];
+					if(heapPos[v]>=0){
+						siftUp(heapPos[v]);
+					}else{
+						push(v);
+					}
+				}else if(dv==dist[v] && heapPos[v]>=0){
+					sigma[v]+=sigma[u];
+				}
+			}
+		}
+	}
+
+	private void push(int v){
+		heap[heapSize] = v;
+		heapPos[v] = heapSize;
+		siftUp(heapSize++);
+	}
+
+	private int pop(){
+		int top = heap[0];
+		heapSize--;
+		if(heapSize>0){
+			heap[0] = heap[heapSize];
+			heapPos[heap[0]] = 0;
+			siftDown(0);
+		}
+		heapPos[top] = -1;
+		return top;
+	}
+
+	private void siftUp(int i){
+		int v = heap[i];
+		double d = dist[v];
+		while(i>0){
+			int parent = (i-1) >>> 1;
+			int p = heap[parent];
+			if(dist[p]<=d) break;
+			heap[i] = p;
+			heapPos[p] = i;
+			i = parent;
+		}
+		heap[i] = v;
+		heapPos[v] = i;
+	}
+
+	private void siftDown(int i){
+		int v = heap[i];
+		double d = dist[v];
+		int half = heapSize >>> 1;
+		while(i<half){
+			int child = 2*i+1;
+			int c = heap[child];
+			int right = child+1;
+			if(right<heapSize && dist[heap[right]]<dist[c]){
+				child = right;
+				c = heap[child];
+			}
+			if(d<=dist[c]) break;
+			heap[i] = c;
+			heapPos[c] = i;
+			i = child;
+		}
+		heap[i] = v;
+		heapPos[v] = i;
+	}
+
+	/**
+	 * @return the source of the last search
+	 */
+	public int getSource() {
+		return source;
+	}
+
+	/**
+	 * Gets the distance from the source of the last search
+	 *
+	 * @param v the vertex index
+	 * @return the distance, or positive infinity if the vertex has not been reached
+	 */
+	public double getDistance(int v){
+		return dist[v];
+	}
+
+	/**
+	 * Gets the arc used to reach a vertex in the shortest path tree of the last search
+	 *
+	 * @param v the vertex index
+	 * @return the arc position, or -1 for the source and unreached vertices
+	 */
+	public int getPredecessorArc(int v){
+		return pred[v];
+	}
+
+	/**
+	 * Gets the number of distinct shortest paths from the source of the last search to a given vertex.
+	 * Ties are detected by exact equality of the summed weights. If the search has been stopped early, the count is only
+	 * complete for settled vertices.
+	 *
+	 * @param v the vertex index
+	 * @return the number of shortest paths, 0 if the vertex has not been reached
+	 */
+	public double getNumberOfShortestPaths(int v){
+		return sigma[v];
+	}
+
+	/**
+	 * @return the number of vertices settled by the last search
+	 */
+	public int getNumberOfSettled(){
+		return nSettled;
+	}
+
+	/**
+	 * Gets the vertices settled by the last search, by non-decreasing distance from the source
+	 *
+	 * @param k the rank
+	 * @return the k-th settled vertex index
+	 */
+	public int getSettled(int k){
+		return settled[k];
+	}
+
+	/**
+	 * Copy the distances of the last search for a list of targets into a buffer
+	 *
+	 * @param targets the targets vertex indexes
+	 * @param buffer the buffer to fill
+	 * @param offset the position in buffer corresponding to the first target
+	 */
+	public void copyDistances(int[] targets, double[] buffer, int offset){
+		for(int k=0; k<targets.length; k++){
+			buffer[offset+k] = dist[targets[k]];
+		}
+	}
+
+	/**
+	 * Copy the shortest path tree of the last search into a buffer
+	 *
+	 * @param buffer the buffer to fill
+	 * @param offset the position in buffer corresponding to the first vertex
+	 */
+	public void copyPredecessors(int[] buffer, int offset){
+		System.arraycopy(pred, 0, buffer, offset, pred.length);
+	}
+
+	/**
+	 * Build the shortest path from the source of the last search to a given target
+	 *
+	 * @param target the target vertex index
+	 * @return the path, or null if the target has not been reached
+	 */
+	public BioPath<V, E> getPath(int target){
+		return buildPath(csr, source, target, pred, 0);
+	}
+
+	/**
+	 * Build a path from a shortest path tree stored as predecessor arcs
+	 *
+	 * @param csr the graph snapshot
+	 * @param source the source vertex index
+	 * @param target the target vertex index
+	 * @param pred the predecessor arcs buffer
+	 * @param offset the position in buffer corresponding to the first vertex
+	 * @param <V> the vertex type
+	 * @param <E> the edge type
+	 * @return the path, or null if the target is unreachable
+	 */
+	static <V extends BioEntity, E extends Edge<V>> BioPath<V, E> buildPath(CsrGraph<V, E> csr, int source, int target, int[] pred, int offset){
+		List<Integer> arcs = new ArrayList<>();
+		int v = target;
+		while(v!=source){
+			int arc = pred[offset+v];
+			if(arc<0) return null;
+			arcs.add(arc);
+			v = csr.source(arc);
+		}
+		Collections.reverse(arcs);
+		List<E> edges = new ArrayList<>(arcs.size());
+		double weight = 0.0;
+		for(int arc : arcs){
+			edges.add(csr.getEdge(arc));
+			weight+=csr.weight(arc);
+		}
+		return new BioPath<>(csr.getGraph(), csr.getVertex(source), csr.getVertex(target), edges, weight);
+	}
+}
@@ -37,6 +37,7 @@ package fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.heuristic;
 
 import fr.inrae.toulouse.metexplore.met4j_chemUtils.chemicalSimilarity.FingerprintBuilder;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.similarity.PackedFingerprint;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.similarity.SimilarityComputor;
 
 import java.util.BitSet;
@@ -49,7 +50,7 @@ import java.util.HashMap;
  */
 public class ChemicalSimilarityHeuristic implements AStarHeuristic<BioMetabolite> {
 	
-	private final HashMap<BioMetabolite, BitSet> fingerpMap;
+	private final HashMap<BioMetabolite, PackedFingerprint> fingerpMap;
 	private final HashMap<BioMetabolite, HashMap<BioMetabolite, Double>> distMap;
 	
 	/**
@@ -75,8 +76,8 @@ public class ChemicalSimilarityHeuristic implements AStarHeuristic<BioMetabolite
             distMap.put(node, new HashMap<>());
 		}
 		
-		BitSet fingerprint1= getFingerprint(node);
-		BitSet fingerprint2= getFingerprint(end);
+		PackedFingerprint fingerprint1= getFingerprint(node);
+		PackedFingerprint fingerprint2= getFingerprint(end);
 		try {
 //			return 1-SimilarityComputor.getCosineCoeff(fingerprint1, fingerprint2);
 //			return 1-SimilarityComputor.getDiceCoeff(fingerprint1, fingerprint2);
@@ -91,14 +92,15 @@ public class ChemicalSimilarityHeuristic implements AStarHeuristic<BioMetabolite
 		}
 	}
 	
-	private BitSet getFingerprint(BioMetabolite e){
+	private PackedFingerprint getFingerprint(BioMetabolite e){
 		if(fingerpMap.containsKey(e))return fingerpMap.get(e);
 		//BitSet fingerprint=FingerprintBuilder.getMACCSFingerprint(e);
 		//BitSet fingerprint=FingerprintBuilder.getKlekotaRothFingerprint(e);
 		//BitSet fingerprint=FingerprintBuilder.getPubchemFingerprint(e);
 		//BitSet fingerprint=FingerprintBuilder.getEStateFingerprint(e);
 		//BitSet fingerprint=FingerprintBuilder.getSubstructureFingerprint(e);
-		BitSet fingerprint=FingerprintBuilder.getExtendedFingerprint(e);
+		BitSet bits=FingerprintBuilder.getExtendedFingerprint(e);
+		PackedFingerprint fingerprint = bits==null ? null : new PackedFingerprint(bits);
         fingerpMap.put(e, fingerprint);
 		return fingerprint;
 	}
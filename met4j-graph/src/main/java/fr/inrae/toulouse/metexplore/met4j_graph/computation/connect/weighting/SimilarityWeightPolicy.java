@@ -36,16 +36,19 @@
 package fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.weighting;
 
 import fr.inrae.toulouse.metexplore.met4j_chemUtils.chemicalSimilarity.FingerprintBuilder;
+import fr.inrae.toulouse.metexplore.met4j_chemUtils.chemicalSimilarity.FingerprintCache;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollections;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.WeightingPolicy;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.compound.CompoundGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.compound.ReactionEdge;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.similarity.PackedFingerprint;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.similarity.SimilarityComputor;
 
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -59,6 +62,7 @@ public class SimilarityWeightPolicy extends WeightingPolicy<BioMetabolite,Reacti
 	private boolean weightByMassContribution;
 	private boolean useDist;
 	private BioMetabolite global;
+	private FingerprintCache cache;
 	/** Constant <code>DEFAULT_FINGERPRINT=FingerprintBuilder.EXTENDED</code> */
 	public static final int DEFAULT_FINGERPRINT = FingerprintBuilder.EXTENDED;
 	
@@ -99,26 +103,23 @@ public class SimilarityWeightPolicy extends WeightingPolicy<BioMetabolite,Reacti
 	@Override
 	public void setWeight(CompoundGraph g) {
 //		noStructFilter(g);
-		FingerprintBuilder fingerprinter = new FingerprintBuilder(fingerprintType);
-		HashMap<String, BitSet> fingerPrintMap = new HashMap<>();
+		//computing finger-prints, once per compound
+		FingerprintCache fingerprints = cache!=null ? cache : new FingerprintCache(fingerprintType);
+		Set<BioMetabolite> compounds = new HashSet<>(g.vertexSet());
+		if(global !=null) compounds.add(global);
+		HashMap<String, PackedFingerprint> fingerPrintMap = new HashMap<>();
+		for(Map.Entry<BioMetabolite, BitSet> entry : fingerprints.getFingerprints(compounds).entrySet()){
+			if(entry.getValue()!=null) fingerPrintMap.put(entry.getKey().getId(), new PackedFingerprint(entry.getValue()));
+		}
+
 		for(ReactionEdge e:g.edgeSet()){
 			
 			//extract compound
 			BioMetabolite cpd1 = e.getV1();
 			BioMetabolite cpd2 = e.getV2();
-			
-			//computing finger-print
-			if (!fingerPrintMap.containsKey(cpd1.getId())){
-				BitSet fingerprint=fingerprinter.getFingerprint(cpd1);
-				fingerPrintMap.put(cpd1.getId(), fingerprint);
-			}
-			if (!fingerPrintMap.containsKey(cpd2.getId())){
-				BitSet fingerprint=fingerprinter.getFingerprint(cpd2);
-				fingerPrintMap.put(cpd2.getId(), fingerprint);
-			}
 	
-			BitSet fingerprint1 = fingerPrintMap.get(cpd1.getId());
-			BitSet fingerprint2 = fingerPrintMap.get(cpd2.getId());
+			PackedFingerprint fingerprint1 = fingerPrintMap.get(cpd1.getId());
+			PackedFingerprint fingerprint2 = fingerPrintMap.get(cpd2.getId());
 	
 			//computing similarity
 			if((fingerprint1 != null) && (fingerprint2 != null)){
@@ -235,6 +236,18 @@ public class SimilarityWeightPolicy extends WeightingPolicy<BioMetabolite,Reacti
         this.global = start;
 	}
 
+	/**
+	 * Use a fingerprint cache, allowing fingerprints to be reused between graphs or runs.
+	 * By default, fingerprints are only shared within a single weighting.
+	 *
+	 * @param cache the fingerprint cache, with the same fingerprint type as this policy
+	 * @throws IllegalArgumentException if the cache fingerprint type differs from this policy's
+	 */
+	public void setFingerprintCache(FingerprintCache cache) {
+		if(cache!=null && cache.getFingerprintType()!=fingerprintType) throw new IllegalArgumentException("fingerprint cache type differs from the policy fingerprint type");
+		this.cache = cache;
+	}
+
 	/**
 	 * <p>Setter for the field <code>fingerprintType</code>.</p>
 	 *
@@ -242,6 +255,7 @@ public class SimilarityWeightPolicy extends WeightingPolicy<BioMetabolite,Reacti
 	 */
 	public void setFingerprintType(int fingerprintType) {
 		this.fingerprintType = fingerprintType;
+		if(cache!=null && cache.getFingerprintType()!=fingerprintType) cache = null;
 	}
 
 	/**
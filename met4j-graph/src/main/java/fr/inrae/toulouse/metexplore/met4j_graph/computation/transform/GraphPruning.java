@@ -38,9 +38,10 @@ package fr.inrae.toulouse.metexplore.met4j_graph.computation.transform;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioEntity;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollection;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.BioGraph;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.CsrGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.concurrent.ParallelLoop;
 import org.jgrapht.Graph;
-import org.jgrapht.graph.EdgeReversedGraph;
 import org.jgrapht.traverse.DepthFirstIterator;
 
 import java.util.*;
@@ -61,19 +62,38 @@ public class GraphPruning<V extends BioEntity, E extends Edge<V>> {
 	/** The nodes of interest. */
 	public final Set<String> nodesOfInterest;
 
-//
-	/** The reach by matrix. */
+	/**
+	 * The reach by matrix, null until {@link #getReachByMatrix()} is called.
+	 * @deprecated use {@link #isReachedBy(BioEntity, BioEntity)} instead
+	 */
+	@Deprecated
 	public Integer[][] reachby;
 	
-	/** The reach matrix. */
+	/**
+	 * The reach matrix, null until {@link #getReachMatrix()} is called.
+	 * @deprecated use {@link #reaches(BioEntity, BioEntity)} instead
+	 */
+	@Deprecated
 	public Integer[][] reach;
+
+	/** The reach by bitsets: for each block of 64 nodes of interest, a word per vertex where each bit tells if the vertex is reached by the corresponding node of interest */
+	private long[][] reachByBits;
+
+	/** The reach bitsets: for each block of 64 nodes of interest, a word per vertex where each bit tells if the vertex reaches the corresponding node of interest */
+	private long[][] reachBits;
 	
-	/** The column index map. */
+	/** The column index map, for nodes of interest. */
 	HashMap<V,Integer> colIndexMap;
 	
-	/** The row index map. */
+	/** The row index map, for other nodes. */
 	HashMap<V,Integer> rowIndexMap;
-//	
+
+	/** The graph snapshot used to compute reachability */
+	private CsrGraph<V, E> csr;
+
+	/** the number of threads, 0 to use the common pool */
+	private int threads = 0;
+
 /**
  * Instantiates a new removes the unconnected nodes class.
  *
@@ -85,10 +105,22 @@ public GraphPruning(BioGraph<V, E> g, BioCollection<V> nodesOfInterest) {
 		this.nodesOfInterest=nodesOfInterest.getIds();
 	init();
 	}
-		
+
+	/**
+	 * Set the number of threads used for reachability computation and pruning. By default, the common fork-join pool is used.
+	 *
+	 * @param threads the number of threads, 0 to use the common pool
+	 * @return this instance
+	 */
+	public GraphPruning<V, E> setThreads(int threads) {
+		this.threads = ParallelLoop.checkThreads(threads);
+		return this;
+	}
 	
 	/**
 	 * Compute the links between nodes.
+	 * A node is reached by a node of interest if there is a path from the latter to the former that does not go through
+	 * another node of interest.
 	 */
 	public void init(){
 		colIndexMap = new HashMap<>();
@@ -106,10 +138,181 @@ public GraphPruning(BioGraph<V, E> g, BioCollection<V> nodesOfInterest) {
 				colIndex++;
 			}
 		}
-		
-		EdgeReversedGraph<V, E> g2 = new EdgeReversedGraph<>(g);
-		reachby = getReachMatrix(g, colIndexMap, rowIndexMap, false);
-		reach = getReachMatrix(g2, colIndexMap, rowIndexMap, true);
+
+		csr = new CsrGraph<>(g);
+		int n = csr.numVertices();
+		int[] sources = new int[colIndexMap.size()];
+		boolean[] ofInterest = new boolean[n];
+		for (Map.Entry<V, Integer> entry : colIndexMap.entrySet()){
+			int v = csr.indexOf(entry.getKey());
+			sources[entry.getValue()] = v;
+			ofInterest[v] = true;
+		}
+
+		//incoming arcs, by target
+		int[] inOffsets = new int[n+1];
+		for(int arc=0; arc<csr.numArcs(); arc++){
+			inOffsets[csr.target(arc)+1]++;
+		}
+		for(int v=0; v<n; v++){
+			inOffsets[v+1]+=inOffsets[v];
+		}
+		int[] inSources = new int[csr.numArcs()];
+		int[] cursor = Arrays.copyOf(inOffsets, n);
+		for(int arc=0; arc<csr.numArcs(); arc++){
+			inSources[cursor[csr.target(arc)]++] = csr.source(arc);
+		}
+		int[] outOffsets = new int[n+1];
+		int[] outTargets = new int[csr.numArcs()];
+		for(int v=0; v<n; v++){
+			outOffsets[v+1] = csr.arcEnd(v);
+		}
+		for(int arc=0; arc<csr.numArcs(); arc++){
+			outTargets[arc] = csr.target(arc);
+		}
+
+		int nbOfWords = (sources.length + 63) / 64;
+		long[][] reachByWords = new long[nbOfWords][];
+		long[][] reachWords = new long[nbOfWords][];
+		ParallelLoop.forEach(threads, nbOfWords, w -> {
+			reachByWords[w] = propagate(w, sources, ofInterest, outOffsets, outTargets);
+			reachWords[w] = propagate(w, sources, ofInterest, inOffsets, inSources);
+		});
+		reachByBits = reachByWords;
+		reachBits = reachWords;
+		reachby = null;
+		reach = null;
+	}
+
+	/**
+	 * Propagate reachability from a block of 64 nodes of interest at once, through nodes that are not of interest.
+	 *
+	 * @param w the block index
+	 * @param sources the nodes of interest vertex indexes
+	 * @param ofInterest if the vertex is a node of interest
+	 * @param offsets the position of the first neighbor of each vertex
+	 * @param neighbors the neighbors
+	 * @return a word per vertex, with bits set for the nodes of the block reaching it
+	 */
+	private static long[] propagate(int w, int[] sources, boolean[] ofInterest, int[] offsets, int[] neighbors){
+		int n = ofInterest.length;
+		long[] bits = new long[n];
+		int[] queue = new int[n];
+		boolean[] queued = new boolean[n];
+		int head = 0;
+		int size = 0;
+		for(int j = w*64; j<Math.min(sources.length, (w+1)*64); j++){
+			int s = sources[j];
+			long bit = 1L << (j & 63);
+			for(int k=offsets[s]; k<offsets[s+1]; k++){
+				int v = neighbors[k];
+				if(ofInterest[v]) continue;
+				bits[v] |= bit;
+				if(!queued[v]){
+					queued[v] = true;
+					queue[(head+size++)%n] = v;
+				}
+			}
+		}
+		while(size>0){
+			int u = queue[head];
+			head = (head+1)%n;
+			size--;
+			queued[u] = false;
+			for(int k=offsets[u]; k<offsets[u+1]; k++){
+				int v = neighbors[k];
+				if(ofInterest[v]) continue;
+				long b = bits[v] | bits[u];
+				if(b!=bits[v]){
+					bits[v] = b;
+					if(!queued[v]){
+						queued[v] = true;
+						queue[(head+size++)%n] = v;
+					}
+				}
+			}
+		}
+		return bits;
+	}
+
+	/**
+	 * Check if a node reaches a node of interest, without going through another node of interest
+	 *
+	 * @param v the node, not of interest
+	 * @param target the node of interest
+	 * @return true if a path exists
+	 */
+	public boolean reaches(V v, V target){
+		return get(reachBits, v, target);
+	}
+
+	/**
+	 * Check if a node is reached by a node of interest, without going through another node of interest
+	 *
+	 * @param v the node, not of interest
+	 * @param source the node of interest
+	 * @return true if a path exists
+	 */
+	public boolean isReachedBy(V v, V source){
+		return get(reachByBits, v, source);
+	}
+
+	/**
+	 * Get the reach matrix, with a row per node not of interest and a column per node of interest.
+	 * The matrix is expanded from the reachability bitsets on first call, and kept in {@link #reach}.
+	 *
+	 * @return the reach matrix, with 1 if the row node reaches the column node of interest, 0 otherwise
+	 * @deprecated use {@link #reaches(BioEntity, BioEntity)} instead
+	 */
+	@Deprecated
+	public Integer[][] getReachMatrix(){
+		if(reach==null) reach = toMatrix(reachBits);
+		return reach;
+	}
+
+	/**
+	 * Get the reach by matrix, with a row per node not of interest and a column per node of interest.
+	 * The matrix is expanded from the reachability bitsets on first call, and kept in {@link #reachby}.
+	 *
+	 * @return the reach by matrix, with 1 if the row node is reached by the column node of interest, 0 otherwise
+	 * @deprecated use {@link #isReachedBy(BioEntity, BioEntity)} instead
+	 */
+	@Deprecated
+	public Integer[][] getReachByMatrix(){
+		if(reachby==null) reachby = toMatrix(reachByBits);
+		return reachby;
+	}
+
+	/**
+	 * Expand reachability bitsets into a matrix, using the former row and column indexes
+	 *
+	 * @param bits the reachability bitsets
+	 * @return the matrix
+	 */
+	private Integer[][] toMatrix(long[][] bits){
+		Integer[][] matrix = new Integer[rowIndexMap.size()][colIndexMap.size()];
+		for(Map.Entry<V, Integer> row : rowIndexMap.entrySet()){
+			int v = csr.indexOf(row.getKey());
+			for(int j=0; j<colIndexMap.size(); j++){
+				matrix[row.getValue()][j] = (int) ((bits[j >>> 6][v] >>> (j & 63)) & 1L);
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * Read a reachability bit
+	 *
+	 * @param bits the reachability bitsets
+	 * @param v the node, not of interest
+	 * @param noi the node of interest
+	 * @return the bit value
+	 */
+	private boolean get(long[][] bits, V v, V noi){
+		if(!rowIndexMap.containsKey(v)) throw new IllegalArgumentException(v.getId()+" is a node of interest or not in graph");
+		Integer j = colIndexMap.get(noi);
+		if(j==null) throw new IllegalArgumentException(noi.getId()+" is not a node of interest");
+		return (bits[j >>> 6][csr.indexOf(v)] & (1L << (j & 63))) != 0;
 	}
 	
 	/**
@@ -121,35 +324,43 @@ public GraphPruning(BioGraph<V, E> g, BioCollection<V> nodesOfInterest) {
 	}
 	
 	/**
-	 * Removes nodes not "between" nodes of interest.
+	 * Removes nodes not "between" nodes of interest, i.e. nodes that are not reached by a node of interest and reaching another one.
 	 */
 	public void removeNotInBetween(){
-		Set<V> noPathbetween = new HashSet<>(rowIndexMap.keySet());
-
-		for (Map.Entry<V, Integer> entry : rowIndexMap.entrySet()){
-			boolean existingPath=false;
-			int i = entry.getValue();
-			int j = 0;
-			while(!existingPath && j< colIndexMap.size()){
-				if (reach[i][j]==1){
-					int j2=0;
-					while(!existingPath && j2< colIndexMap.size()){
-						if(reachby[i][j2] == 1 && j!=j2){
-							existingPath=true;
-						}
-						j2++;
-					}
-				}
-				j++;
-			}
-			if(existingPath){
-				noPathbetween.remove(entry.getKey());
-			}
+		List<V> rows = new ArrayList<>(rowIndexMap.keySet());
+		boolean[] inBetween = new boolean[rows.size()];
+		ParallelLoop.forEach(threads, rows.size(), i -> inBetween[i] = isInBetween(csr.indexOf(rows.get(i))));
+
+		Set<V> noPathbetween = new HashSet<>();
+		for(int i=0; i<rows.size(); i++){
+			if(!inBetween[i]) noPathbetween.add(rows.get(i));
 		}
 
 		System.err.println("Removing "+noPathbetween.size()+" nodes out of paths between nodes of interest...");
 		g.removeAllVertices(noPathbetween);
 	}
+
+	/**
+	 * Check if a node is reached by a node of interest and reaches another one.
+	 * This is not the case if one of the sets is empty, or if both are the same singleton.
+	 *
+	 * @param v the vertex index
+	 * @return true if the node is between two distinct nodes of interest
+	 */
+	private boolean isInBetween(int v){
+		int nbReach = 0;
+		int nbReachedBy = 0;
+		boolean same = true;
+		for(int w=0; w<reachBits.length; w++){
+			long r = reachBits[w][v];
+			long rb = reachByBits[w][v];
+			nbReach+=Long.bitCount(r);
+			nbReachedBy+=Long.bitCount(rb);
+			if(r!=rb) same = false;
+		}
+		if(nbReach==0 || nbReachedBy==0) return false;
+		return !(same && nbReach==1);
+	}
 	
 	/**
 	 * Removes the loops.
@@ -196,7 +407,6 @@ public GraphPruning(BioGraph<V, E> g, BioCollection<V> nodesOfInterest) {
 		System.err.println("Removing "+removed+" nodes involved in loops...");
 	}
 	
-	
 	/**
 	 * Gets the reach matrix.
 	 *
@@ -205,7 +415,9 @@ public GraphPruning(BioGraph<V, E> g, BioCollection<V> nodesOfInterest) {
 	 * @param rowIndexMap the row index map
 	 * @param reversed if the graph has inverted edges
 	 * @return the reach matrix
+	 * @deprecated reachability is computed on a graph snapshot, use {@link #reaches(BioEntity, BioEntity)} or {@link #isReachedBy(BioEntity, BioEntity)} instead
 	 */
+	@Deprecated
 	protected Integer[][] getReachMatrix(Graph<V, E> g, HashMap<V,Integer> colIndexMap, HashMap<V,Integer> rowIndexMap, boolean reversed){
 		
 		Integer[][] reach = new Integer[rowIndexMap.size()][colIndexMap.size()];
@@ -40,8 +40,10 @@ import fr.inrae.toulouse.metexplore.met4j_graph.core.BioGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.BioMatrix;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.EjmlMatrix;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.SparseMatrix;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Set;
 import java.util.function.DoubleBinaryOperator;
 
@@ -51,6 +53,9 @@ import java.util.function.DoubleBinaryOperator;
  * @author clement
  */
 public class ComputeAdjacencyMatrix<V extends BioEntity, E extends Edge<V>, G extends BioGraph<V, E>> {
+
+	/** The default density (ratio of non-zero entries) below which a sparse matrix is used */
+	public static final double DEFAULT_DENSITY_THRESHOLD = 0.1;
 	
 	/** The graph. */
 	final G g;
@@ -63,6 +68,12 @@ public class ComputeAdjacencyMatrix<V extends BioEntity, E extends Edge<V>, G ex
 	boolean undirected=false;
 
 	DoubleBinaryOperator l = ((a,b) -> a+b);
+
+	/** The density below which a sparse matrix is used */
+	double densityThreshold = DEFAULT_DENSITY_THRESHOLD;
+
+	/** The matrix class imposed by the deprecated constructor, if any */
+	Class<?> matrixClass;
 	
 	/**
 	 * Instantiates a new adjacency matrix computor.
@@ -74,7 +85,6 @@ public class ComputeAdjacencyMatrix<V extends BioEntity, E extends Edge<V>, G ex
 	public ComputeAdjacencyMatrix(G g, boolean undirected) {
 		this.g=g;
 		this.undirected=undirected;
-        adjacencyMatrix = new EjmlMatrix(g.vertexSet().size(),g.vertexSet().size());
 	}
 	
 	
@@ -85,7 +95,6 @@ public class ComputeAdjacencyMatrix<V extends BioEntity, E extends Edge<V>, G ex
 	 */
 	public ComputeAdjacencyMatrix(G g) {
 		this.g=g;
-        adjacencyMatrix = new EjmlMatrix(g.vertexSet().size(),g.vertexSet().size());
 	}
 	
 	/**
@@ -103,7 +112,38 @@ public class ComputeAdjacencyMatrix<V extends BioEntity, E extends Edge<V>, G ex
 		}
 
         adjacencyMatrix = (BioMatrix) matrixClass.getDeclaredConstructor(int.class, int.class).newInstance(g.vertexSet().size(),g.vertexSet().size());
+		this.matrixClass = matrixClass;
+	}
 
+	/**
+	 * Instantiates an empty matrix, using a sparse storage if the expected ratio of non-zero entries is below the given threshold.
+	 *
+	 * @param numRows the number of rows
+	 * @param numCols the number of columns
+	 * @param nonZero the expected number of non-zero entries
+	 * @param densityThreshold the density below which a sparse matrix is used
+	 * @return an empty matrix
+	 */
+	public static BioMatrix createMatrix(int numRows, int numCols, long nonZero, double densityThreshold){
+		double size = (double) numRows * (double) numCols;
+		if(size>0 && nonZero/size < densityThreshold) return new SparseMatrix(numRows, numCols);
+		return new EjmlMatrix(numRows, numCols);
+	}
+
+	/**
+	 * Instantiates the empty adjacency matrix
+	 */
+	private BioMatrix createAdjacencyMatrix(){
+		int n = g.vertexSet().size();
+		if(matrixClass!=null){
+			try {
+				return (BioMatrix) matrixClass.getDeclaredConstructor(int.class, int.class).newInstance(n, n);
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException("Unable to instantiate matrix class "+matrixClass.getName(), e);
+			}
+		}
+		long nonZero = undirected ? 2L*g.edgeSet().size() : g.edgeSet().size();
+		return createMatrix(n, n, nonZero, densityThreshold);
 	}
 
 	/**
@@ -111,22 +151,24 @@ public class ComputeAdjacencyMatrix<V extends BioEntity, E extends Edge<V>, G ex
 	 */
 	private void buildadjacencyMatrix(){
 
-		this.adjacencyMatrix = new EjmlMatrix(g.vertexSet().size(),g.vertexSet().size());
+		this.adjacencyMatrix = createAdjacencyMatrix();
 		int index = 0;
 		Set<V> vertexSet = g.vertexSet();
+		HashMap<V,Integer> vertexIndex = new HashMap<>();
 		
 		//affect an index for all vertex
 		for (V node : vertexSet){
             adjacencyMatrix.setRowLabel(index, node.getId());
             adjacencyMatrix.setColumnLabel(index, node.getId());
+			vertexIndex.put(node, index);
 			index++;
 		}
 		
 		//import edge weight as initial transition probability
 		for (V node : vertexSet){
-			int i = adjacencyMatrix.getRowFromLabel(node.getId());
+			int i = vertexIndex.get(node);
 			for (E edge : g.outgoingEdgesOf(node)){
-				int j = adjacencyMatrix.getColumnFromLabel(edge.getV2().getId());
+				int j = vertexIndex.get(edge.getV2());
 				if(adjacencyMatrix.get(i, j)!=0.0){
 					//resolve final weight if exists edges with same source/target
                     adjacencyMatrix.set(i, j, l.applyAsDouble(adjacencyMatrix.get(i, j), g.getEdgeWeight(edge)));
@@ -180,4 +222,17 @@ public class ComputeAdjacencyMatrix<V extends BioEntity, E extends Edge<V>, G ex
 	public void parallelEdgeWeightsHandling(DoubleBinaryOperator l) {
 		this.l = l;
 	}
+
+	public double getDensityThreshold() {
+		return densityThreshold;
+	}
+
+	/**
+	 * Set the ratio of non-zero entries (number of edges over squared number of vertices) below which the adjacency matrix
+	 * is stored as a {@link SparseMatrix}. Use 0 to always get a dense matrix, and any value above 1 to always get a sparse one.
+	 * @param densityThreshold the density threshold
+	 */
+	public void setDensityThreshold(double densityThreshold) {
+		this.densityThreshold = densityThreshold;
+	}
 }
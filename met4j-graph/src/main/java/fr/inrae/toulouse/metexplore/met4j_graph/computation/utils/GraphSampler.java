@@ -39,12 +39,13 @@ import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioEntity;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.BioGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.Edge;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.BioMatrix;
-import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.EjmlMatrix;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.SparseMatrix;
 
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
+import java.util.stream.IntStream;
 
 /**
  * Provide graph random sampling method on edges or vertex (with or without scope or defined compartment)
@@ -232,28 +233,47 @@ public class GraphSampler<V extends BioEntity, E extends Edge<V>, G extends BioG
 	
 	/**
 	 * Gets the random transition matrix.
+	 * The result is stored as a {@link SparseMatrix} if the adjacency matrix is sparse, or if its density is below
+	 * {@link ComputeAdjacencyMatrix#DEFAULT_DENSITY_THRESHOLD}.
 	 *
 	 * @param adjacencyMatrix the adjacency matrix
 	 * @return the random transition matrix
 	 */
-	public BioMatrix getRandomTransitionMatrix(EjmlMatrix adjacencyMatrix){
-		BioMatrix RandTransitionMatrix = new EjmlMatrix(adjacencyMatrix.numRows(), adjacencyMatrix.numCols());
+	public BioMatrix getRandomTransitionMatrix(BioMatrix adjacencyMatrix){
+		int n = adjacencyMatrix.numRows();
+		int m = adjacencyMatrix.numCols();
 		Random random = new Random();
-		
-		for(int i=0;i<adjacencyMatrix.numRows();i++){
-			
+
+		//gather edges for each row
+		int[][] edges = new int[n][];
+		long nonZero = 0;
+		for(int i=0;i<n;i++){
+			if(adjacencyMatrix instanceof SparseMatrix){
+				edges[i] = ((SparseMatrix) adjacencyMatrix).getNonZeroColumns(i);
+			}else{
+				double[] row = adjacencyMatrix.getRow(i);
+				edges[i] = IntStream.range(0, m).filter(j -> row[j]!=0.0).toArray();
+			}
+			nonZero+=edges[i].length;
+		}
+
+		BioMatrix RandTransitionMatrix = (adjacencyMatrix instanceof SparseMatrix) ?
+				new SparseMatrix(n, m) :
+				ComputeAdjacencyMatrix.createMatrix(n, m, nonZero, ComputeAdjacencyMatrix.DEFAULT_DENSITY_THRESHOLD);
+
+		for(int i=0;i<n;i++){
+			double[] rand = new double[edges[i].length];
 			double rowSum=0.0;
-			for(int j=0;j<adjacencyMatrix.numCols();j++){
-				if(adjacencyMatrix.get(i, j)==1.0){
-					double rand = random.nextDouble();
-					RandTransitionMatrix.set(i, j, rand);
-					rowSum+=rand;
+			for(int k=0;k<edges[i].length;k++){
+				if(adjacencyMatrix.get(i, edges[i][k])==1.0){
+					rand[k] = random.nextDouble();
+					rowSum+=rand[k];
 				}
 			}
-			
+
 			if(rowSum>0.0){
-				for(int j=0;j<RandTransitionMatrix.numCols();j++){
-					RandTransitionMatrix.set(i, j, RandTransitionMatrix.get(i, j)/rowSum);
+				for(int k=0;k<edges[i].length;k++){
+					if(rand[k]!=0.0) RandTransitionMatrix.set(i, edges[i][k], rand[k]/rowSum);
 				}
 			}
 		}
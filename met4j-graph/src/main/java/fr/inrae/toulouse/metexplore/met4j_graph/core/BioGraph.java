@@ -51,6 +51,15 @@ public abstract class BioGraph<V extends BioEntity, E extends Edge<V>> extends D
 	private static final long serialVersionUID = 1L;
 	private String name = "MetabolicGraph";
 
+	/** vertex id -> vertex index */
+	private HashMap<String, V> vertexIndex = new HashMap<>();
+
+	/** lower-cased vertex id -> vertices index, for case-insensitive lookups */
+	private HashMap<String, Set<V>> caseInsensitiveVertexIndex = new HashMap<>();
+
+	/** number of vertex or edge additions and removals, and edge weight changes */
+	private long modificationCount = 0;
+
 	public BioGraph(){
 		super(null, null);
 		super.setEdgeSupplier(this::createEdge);
@@ -64,27 +73,74 @@ public abstract class BioGraph<V extends BioEntity, E extends Edge<V>> extends D
 	 * @return the vertex
 	 */
 	public final V getVertex(String bioEntityId){
-		for(V v : this.vertexSet()){
-			if(v.getId().equals(bioEntityId)){
-				return v;
-			}
-		}
-		return null;
+		return vertexIndex.get(bioEntityId);
+	}
+
+	/**
+	 * Gets the vertices which identifier matches the given one, ignoring case.
+	 *
+	 * @param bioEntityId the bio entity identifier
+	 * @return the set of matching vertices, empty if none
+	 */
+	public final Set<V> getVerticesIgnoreCase(String bioEntityId){
+		Set<V> vertices = caseInsensitiveVertexIndex.get(bioEntityId.toLowerCase(Locale.ROOT));
+		return vertices == null ? new HashSet<>() : new HashSet<>(vertices);
 	}
 	
 	/**
-	 * Checks if the graph contains a vertex with the given identifier.
+	 * Checks if the graph contains a vertex with the given identifier, ignoring case.
 	 *
 	 * @param bioEntityId the bio entity identifier
 	 * @return true, if successful
 	 */
 	public final boolean hasVertex(String bioEntityId){
-		for(V v : this.vertexSet()){
-			if(v.getId().equalsIgnoreCase(bioEntityId)){
-				return true;
+		return caseInsensitiveVertexIndex.containsKey(bioEntityId.toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Gets the number of modifications of the graph, i.e. vertex or edge additions and removals, and edge weight changes.
+	 * This allows snapshots of the graph to detect if they are outdated. Weight changes made through another graph sharing
+	 * the same edges are not counted.
+	 *
+	 * @return the modification count
+	 */
+	public final long getModificationCount(){
+		return modificationCount;
+	}
+
+	/**
+	 * Add a vertex to the id indexes
+	 *
+	 * @param v the vertex
+	 */
+	private void indexVertex(V v){
+		vertexIndex.put(v.getId(), v);
+		caseInsensitiveVertexIndex.computeIfAbsent(v.getId().toLowerCase(Locale.ROOT), k -> new HashSet<>()).add(v);
+	}
+
+	/**
+	 * Remove a vertex from the id indexes. If another vertex shares the same identifier, it replaces the removed one.
+	 *
+	 * @param v the vertex
+	 */
+	private void unindexVertex(V v){
+		String key = v.getId().toLowerCase(Locale.ROOT);
+		Set<V> sameIds = caseInsensitiveVertexIndex.get(key);
+		if(sameIds!=null){
+			sameIds.remove(v);
+			if(sameIds.isEmpty()) caseInsensitiveVertexIndex.remove(key);
+		}
+		if(vertexIndex.get(v.getId())==v){
+			vertexIndex.remove(v.getId());
+			if(sameIds!=null){
+				for(V other : sameIds){
+					if(other.getId().equals(v.getId())){
+						vertexIndex.put(other.getId(), other);
+						break;
+					}
+				}
 			}
 		}
-		return false;
 	}
 	
 	/**
@@ -164,11 +220,13 @@ public abstract class BioGraph<V extends BioEntity, E extends Edge<V>> extends D
 	/** {@inheritDoc} */
 	@Override
 	public boolean addEdge(V sourceVertex, V targetVertex, E e) {
-		return super.addEdge(sourceVertex, targetVertex, e);
+		boolean added = super.addEdge(sourceVertex, targetVertex, e);
+		if(added) modificationCount++;
+		return added;
 	}
 
 	public boolean addEdge(E e) {
-		return super.addEdge(e.getV1(), e.getV2(), e);
+		return this.addEdge(e.getV1(), e.getV2(), e);
 	}
 
 	/* (non-Javadoc)
@@ -177,11 +235,28 @@ public abstract class BioGraph<V extends BioEntity, E extends Edge<V>> extends D
 	/** {@inheritDoc} */
 	@Override
 	public boolean addVertex(V v) {
-		return super.addVertex(v);
+		boolean added = super.addVertex(v);
+		if(added){
+			indexVertex(v);
+			modificationCount++;
+		}
+		return added;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.jgrapht.graph.AbstractBaseGraph#addVertex()
+	 */
+	/** {@inheritDoc} */
+	@Override
+	public V addVertex() {
+		V v = super.addVertex();
+		indexVertex(v);
+		modificationCount++;
+		return v;
 	}
 
 	public boolean addVertex(String id) {
-		return super.addVertex(this.createVertex(id));
+		return this.addVertex(this.createVertex(id));
 	}
 
 	
@@ -204,7 +279,10 @@ public abstract class BioGraph<V extends BioEntity, E extends Edge<V>> extends D
 	/** {@inheritDoc} */
 	@Override
 	public  final boolean containsEdge(E e1) {
-		for(E e2 : this.edgeSet()){
+		V source = this.getVertex(e1.getV1().getId());
+		V target = this.getVertex(e1.getV2().getId());
+		if(source==null || target==null) return false;
+		for(E e2 : this.getAllEdges(source, target)){
 			if(e1.equals(e2)){
 				return true;
 			}
@@ -303,8 +381,11 @@ public abstract class BioGraph<V extends BioEntity, E extends Edge<V>> extends D
 	 * @param label a {@link java.lang.String} object.
 	 */
 	public E getEdge(String sourceVertex, String targetVertex, String label) {
-		for(E e : this.edgeSet()){
-			if(e.getV1().getId().equals(sourceVertex) && e.getV2().getId().equals(targetVertex) && e.toString().equals(label)){
+		V source = this.getVertex(sourceVertex);
+		V target = this.getVertex(targetVertex);
+		if(source==null || target==null) return null;
+		for(E e : this.getAllEdges(source, target)){
+			if(e.toString().equals(label)){
 				return e;
 			}
 		}
@@ -417,7 +498,20 @@ public abstract class BioGraph<V extends BioEntity, E extends Edge<V>> extends D
 	/** {@inheritDoc} */
 	@Override
 	public final boolean removeEdge(E e) {
-		return super.removeEdge(e);
+		boolean removed = super.removeEdge(e);
+		if(removed) modificationCount++;
+		return removed;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.jgrapht.graph.AbstractBaseGraph#removeEdge(java.lang.Object, java.lang.Object)
+	 */
+	/** {@inheritDoc} */
+	@Override
+	public E removeEdge(V sourceVertex, V targetVertex) {
+		E e = super.removeEdge(sourceVertex, targetVertex);
+		if(e!=null) modificationCount++;
+		return e;
 	}
 
 	/* (non-Javadoc)
@@ -426,7 +520,12 @@ public abstract class BioGraph<V extends BioEntity, E extends Edge<V>> extends D
 	/** {@inheritDoc} */
 	@Override
 	public final boolean removeVertex(V arg0) {
-		return super.removeVertex(arg0);
+		boolean removed = super.removeVertex(arg0);
+		if(removed){
+			unindexVertex(arg0);
+			modificationCount++;
+		}
+		return removed;
 	}
 
 	/* (non-Javadoc)
@@ -436,6 +535,7 @@ public abstract class BioGraph<V extends BioEntity, E extends Edge<V>> extends D
 	@Override
 	public final void setEdgeWeight(E e, double weight) {
 		super.setEdgeWeight(e, weight);
+		modificationCount++;
 	}
 	
 	/**
@@ -475,6 +575,23 @@ public abstract class BioGraph<V extends BioEntity, E extends Edge<V>> extends D
 		return super.removeAllVertices(arg0);
 	}
 
+	/* (non-Javadoc)
+	 * @see org.jgrapht.graph.AbstractBaseGraph#clone()
+	 */
+	/** {@inheritDoc} */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Object clone() {
+		BioGraph<V,E> g = (BioGraph<V,E>) super.clone();
+		//the shallow copy shares the indexes, rebuild them for the clone
+		g.vertexIndex = new HashMap<>();
+		g.caseInsensitiveVertexIndex = new HashMap<>();
+		for(V v : g.vertexSet()){
+			g.indexVertex(v);
+		}
+		return g;
+	}
+
 	/**
 	 * <p>Getter for the field <code>name</code>.</p>
 	 *
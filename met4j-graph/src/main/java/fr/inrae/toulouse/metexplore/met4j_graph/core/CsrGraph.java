@@ -0,0 +1,315 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.inrae.toulouse.metexplore.met4j_graph.core;
+
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Immutable compressed sparse row (CSR) snapshot of a {@link BioGraph}.
+ * Vertices are mapped to contiguous integer indexes, and the outgoing arcs of vertex v are stored
+ * in primitive arrays between positions {@link #arcStart(int)} (inclusive) and {@link #arcEnd(int)} (exclusive).
+ * Each arc keeps a back-mapping to the original edge, so results computed on the snapshot can be converted back to graph elements.
+ * When built as undirected, each edge is stored as two arcs, one in each direction, sharing the same original edge.
+ * The snapshot does not follow subsequent modifications of the source graph.
+ *
+ * @param <V> the vertex type
+ * @param <E> the edge type
+ * @author clement
+ */
+public class CsrGraph<V extends BioEntity, E extends Edge<V>> {
+
+	/** The source graph. */
+	private final BioGraph<V, E> g;
+
+	/** The vertices, by index */
+	private final List<V> vertices;
+
+	/** The vertex to index map */
+	private final HashMap<V, Integer> index;
+
+	/** The position of the first outgoing arc of each vertex, with an additional final entry equal to the number of arcs */
+	private final int[] offsets;
+
+	/** The arcs source vertex index */
+	private final int[] sources;
+
+	/** The arcs target vertex index */
+	private final int[] targets;
+
+	/** The arcs weight */
+	private final double[] weights;
+
+	/** The arcs original edge */
+	private final Object[] edges;
+
+	/** if edges are stored in both directions */
+	private final boolean undirected;
+
+	/** if all arcs have a unit weight */
+	private final boolean unweighted;
+
+	/** the modification count of the source graph when the snapshot was built */
+	private final long modificationCount;
+
+	/**
+	 * Build the snapshot of a directed graph.
+	 *
+	 * @param g the graph
+	 */
+	public CsrGraph(BioGraph<V, E> g){
+		this(g, false);
+	}
+
+	/**
+	 * Build the snapshot of a graph.
+	 *
+	 * @param g the graph
+	 * @param undirected if edges should be traversable in both directions
+	 */
+	public CsrGraph(BioGraph<V, E> g, boolean undirected){
+		this.g = g;
+		this.undirected = undirected;
+		this.modificationCount = g.getModificationCount();
+		int n = g.vertexSet().size();
+		this.vertices = new ArrayList<>(n);
+		this.index = new HashMap<>(n * 2);
+		for(V v : g.vertexSet()){
+			index.put(v, vertices.size());
+			vertices.add(v);
+		}
+
+		//count arcs per vertex
+		offsets = new int[n+1];
+		for(E e : g.edgeSet()){
+			offsets[index.get(e.getV1())+1]++;
+			if(undirected) offsets[index.get(e.getV2())+1]++;
+		}
+		for(int i=0; i<n; i++){
+			offsets[i+1]+=offsets[i];
+		}
+
+		//fill arcs
+		int m = offsets[n];
+		sources = new int[m];
+		targets = new int[m];
+		weights = new double[m];
+		edges = new Object[m];
+		int[] cursor = new int[n];
+		System.arraycopy(offsets, 0, cursor, 0, n);
+		boolean unitWeights = true;
+		for(E e : g.edgeSet()){
+			int source = index.get(e.getV1());
+			int target = index.get(e.getV2());
+			double w = g.getEdgeWeight(e);
+			if(w!=1.0) unitWeights = false;
+			int arc = cursor[source]++;
+			sources[arc] = source;
+			targets[arc] = target;
+			weights[arc] = w;
+			edges[arc] = e;
+			if(undirected){
+				arc = cursor[target]++;
+				sources[arc] = target;
+				targets[arc] = source;
+				weights[arc] = w;
+				edges[arc] = e;
+			}
+		}
+		this.unweighted = unitWeights;
+	}
+
+	/**
+	 * @return the source graph
+	 */
+	public BioGraph<V, E> getGraph() {
+		return g;
+	}
+
+	/**
+	 * Check if the source graph has not been modified since the snapshot was built, in which case the snapshot can be reused.
+	 *
+	 * @return true if the snapshot reflects the current state of the graph
+	 * @see BioGraph#getModificationCount()
+	 */
+	public boolean isUpToDate(){
+		return g.getModificationCount()==modificationCount;
+	}
+
+	/**
+	 * @return the number of vertices
+	 */
+	public int numVertices(){
+		return vertices.size();
+	}
+
+	/**
+	 * @return the number of arcs (twice the number of edges if undirected)
+	 */
+	public int numArcs(){
+		return targets.length;
+	}
+
+	/**
+	 * @return if edges are stored in both directions
+	 */
+	public boolean isUndirected() {
+		return undirected;
+	}
+
+	/**
+	 * @return if all arcs have a weight of 1, in which case breadth-first traversal gives shortest paths
+	 */
+	public boolean isUnweighted() {
+		return unweighted;
+	}
+
+	/**
+	 * Gets the index of a vertex
+	 *
+	 * @param v the vertex
+	 * @return the index, or -1 if the vertex is not in the snapshot
+	 */
+	public int indexOf(V v){
+		Integer i = index.get(v);
+		return i==null ? -1 : i;
+	}
+
+	/**
+	 * Gets the vertex at a given index
+	 *
+	 * @param i the index
+	 * @return the vertex
+	 */
+	public V getVertex(int i){
+		return vertices.get(i);
+	}
+
+	/**
+	 * @return the unmodifiable list of vertices, ordered by index
+	 */
+	public List<V> getVertices(){
+		return Collections.unmodifiableList(vertices);
+	}
+
+	/**
+	 * @param v the vertex index
+	 * @return the position of the first outgoing arc of the vertex
+	 */
+	public int arcStart(int v){
+		return offsets[v];
+	}
+
+	/**
+	 * @param v the vertex index
+	 * @return the position following the last outgoing arc of the vertex
+	 */
+	public int arcEnd(int v){
+		return offsets[v+1];
+	}
+
+	/**
+	 * @param v the vertex index
+	 * @return the number of outgoing arcs
+	 */
+	public int outDegree(int v){
+		return offsets[v+1]-offsets[v];
+	}
+
+	/**
+	 * @param arc the arc position
+	 * @return the index of the arc source vertex
+	 */
+	public int source(int arc){
+		return sources[arc];
+	}
+
+	/**
+	 * @param arc the arc position
+	 * @return the index of the arc target vertex
+	 */
+	public int target(int arc){
+		return targets[arc];
+	}
+
+	/**
+	 * @param arc the arc position
+	 * @return the arc weight
+	 */
+	public double weight(int arc){
+		return weights[arc];
+	}
+
+	/**
+	 * @param arc the arc position
+	 * @return the edge from the source graph corresponding to the arc
+	 */
+	@SuppressWarnings("unchecked")
+	public E getEdge(int arc){
+		return (E) edges[arc];
+	}
+
+	/**
+	 * Check if an arc has a negative weight
+	 *
+	 * @return true if at least one weight is negative
+	 */
+	public boolean hasNegativeWeight(){
+		for(double w : weights){
+			if(w<0) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Check that all arc weights can be used by shortest path algorithms
+	 *
+	 * @throws IllegalArgumentException if a weight is negative or NaN
+	 */
+	public void checkWeights() throws IllegalArgumentException{
+		for(int arc=0; arc<weights.length; arc++){
+			double w = weights[arc];
+			if(w<0 || Double.isNaN(w)){
+				E e = getEdge(arc);
+				throw new IllegalArgumentException("Error: edge weights must be real positive values ("+e.getV1()+" -> "+e.getV2()+" : "+w+")");
+			}
+		}
+	}
+}
@@ -194,12 +194,7 @@ public class CompoundGraph extends BioGraph<BioMetabolite, ReactionEdge> {
 	 * Gets edge from source, target and associated reaction.
 	 */
 	public ReactionEdge getEdge(String sourceVertex, String targetVertex, String reaction) {
-		for(ReactionEdge e : this.edgeSet()){
-			if(e.getV1().getId().equals(sourceVertex) && e.getV2().getId().equals(targetVertex) && e.toString().equals(reaction)){
-				return e;
-			}
-		}
-		return null;
+		return super.getEdge(sourceVertex, targetVertex, reaction);
 	}
 
 	/**
@@ -211,7 +206,8 @@ public class CompoundGraph extends BioGraph<BioMetabolite, ReactionEdge> {
 	 * @return the edge
 	 */
 	public ReactionEdge getEdge(BioMetabolite sourceVertex, BioMetabolite targetVertex, BioReaction reaction) {
-		for(ReactionEdge e : this.edgeSet()){
+		if(!this.containsVertex(sourceVertex) || !this.containsVertex(targetVertex)) return null;
+		for(ReactionEdge e : this.getAllEdges(sourceVertex, targetVertex)){
 			if(e.getV1().equals(sourceVertex) && e.getV2().equals(targetVertex) && e.getReaction().equals(reaction)){
 				return e;
 			}
@@ -146,12 +146,7 @@ public class ReactionGraph extends BioGraph<BioReaction, CompoundEdge> {
 	 * Gets edge from source, target and associated reaction.
 	 */
 	public CompoundEdge getEdge(String sourceVertex, String targetVertex, String reaction) {
-		for(CompoundEdge e : this.edgeSet()){
-			if(e.getV1().getId().equals(sourceVertex) && e.getV2().getId().equals(targetVertex) && e.toString().equals(reaction)){
-				return e;
-			}
-		}
-		return null;
+		return super.getEdge(sourceVertex, targetVertex, reaction);
 	}
 
 	/** {@inheritDoc} */
@@ -37,6 +37,7 @@ package fr.inrae.toulouse.metexplore.met4j_graph.io;
 
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetwork;
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetworkSnapshot;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioPathway;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioReaction;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollection;
@@ -48,21 +49,29 @@ import fr.inrae.toulouse.metexplore.met4j_graph.core.pathway.PathwayGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.pathway.PathwayGraphEdge;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.reaction.CompoundEdge;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.reaction.ReactionGraph;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.concurrent.ParallelLoop;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.stream.Collectors;
 
 
 /**
  * The Class to convert Bionetwork to BioGraph.
+ * Compound, reaction and bipartite graphs are built from an index-based {@link BioNetworkSnapshot} of the network.
  *
  * @author clement
  */
 public class Bionetwork2BioGraph {
 
 	private final BioNetwork bn;
+
+	/** The network snapshot, built on first use */
+	private BioNetworkSnapshot snapshot;
+
+	/** the number of threads, 0 to use the common pool */
+	private int threads = 0;
 	
 	/**
 	 * Instantiates a new bionetwork 2 bio graph converter.
@@ -72,6 +81,44 @@ public class Bionetwork2BioGraph {
 	public Bionetwork2BioGraph(BioNetwork bn) {
 		this.bn=bn;
 	}
+
+	/**
+	 * Instantiates a new bionetwork 2 bio graph converter from an existing network snapshot.
+	 *
+	 * @param snapshot the bioNetwork snapshot
+	 */
+	public Bionetwork2BioGraph(BioNetworkSnapshot snapshot) {
+		this.bn=snapshot.getNetwork();
+		this.snapshot=snapshot;
+	}
+
+	private BioNetworkSnapshot getSnapshot(){
+		if(snapshot==null) snapshot = new BioNetworkSnapshot(bn);
+		return snapshot;
+	}
+
+	/**
+	 * Get the distinct metabolites of reactants in a range of positions
+	 *
+	 * @param sn the snapshot
+	 * @param from the first reactant position
+	 * @param to the position after the last reactant
+	 * @param stamp the last range each metabolite has been seen in
+	 * @param mark the current range marker
+	 * @return the metabolites indexes
+	 */
+	private static int[] distinctMetabolites(BioNetworkSnapshot sn, int from, int to, int[] stamp, int mark){
+		int[] res = new int[to-from];
+		int n = 0;
+		for(int k=from; k<to; k++){
+			int m = sn.reactantMetabolite(k);
+			if(stamp[m]!=mark){
+				stamp[m] = mark;
+				res[n++] = m;
+			}
+		}
+		return n==res.length ? res : Arrays.copyOf(res, n);
+	}
 	
 	/**
 	 * Builds the graph.
@@ -79,35 +126,90 @@ public class Bionetwork2BioGraph {
 	 * @return a {@link fr.inrae.toulouse.metexplore.met4j_graph.core.compound.CompoundGraph} object.
 	 */
 	public CompoundGraph getCompoundGraph(){
+		return getCompoundGraph(new BioCollection<>());
+	}
+
+	/**
+	 * Builds the graph, ignoring the given side compounds. The result is the same as removing the side compounds from the
+	 * complete compound graph, without creating their edges.
+	 * Edges of each reaction are computed in parallel, and then added to the graph following the reactions order.
+	 *
+	 * @param sideCompounds the compounds to exclude from the graph
+	 * @return a {@link fr.inrae.toulouse.metexplore.met4j_graph.core.compound.CompoundGraph} object.
+	 */
+	public CompoundGraph getCompoundGraph(BioCollection<BioMetabolite> sideCompounds){
 		CompoundGraph g = new CompoundGraph();
-		
-		for(BioMetabolite v : bn.getMetabolitesView()){
-			g.addVertex(v);
+		BioNetworkSnapshot sn = getSnapshot();
+		int nM = sn.numMetabolites();
+
+		boolean[] ignored = new boolean[nM];
+		for(BioMetabolite c : sideCompounds){
+			int m = sn.indexOfMetabolite(c.getId());
+			if(m>=0) ignored[m] = true;
 		}
-		
-		for(BioReaction r : bn.getReactionsView()){
-			boolean reversible = r.isReversible();
-			Collection<BioMetabolite> left = bn.getLefts(r);
-			Collection<BioMetabolite> right = bn.getRights(r);
-			if(!left.isEmpty() && !right.isEmpty()){
-				for(BioMetabolite v1 : left){
-					for(BioMetabolite v2 : right){
-						if(v1!=v2){
-							g.addEdge(v1, v2, new ReactionEdge(v1,v2,r));
-							if(reversible){
-								g.addEdge(v2, v1, new ReactionEdge(v2,v1,r));
-							}
-						}else{
-							System.err.println("skip loop on "+v1.getId()+" -> "+v2.getId()+" ("+r.getId()+")");
+		for(int m=0; m<nM; m++){
+			if(!ignored[m]) g.addVertex(sn.getMetabolite(m));
+		}
+
+		//edges of each reaction, as consecutive (source, target) metabolite indexes
+		int[][] edges = new int[sn.numReactions()][];
+		int[] loops = new int[sn.numReactions()];
+		ThreadLocal<int[]> stamps = ThreadLocal.withInitial(() -> {
+			int[] stamp = new int[nM];
+			Arrays.fill(stamp, -1);
+			return stamp;
+		});
+		ParallelLoop.forEach(threads, sn.numReactions(), ri -> {
+			int[] stamp = stamps.get();
+			boolean reversible = sn.isReversible(ri);
+			int[] left = distinctMetabolites(sn, sn.reactantStart(ri), sn.rightStart(ri), stamp, 2*ri);
+			int[] right = distinctMetabolites(sn, sn.rightStart(ri), sn.reactantEnd(ri), stamp, 2*ri+1);
+			int[] e = new int[(reversible ? 4 : 2)*left.length*right.length];
+			int n = 0;
+			for(int i1 : left){
+				if(ignored[i1]) continue;
+				for(int i2 : right){
+					if(ignored[i2]) continue;
+					if(i1!=i2){
+						e[n++] = i1; e[n++] = i2;
+						if(reversible){
+							e[n++] = i2; e[n++] = i1;
 						}
+					}else{
+						loops[ri]++;
 					}
 				}
 			}
+			edges[ri] = n==e.length ? e : Arrays.copyOf(e, n);
+		});
+
+		int skipped = 0;
+		for(int ri=0; ri<edges.length; ri++){
+			BioReaction r = sn.getReaction(ri);
+			int[] e = edges[ri];
+			for(int k=0; k<e.length; k+=2){
+				BioMetabolite v1 = sn.getMetabolite(e[k]);
+				BioMetabolite v2 = sn.getMetabolite(e[k+1]);
+				g.addEdge(v1, v2, new ReactionEdge(v1,v2,r));
+			}
+			skipped+=loops[ri];
 		}
-		
+		if(skipped>0) System.err.println("skip "+skipped+" loops (compounds on both sides of a reaction)");
+
 		return g;
 	}
 
+	/**
+	 * Set the number of threads used to compute the compound graph edges. By default, the common fork-join pool is used.
+	 *
+	 * @param threads the number of threads, 0 to use the common pool
+	 * @return this instance
+	 */
+	public Bionetwork2BioGraph setThreads(int threads) {
+		this.threads = ParallelLoop.checkThreads(threads);
+		return this;
+	}
+
 	
 	/**
 	 * <p>getReactionGraph.</p>
@@ -125,45 +227,9 @@ public class Bionetwork2BioGraph {
 	 * @return a {@link fr.inrae.toulouse.metexplore.met4j_graph.core.reaction.ReactionGraph} object.
 	 */
 	public ReactionGraph getReactionGraph(BioCollection<BioMetabolite> cofactors){
-
-		ReactionGraph g = new ReactionGraph();
-		HashMap<BioMetabolite,BioCollection<BioReaction>> consumingReaction = new HashMap<>();
-		HashMap<BioMetabolite,BioCollection<BioReaction>> productingReaction = new HashMap<>();
-
-		for(BioReaction r : bn.getReactionsView()){
-			if(!r.getLeftsView().isEmpty() && !r.getRightsView().isEmpty()) {
-				g.addVertex(r);
-				r.getLeftsView()
-						.forEach(s -> {
-							consumingReaction.computeIfAbsent(s, k -> new BioCollection<>()).add(r);
-							if (r.isReversible()) {
-								productingReaction.computeIfAbsent(s, k -> new BioCollection<>()).add(r);
-							}
-						});
-				r.getRightsView()
-						.forEach(p -> {
-							productingReaction.computeIfAbsent(p, k -> new BioCollection<>()).add(r);
-							if (r.isReversible()) {
-								consumingReaction.computeIfAbsent(p, k -> new BioCollection<>()).add(r);
-							}
-						});
-			}
-		}
-
-		consumingReaction.keySet().removeAll(cofactors);
-		productingReaction.keySet().removeAll(cofactors);
-
-		consumingReaction.keySet().retainAll(productingReaction.keySet());
-
-		consumingReaction.forEach((c, sources) -> sources.forEach((r1) -> {
-			productingReaction.get(c).forEach(r2 -> {
-
-				if(r1!=r2) g.addEdge(r2,r1,new CompoundEdge(r2,r1,c));
-
-			});
-		}));
-		return g;
+		return getReactionGraph(cofactors, new BioCollection<>());
 	}
+
 	/**
 	 * Builds the graph.
 	 *
@@ -174,45 +240,73 @@ public class Bionetwork2BioGraph {
 	public ReactionGraph getReactionGraph(BioCollection<BioMetabolite> cofactors, BioCollection<BioReaction> rExclude){
 
 		ReactionGraph g = new ReactionGraph();
-		HashMap<BioMetabolite,BioCollection<BioReaction>> consumingReaction = new HashMap<>();
-		HashMap<BioMetabolite,BioCollection<BioReaction>> productingReaction = new HashMap<>();
-		BioCollection<BioReaction> bionetReactions = bn.getReactionsView();
-		bionetReactions.removeAll(rExclude);
+		BioNetworkSnapshot sn = getSnapshot();
+		int nM = sn.numMetabolites();
+		int nR = sn.numReactions();
+
+		//consuming and producing reactions of each metabolite, as linked lists over (reaction, side) pairs
+		int[] consumingHead = new int[nM];
+		int[] producingHead = new int[nM];
+		Arrays.fill(consumingHead, -1);
+		Arrays.fill(producingHead, -1);
+		int[] next = new int[2*sn.numReactants()];
+		int[] reactionOf = new int[next.length];
+		int size = 0;
+
+		int[] stamp = new int[nM];
+		Arrays.fill(stamp, -1);
+		boolean[] ignored = new boolean[nM];
+		for(BioMetabolite c : cofactors){
+			int m = sn.indexOfMetabolite(c.getId());
+			if(m>=0) ignored[m] = true;
+		}
 
-		for(BioReaction r : bionetReactions){
-			if(!r.getLeftsView().isEmpty() && !r.getRightsView().isEmpty()) {
+		for(int ri=0; ri<nR; ri++){
+			BioReaction r = sn.getReaction(ri);
+			if(rExclude.contains(r)) continue;
+			int[] left = distinctMetabolites(sn, sn.reactantStart(ri), sn.rightStart(ri), stamp, 2*ri);
+			int[] right = distinctMetabolites(sn, sn.rightStart(ri), sn.reactantEnd(ri), stamp, 2*ri+1);
+			if(left.length>0 && right.length>0) {
 				g.addVertex(r);
-				r.getLeftsView()
-						.forEach(s -> {
-							consumingReaction.computeIfAbsent(s, k -> new BioCollection<>()).add(r);
-							if (r.isReversible()) {
-								productingReaction.computeIfAbsent(s, k -> new BioCollection<>()).add(r);
-							}
-						});
-				r.getRightsView()
-						.forEach(p -> {
-							productingReaction.computeIfAbsent(p, k -> new BioCollection<>()).add(r);
-							if (r.isReversible()) {
-								consumingReaction.computeIfAbsent(p, k -> new BioCollection<>()).add(r);
-							}
-						});
+				boolean reversible = sn.isReversible(ri);
+				for(int s : left){
+					size = push(consumingHead, next, reactionOf, size, s, ri);
+					if(reversible) size = push(producingHead, next, reactionOf, size, s, ri);
+				}
+				for(int p : right){
+					size = push(producingHead, next, reactionOf, size, p, ri);
+					if(reversible) size = push(consumingHead, next, reactionOf, size, p, ri);
+				}
 			}
 		}
-		
-		consumingReaction.keySet().removeAll(cofactors);
-		productingReaction.keySet().removeAll(cofactors);
-
-		consumingReaction.keySet().retainAll(productingReaction.keySet());
 
-		consumingReaction.forEach((c, sources) -> sources.forEach((r1) -> {
-			productingReaction.get(c).forEach(r2 -> {
-
-				if(r1!=r2) g.addEdge(r2,r1,new CompoundEdge(r2,r1,c));
-
-			});
-		}));
+		for(int m=0; m<nM; m++){
+			if(ignored[m] || consumingHead[m]<0 || producingHead[m]<0) continue;
+			BioMetabolite c = sn.getMetabolite(m);
+			for(int i=consumingHead[m]; i>=0; i=next[i]){
+				BioReaction r1 = sn.getReaction(reactionOf[i]);
+				for(int j=producingHead[m]; j>=0; j=next[j]){
+					BioReaction r2 = sn.getReaction(reactionOf[j]);
+					if(r1!=r2) g.addEdge(r2,r1,new CompoundEdge(r2,r1,c));
+				}
+			}
+		}
 		return g;
 	}
+	/**
+	 * Add a reaction at the head of a metabolite's linked list, if not already there
+	 *
+	 * @return the new number of list entries
+	 */
+	private static int push(int[] head, int[] next, int[] reactionOf, int size, int m, int r){
+		//reactions are added by increasing index, so a duplicate can only be at the head
+		if(head[m]>=0 && reactionOf[head[m]]==r) return size;
+		reactionOf[size] = r;
+		next[size] = head[m];
+		head[m] = size;
+		return size+1;
+	}
+
 	/**
 	 * <p>getBipartiteGraph.</p>
 	 *
@@ -220,25 +314,30 @@ public class Bionetwork2BioGraph {
 	 */
 	public BipartiteGraph getBipartiteGraph(){
 		BipartiteGraph g = new BipartiteGraph();
-		for(BioMetabolite v : bn.getMetabolitesView()){
-			g.addVertex(v);
+		BioNetworkSnapshot sn = getSnapshot();
+		for(int m=0; m<sn.numMetabolites(); m++){
+			g.addVertex(sn.getMetabolite(m));
 		}
-		for(BioReaction r : bn.getReactionsView()){
-			
-			Collection<BioMetabolite> left = bn.getLefts(r);
-			Collection<BioMetabolite> right = bn.getRights(r);
+		int[] stamp = new int[sn.numMetabolites()];
+		Arrays.fill(stamp, -1);
+		for(int ri=0; ri<sn.numReactions(); ri++){
+			BioReaction r = sn.getReaction(ri);
+			int[] left = distinctMetabolites(sn, sn.reactantStart(ri), sn.rightStart(ri), stamp, 2*ri);
+			int[] right = distinctMetabolites(sn, sn.rightStart(ri), sn.reactantEnd(ri), stamp, 2*ri+1);
 			//if(!left.isEmpty() && !right.isEmpty()){
 				
 			g.addVertex(r);
-			boolean reversible = r.isReversible();
+			boolean reversible = sn.isReversible(ri);
 
-			for(BioMetabolite v1 : left){
+			for(int i1 : left){
+				BioMetabolite v1 = sn.getMetabolite(i1);
 				g.addEdge(v1, r, new BipartiteEdge(v1, r, false));
 				if(reversible){
 					g.addEdge(r, v1, new BipartiteEdge(r, v1, true));
 				}
 			}
-			for(BioMetabolite v2 : right){
+			for(int i2 : right){
+				BioMetabolite v2 = sn.getMetabolite(i2);
 				g.addEdge(r, v2, new BipartiteEdge(r, v2, false));
 				if(reversible){
 					g.addEdge(v2, r, new BipartiteEdge(v2, r, true));
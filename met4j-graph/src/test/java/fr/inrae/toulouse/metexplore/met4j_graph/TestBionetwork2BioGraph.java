@@ -249,6 +249,26 @@ public class TestBionetwork2BioGraph {
 		assertEquals("wrong out-degree of compound "+h.getId(), 1, g.outDegreeOf(h));
 	}
 	
+	@Test
+	public void testGetCompoundGraphWithSideCompounds(){
+		BioCollection<BioMetabolite> side = new BioCollection<>();
+		side.add(h, e);
+		CompoundGraph g = new Bionetwork2BioGraph(bn).setThreads(2).getCompoundGraph(side);
+		CompoundGraph expected = builder.getCompoundGraph();
+		expected.removeAllVertices(side);
+
+		assertEquals("wrong number of vertices",5, g.vertexSet().size());
+		assertEquals("wrong number of edges",expected.edgeSet().size(), g.edgeSet().size());
+		assertFalse(g.containsVertex(h));
+		assertFalse(g.containsVertex(e));
+		for(BioMetabolite v : expected.vertexSet()){
+			assertEquals("wrong in-degree of compound "+v.getId(), expected.inDegreeOf(v), g.inDegreeOf(v));
+			assertEquals("wrong out-degree of compound "+v.getId(), expected.outDegreeOf(v), g.outDegreeOf(v));
+		}
+		assertNotNull(g.getEdge("a", "b", "r1"));
+		assertNull(g.getEdge("a", "h", "r1"));
+	}
+
 	@Test
 	public void testGetBipartiteGraph(){
 		BipartiteGraph g = builder.getBipartiteGraph();
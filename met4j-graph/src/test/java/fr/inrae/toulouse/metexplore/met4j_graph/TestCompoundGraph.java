@@ -145,6 +145,34 @@ public class TestCompoundGraph {
 		assertEquals(e1, e);
 	}
 	
+	@Test
+	public void testGetVertex() {
+		CompoundGraph g = new CompoundGraph();
+		BioMetabolite a = new BioMetabolite("M_a");
+		BioMetabolite b = new BioMetabolite("M_b");
+		g.addVertex(a);
+		g.addVertex(b);
+		g.addEdge(a, b, new ReactionEdge(a, b, r1));
+
+		assertEquals(a, g.getVertex("M_a"));
+		Assert.assertNull(g.getVertex("m_a"));
+		assertTrue(g.hasVertex("m_a"));
+		assertTrue(g.getVerticesIgnoreCase("m_A").contains(a));
+		Assert.assertNotNull(g.getEdge("M_a", "M_b", "r1"));
+		Assert.assertNull(g.getEdge("M_a", "M_b", "r2"));
+
+		CompoundGraph g2 = (CompoundGraph) g.clone();
+		g.removeVertex(a);
+		Assert.assertNull(g.getVertex("M_a"));
+		Assert.assertFalse(g.hasVertex("M_a"));
+		Assert.assertNull(g.getEdge("M_a", "M_b", "r1"));
+		assertEquals(a, g2.getVertex("M_a"));
+
+		g.removeAllVertices(new HashSet<>(g.vertexSet()));
+		Assert.assertNull(g.getVertex("M_b"));
+		assertEquals(b, g2.getVertex("M_b"));
+	}
+
 	@Test
 	public void testCopyEdge() {
 		ReactionEdge e = cg.copyEdge(e1);
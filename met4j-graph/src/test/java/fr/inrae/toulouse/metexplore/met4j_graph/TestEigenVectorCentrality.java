@@ -38,6 +38,7 @@ package fr.inrae.toulouse.metexplore.met4j_graph;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioReaction;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.centrality.EigenVectorCentrality;
+import fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.centrality.SparsePageRank;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.utils.ComputeAdjacencyMatrix;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.compound.CompoundGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.compound.ReactionEdge;
@@ -45,10 +46,13 @@ import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.BioMatrix;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 
 
 /**
@@ -313,4 +317,85 @@ public class TestEigenVectorCentrality {
 		
 	}
 	
+	/**
+	 * Test the sparse page rank against the jump probabilities added to the adjacency matrix.
+	 */
+	@Test
+	public void testSparsePageRank() {
+		CompoundGraph graph = new CompoundGraph();
+		BioMetabolite a = new BioMetabolite("a");graph.addVertex(a);
+		BioMetabolite b = new BioMetabolite("b");graph.addVertex(b);
+		BioMetabolite c = new BioMetabolite("c");graph.addVertex(c);
+		BioMetabolite d = new BioMetabolite("d");graph.addVertex(d);
+		BioMetabolite s = new BioMetabolite("s");graph.addVertex(s);
+		ReactionEdge ab = new ReactionEdge(a, b, new BioReaction("ab")); graph.addEdge(a, b, ab); graph.setEdgeWeight(ab, 0.7);
+		ReactionEdge ac = new ReactionEdge(a, c, new BioReaction("ac")); graph.addEdge(a, c, ac); graph.setEdgeWeight(ac, 0.3);
+		ReactionEdge bc = new ReactionEdge(b, c, new BioReaction("bc")); graph.addEdge(b, c, bc); graph.setEdgeWeight(bc, 1.0);
+		ReactionEdge cd = new ReactionEdge(c, d, new BioReaction("cd")); graph.addEdge(c, d, cd); graph.setEdgeWeight(cd, 0.5);
+		ReactionEdge ca = new ReactionEdge(c, a, new BioReaction("ca")); graph.addEdge(c, a, ca); graph.setEdgeWeight(ca, 0.5);
+		ReactionEdge ds = new ReactionEdge(d, s, new BioReaction("ds")); graph.addEdge(d, s, ds); graph.setEdgeWeight(ds, 1.0);
+
+		HashMap<String, Double> seeds = new HashMap<>();
+		seeds.put("a", 0.25); seeds.put("d", 0.75);
+
+		EigenVectorCentrality<BioMetabolite,ReactionEdge,CompoundGraph> pg = new EigenVectorCentrality<>(graph);
+		pg.addJumpProb(seeds, 0.15);
+		HashMap<String, Double> expected = pg.powerIteration(seeds, 100, 1.0E-12);
+		HashMap<String, Double> observed = new SparsePageRank(graph).compute(seeds, 0.85, 100, 1.0E-12);
+		assertEquals(expected.keySet(), observed.keySet());
+		for(String v : expected.keySet()){
+			assertEquals(expected.get(v), observed.get(v), 1.0E-12);
+		}
+
+		pg = new EigenVectorCentrality<>(graph);
+		HashSet<String> all = new HashSet<>(pg.adjacencyMatrix.getRowLabelMap().keySet());
+		HashMap<String, Double> uniform = new HashMap<>();
+		for(String v : all) uniform.put(v, 1.0/all.size());
+		observed = pg.computePowerMethodPageRank(0.85, 100, 1.0E-12);
+		assertEquals(0.0, pg.adjacencyMatrix.get(pg.adjacencyMatrix.getRowFromLabel("s"), 0), Double.MIN_VALUE);
+		pg.addJumpProb(all, 0.15);
+		expected = pg.powerIteration(uniform, 100, 1.0E-12);
+		double sum = 0.0;
+		for(String v : expected.keySet()){
+			assertEquals(expected.get(v), observed.get(v), 1.0E-12);
+			sum+=observed.get(v);
+		}
+		assertEquals(1.0, sum, 1.0E-9);
+	}
+
+	/**
+	 * Test the sparse page rank with several personalization vectors.
+	 */
+	@Test
+	public void testSparsePageRankBatch() {
+		SparsePageRank pr = new SparsePageRank(graph).setThreads(2);
+		List<String> ids = new ArrayList<>();
+		for(BioMetabolite v : graph.vertexSet()) ids.add(v.getId());
+		List<HashMap<String, Double>> seeds = new ArrayList<>();
+		for(int i=0; i<20; i++){
+			HashMap<String, Double> seed = new HashMap<>();
+			seed.put(ids.get(i%ids.size()), 0.5);
+			seed.put(ids.get((3*i+1)%ids.size()), seed.getOrDefault(ids.get((3*i+1)%ids.size()), 0.0)+0.5);
+			seeds.add(seed);
+		}
+		List<HashMap<String, Double>> batch = pr.compute(seeds, 0.8, 50, 1.0E-9);
+		assertEquals(seeds.size(), batch.size());
+		for(int i=0; i<seeds.size(); i++){
+			HashMap<String, Double> single = new SparsePageRank(graph).compute(seeds.get(i), 0.8, 50, 1.0E-9);
+			for(String v : ids){
+				assertEquals(single.get(v), batch.get(i).get(v), 1.0E-15);
+			}
+		}
+	}
+
+	/**
+	 * Test the sparse page rank with a personalization vector that does not sum up to 1.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSparsePageRankInvalidSeeds() {
+		HashMap<String, Double> seeds = new HashMap<>();
+		seeds.put("a", 0.5);
+		new SparsePageRank(graph).compute(seeds, 0.85, 10, 0.001);
+	}
+
 }
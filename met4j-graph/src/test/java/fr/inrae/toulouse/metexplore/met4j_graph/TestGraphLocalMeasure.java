@@ -103,6 +103,7 @@ public class TestGraphLocalMeasure {
 	
 	@Test
 	public void testUndirectedLocalClusteringCoeff() {
+		assertEquals(1.0/3.0, new GraphLocalMeasure<>(g).getUndirectedLocalClusteringCoeff(a), 0.000000001);
 		assertEquals(1.0/3.0, measure.getUndirectedLocalClusteringCoeff(a), 0.000000001);
 		assertEquals(1.0/3.0, measure.getUndirectedLocalClusteringCoeff(e), 0.000000001);
 	
@@ -112,6 +113,8 @@ public class TestGraphLocalMeasure {
 	
 	@Test
 	public void testLocalClusteringCoeff() {
+		//first computation on a new instance
+		assertEquals(1.0/6.0, new GraphLocalMeasure<>(g).getLocalClusteringCoeff(a), 0.000000001);
 		assertEquals(1.0/6.0, measure.getLocalClusteringCoeff(a), 0.000000001);
 		assertEquals(1.0/6.0, measure.getLocalClusteringCoeff(e), 0.000000001);
 	
@@ -38,11 +38,20 @@ package fr.inrae.toulouse.metexplore.met4j_graph;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioReaction;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.GraphMeasure;
+import fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.centrality.PathBasedCentrality;
+import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.AllPairsShortestPath;
+import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.DistanceStatistics;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.CsrGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.compound.CompoundGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.compound.ReactionEdge;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
 import static org.junit.Assert.*;
 
 /**
@@ -157,7 +166,100 @@ public class TestGraphMeasure {
 	public void testDiameter() {
 		assertEquals("error on diameter computation", expectedDiameter, m.getDiameter(), 0.000001);
 	}
+
+	/**
+	 * Test the diameter and the shortest-path based measures with negative weights.
+	 */
+	@Test
+	public void testNegativeWeights() {
+		CompoundGraph g2 = new CompoundGraph();
+		BioMetabolite n1 = new BioMetabolite("n1");
+		BioMetabolite n2 = new BioMetabolite("n2");
+		BioMetabolite n3 = new BioMetabolite("n3");
+		g2.addVertex(n1);
+		g2.addVertex(n2);
+		g2.addVertex(n3);
+		ReactionEdge e12 = new ReactionEdge(n1,n2,new BioReaction("12"));g2.addEdge(n1, n2, e12);g2.setEdgeWeight(e12, 5);
+		ReactionEdge e23 = new ReactionEdge(n2,n3,new BioReaction("23"));g2.addEdge(n2, n3, e23);g2.setEdgeWeight(e23, -2);
+		ReactionEdge e13 = new ReactionEdge(n1,n3,new BioReaction("13"));g2.addEdge(n1, n3, e13);g2.setEdgeWeight(e13, 4);
+		GraphMeasure<BioMetabolite, ReactionEdge> m2 = new GraphMeasure<>(g2);
+		assertEquals("error on diameter computation", 5, m2.getDiameter(), 0.000001);
+		assertThrows(IllegalArgumentException.class, m2::getRadius);
+		assertThrows(IllegalArgumentException.class, m2::getAverageShortestPathLength);
+	}
 	
+	@Test
+	public void testOCCI() {
+		PathBasedCentrality<BioMetabolite, ReactionEdge, CompoundGraph> centralityComputor = new PathBasedCentrality<>(g);
+		Map<BioMetabolite, Double> expected = centralityComputor.getInCloseness(centralityComputor.getAllShortestPaths());
+		Map<BioMetabolite, Double> closeness = new DistanceStatistics<>(new CsrGraph<>(g)).compute().getInCloseness();
+		assertEquals(expected, closeness);
+	}
+
+	@Test
+	public void testDistanceStatistics() {
+		Random random = new Random(42);
+		CompoundGraph g2 = new CompoundGraph();
+		List<BioMetabolite> vertices = new ArrayList<>();
+		for(int i=0; i<150; i++){
+			BioMetabolite v = new BioMetabolite("v"+i);
+			g2.addVertex(v);
+			vertices.add(v);
+		}
+		for(int i=0; i<300; i++){
+			BioMetabolite v1 = vertices.get(random.nextInt(150));
+			BioMetabolite v2 = vertices.get(random.nextInt(150));
+			if(v1!=v2) g2.addEdge(v1, v2, new ReactionEdge(v1, v2, new BioReaction("r"+i)));
+		}
+		for(boolean weighted : new boolean[]{false, true}){
+			if(weighted){
+				for(ReactionEdge edge : g2.edgeSet()){
+					g2.setEdgeWeight(edge, 1+random.nextInt(5));
+				}
+			}
+			for(boolean directed : new boolean[]{true, false}){
+				AllPairsShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> apsp = new AllPairsShortestPath<>(g2, directed);
+				apsp.compute();
+				DistanceStatistics<BioMetabolite, ReactionEdge> stats = new DistanceStatistics<>(new CsrGraph<>(g2, !directed)).setThreads(2).compute();
+				Map<BioMetabolite, Double> eccentricity = stats.getEccentricity();
+				Map<BioMetabolite, Double> outSum = stats.getOutDistanceSum();
+				Map<BioMetabolite, Double> inSum = stats.getInDistanceSum();
+				double diameter = 0.0;
+				double radius = Double.POSITIVE_INFINITY;
+				double sum = 0.0;
+				long pairs = 0;
+				for(BioMetabolite u : vertices){
+					double ecc = 0.0;
+					double out = 0.0;
+					double in = 0.0;
+					boolean reach = false;
+					for(BioMetabolite v : vertices){
+						if(u==v) continue;
+						double d = apsp.getDistance(u, v);
+						if(d!=Double.POSITIVE_INFINITY){
+							ecc = Math.max(ecc, d);
+							out+=d;
+							pairs++;
+							reach = true;
+						}
+						double dIn = apsp.getDistance(v, u);
+						if(dIn!=Double.POSITIVE_INFINITY) in+=dIn;
+					}
+					assertEquals(ecc, eccentricity.get(u), 0.000001);
+					assertEquals(out, outSum.get(u), 0.000001);
+					assertEquals(in, inSum.get(u), 0.000001);
+					diameter = Math.max(diameter, ecc);
+					if(reach) radius = Math.min(radius, ecc);
+					sum+=out;
+				}
+				assertEquals(diameter, stats.getDiameter(), 0.000001);
+				assertEquals(radius, stats.getRadius(), 0.000001);
+				assertEquals(pairs, stats.getNumberOfConnectedPairs());
+				assertEquals(sum/pairs, stats.getAverageDistance(), 0.000001);
+			}
+		}
+	}
+
 	/**
 	 * Test the length.
 	 */
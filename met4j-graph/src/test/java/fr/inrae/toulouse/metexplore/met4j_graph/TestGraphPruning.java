@@ -45,6 +45,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class TestGraphPruning {
@@ -122,4 +125,74 @@ public class TestGraphPruning {
         assertTrue(rg.areConnected(r1,r2));
         assertTrue(rg.areConnected(r2,r3));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void cleanGraphManyNodesOfInterest() {
+        ReactionGraph g = new ReactionGraph();
+        BioMetabolite m = new BioMetabolite("m");
+        BioCollection<BioReaction> noi = new BioCollection<>();
+        BioReaction[] n = new BioReaction[70];
+        for (int i = 0; i < n.length; i++) {
+            n[i] = new BioReaction("n" + i);
+            g.addVertex(n[i]);
+            noi.add(n[i]);
+        }
+        BioReaction x = new BioReaction("x");
+        BioReaction x2 = new BioReaction("x2");
+        BioReaction y = new BioReaction("y");
+        BioReaction z = new BioReaction("z");
+        g.addVertex(x);
+        g.addVertex(x2);
+        g.addVertex(y);
+        g.addVertex(z);
+        //path between distinct nodes of interest, in different blocks
+        g.addEdge(n[0], x, new CompoundEdge(n[0], x, m));
+        g.addEdge(x, x2, new CompoundEdge(x, x2, m));
+        g.addEdge(x2, n[69], new CompoundEdge(x2, n[69], m));
+        //loop on a single node of interest
+        g.addEdge(n[65], y, new CompoundEdge(n[65], y, m));
+        g.addEdge(y, n[65], new CompoundEdge(y, n[65], m));
+        //dead end, and path through another node of interest
+        g.addEdge(n[1], n[2], new CompoundEdge(n[1], n[2], m));
+        g.addEdge(n[2], z, new CompoundEdge(n[2], z, m));
+
+        GraphPruning<BioReaction, CompoundEdge> extractor = new GraphPruning<>(g, noi).setThreads(2);
+        assertTrue(extractor.isReachedBy(x2, n[0]));
+        assertTrue(extractor.reaches(x, n[69]));
+        assertTrue(extractor.reaches(y, n[65]));
+        assertTrue(extractor.isReachedBy(y, n[65]));
+        assertTrue(extractor.isReachedBy(z, n[2]));
+        assertFalse(extractor.isReachedBy(z, n[1]));
+        assertFalse(extractor.reaches(z, n[2]));
+
+        //deprecated matrices, one row per node not of interest, filled on first access
+        assertNull(extractor.reach);
+        assertNull(extractor.reachby);
+        Integer[][] reach = extractor.getReachMatrix();
+        Integer[][] reachby = extractor.getReachByMatrix();
+        assertSame(reach, extractor.reach);
+        assertSame(reachby, extractor.reachby);
+        assertEquals(4, reach.length);
+        assertEquals(70, reach[0].length);
+        assertEquals(3, sum(reach));
+        assertEquals(4, sum(reachby));
+
+        extractor.cleanGraph();
+
+        assertEquals(72, g.vertexSet().size());
+        assertTrue(g.containsVertex(x));
+        assertTrue(g.containsVertex(x2));
+        assertFalse(g.containsVertex(y));
+        assertFalse(g.containsVertex(z));
+    }
+
+    private static int sum(Integer[][] matrix) {
+        int sum = 0;
+        for (Integer[] row : matrix) {
+            for (Integer value : row) {
+                sum += value;
+            }
+        }
+        return sum;
+    }
+}
@@ -45,6 +45,7 @@ import fr.inrae.toulouse.metexplore.met4j_graph.core.compound.CompoundGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.compound.ReactionEdge;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.BioMatrix;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.EjmlMatrix;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.SparseMatrix;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -142,6 +143,20 @@ public class TestGraphSampler {
 		assertEquals(2, m2.numRows());
 		assertEquals(0.0, m2.getRowSum(0),0.00000001);
 		assertEquals(1.0, m2.getRowSum(1),0.00000001);
-	}	
+	}
+
+	@Test
+	public void testGetRandomTransitionMatrixSparse(){
+		SparseMatrix m = new SparseMatrix(3, 3);
+		m.set(1, 0, 1);
+		m.set(1, 2, 1);
+		m.set(2, 1, 1);
+		BioMatrix m2 = sampler.getRandomTransitionMatrix(m);
+		assertTrue(m2 instanceof SparseMatrix);
+		assertEquals(0.0, m2.getRowSum(0),0.00000001);
+		assertEquals(1.0, m2.getRowSum(1),0.00000001);
+		assertEquals(1.0, m2.get(2, 1),0.00000001);
+		assertEquals(0.0, m2.get(1, 1),0.00000001);
+	}
 	
 }
@@ -39,12 +39,16 @@ package fr.inrae.toulouse.metexplore.met4j_graph;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioReaction;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.LoadPoint;
+import fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.centrality.PathBasedCentrality;
+import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.KShortestPath;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.BioPath;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.compound.CompoundGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.compound.ReactionEdge;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 
@@ -188,5 +192,18 @@ public class TestLoadPoint {
 		
 		
 	}
-	
+
+	@Test
+	public void testGetLoadPointK() {
+		Set<BioPath<BioMetabolite, ReactionEdge>> paths = new KShortestPath<>(toyGraph).getAllShortestPaths(3);
+		Map<BioMetabolite, Integer> passingThrough = new PathBasedCentrality<>(toyGraph).getBetweenness(paths);
+		double averageLoad = paths.size()/32.0;
+
+		Map<BioMetabolite, Double> toyLoadPoint = new LoadPoint<>(toyGraph).setThreads(2).getLoads(3);
+		for(BioMetabolite v : toyGraph.vertexSet()){
+			double expected = Math.log((passingThrough.get(v).doubleValue()/toyGraph.degreeOf(v))/averageLoad);
+			assertEquals(expected, toyLoadPoint.get(v), 0.00000001);
+		}
+	}
+
 }
@@ -44,6 +44,7 @@ import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.BioMatrix;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.EjmlMatrix;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.ExportMatrix;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.MtjMatrix;
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.SparseMatrix;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -66,7 +67,7 @@ public class TestMatrix {
 	
 	public static CompoundGraph graph;
 	
-	public static final Class<?>[] matrixClasses = {EjmlMatrix.class, MtjMatrix.class};
+	public static final Class<?>[] matrixClasses = {EjmlMatrix.class, MtjMatrix.class, SparseMatrix.class};
 	
 	@BeforeClass
 	public static void init(){
@@ -173,6 +174,81 @@ public class TestMatrix {
 		}
 	}
 	
+	/**
+	 * Test the automatic choice of sparse storage.
+	 */
+	@Test
+	public void testSparseAdjacencyMatrix(){
+		ComputeAdjacencyMatrix<BioMetabolite,ReactionEdge,CompoundGraph> computor = new ComputeAdjacencyMatrix<>(graph);
+		BioMatrix dense = computor.getadjacencyMatrix();
+		assertTrue(dense instanceof EjmlMatrix);
+
+		computor.setDensityThreshold(1.1);
+		BioMatrix sparse = computor.getadjacencyMatrix();
+		assertTrue(sparse instanceof SparseMatrix);
+		assertEquals(18, ((SparseMatrix) sparse).nonZeros());
+		assertEquals(dense.getRowLabelMap(), sparse.getRowLabelMap());
+		for(int i=0; i<dense.numRows(); i++){
+			assertArrayEquals(dense.getRow(i), sparse.getRow(i), Double.MIN_VALUE);
+			assertArrayEquals(dense.getCol(i), sparse.getCol(i), Double.MIN_VALUE);
+		}
+	}
+
+	/**
+	 * Test the sparse matrix operations against the dense implementation.
+	 */
+	@Test
+	public void testSparseMatrixOperations(){
+		BioMatrix d = new EjmlMatrix(3, 3);
+		BioMatrix s = new SparseMatrix(3, 3);
+		double[][] values = {{0,2,0},{1,0,3},{0,0,4}};
+		for(int i=0; i<3; i++){
+			for(int j=2; j>=0; j--){
+				d.set(i, j, values[i][j]);
+				s.set(i, j, values[i][j]);
+			}
+		}
+		s.set(1, 1, 5.0);
+		s.set(1, 1, 0.0);
+		assertEquals(4, ((SparseMatrix) s).nonZeros());
+		assertEquals(4.0, s.getRowSum(1), Double.MIN_VALUE);
+		assertEquals(7.0, s.getColSum(2), Double.MIN_VALUE);
+
+		BioMatrix t = new SparseMatrix(d.transpose());
+		assertMatrixEquals(d.plus(d), s.plus(s));
+		assertMatrixEquals(d.minus(d.transpose()), s.minus(t));
+		assertMatrixEquals(d.mult(d.transpose()), s.mult(t));
+		assertMatrixEquals(d.mult(d), s.mult(d));
+		assertMatrixEquals(d.mult(d), d.mult(s));
+		assertMatrixEquals(d.transpose(), s.transpose());
+		assertMatrixEquals(d.scale(0.5), s.scale(0.5));
+		assertMatrixEquals(d.identity(), s.identity());
+		assertMatrixEquals(d.add(1.0), s.add(1.0));
+		assertMatrixEquals(d.invert(), s.invert());
+		assertArrayEquals(new double[]{1,2,7}, ((SparseMatrix) s).leftMult(new double[]{1,1,1}), Double.MIN_VALUE);
+
+		s.setRowLabel(0, "a");s.setRowLabel(1, "b");s.setRowLabel(2, "c");
+		s.setColumnLabel(0, "x");s.setColumnLabel(1, "y");s.setColumnLabel(2, "z");
+		BioMatrix sub = s.getSubMatrix(new int[]{1,2}, new int[]{0,2});
+		assertEquals(1, sub.getRowFromLabel("c"));
+		assertEquals(1, sub.getColumnFromLabel("z"));
+		assertArrayEquals(new double[]{1,3}, sub.getRow(0), Double.MIN_VALUE);
+		assertArrayEquals(new double[]{0,4}, sub.getRow(1), Double.MIN_VALUE);
+
+		BioMatrix copy = s.copy();
+		copy.set(0, 0, 42.0);
+		assertEquals(0.0, s.get(0, 0), Double.MIN_VALUE);
+		assertEquals("b", copy.getRowLabel(1));
+	}
+
+	private static void assertMatrixEquals(BioMatrix expected, BioMatrix actual){
+		assertEquals(expected.numRows(), actual.numRows());
+		assertEquals(expected.numCols(), actual.numCols());
+		for(int i=0; i<expected.numRows(); i++){
+			assertArrayEquals(expected.getRow(i), actual.getRow(i), 0.000000001);
+		}
+	}
+
 	@Test
 	public void testLabelToIndex(){
 		//create empty matrix
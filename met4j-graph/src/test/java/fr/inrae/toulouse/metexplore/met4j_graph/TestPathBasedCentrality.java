@@ -330,6 +330,84 @@ public class TestPathBasedCentrality {
 		assertEquals(2.0, starEccentricity.get(f), 0.00000001);
 	}
 	
+	@Test
+	public void testGeodesicMeasures() {
+		for(PathBasedCentrality<BioMetabolite, ReactionEdge, CompoundGraph> measure : new PathBasedCentrality[]{toyMeasure, linearMeasure, starMeasure}){
+			Map<BioMetabolite, Double> closeness = measure.getCloseness(measure.getAllShortestPaths());
+			Map<BioMetabolite, Double> farness = measure.getFarness(measure.getAllShortestPaths());
+			Map<BioMetabolite, Double> eccentricity = measure.getEccentricity(measure.getAllShortestPaths());
+			Map<BioMetabolite, Integer> neighborhood = measure.getNeighborhoodCentrality(measure.getAllShortestPaths());
+			Map<BioMetabolite, Integer> betweenness = measure.getBetweenness(measure.getAllShortestPaths());
+			for(BioMetabolite v : closeness.keySet()){
+				assertEquals(closeness.get(v), measure.getGeodesicCloseness().get(v), 0.00000001);
+				assertEquals(farness.get(v), measure.getGeodesicFarness().get(v), 0.00000001);
+				assertEquals(eccentricity.get(v), measure.getGeodesicEccentricity().get(v), 0.00000001);
+				assertEquals(neighborhood.get(v), measure.getGeodesicNeighborhoodCentrality().get(v));
+				assertEquals(betweenness.get(v), measure.getGeodesicBetweenness().get(v));
+			}
+		}
+	}
+
+	@Test
+	public void testBrandesBetweenness() {
+		Map<BioMetabolite, Double> linearBetweenness = linearMeasure.getBrandesBetweenness();
+		assertEquals(0.0, linearBetweenness.get(a), 0.00000001);
+		assertEquals(3.0*2, linearBetweenness.get(b), 0.00000001);
+		assertEquals(4.0*2, linearBetweenness.get(c), 0.00000001);
+		assertEquals(3.0*2, linearBetweenness.get(d), 0.00000001);
+		assertEquals(0.0, linearBetweenness.get(e), 0.00000001);
+		assertEquals(10.0*2, starMeasure.getBrandesBetweenness().get(a), 0.00000001);
+
+		//a -> b -> d and a -> c -> d are equivalent shortest paths
+		CompoundGraph diamond = new CompoundGraph();
+		diamond.addVertex(a);
+		diamond.addVertex(b);
+		diamond.addVertex(c);
+		diamond.addVertex(d);
+		diamond.addVertex(e);
+		diamond.addEdge(new ReactionEdge(a, b, new BioReaction("r1")));
+		diamond.addEdge(new ReactionEdge(a, c, new BioReaction("r2")));
+		diamond.addEdge(new ReactionEdge(b, d, new BioReaction("r3")));
+		diamond.addEdge(new ReactionEdge(c, d, new BioReaction("r4")));
+		diamond.addEdge(new ReactionEdge(d, e, new BioReaction("r5")));
+		PathBasedCentrality<BioMetabolite, ReactionEdge, CompoundGraph> measure = new PathBasedCentrality<>(diamond).setThreads(2);
+		Map<BioMetabolite, Double> betweenness = measure.getBrandesBetweenness();
+		assertEquals(0.0, betweenness.get(a), 0.00000001);
+		assertEquals(1.0, betweenness.get(b), 0.00000001);
+		assertEquals(1.0, betweenness.get(c), 0.00000001);
+		assertEquals(3.0, betweenness.get(d), 0.00000001);
+		assertEquals(0.0, betweenness.get(e), 0.00000001);
+
+		//weighted ties
+		diamond.setEdgeWeight(diamond.getEdge("a", "b", "r1"), 0.5);
+		diamond.setEdgeWeight(diamond.getEdge("b", "d", "r3"), 1.5);
+		betweenness = new PathBasedCentrality<>(diamond).getBrandesBetweenness();
+		assertEquals(1.0, betweenness.get(b), 0.00000001);
+		assertEquals(1.0, betweenness.get(c), 0.00000001);
+		assertEquals(3.0, betweenness.get(d), 0.00000001);
+	}
+
+	@Test
+	public void testApproximateBetweenness() {
+		Map<BioMetabolite, Double> exact = toyMeasure.getBrandesBetweenness();
+		Map<BioMetabolite, Double> all = toyMeasure.getApproximateBetweenness(7, 42);
+		for(BioMetabolite v : exact.keySet()){
+			assertEquals(exact.get(v), all.get(v), 0.00000001);
+		}
+		Map<BioMetabolite, Double> sampled = toyMeasure.getApproximateBetweenness(3, 42);
+		assertEquals(sampled, toyMeasure.getApproximateBetweenness(3, 42));
+		for(BioMetabolite v : exact.keySet()){
+			double partialSum = sampled.get(v) * 3.0 / 7.0;
+			assertEquals(Math.rint(partialSum), partialSum, 0.00000001);
+		}
+		assertEquals(0.0, sampled.get(d), 0.00000001);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testApproximateBetweennessNoSources() {
+		toyMeasure.getApproximateBetweenness(0, 42);
+	}
+
 	@Test
 	public void testOCCI(){
 		GraphMeasure<BioMetabolite, ReactionEdge> measure =
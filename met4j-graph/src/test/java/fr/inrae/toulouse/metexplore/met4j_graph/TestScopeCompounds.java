@@ -46,6 +46,9 @@ import fr.inrae.toulouse.metexplore.met4j_graph.io.Bionetwork2BioGraph;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 public class TestScopeCompounds {
@@ -284,4 +287,57 @@ public class TestScopeCompounds {
 		assertTrue(scope.reactionVertexSet().contains(r6));
 	}
 
+	@Test
+	public void testGetScopeNetworks() {
+		BioCollection<BioMetabolite> seeds = new BioCollection<>();
+		seeds.add(v1,v5);
+		BioCollection<BioMetabolite> seeds2 = new BioCollection<>();
+		seeds2.add(v0);
+		List<BioCollection<BioMetabolite>> seedSets = Arrays.asList(in, seeds, seeds2, new BioCollection<>());
+
+		ScopeCompounds sc = new ScopeCompounds(g, in, bs, reactionsToAvoid).setThreads(2);
+		sc.expandThroughBootstraps();
+		List<BipartiteGraph> scopes = sc.getScopeNetworks(seedSets);
+		assertEquals(4, scopes.size());
+		for(int i=0; i<seedSets.size(); i++){
+			ScopeCompounds single = new ScopeCompounds(g, seedSets.get(i), bs, reactionsToAvoid);
+			single.expandThroughBootstraps();
+			BipartiteGraph scope = single.getScopeNetwork();
+			assertEquals(scope.vertexSet(), scopes.get(i).vertexSet());
+			assertEquals(scope.edgeSet(), scopes.get(i).edgeSet());
+		}
+		assertEquals(7, scopes.get(1).compoundVertexSet().size());
+		assertEquals(4, scopes.get(1).reactionVertexSet().size());
+		assertTrue(scopes.get(2).reactionVertexSet().contains(r0));
+		assertTrue(scopes.get(2).reactionVertexSet().contains(r1));
+		assertTrue(scopes.get(3).vertexSet().isEmpty());
+
+		BioCollection<BioMetabolite> invalid = new BioCollection<>();
+		invalid.add(v1,side);
+		try{
+			sc.getScopeNetworks(Arrays.asList(in, invalid));
+			fail("non disjoint seeds and bootstrap should throw illegal args exception");
+		}catch (IllegalArgumentException e){
+		}
+	}
+
+	@Test
+	public void testGetScopeNetworkAfterChanges() {
+		BipartiteGraph g2 = new Bionetwork2BioGraph(bn).getBipartiteGraph();
+		BioCollection<BioReaction> avoid = new BioCollection<>();
+		avoid.add(r5);
+		ScopeCompounds sc = new ScopeCompounds(g2, in, bs, avoid);
+		assertTrue(sc.getScopeNetwork().reactionVertexSet().contains(r1));
+
+		//reactions to avoid changed since last expansion
+		avoid.add(r1);
+		assertFalse(sc.getScopeNetwork().reactionVertexSet().contains(r1));
+		avoid.remove(r1);
+		assertTrue(sc.getScopeNetwork().reactionVertexSet().contains(r1));
+
+		//graph changed since last expansion
+		g2.removeVertex(r1);
+		assertFalse(sc.getScopeNetwork().reactionVertexSet().contains(r1));
+	}
+
 }
@@ -38,6 +38,7 @@ package fr.inrae.toulouse.metexplore.met4j_graph;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioReaction;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.centrality.PathBasedCentrality;
+import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.AllPairsShortestPath;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.FloydWarshall;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.KShortestPath;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.ShortestPath;
@@ -148,6 +149,58 @@ public class TestShortestPaths {
 		assertTrue("wrong weighted path", res.containsAll(Arrays.asList(expectedLightestPath)));
 	}
 	
+	@Test
+	public void testGetShortestVsAllPairs() {
+		for(boolean weighted : new boolean[]{false, true}){
+			if(weighted){
+				g.setEdgeWeight(ad, 0.5);
+				g.setEdgeWeight(eb, 3.0);
+			}
+			for(boolean directed : new boolean[]{true, false}){
+				ShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> pathSearch = new ShortestPath<>(g, directed);
+				AllPairsShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> apsp = new AllPairsShortestPath<>(g, directed);
+				apsp.compute();
+				for(BioMetabolite u : g.vertexSet()){
+					for(BioMetabolite v : g.vertexSet()){
+						if(u==v) continue;
+						BioPath<BioMetabolite,ReactionEdge> path = pathSearch.getShortest(u, v);
+						double expected = apsp.getDistance(u, v);
+						if(Double.isInfinite(expected)){
+							assertNull(path);
+						}else{
+							assertNotNull(path);
+							assertEquals(u, path.getStartVertex());
+							assertEquals(v, path.getEndVertex());
+							assertEquals(expected, path.getWeight(), 1E-9);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testGetShortestConcurrent() {
+		ShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> pathSearch = new ShortestPath<>(g, true);
+		AllPairsShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> apsp = new AllPairsShortestPath<>(g, true);
+		apsp.compute();
+		List<BioMetabolite> nodes = new ArrayList<>(g.vertexSet());
+		for(int repeat=0; repeat<20; repeat++){
+			nodes.parallelStream().forEach(u -> {
+				for(BioMetabolite v : nodes){
+					if(u==v) continue;
+					BioPath<BioMetabolite,ReactionEdge> path = pathSearch.getShortest(u, v);
+					double expected = apsp.getDistance(u, v);
+					if(Double.isInfinite(expected)){
+						assertNull(path);
+					}else{
+						assertEquals(expected, path.getWeight(), 1E-9);
+					}
+				}
+			});
+		}
+	}
+
 	@Test(expected=IllegalArgumentException.class)
 	public void testGetShortestNoStartException() {
 		ShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> pathSearch = new ShortestPath<>(g);
@@ -335,6 +388,33 @@ public class TestShortestPaths {
 		assertTrue("wrong path", res.containsAll(Arrays.asList(expectedPath)));
 	}
 	
+	@Test
+	public void testGetKShortestKeepGraph() {
+		Set<ReactionEdge> edges = new HashSet<>(g.edgeSet());
+		KShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> pathSearch = new KShortestPath<>(g);
+		List<BioPath<BioMetabolite,ReactionEdge>> kshort = pathSearch.getKShortest(a, c, 5);
+		assertEquals(edges, g.edgeSet());
+		assertEquals(ab, g.getEdge(a, b));
+		for(int k=1; k<kshort.size(); k++){
+			assertTrue("paths not ordered", kshort.get(k-1).getWeight()<=kshort.get(k).getWeight());
+		}
+		assertTrue(pathSearch.getKShortest(a, a, 5).isEmpty());
+		assertNull(new ShortestPath<>(g).getShortest(a, a));
+	}
+
+	@Test
+	public void testGetKShortestUnionListThreads() {
+		g.setEdgeWeight(ef,2.0);
+		KShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> pathSearch = new KShortestPath<>(g);
+		List<BioPath<BioMetabolite,ReactionEdge>> expected = pathSearch.getKShortestPathsUnionList(g.vertexSet(), 3);
+		List<BioPath<BioMetabolite,ReactionEdge>> res = new KShortestPath<>(g).setThreads(2).getKShortestPathsUnionList(g.vertexSet(), 3);
+		assertEquals(expected.size(), res.size());
+		for(int k=0; k<expected.size(); k++){
+			assertEquals(expected.get(k).getEdgeList(), res.get(k).getEdgeList());
+		}
+		assertEquals(pathSearch.getKShortest(a, c, 3).size(), new KShortestPath<>(g).setThreads(2).getKShortest(a, c, 3).size());
+	}
+
 	/**
 	 * Test the get k shortest union list.
 	 */
@@ -458,6 +538,32 @@ public class TestShortestPaths {
 		Assert.assertEquals("wrong path",expectedPath,(g2.edgeSet()));
 	}
 
+	@Test
+	public void testForEachShortestPath() {
+		g.setEdgeWeight(ef,500.0);
+		ShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> pathSearch = new ShortestPath<>(g);
+		List<BioPath<BioMetabolite, ReactionEdge>> expected = pathSearch.getShortestPathsUnionList(g.vertexSet());
+		for(int batchSize : new int[]{1, 3, 100}){
+			List<BioPath<BioMetabolite, ReactionEdge>> streamed = new ArrayList<>();
+			pathSearch.setBatchSize(batchSize).forEachShortestPath(g.vertexSet(), g.vertexSet(), streamed::add);
+			assertEquals(expected.size(), streamed.size());
+			for(int k=0; k<expected.size(); k++){
+				assertEquals(expected.get(k).getEdgeList(), streamed.get(k).getEdgeList());
+			}
+		}
+
+		AllPairsShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> apsp = new AllPairsShortestPath<>(g).trackPaths();
+		apsp.compute(g.vertexSet(), Collections.emptySet());
+		assertFalse(apsp.iteratePaths().iterator().hasNext());
+		apsp.compute(g.vertexSet(), g.vertexSet());
+		Iterator<BioPath<BioMetabolite, ReactionEdge>> it = apsp.iteratePaths().iterator();
+		for(BioPath<BioMetabolite, ReactionEdge> p : expected){
+			assertTrue(it.hasNext());
+			assertEquals(p.getEdgeList(), it.next().getEdgeList());
+		}
+		assertFalse(it.hasNext());
+	}
+
 	//	@Test
 //	public void testGetShortestUnion() {
 //		HashSet<BioMetabolite> noi = new HashSet<BioMetabolite>();
@@ -528,6 +634,56 @@ public class TestShortestPaths {
 		assertArrayEquals(computor1.getDistances().toDoubleArray(),computor2.getDistances().toDoubleArray());
 	}
 
+	@Test
+	public void testAllPairsDistanceMatrix(){
+		g.setEdgeWeight(ad, 0.5);
+		g.setEdgeWeight(de, 0.5);
+		for(boolean directed : new boolean[]{true, false}){
+			ShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> spComputor = new ShortestPath<>(g, directed);
+			AllPairsShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> apComputor = new AllPairsShortestPath<>(g, directed);
+			apComputor.setThreads(2);
+			BioMatrix expected = spComputor.getShortestPathDistanceMatrix();
+			BioMatrix distmat = apComputor.getShortestPathDistanceMatrix();
+			assertEquals(expected.getRowIndexMap(), distmat.getRowIndexMap());
+			assertEquals(expected.getColumnIndexMap(), distmat.getColumnIndexMap());
+			assertArrayEquals(expected.toDoubleArray(), distmat.toDoubleArray());
+
+			Set<BioMetabolite> seeds = new HashSet<>(Arrays.asList(e, a, h, c));
+			expected = spComputor.getShortestPathDistanceMatrix(seeds, seeds);
+			distmat = apComputor.getShortestPathDistanceMatrix(seeds, seeds);
+			assertEquals(expected.getRowIndexMap(), distmat.getRowIndexMap());
+			assertArrayEquals(expected.toDoubleArray(), distmat.toDoubleArray());
+		}
+	}
+
+	@Test
+	public void testAllPairsPaths(){
+		g.setEdgeWeight(ad, 0.5);
+		g.setEdgeWeight(de, 0.5);
+		AllPairsShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> apComputor = new AllPairsShortestPath<>(g);
+		apComputor.trackPaths().compute();
+		BioPath<BioMetabolite, ReactionEdge> path = apComputor.getPath(a, f);
+		assertEquals(Arrays.asList(ad, de, ef), path.getEdgeList());
+		assertEquals(2.0, path.getWeight(), Double.MIN_VALUE);
+		assertEquals(2.0, apComputor.getDistance(a, f), Double.MIN_VALUE);
+		assertNull(apComputor.getPath(h, a));
+		assertEquals(Double.POSITIVE_INFINITY, apComputor.getDistance(h, a), Double.MIN_VALUE);
+		assertEquals(new ShortestPath<>(g).getAllShortestPaths().size(), apComputor.getPaths().size());
+
+		apComputor.asUndirected();
+		apComputor.compute(Collections.singleton(h), g.vertexSet());
+		path = apComputor.getPath(h, i);
+		assertEquals(Arrays.asList(bh, bc, ic), path.getEdgeList());
+		assertEquals(h, path.getStartVertex());
+		assertEquals(i, path.getEndVertex());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAllPairsNegativeWeight(){
+		g.setEdgeWeight(ad, -1.0);
+		new AllPairsShortestPath<>(g).compute();
+	}
+
 	@Test
 	public void testFloydWarshallDistUndirected(){
 		CompoundGraph g2 =new CompoundGraph(g);
@@ -42,6 +42,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -86,12 +87,20 @@ public class JsbmlReader {
      */
     private Model model;
 
-    private String xmlString = null;
+    /**
+     * The SBML input stream, consumed by the first read
+     */
+    private InputStream inputStream = null;
+
+    /**
+     * Size of the buffer used when reading SBML input streams
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
 
     /**
      * Constructor
      *
-     * @param filename the filename
+     * @param filename the filename. Gzip-compressed files are decompressed on the fly
      */
     public JsbmlReader(String filename) {
         this.filename = filename;
@@ -99,23 +108,33 @@ public class JsbmlReader {
 
     /**
      * <p>Constructor for JsbmlReader.</p>
+     * The stream is parsed directly, without being buffered in memory first, and gzip-compressed content is detected
+     * and decompressed on the fly. As a consequence, the stream can only be read once, and is not closed by the reader.
      *
      * @param inputStream a {@link java.io.InputStream} object.
      * @throws java.io.IOException if any.
      */
     public JsbmlReader(InputStream inputStream) throws IOException {
-        this.xmlString = this.inputStreamToString(inputStream);
-
+        this.inputStream = openSbmlStream(inputStream);
     }
 
-    private String inputStreamToString(InputStream inputStream) throws IOException {
-        BufferedReader br = new BufferedReader(new InputStreamReader(inputStream));
-        StringBuilder sb = new StringBuilder();
-        String line;
-        while ((line = br.readLine()) != null) {
-            sb.append(line).append(System.lineSeparator());
+    /**
+     * Buffer an SBML input stream, adding gzip decompression if the stream starts with gzip magic bytes.
+     *
+     * @param inputStream the raw input stream
+     * @return the stream to parse
+     * @throws java.io.IOException if the stream can't be read
+     */
+    public static InputStream openSbmlStream(InputStream inputStream) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(inputStream, BUFFER_SIZE);
+        buffered.mark(2);
+        int b1 = buffered.read();
+        int b2 = buffered.read();
+        buffered.reset();
+        if (b1 == (GZIPInputStream.GZIP_MAGIC & 0xff) && b2 == (GZIPInputStream.GZIP_MAGIC >> 8)) {
+            return new BufferedInputStream(new GZIPInputStream(buffered, BUFFER_SIZE), BUFFER_SIZE);
         }
-        return sb.toString();
+        return buffered;
     }
 
     /*
@@ -290,11 +309,12 @@ public class JsbmlReader {
     protected SBMLDocument sbmlRead() throws XMLStreamException, IOException {
         SBMLDocument doc;
 
-        if (this.xmlString == null) {
-            File sbmlFile = new File(this.getFilename());
-            doc = SBMLReader.read(sbmlFile);
+        if (this.inputStream == null) {
+            try (InputStream in = openSbmlStream(new FileInputStream(this.getFilename()))) {
+                doc = SBMLReader.read(in);
+            }
         } else {
-            doc = SBMLReader.read(xmlString);
+            doc = SBMLReader.read(inputStream);
         }
 
         return doc;
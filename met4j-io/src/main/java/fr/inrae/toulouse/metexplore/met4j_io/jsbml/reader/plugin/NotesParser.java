@@ -60,6 +60,8 @@ import org.sbml.jsbml.UniqueNamedSBase;
 import javax.xml.stream.XMLStreamException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -129,6 +131,15 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
      * The default separator in Notes values.
      */
     public static final String defaultseparator = ",";
+
+    private static final Pattern extDBidsPattern = Pattern.compile(defaultextDBidsPAttern);
+    private static final Pattern chargeKeyPattern = Pattern.compile(defaultchargePattern);
+    private static final Pattern ECKeyPattern = Pattern.compile(defaultECPattern);
+    private static final Pattern pathwayKeyPattern = Pattern.compile(defaultPathwayPattern);
+    private static final Pattern formulaKeyPattern = Pattern.compile(defaultformulaPattern);
+    private static final Pattern nonAsciiPattern = Pattern.compile("[^\\p{ASCII}]");
+    private static final Pattern nonDigitPattern = Pattern.compile("[^\\d]");
+    private static final Pattern inchiPrefixPattern = Pattern.compile("(?i)InChI\\=");
     /**
      * The Jsbml Model
      */
@@ -197,6 +208,27 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
      */
     public boolean othersAsRefs = true;
 
+    /**
+     * Compiled patterns, by regex. Patterns are public fields that can be changed at any time, so they are compiled on
+     * first use rather than in setters.
+     */
+    final HashMap<String, Pattern> compiledPatterns = new HashMap<>();
+
+    /**
+     * Time spent retrieving notes from the SBML model, in nanoseconds
+     */
+    private long notesRetrievalTime = 0;
+
+    /**
+     * Time spent extracting data from notes, in nanoseconds
+     */
+    private long notesParsingTime = 0;
+
+    /**
+     * Number of parsed notes
+     */
+    private int nbOfParsedNotes = 0;
+
     /**
      * Constructor
      *
@@ -374,7 +406,10 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
                 try {
 
                     if (sbase != null && sbase.isSetNotes()) {
+                        long start = System.nanoTime();
                         GenericAttributes.setNotes(ent, new Notes(sbase.getNotesString()));
+                        long retrieved = System.nanoTime();
+                        notesRetrievalTime += retrieved - start;
 
                         if (ent instanceof BioCompartment) {
                             this.parseNotes((BioCompartment) ent);
@@ -383,6 +418,8 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
                         } else if (ent instanceof BioMetabolite) {
                             this.parseNotes((BioMetabolite) ent);
                         }
+                        notesParsingTime += System.nanoTime() - retrieved;
+                        nbOfParsedNotes++;
                     }
 
                 } catch (XMLStreamException e) {
@@ -418,13 +455,13 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
 
         if (this.getPathwayPattern() != null) {
 
-            m = Pattern.compile(this.getPathwayPattern()).matcher(reactionNotes);
+            m = this.compile(this.getPathwayPattern()).matcher(reactionNotes);
 
             while (m.find()) {
 
-                String[] pthwList = m.group(1).split(this.getPathwaySep());
+                String[] pthwList = this.compile(this.getPathwaySep()).split(m.group(1));
                 for (String val : pthwList) {
-                    String value = val.trim().replaceAll("[^\\p{ASCII}]", "");
+                    String value = nonAsciiPattern.matcher(val.trim()).replaceAll("");
 
                     if (!isVoid(value)) {
 
@@ -443,7 +480,7 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
 
         // get the ec number
         if (this.getECPattern() != null) {
-            m = Pattern.compile(this.getECPattern()).matcher(reactionNotes);
+            m = this.compile(this.getECPattern()).matcher(reactionNotes);
             while (m.find()) {
                 String ec = m.group(1).trim();
                 if (!isVoid(ec)) {
@@ -459,7 +496,7 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
 
         // get the reaction score
         if (this.getScorePattern() != null
-                && (m = Pattern.compile(this.getScorePattern()).matcher(reactionNotes)).find()) {
+                && (m = this.compile(this.getScorePattern()).matcher(reactionNotes)).find()) {
             String value = m.group(1).trim();
 
             if (!isVoid(value)) {
@@ -474,7 +511,7 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
 
         // get the reaction status
         if (this.getStatusPattern() != null
-                && (m = Pattern.compile(this.getStatusPattern()).matcher(reactionNotes)).find()) {
+                && (m = this.compile(this.getStatusPattern()).matcher(reactionNotes)).find()) {
             String value = m.group(1).trim();
 
             if (!isVoid(value)) {
@@ -485,7 +522,7 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
         // get the PMIDS
         if (this.getPmidPattern() != null) {
 
-            m = Pattern.compile(this.getPmidPattern()).matcher(reactionNotes);
+            m = this.compile(this.getPmidPattern()).matcher(reactionNotes);
 
             while (m.find()) {
 
@@ -493,13 +530,13 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
 
                 if (!isVoid(pmidsStr)) {
 
-                    String[] pmids = pmidsStr.split(this.separator);
+                    String[] pmids = this.compile(this.separator).split(pmidsStr);
 
                     for (String s : pmids) {
                         String pmid = s.trim();
 
                         if (!isVoid(pmid)) {
-                            String pmidInt = pmid.replaceAll("[^\\d]", "");
+                            String pmidInt = nonDigitPattern.matcher(pmid).replaceAll("");
                             try {
                                 ReactionAttributes.addPmid(reaction, Integer.parseInt(pmidInt));
                             } catch (NumberFormatException e) {
@@ -514,7 +551,7 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
         // get the note/comment field (yes there is a note field in the sbml
         // note element..)
         if (this.getCommentPattern() != null
-                && (m = Pattern.compile(this.getCommentPattern()).matcher(reactionNotes)).find()) {
+                && (m = this.compile(this.getCommentPattern()).matcher(reactionNotes)).find()) {
             String value = m.group(1).trim();
 
             if (!isVoid(value)) {
@@ -526,7 +563,7 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
         if (reaction.getEnzymesView().isEmpty()) {
 
             if (this.getGPRPattern() != null
-                    && (m = Pattern.compile(this.getGPRPattern()).matcher(reactionNotes)).find()) {
+                    && (m = this.compile(this.getGPRPattern()).matcher(reactionNotes)).find()) {
                 try {
                     GPR.createGPRfromString(this.network, reaction, m.group(1));
                 } catch (MalformedGeneAssociationStringException | GeneSetException e) {
@@ -559,19 +596,19 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
         Matcher m;
 
         if (this.getFormulaPattern() != null
-                && (m = Pattern.compile(this.getFormulaPattern()).matcher(metaboNotes)).find()) {
+                && (m = this.compile(this.getFormulaPattern()).matcher(metaboNotes)).find()) {
             String value = m.group(1).trim();
 
             if (!isVoid(value)) {
                 metabolite.setChemicalFormula(value);
 
-                metaboNotes = metaboNotes.replaceAll(this.getFormulaPattern(), "");
+                metaboNotes = m.replaceAll("");
             }
 
         }
 
         if (this.getChargePattern() != null
-                && (m = Pattern.compile(this.getChargePattern()).matcher(metaboNotes)).find()) {
+                && (m = this.compile(this.getChargePattern()).matcher(metaboNotes)).find()) {
             String value = m.group(1).trim();
 
             if (!isVoid(value)) {
@@ -585,25 +622,24 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
                 }
 
 
-                metaboNotes = metaboNotes.replaceAll(this.getChargePattern(), "");
+                metaboNotes = m.replaceAll("");
             }
         }
 
         if (this.getInchiPattern() != null
-                && (m = Pattern.compile(this.getInchiPattern()).matcher(metaboNotes)).find()) {
+                && (m = this.compile(this.getInchiPattern()).matcher(metaboNotes)).find()) {
             String value = m.group(1).trim();
 
             if (!isVoid(value)) {
-                String inchi = value;
-                inchi = inchi.replaceAll("(?i)InChI\\=", "");
+                String inchi = inchiPrefixPattern.matcher(value).replaceAll("");
                 metabolite.setInchi(inchi);
 
-                metaboNotes = metaboNotes.replaceAll(this.getInchiPattern(), "");
+                metaboNotes = m.replaceAll("");
             }
         }
 
         if (this.getSmilesPattern() != null
-                && (m = Pattern.compile(this.getSmilesPattern()).matcher(metaboNotes)).find()) {
+                && (m = this.compile(this.getSmilesPattern()).matcher(metaboNotes)).find()) {
             String value = m.group(1).trim();
 
             if (!isVoid(value)) {
@@ -616,56 +652,48 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
     }
 
     /**
+     * Add each key/value pair found in notes as external reference. Notes are scanned in a single pass, and identical
+     * pairs are only processed once.
+     *
      * @param e a {@link BioEntity}
      */
     private void parseOtherRefs(BioEntity e) {
 
+        if (!this.isOthersAsRefs()) return;
+
         String notes = GenericAttributes.getNotes(e).getXHTMLasString();
 
         String dbName;
         String values;
 
-        Matcher m;
+        HashSet<String> visited = new HashSet<>();
+        Matcher m = extDBidsPattern.matcher(notes);
 
-        if (this.isOthersAsRefs()) {
+        while (m.find()) {
 
-            m = Pattern.compile(NotesParser.defaultextDBidsPAttern).matcher(notes);
+            if (!visited.add(m.group(0))) continue;
 
-            while (m.find()) {
+            dbName = m.group(1).trim().toLowerCase();
+            values = m.group(2).trim();
 
-                dbName = m.group(1).trim().toLowerCase();
-                values = m.group(2).trim();
-
-
-                if (isVoid(values)) {
-                    notes = notes.replace(m.group(0), "");
-                    m = Pattern.compile(NotesParser.defaultextDBidsPAttern).matcher(notes);
-                    continue;
-
-                } else {
-                    if (dbName.compareToIgnoreCase(MetaboliteAttributes.INCHI) != 0) {
-                        if (!dbName.matches(NotesParser.defaultchargePattern) &&
-                                !dbName.matches(NotesParser.defaultECPattern) &&
-                                !dbName.matches(NotesParser.defaultPathwayPattern) &&
-                                !dbName.matches(NotesParser.defaultformulaPattern)) {
-                            String[] ids = values.split(this.getSeparator());
-                            for (String value : ids) {
-                                if (!e.hasRef(dbName, value)) {
-                                    e.addRef(new BioRef("SBML", dbName, value, 1));
-                                }
-                            }
+            if (isVoid(values)) continue;
+
+            if (dbName.compareToIgnoreCase(MetaboliteAttributes.INCHI) != 0) {
+                if (!chargeKeyPattern.matcher(dbName).matches() &&
+                        !ECKeyPattern.matcher(dbName).matches() &&
+                        !pathwayKeyPattern.matcher(dbName).matches() &&
+                        !formulaKeyPattern.matcher(dbName).matches()) {
+                    String[] ids = this.compile(this.getSeparator()).split(values);
+                    for (String value : ids) {
+                        if (!e.hasRef(dbName, value)) {
+                            e.addRef(new BioRef("SBML", dbName, value, 1));
                         }
-                    } else {
-                        String inchi = values;
-                        inchi = inchi.replaceAll("(?i)InChI\\=", "");
-                        e.addRef(new BioRef("SBML", dbName, inchi, 1));
                     }
                 }
-                notes = notes.replace(m.group(0), "");
-                m = Pattern.compile(NotesParser.defaultextDBidsPAttern).matcher(notes);
+            } else {
+                String inchi = inchiPrefixPattern.matcher(values).replaceAll("");
+                e.addRef(new BioRef("SBML", dbName, inchi, 1));
             }
-
-
         }
 
     }
@@ -679,6 +707,43 @@ public class NotesParser implements PackageParser, AdditionalDataTag, ReaderSBML
 
     }
 
+    /**
+     * Get the compiled version of a pattern, compiling it on first use
+     *
+     * @param regex the pattern
+     * @return the compiled pattern
+     */
+    private Pattern compile(String regex) {
+        return compiledPatterns.computeIfAbsent(regex, Pattern::compile);
+    }
+
+    /**
+     * Get the time spent retrieving entities' notes from the SBML model during the last parsings
+     *
+     * @return the time in milliseconds
+     */
+    public long getNotesRetrievalTime() {
+        return notesRetrievalTime / 1000000;
+    }
+
+    /**
+     * Get the time spent extracting data from entities' notes during the last parsings
+     *
+     * @return the time in milliseconds
+     */
+    public long getNotesParsingTime() {
+        return notesParsingTime / 1000000;
+    }
+
+    /**
+     * Get the number of entities' notes parsed
+     *
+     * @return the number of notes
+     */
+    public int getNumberOfParsedNotes() {
+        return nbOfParsedNotes;
+    }
+
     /**
      * Set all patterns to their default values using the defined static fields
      */
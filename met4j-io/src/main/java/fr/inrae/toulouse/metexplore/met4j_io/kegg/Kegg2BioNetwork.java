@@ -39,7 +39,10 @@ package fr.inrae.toulouse.metexplore.met4j_io.kegg;
 
 import java.io.StringReader;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -121,10 +124,8 @@ public class Kegg2BioNetwork {
 
             List<List<String>> queryReactions = this.patitionIdsByTen(new ArrayList<>(this.network.getReactionsView().getIds()));
 
-            for (List<String> tenReactions : queryReactions) {
-                TimeUnit.MILLISECONDS.sleep(100);
-
-                this.getReactionData(tenReactions);
+            for (HashMap<String, HashMap<String, ArrayList<String>>> reactionData : this.fetchAll(queryReactions, this::getEntitiesData)) {
+                this.setReactionData(reactionData);
             }
 
 
@@ -132,10 +133,8 @@ public class Kegg2BioNetwork {
 
             List<List<String>> queryMetabolites = this.patitionIdsByTen(new ArrayList<>(this.network.getMetabolitesView().getIds()));
 
-            for (List<String> tenMetabolites : queryMetabolites) {
-                TimeUnit.MILLISECONDS.sleep(100);
-
-                this.getCompoundData(tenMetabolites);
+            for (HashMap<String, HashMap<String, ArrayList<String>>> compoundData : this.fetchAll(queryMetabolites, this::getEntitiesData)) {
+                this.setCompoundData(compoundData);
             }
 
             System.err.println("Done !\n");
@@ -209,14 +208,19 @@ public class Kegg2BioNetwork {
 
         this.setPathwayList();
 
-        for (String dbId : this.pathwayList.keySet()) {
+        // the kgml files are downloaded concurrently, then pathways are added to the network one by one
+        List<String> pathwayIds = new ArrayList<>(this.pathwayList.keySet());
+        List<String> kgmls = this.fetchAll(pathwayIds, this.keggServices::getKgml);
+
+        for (int i = 0; i < pathwayIds.size(); i++) {
 
+            String dbId = pathwayIds.get(i);
             String name = this.pathwayList.get(dbId);
             BioPathway path = new BioPathway(dbId, name);
 
             this.network.add(path);
 
-            this.getPathwayComponents(path);
+            this.getPathwayComponents(path, kgmls.get(i));
 
             if (this.network.getReactionsFromPathways(path).size() == 0) {
                 this.network.removeOnCascade(path);
@@ -260,8 +264,18 @@ public class Kegg2BioNetwork {
      * @throws java.lang.Exception if any.
      */
     public void getPathwayComponents(BioPathway pathway) throws Exception {
+        this.getPathwayComponents(pathway, this.keggServices.getKgml(pathway.getId()));
+    }
 
-        String xml = this.keggServices.getKgml(pathway.getId());
+    /**
+     * Adds the reactions of a pathway from its kgml
+     *
+     * @param pathway a {@link fr.inrae.toulouse.metexplore.met4j_core.biodata.BioPathway} object.
+     * @param xml     the kgml of the pathway
+     * @throws java.lang.Exception if any.
+     * @see #getPathwayComponents(BioPathway)
+     */
+    protected void getPathwayComponents(BioPathway pathway, String xml) throws Exception {
 
         Document doc;
         try {
@@ -507,8 +521,13 @@ public class Kegg2BioNetwork {
      * @param reactions a {@link List} of reaction ids
      */
     protected void getReactionData(List<String> reactions) throws Exception {
+        this.setReactionData(this.getEntitiesData(reactions));
+    }
 
-        HashMap<String, HashMap<String, ArrayList<String>>> allData = this.getEntitiesData(reactions);
+    /**
+     * Set reaction data retrieved by {@link #getEntitiesData(List)}
+     */
+    private void setReactionData(HashMap<String, HashMap<String, ArrayList<String>>> allData) throws Exception {
 
         for (String id : allData.keySet()) {
 
@@ -627,8 +646,13 @@ public class Kegg2BioNetwork {
      * @param metabolites : a {@link List} of metabolite ids
      */
     protected void getCompoundData(List<String> metabolites) throws Exception {
+        this.setCompoundData(this.getEntitiesData(metabolites));
+    }
 
-        HashMap<String, HashMap<String, ArrayList<String>>> dataMap = this.getEntitiesData(metabolites);
+    /**
+     * Set compound data retrieved by {@link #getEntitiesData(List)}
+     */
+    private void setCompoundData(HashMap<String, HashMap<String, ArrayList<String>>> dataMap) {
 
         for (String id : dataMap.keySet()) {
 
@@ -708,15 +732,16 @@ public class Kegg2BioNetwork {
     /**
      * Gets the data of a list of entities from the Kegg api
      * <p>
-     * The list of ids (no more than 10) are concatened in one query.
+     * The list of ids (no more than {@link KeggServices#MAX_ENTRIES_PER_QUERY}) are concatened in one query.
      *
      * @param list {@link List} of ids
      * @return a map whose primary keys are entity ids and the second keys are the data fields
      */
     public HashMap<String, HashMap<String, ArrayList<String>>> getEntitiesData(List<String> list) throws Exception {
 
-        if (list.size() > 10) {
-            throw new IllegalArgumentException("[FATAL][met4j-io][Kegg2BioNetwork] query apis must not contain more than 10 ids");
+        if (list.size() > KeggServices.MAX_ENTRIES_PER_QUERY) {
+            throw new IllegalArgumentException("[FATAL][met4j-io][Kegg2BioNetwork] query apis must not contain more than "
+                    + KeggServices.MAX_ENTRIES_PER_QUERY + " ids");
         }
 
         String ids = String.join("+", list);
@@ -811,7 +836,50 @@ public class Kegg2BioNetwork {
     }
 
     /**
-     * Partition a list of ids by lists of 10 elements and concatenate them into
+     * Send queries to the Kegg api concurrently, no more than the maximal number of concurrent requests of the
+     * {@link KeggServices}. The rate of the queries is limited by the services.
+     *
+     * @param queries the queries
+     * @param fetch   the function sending a query and processing its result
+     * @param <Q>     the type of the queries
+     * @param <T>     the type of the results
+     * @return the results, in the order of the queries
+     * @throws Exception the first exception thrown by a query
+     */
+    private <Q, T> List<T> fetchAll(List<Q> queries, KeggQuery<Q, T> fetch) throws Exception {
+
+        List<T> results = new ArrayList<>();
+        if (queries.isEmpty()) {
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(queries.size(), this.keggServices.getMaxConcurrentRequests()));
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (Q query : queries) {
+                futures.add(executor.submit(() -> fetch.apply(query)));
+            }
+            for (Future<T> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return results;
+    }
+
+    @FunctionalInterface
+    private interface KeggQuery<Q, T> {
+        T apply(Q query) throws Exception;
+    }
+
+    /**
+     * Partition a list of ids by lists of {@link KeggServices#MAX_ENTRIES_PER_QUERY} elements and concatenate them into
      * strings ready for api
      * For instance : [A,B,C,D,E,F,G,H,I,L], [M,N,O]
      * will return :
@@ -821,7 +889,16 @@ public class Kegg2BioNetwork {
      * @return a {@link Set} of {@link String}
      */
     private List<List<String>> patitionIdsByTen(List<String> ids) {
-        return Lists.partition(ids, 10);
+        return Lists.partition(ids, KeggServices.MAX_ENTRIES_PER_QUERY);
+    }
+
+    /**
+     * Get the services used to query the Kegg api, to set the rate limit, the number of concurrent requests or the cache
+     *
+     * @return a {@link KeggServices}
+     */
+    public KeggServices getKeggServices() {
+        return keggServices;
     }
 
     public HashSet<String> getGeneList() {
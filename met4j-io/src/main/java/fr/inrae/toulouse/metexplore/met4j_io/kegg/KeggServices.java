@@ -41,17 +41,170 @@ import com.sun.jersey.api.client.config.DefaultClientConfig;
 
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriBuilder;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Access to the Kegg REST api.
+ * <p>
+ * Queries are throttled by a token bucket rate limiter (3 queries per second by default, as required by Kegg) and the number
+ * of concurrent queries is bounded, so the services can be shared by several threads.
+ * Responses can be cached on disk: each response is stored in a file named after the hash of its query, so repeated
+ * queries do not access the api.
+ */
 public class KeggServices {
 
+    /**
+     * Maximal number of entries in a single query of {@link #getKeggEntities(String)}
+     */
+    public static final int MAX_ENTRIES_PER_QUERY = 10;
+
     private final WebResource webResource;
 
+    private TokenBucket rateLimiter = new TokenBucket(3.0, 1);
+
+    private int maxConcurrentRequests = 3;
+    private Semaphore inFlight = new Semaphore(maxConcurrentRequests, true);
+
+    /** the directory of the response cache, null if responses are not cached */
+    private Path cacheDirectory = null;
+
     public KeggServices() {
+        this("https://rest.kegg.jp/");
+    }
+
+    /**
+     * Access to a Kegg REST api
+     *
+     * @param baseUri the url of the api, for example a mirror or a local server for tests
+     */
+    public KeggServices(String baseUri) {
         DefaultClientConfig config = new DefaultClientConfig();
         Client client = Client.create(config);
-        URI baseUri = UriBuilder.fromUri("https://rest.kegg.jp/").build();
-        this.webResource = client.resource(baseUri);
+        URI uri = UriBuilder.fromUri(baseUri).build();
+        this.webResource = client.resource(uri);
+    }
+
+    /**
+     * Set the maximal rate of queries sent to the api
+     *
+     * @param requestsPerSecond the number of queries per second
+     * @param burst             the number of queries that can be sent at once, before being spaced by the rate
+     * @return this instance
+     */
+    public KeggServices setRateLimit(double requestsPerSecond, int burst) {
+        if (requestsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("[met4j-io][KeggServices] The rate and the burst must be positive");
+        }
+        this.rateLimiter = new TokenBucket(requestsPerSecond, burst);
+        return this;
+    }
+
+    /**
+     * Set the maximal number of queries waiting for a response at the same time
+     *
+     * @param maxConcurrentRequests the number of queries
+     * @return this instance
+     */
+    public KeggServices setMaxConcurrentRequests(int maxConcurrentRequests) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("[met4j-io][KeggServices] The number of concurrent requests must be positive");
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.inFlight = new Semaphore(maxConcurrentRequests, true);
+        return this;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * Set the directory where api responses are cached. Responses found in the cache are returned without querying the api.
+     *
+     * @param cacheDirectory the directory, created if needed, or null to disable the cache
+     * @return this instance
+     */
+    public KeggServices setCacheDirectory(Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+        return this;
+    }
+
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Query the api, or get the response from the cache
+     *
+     * @param resource the resource to query
+     * @param accept   the accepted media type, null for any
+     * @return the response
+     */
+    private String get(WebResource resource, MediaType accept) {
+
+        Path cacheDirectory = this.cacheDirectory;
+        Path cached = null;
+        if (cacheDirectory != null) {
+            cached = cacheDirectory.resolve(hash(resource.getURI() + "\n" + accept));
+            if (Files.exists(cached)) {
+                try {
+                    return Files.readString(cached, StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    System.err.println("[met4j-io][KeggServices] Unable to read the cached response " + cached + ", the api is queried");
+                }
+            }
+        }
+
+        Semaphore permits = this.inFlight;
+        String response;
+        try {
+            permits.acquire();
+            try {
+                this.rateLimiter.acquire();
+                response = accept == null ? resource.get(String.class) : resource.accept(accept).get(String.class);
+            } finally {
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("[met4j-io][KeggServices] Interrupted while waiting for the Kegg api", e);
+        }
+
+        if (cached != null) {
+            try {
+                Files.createDirectories(cacheDirectory);
+                // write in a temporary file first, so concurrent readers never see a partial response
+                Path tmp = Files.createTempFile(cacheDirectory, "tmp", null);
+                Files.writeString(tmp, response, StandardCharsets.UTF_8);
+                Files.move(tmp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.err.println("[met4j-io][KeggServices] Unable to cache the response in " + cacheDirectory);
+            }
+        }
+
+        return response;
+    }
+
+    private static String hash(String query) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(query.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
@@ -79,7 +232,7 @@ public class KeggServices {
             throw new IllegalArgumentException("[met4j-io][KeggServices] Length of the organism id must contain only 3 letters");
         }
 
-        return this.webResource.path("link").path("ec").path(orgId.toLowerCase()).get(String.class);
+        return this.get(this.webResource.path("link").path("ec").path(orgId.toLowerCase()), null);
     }
 
     /**
@@ -108,7 +261,7 @@ public class KeggServices {
             throw new IllegalArgumentException("[met4j-io][KeggServices] Length of the organism id must contain only 3 letters");
         }
 
-        return this.webResource.path("link").path("genome").path(orgId.toLowerCase()).get(String.class);
+        return this.get(this.webResource.path("link").path("genome").path(orgId.toLowerCase()), null);
     }
 
     /**
@@ -118,7 +271,7 @@ public class KeggServices {
      * @return a {@link String}, the result of the query in kgml format
      */
     public String getKgml(String id) {
-        return this.webResource.path("get").path(id).path("kgml").accept(MediaType.APPLICATION_XML).get(String.class);
+        return this.get(this.webResource.path("get").path(id).path("kgml"), MediaType.APPLICATION_XML_TYPE);
     }
 
     /**
@@ -140,7 +293,7 @@ public class KeggServices {
             throw new IllegalArgumentException("[met4j-io][KeggServices] Length of the organism id must contain only 3 letters");
         }
 
-        return this.webResource.path("list").path("pathway").path(orgId.toLowerCase()).get(String.class);
+        return this.get(this.webResource.path("list").path("pathway").path(orgId.toLowerCase()), null);
     }
 
     /**
@@ -171,16 +324,16 @@ public class KeggServices {
             throw new IllegalArgumentException("[met4j-io][KeggServices] Length of the organism id must contain only 3 letters");
         }
 
-        return this.webResource.path("info").path(orgId.toLowerCase()).get(String.class);
+        return this.get(this.webResource.path("info").path(orgId.toLowerCase()), null);
     }
 
     /**
      * Get Kegg entries for several ids separated by +
-     * @param query a String containing several ids separated by +
+     * @param query a String containing several ids separated by +, no more than {@link #MAX_ENTRIES_PER_QUERY}
      * @return a {@link String}, the result of the query
      */
     public String getKeggEntities(String query) {
-        return this.webResource.path("get").path(query).get(String.class);
+        return this.get(this.webResource.path("get").path(query), null);
     }
 
     /**
@@ -194,7 +347,7 @@ public class KeggServices {
             throw new IllegalArgumentException("[met4j-io][KeggServices] Length of the organism id must contain only 3 letters");
         }
 
-        String[] Data = this.webResource.path("list").path("genome").get(String.class).split("\\n");
+        String[] Data = this.get(this.webResource.path("list").path("genome"), null).split("\\n");
 
         for (String genome : Data) {
             String[] tab = genome.split("\\t");
@@ -210,4 +363,45 @@ public class KeggServices {
 
     }
 
+
+    /**
+     * Token bucket rate limiter: up to {@code capacity} queries can be sent at once, then queries are spaced according
+     * to the rate. Tokens are reserved in order, so waiting queries are served first come, first served.
+     */
+    static class TokenBucket {
+
+        /** number of tokens per nanosecond */
+        private final double rate;
+        private final double capacity;
+        private double tokens;
+        private long last;
+
+        TokenBucket(double requestsPerSecond, int capacity) {
+            this.rate = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.last = System.nanoTime();
+        }
+
+        /**
+         * Take a token, possibly in advance
+         *
+         * @return the time to wait before the token is available, in nanoseconds
+         */
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - last) * rate);
+            last = now;
+            tokens--;
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / rate);
+        }
+
+        void acquire() throws InterruptedException {
+            long wait = reserve();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+
 }
@@ -41,11 +41,19 @@ import fr.inrae.toulouse.metexplore.met4j_io.jsbml.reader.plugin.FBCParser;
 import fr.inrae.toulouse.metexplore.met4j_io.jsbml.reader.plugin.PackageParser;
 import org.junit.Test;
 import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLWriter;
 
 import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.doReturn;
@@ -113,4 +121,29 @@ public class JsbmlReaderTest {
     }
 
 
-}
\ No newline at end of file
+    @Test
+    public void readStream() throws IOException, XMLStreamException, Met4jSbmlReaderException {
+
+        String xml = new SBMLWriter().writeSBMLToString(new SbmlDocMock().doc);
+        byte[] raw = xml.getBytes(StandardCharsets.UTF_8);
+
+        BioNetwork network = new JsbmlReader(new ByteArrayInputStream(raw)).read();
+        assertEquals(3, network.getReactionsView().size());
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(raw);
+        }
+        network = new JsbmlReader(new ByteArrayInputStream(compressed.toByteArray())).read();
+        assertEquals(3, network.getReactionsView().size());
+
+        File gz = File.createTempFile("met4j", ".xml.gz");
+        gz.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(gz)) {
+            compressed.writeTo(out);
+        }
+        network = new JsbmlReader(gz.getAbsolutePath()).read();
+        assertEquals(3, network.getReactionsView().size());
+    }
+
+}
@@ -38,7 +38,10 @@ package fr.inrae.toulouse.metexplore.met4j_io.jsbml.reader.plugin;
 
 import static org.junit.Assert.*;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -132,6 +135,8 @@ public class NotesParserTest {
 		assertEquals(ref.dbName, "attribut1");
 		assertEquals(ref.id, "value1");
 
+		assertEquals(1, parser.getNumberOfParsedNotes());
+
 	}
 
 	@Test
@@ -201,6 +206,57 @@ public class NotesParserTest {
 
 	}
 
+	@Test
+	public void testReuseCompiledPatterns() throws XMLStreamException {
+
+		Reaction r1 = model.createReaction("r1");
+
+		r1.setNotes("<body xmlns=\"http://www.w3.org/1999/xhtml\">\n"
+				+ "    <p>EC-NUMBER: 1.1.1.1</p><p>PMID: 10000,12323</p><p>SUBSYSTEM: Pathway1 || Pathway2</p>\n  </body>");
+
+		BioReaction reaction1 = new BioReaction("r1");
+		network.add(reaction1);
+
+		parser = new NotesParser(true);
+
+		parser.parseModel(model, network);
+
+		Map<String, Pattern> compiled = new HashMap<>(parser.compiledPatterns);
+
+		assertTrue(compiled.containsKey(parser.getECPattern()));
+		assertTrue(compiled.containsKey(parser.getPathwayPattern()));
+		assertTrue(compiled.containsKey(parser.getPathwaySep()));
+
+		// second parsing with the same parser, on a new network
+		BioNetwork network2 = new BioNetwork();
+		BioReaction reaction2 = new BioReaction("r1");
+		network2.add(reaction2);
+
+		parser.parseModel(model, network2);
+
+		assertEquals(compiled.keySet(), parser.compiledPatterns.keySet());
+		for (Map.Entry<String, Pattern> e : compiled.entrySet()) {
+			assertSame(e.getValue(), parser.compiledPatterns.get(e.getKey()));
+		}
+
+		assertEquals(reaction1.getEcNumber(), reaction2.getEcNumber());
+		assertEquals(network.getPathwaysView().getIds(), network2.getPathwaysView().getIds());
+		assertEquals(ReactionAttributes.getPmids(reaction1), ReactionAttributes.getPmids(reaction2));
+		assertEquals(2, parser.getNumberOfParsedNotes());
+
+		// a pattern changed between two parsings is compiled again
+		parser.ECPattern = "(?i:>\\s*EC:\\s*([^<]+)<)";
+		BioNetwork network3 = new BioNetwork();
+		BioReaction reaction3 = new BioReaction("r1");
+		network3.add(reaction3);
+
+		parser.parseModel(model, network3);
+
+		assertTrue(parser.compiledPatterns.containsKey(parser.ECPattern));
+		assertNull(reaction3.getEcNumber());
+
+	}
+
 	@Test
 	public void testComputeGeneAssociation() throws XMLStreamException {
 
@@ -0,0 +1,266 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.inrae.toulouse.metexplore.met4j_io.kegg;
+
+import com.sun.jersey.api.client.UniformInterfaceException;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the queries against a local server standing in for rest.kegg.jp
+ */
+public class KeggServicesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    HttpServer server;
+    String baseUri;
+
+    /** responses of the server by path */
+    final Map<String, String> responses = new HashMap<>();
+    final AtomicInteger requests = new AtomicInteger();
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+    volatile long delay = 0;
+    /** delays of the server by path, added to the default delay */
+    final Map<String, Long> delays = new ConcurrentHashMap<>();
+    /** if set, kgml requests are held until this number of them have arrived */
+    volatile CountDownLatch kgmlArrivals;
+
+    @Before
+    public void init() throws IOException {
+        responses.put("/info/bap", KeggApiMock.orgInfo);
+        responses.put("/get/C00005+C02683", KeggApiMock.metaboliteInfo);
+        responses.put("/get/R00109+R00209", KeggApiMock.reactionInfo);
+        responses.put("/list/pathway/bap", "bap00000\tFake pathway without reactions\n" +
+                "bap00020\tCitrate cycle (TCA cycle)\n" +
+                "bap00030\tCitrate cycle (TCA cycle) copy\n");
+        responses.put("/get/bap00000/kgml", KeggApiMock.noReactionPathwayKgml);
+        responses.put("/get/bap00020/kgml", KeggApiMock.tcaKgml);
+        responses.put("/get/bap00030/kgml", KeggApiMock.tcaKgml);
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                CountDownLatch arrivals = kgmlArrivals;
+                if (arrivals != null && exchange.getRequestURI().getRawPath().endsWith("/kgml")) {
+                    arrivals.countDown();
+                    arrivals.await(10, TimeUnit.SECONDS);
+                }
+                long wait = delay + delays.getOrDefault(exchange.getRequestURI().getRawPath(), 0L);
+                if (wait > 0) TimeUnit.MILLISECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String response = responses.get(exchange.getRequestURI().getRawPath());
+            byte[] body = (response == null ? "" : response).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(response == null ? 404 : 200, body.length == 0 ? -1 : body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+            inFlight.decrementAndGet();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUri = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testQueries() throws Exception {
+        KeggServices services = new KeggServices(baseUri).setRateLimit(100, 10);
+        assertEquals(KeggApiMock.orgInfo, services.getKeggOrganismInfo("BAP"));
+        assertEquals(KeggApiMock.metaboliteInfo, services.getKeggEntities("C00005+C02683"));
+
+        Kegg2BioNetwork app = new Kegg2BioNetwork("bap");
+        app.keggServices = services;
+        app.setNetWorkName();
+        assertEquals("Buchnera aphidicola 5A (Acyrthosiphon pisum)", app.getNetwork().getName());
+        HashMap<String, HashMap<String, ArrayList<String>>> data = app.getEntitiesData(Arrays.asList("C00005", "C02683"));
+        assertEquals(Set.of("C00005", "C02683"), data.keySet());
+    }
+
+    /**
+     * Build a network from three kgml files, all requests being in flight at once and the pathway without reactions
+     * answering last
+     */
+    private Kegg2BioNetwork createNetworkPathways() throws Exception {
+        kgmlArrivals = new CountDownLatch(3);
+        delays.put("/get/bap00000/kgml", 200L);
+
+        Kegg2BioNetwork app = spy(new Kegg2BioNetwork("bap", "reaction"));
+        app.keggServices = new KeggServices(baseUri).setRateLimit(100, 10).setMaxConcurrentRequests(3);
+        DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+        // Do not load dtd
+        builderFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        doReturn(builderFactory).when(app).getFactory();
+        app.setBionetworkDefaultValue();
+
+        app.createNetworkPathways();
+        return app;
+    }
+
+    @Test
+    public void testFetchAll() throws Exception {
+        Kegg2BioNetwork app = createNetworkPathways();
+
+        // each kgml is assigned to its own pathway despite the order of the responses
+        Set<String> pathways = new HashSet<>();
+        app.getNetwork().getPathwaysView().forEach(p -> pathways.add(p.getId()));
+        assertEquals(Set.of("bap00020", "bap00030"), pathways);
+        assertFalse(app.getNetwork().getReactionsView().isEmpty());
+        assertEquals(app.getNetwork().getReactionsFromPathways(app.getNetwork().getPathway("bap00020")),
+                app.getNetwork().getReactionsFromPathways(app.getNetwork().getPathway("bap00030")));
+        assertEquals(3, maxInFlight.get());
+    }
+
+    @Test
+    public void testFetchAllError() throws Exception {
+        responses.remove("/get/bap00030/kgml");
+        try {
+            createNetworkPathways();
+            fail();
+        } catch (UniformInterfaceException e) {
+            // the exception of the failed query is thrown as is
+            assertEquals(404, e.getResponse().getStatus());
+        }
+    }
+
+    @Test(expected = UniformInterfaceException.class)
+    public void testQueryError() {
+        new KeggServices(baseUri).getKeggEntities("C99999");
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        Path cache = folder.getRoot().toPath().resolve("cache");
+        KeggServices services = new KeggServices(baseUri).setRateLimit(100, 10).setCacheDirectory(cache);
+
+        assertEquals(KeggApiMock.reactionInfo, services.getKeggEntities("R00109+R00209"));
+        assertEquals(KeggApiMock.reactionInfo, services.getKeggEntities("R00109+R00209"));
+        assertEquals(1, requests.get());
+        assertEquals(KeggApiMock.orgInfo, services.getKeggOrganismInfo("bap"));
+        assertEquals(2, requests.get());
+
+        // errors are not cached
+        try {
+            services.getKeggEntities("C99999");
+            fail();
+        } catch (UniformInterfaceException e) {
+            assertEquals(404, e.getResponse().getStatus());
+        }
+
+        // another build works offline
+        server.stop(0);
+        KeggServices offline = new KeggServices(baseUri).setCacheDirectory(cache);
+        assertEquals(KeggApiMock.reactionInfo, offline.getKeggEntities("R00109+R00209"));
+        assertEquals(KeggApiMock.orgInfo, offline.getKeggOrganismInfo("bap"));
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void testMaxConcurrentRequests() throws Exception {
+        delay = 50;
+        KeggServices services = new KeggServices(baseUri).setRateLimit(1000, 100).setMaxConcurrentRequests(2);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> services.getKeggOrganismInfo("bap")));
+            }
+            for (Future<String> result : results) {
+                assertEquals(KeggApiMock.orgInfo, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(8, requests.get());
+        assertTrue(maxInFlight.get() <= 2);
+    }
+
+    @Test
+    public void testRateLimit() {
+        KeggServices services = new KeggServices(baseUri).setRateLimit(20, 1);
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            services.getKeggOrganismInfo("bap");
+        }
+        // the first query is sent at once, then one query every 50ms
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+    }
+
+    @Test
+    public void testTokenBucket() {
+        KeggServices.TokenBucket bucket = new KeggServices.TokenBucket(1, 3);
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+        long wait = bucket.reserve();
+        assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(900) && wait <= TimeUnit.SECONDS.toNanos(1));
+        // reservations are queued
+        assertTrue(bucket.reserve() > TimeUnit.MILLISECONDS.toNanos(1900));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRateLimit() {
+        new KeggServices(baseUri).setRateLimit(0, 1);
+    }
+}
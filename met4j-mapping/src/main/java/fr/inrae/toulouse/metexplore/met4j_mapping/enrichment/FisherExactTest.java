@@ -0,0 +1,148 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.inrae.toulouse.metexplore.met4j_mapping.enrichment;
+
+/**
+ * One-tailed exact Fisher test computed in log-space, using a precomputed table of log-factorials.
+ * The table is sized to the population (the sum of the contingency table entries), so that each hypergeometric
+ * probability only requires a few lookups. Larger values fall back to Stirling's series for the log-gamma function.
+ * An instance can be shared between threads and reused for every test sharing the same background.
+ *
+ * @author clement
+ */
+public class FisherExactTest {
+
+    /** log(n!) for n in [0, size] */
+    private final double[] logFact;
+
+    /**
+     * Instantiates a new test, with a log-factorial table for populations up to a given size.
+     *
+     * @param populationSize the largest population size (a+b+c+d) expected
+     */
+    public FisherExactTest(int populationSize) {
+        if(populationSize<0) throw new IllegalArgumentException("population size must be positive");
+        logFact = new double[populationSize+1];
+        for(int i=2; i<=populationSize; i++){
+            logFact[i] = logFact[i-1]+Math.log(i);
+        }
+    }
+
+    /**
+     * Get the largest population size covered by the log-factorial table
+     *
+     * @return the population size given at instantiation
+     */
+    public int getPopulationSize(){
+        return logFact.length-1;
+    }
+
+    /**
+     * Compute the natural logarithm of the factorial of a number, i.e. lnΓ(n+1)
+     *
+     * @param n the number
+     * @return log(n!)
+     */
+    public double logFactorial(int n){
+        if(n<0) throw new IllegalArgumentException("factorial of negative number");
+        if(n<logFact.length) return logFact[n];
+        return logGamma(n+1.0);
+    }
+
+    /**
+     * Compute the natural logarithm of the gamma function using Stirling's series, for x &ge; 1
+     *
+     * @param x the value
+     * @return lnΓ(x)
+     */
+    public static double logGamma(double x){
+        //shift to a range where the series is accurate, using Γ(x+1) = xΓ(x)
+        double shift = 0.0;
+        while(x<10.0){
+            shift-=Math.log(x);
+            x+=1.0;
+        }
+        double inv = 1.0/x;
+        double inv2 = inv*inv;
+        double series = inv*(1.0/12 - inv2*(1.0/360 - inv2*(1.0/1260 - inv2*(1.0/1680))));
+        return shift + (x-0.5)*Math.log(x) - x + 0.5*Math.log(2*Math.PI) + series;
+    }
+
+    /**
+     * Compute the logarithm of the hypergeometric probability from contingency table entries.
+     *
+     * @param a the number of elements in target set also found in query set
+     * @param b the number of elements in target set not found in query set
+     * @param c the number of elements in query set not found in target set
+     * @param d the number of elements not in target set nor in query set
+     * @return the log of the probability of obtaining the set of value
+     * @see PathwayEnrichment#getHypergeometricProba(int, int, int, int)
+     */
+    public double logHypergeometricProba(int a, int b, int c, int d){
+        return logFactorial(a+b) + logFactorial(c+d) + logFactorial(a+c) + logFactorial(b+d)
+                - logFactorial(a) - logFactorial(b) - logFactorial(c) - logFactorial(d) - logFactorial(a+b+c+d);
+    }
+
+    /**
+     * Compute the probability to get at least the given overlap between target and query, by summing the hypergeometric
+     * probability with increasing target/query intersection cardinality.
+     *
+     * @param a the number of elements in target set also found in query set
+     * @param b the number of elements in target set not found in query set
+     * @param c the number of elements in query set not found in target set
+     * @param d the number of elements not in target set nor in query set
+     * @return the probability of obtaining at least the same overlap between target and query
+     * @see PathwayEnrichment#exactFisherOneTailed(int, int, int, int)
+     */
+    public double oneTailed(int a, int b, int c, int d){
+        if(a<0 || b<0 || c<0 || d<0) throw new IllegalArgumentException("contingency table entries must be positive");
+        int lim = Math.min(b, c);
+        //terms are summed relative to the largest one (the distribution mode) to avoid underflow and overflow
+        long n = (long) a+b+c+d;
+        int mode = (int) (((long) a+b+1) * ((long) a+c+1) / (n+2)) - a;
+        mode = Math.max(0, Math.min(lim, mode));
+        double logMax = logHypergeometricProba(a+mode, b-mode, c-mode, d+mode);
+        double sum = 0.0;
+        for(int i=0; i<=lim; i++){
+            double term = Math.exp(logHypergeometricProba(a+i, b-i, c-i, d+i)-logMax);
+            sum+=term;
+            //past the mode, terms are decreasing
+            if(i>mode && term<sum*1e-17) break;
+        }
+        return Math.min(1.0, Math.exp(logMax+Math.log(sum)));
+    }
+}
@@ -40,17 +40,19 @@ import fr.inrae.toulouse.metexplore.met4j_core.biodata.*;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollection;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
- * compute Pathway enrichment statistic using one-tailed exact Fisher Test
+ * compute Pathway enrichment statistic using one-tailed exact Fisher Test.
+ * P-values are computed in log-space from a log-factorial table sized to the network's reactions, see {@link FisherExactTest}
  *
  * @author clement
  */
@@ -65,12 +67,27 @@ public class PathwayEnrichment {
     /** The HOLMBONFERRONI adjustment method code. */
     public static final int HOLMBONFERRONI=2;
 
+    /** The code for raw p-values, without adjustment. */
+    public static final int NO_ADJUSTMENT=-1;
+
+    /** The largest log-factorial table kept for the static tests, larger populations use Stirling's series */
+    private static final int MAX_SHARED_POPULATION=1<<20;
+
+    /** The Fisher test used by the static methods, replaced by a larger one when needed */
+    private static volatile FisherExactTest sharedFisher = new FisherExactTest(0);
+
     /** The BioNetwork. */
     BioNetwork bn;
 
     /** The reaction set. */
     BioCollection<BioReaction> reactionSet;
 
+    /** The Fisher test, sized to the background */
+    FisherExactTest fisher;
+
+    /** The number of reactions in each pathway, filled lazily and shared between queries on the same background */
+    Map<BioPathway, Integer> pathwaySizes;
+
     /**
      * Instantiates a new pathway enrichment.
      *
@@ -78,7 +95,16 @@ public class PathwayEnrichment {
      * @param entities a {@link java.util.Set} object.
      */
     public PathwayEnrichment(BioNetwork bn, Set<? extends BioEntity> entities) {
+        this(bn, entities, new FisherExactTest(bn.getReactionsView().size()), new HashMap<>());
+    }
+
+    /**
+     * Instantiates a new pathway enrichment sharing background related data with other queries
+     */
+    private PathwayEnrichment(BioNetwork bn, Set<? extends BioEntity> entities, FisherExactTest fisher, Map<BioPathway, Integer> pathwaySizes) {
         this.bn=bn;
+        this.fisher=fisher;
+        this.pathwaySizes=pathwaySizes;
 //		
         this.reactionSet=new BioCollection<BioReaction>();
         for(BioEntity e : entities){
@@ -99,15 +125,17 @@ public class PathwayEnrichment {
      * @return the hash map with pathway as key and pvalue as value
      */
     public HashMap<BioPathway, Double> computeEnrichment(){
-        BioCollection<BioPathway> paths = new BioCollection<BioPathway>();
+        //count the query reactions in each pathway in a single pass
+        HashMap<BioPathway, Integer> overlaps = new HashMap<BioPathway, Integer>();
         for(BioReaction r : reactionSet){
-            paths.addAll(this.bn.getPathwaysFromReaction(r));
+            for(BioPathway p : this.bn.getPathwaysFromReaction(r)){
+                overlaps.merge(p, 1, Integer::sum);
+            }
         }
 
         HashMap<BioPathway, Double> res = new HashMap<BioPathway, Double>();
-//		for(BioPathway p : bn.getPathwaysView().values()){
-        for(BioPathway p : paths){
-            res.put(p, getPvalue(p));
+        for(Map.Entry<BioPathway, Integer> e : overlaps.entrySet()){
+            res.put(e.getKey(), getPvalue(e.getValue(), getPathwaySize(e.getKey())));
         }
         return res;
     }
@@ -115,13 +143,15 @@ public class PathwayEnrichment {
     /**
      * Computes the enrichment using a multiple testing p-value adjustment
      *
-     * @param adjustmentMethod the adjustment method int code
+     * @param adjustmentMethod the adjustment method int code, {@link #NO_ADJUSTMENT} for raw p-values
      * @return the hash map with pathway as key and pvalue as value
      */
     public HashMap<BioPathway, Double> computeEnrichment(int adjustmentMethod){
         HashMap<BioPathway, Double> res = computeEnrichment();
         switch(adjustmentMethod)
         {
+            case PathwayEnrichment.NO_ADJUSTMENT:
+                break;
             case PathwayEnrichment.BONFERRONI:
                 res = bonferroniCorrection(res);
                 break;
@@ -138,6 +168,37 @@ public class PathwayEnrichment {
         return res;
     }
 
+    /**
+     * Computes the enrichment of several query sets against the same network. The log-factorial table and the pathways
+     * sizes are only computed once for all queries.
+     *
+     * @param bn the bioNetwork
+     * @param queries the list of query sets, containing reactions and/or metabolites
+     * @return the list of maps with pathway as key and pvalue as value, in the same order as the queries
+     */
+    public static List<HashMap<BioPathway, Double>> computeEnrichment(BioNetwork bn, List<? extends Set<? extends BioEntity>> queries){
+        return computeEnrichment(bn, queries, NO_ADJUSTMENT);
+    }
+
+    /**
+     * Computes the enrichment of several query sets against the same network, using a multiple testing p-value adjustment
+     * applied independently to each query.
+     *
+     * @param bn the bioNetwork
+     * @param queries the list of query sets, containing reactions and/or metabolites
+     * @param adjustmentMethod the adjustment method int code, {@link #NO_ADJUSTMENT} for raw p-values
+     * @return the list of maps with pathway as key and pvalue as value, in the same order as the queries
+     */
+    public static List<HashMap<BioPathway, Double>> computeEnrichment(BioNetwork bn, List<? extends Set<? extends BioEntity>> queries, int adjustmentMethod){
+        FisherExactTest fisher = new FisherExactTest(bn.getReactionsView().size());
+        HashMap<BioPathway, Integer> pathwaySizes = new HashMap<>();
+        List<HashMap<BioPathway, Double>> res = new ArrayList<>(queries.size());
+        for(Set<? extends BioEntity> query : queries){
+            res.add(new PathwayEnrichment(bn, query, fisher, pathwaySizes).computeEnrichment(adjustmentMethod));
+        }
+        return res;
+    }
+
     /**
      * Gets the enrichment p-value for a given pathway.
      *
@@ -150,13 +211,23 @@ public class PathwayEnrichment {
             throw new IllegalArgumentException("pathway not in network");
         }
         Collection<BioReaction> reactionInPathway = bn.getReactionsFromPathways(pathway);
+        return getPvalue(intersect(reactionSet, reactionInPathway).size(), reactionInPathway.size());
+    }
 
+    /**
+     * Gets the enrichment p-value from the size of the overlap between the query and a pathway
+     */
+    private double getPvalue(int overlap, int pathwaySize){
         //build contingency table
-        int a = intersect(reactionSet, reactionInPathway).size();
+        int a = overlap;
         int b = reactionSet.size()-a;
-        int c = reactionInPathway.size()-a;
+        int c = pathwaySize-a;
         int d = bn.getReactionsView().size()-(a+b+c);
-        return exactFisherOneTailed(a,b,c,d);
+        return fisher.oneTailed(a,b,c,d);
+    }
+
+    private int getPathwaySize(BioPathway pathway){
+        return pathwaySizes.computeIfAbsent(pathway, p -> bn.getReactionsFromPathways(p).size());
     }
 
     /**
@@ -191,11 +262,7 @@ public class PathwayEnrichment {
      * @return the probability of obtaining the set of value
      */
     public static double getHypergeometricProba(int a, int b, int c, int d){
-        BigDecimal numerator = fact(a+b).multiply(fact(c+d)).multiply(fact(a+c)).multiply(fact(b+d));
-        BigDecimal denominator = fact(a).multiply(fact(b)).multiply(fact(c)).multiply(fact(d)).multiply(fact(a+b+c+d));
-        BigDecimal res = numerator.divide(denominator, MathContext.DECIMAL64);
-
-        return res.doubleValue();
+        return Math.exp(getSharedFisher(a+b+c+d).logHypergeometricProba(a, b, c, d));
     }
 
     /**
@@ -211,12 +278,27 @@ public class PathwayEnrichment {
      * @return the probability of obtaining at least the same overlap between target and query
      */
     public static double exactFisherOneTailed(int a, int b, int c, int d){
-        double res = 0.0;
-        int lim = Math.min(a+c, a+b);
-        for(int i=0; a+i<=lim; i++){
-            res+=getHypergeometricProba(a+i, b-i, c-i, d+i);
+        return getSharedFisher(a+b+c+d).oneTailed(a, b, c, d);
+    }
+
+    /**
+     * Get a Fisher test with a log-factorial table covering a given population size (up to a limit), shared between
+     * calls. The table is grown by at least doubling its size, so repeated tests with increasing populations only
+     * rebuild it a few times.
+     */
+    private static FisherExactTest getSharedFisher(int populationSize){
+        FisherExactTest fisher = sharedFisher;
+        int size = Math.min(populationSize, MAX_SHARED_POPULATION);
+        if(fisher.getPopulationSize()<size){
+            synchronized(PathwayEnrichment.class){
+                fisher = sharedFisher;
+                if(fisher.getPopulationSize()<size){
+                    fisher = new FisherExactTest(Math.min(MAX_SHARED_POPULATION, Math.max(size, 2*fisher.getPopulationSize())));
+                    sharedFisher = fisher;
+                }
+            }
         }
-        return res;
+        return fisher;
     }
 
     /**
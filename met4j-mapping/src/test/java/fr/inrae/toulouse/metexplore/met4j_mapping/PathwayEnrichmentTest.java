@@ -0,0 +1,111 @@
+package fr.inrae.toulouse.metexplore.met4j_mapping;
+
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetwork;
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioPathway;
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioReaction;
+import fr.inrae.toulouse.metexplore.met4j_mapping.enrichment.FisherExactTest;
+import fr.inrae.toulouse.metexplore.met4j_mapping.enrichment.PathwayEnrichment;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PathwayEnrichmentTest {
+
+    /**
+     * reference computation, with arbitrary precision factorials
+     */
+    private static double hypergeometricProba(int a, int b, int c, int d){
+        BigDecimal numerator = PathwayEnrichment.fact(a+b).multiply(PathwayEnrichment.fact(c+d)).multiply(PathwayEnrichment.fact(a+c)).multiply(PathwayEnrichment.fact(b+d));
+        BigDecimal denominator = PathwayEnrichment.fact(a).multiply(PathwayEnrichment.fact(b)).multiply(PathwayEnrichment.fact(c)).multiply(PathwayEnrichment.fact(d)).multiply(PathwayEnrichment.fact(a+b+c+d));
+        return numerator.divide(denominator, MathContext.DECIMAL64).doubleValue();
+    }
+
+    private static double fisherOneTailed(int a, int b, int c, int d){
+        double res = 0.0;
+        for(int i=0; i<=Math.min(b, c); i++){
+            res+=hypergeometricProba(a+i, b-i, c-i, d+i);
+        }
+        return res;
+    }
+
+    @Test
+    public void testLogFactorial(){
+        FisherExactTest test = new FisherExactTest(10);
+        assertEquals(0.0, test.logFactorial(0), 1E-12);
+        assertEquals(0.0, test.logFactorial(1), 1E-12);
+        assertEquals(Math.log(3628800), test.logFactorial(10), 1E-12);
+        //beyond table
+        assertEquals(Math.log(PathwayEnrichment.fact(50).doubleValue()), test.logFactorial(50), 1E-10);
+        assertEquals(Math.log(6), FisherExactTest.logGamma(4.0), 1E-12);
+    }
+
+    @Test
+    public void testFisher(){
+        int[][] tables = {{1,2,3,4},{0,5,5,10},{3,0,2,40},{5,10,20,500},{12,30,80,1500},{0,1,0,0}};
+        for(int[] t : tables){
+            double expected = fisherOneTailed(t[0],t[1],t[2],t[3]);
+            double actual = PathwayEnrichment.exactFisherOneTailed(t[0],t[1],t[2],t[3]);
+            assertEquals(Arrays.toString(t), expected, actual, Math.max(1E-12, expected*1E-9));
+            assertEquals(Arrays.toString(t), hypergeometricProba(t[0],t[1],t[2],t[3]),
+                    PathwayEnrichment.getHypergeometricProba(t[0],t[1],t[2],t[3]), 1E-12);
+        }
+        //very small p-values
+        double expected = fisherOneTailed(40, 5, 10, 2000);
+        assertEquals(expected, new FisherExactTest(2055).oneTailed(40, 5, 10, 2000), expected*1E-9);
+        //no enrichment at all
+        assertEquals(1.0, PathwayEnrichment.exactFisherOneTailed(0, 10, 10, 5000), 1E-9);
+    }
+
+    @Test
+    public void testSharedFisher(){
+        //the static tests reuse a table grown as needed, results must not depend on previous calls
+        int[][] tables = {{12,30,80,1500},{1,2,3,4},{40,5,10,2000},{3,0,2,40},{200,1000,3000,2000000}};
+        for(int[] t : tables){
+            FisherExactTest dedicated = new FisherExactTest(t[0]+t[1]+t[2]+t[3]);
+            assertEquals(Arrays.toString(t), dedicated.oneTailed(t[0],t[1],t[2],t[3]),
+                    PathwayEnrichment.exactFisherOneTailed(t[0],t[1],t[2],t[3]), 1E-12);
+            assertEquals(Arrays.toString(t), Math.exp(dedicated.logHypergeometricProba(t[0],t[1],t[2],t[3])),
+                    PathwayEnrichment.getHypergeometricProba(t[0],t[1],t[2],t[3]), 1E-12);
+        }
+    }
+
+    @Test
+    public void testEnrichment(){
+        BioNetwork bn = new BioNetwork();
+        BioPathway p1 = new BioPathway("p1");
+        BioPathway p2 = new BioPathway("p2");
+        bn.add(p1, p2);
+        BioReaction[] r = new BioReaction[40];
+        for(int i=0; i<r.length; i++){
+            r[i] = new BioReaction("r"+i);
+            bn.add(r[i]);
+            bn.affectToPathway(i<5 ? p1 : p2, r[i]);
+        }
+        Set<BioReaction> query1 = new HashSet<>(Arrays.asList(r[0], r[1], r[2], r[10]));
+        Set<BioReaction> query2 = new HashSet<>(Arrays.asList(r[20], r[30]));
+
+        HashMap<BioPathway, Double> res = new PathwayEnrichment(bn, query1).computeEnrichment();
+        assertEquals(2, res.size());
+        assertEquals(fisherOneTailed(3, 1, 2, 34), res.get(p1), 1E-12);
+        assertEquals(fisherOneTailed(1, 3, 34, 2), res.get(p2), 1E-12);
+        assertEquals(res.get(p1), new PathwayEnrichment(bn, query1).getPvalue(p1), 1E-15);
+
+        List<HashMap<BioPathway, Double>> batch = PathwayEnrichment.computeEnrichment(bn, Arrays.asList(query1, query2));
+        assertEquals(2, batch.size());
+        assertEquals(res, batch.get(0));
+        assertEquals(new PathwayEnrichment(bn, query2).computeEnrichment(), batch.get(1));
+        assertFalse(batch.get(1).containsKey(p1));
+
+        List<HashMap<BioPathway, Double>> adjusted = PathwayEnrichment.computeEnrichment(bn, Arrays.asList(query1, query2), PathwayEnrichment.BONFERRONI);
+        assertEquals(res.get(p1)*2, adjusted.get(0).get(p1), 1E-12);
+        assertEquals(batch, PathwayEnrichment.computeEnrichment(bn, Arrays.asList(query1, query2), PathwayEnrichment.NO_ADJUSTMENT));
+    }
+}
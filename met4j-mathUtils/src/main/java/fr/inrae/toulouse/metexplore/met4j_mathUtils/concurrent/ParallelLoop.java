@@ -0,0 +1,85 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.inrae.toulouse.metexplore.met4j_mathUtils.concurrent;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Run independent tasks over a range of indexes on a fork-join pool, with a configurable number of threads.
+ * A number of threads of 0 uses the common fork-join pool, a positive number uses a dedicated pool
+ * shut down once the tasks are done.
+ *
+ * @author clement
+ */
+public final class ParallelLoop {
+
+	private ParallelLoop() {
+	}
+
+	/**
+	 * Check a number of threads
+	 *
+	 * @param threads the number of threads, 0 to use the common pool
+	 * @return the number of threads
+	 * @throws IllegalArgumentException if the number of threads is negative
+	 */
+	public static int checkThreads(int threads) throws IllegalArgumentException {
+		if(threads<0) throw new IllegalArgumentException("number of threads must be positive");
+		return threads;
+	}
+
+	/**
+	 * Run a task for each index in [0,n), in parallel. Tasks must not depend on each other.
+	 *
+	 * @param threads the number of threads, 0 to use the common pool
+	 * @param n the number of indexes
+	 * @param task the task, called with each index
+	 * @throws IllegalArgumentException if the number of threads is negative
+	 */
+	public static void forEach(int threads, int n, IntConsumer task) throws IllegalArgumentException {
+		checkThreads(threads);
+		if(n==0) return;
+		ForkJoinPool pool = threads>0 ? new ForkJoinPool(threads) : ForkJoinPool.commonPool();
+		try{
+			pool.submit(() -> IntStream.range(0, n).parallel().forEach(task)).join();
+		}finally{
+			if(threads>0) pool.shutdown();
+		}
+	}
+}
@@ -146,8 +146,7 @@ public class EjmlMatrix implements BioMatrix{
 	/** {@inheritDoc} */
 	@Override
 	public BioMatrix plus(BioMatrix m) {
-		SimpleMatrix b = m.getOriginal();
-		return new EjmlMatrix(mat.plus(b));
+		return new EjmlMatrix(mat.plus(toSimpleMatrix(m)));
 	}
 
 	/* (non-Javadoc)
@@ -156,8 +155,7 @@ public class EjmlMatrix implements BioMatrix{
 	/** {@inheritDoc} */
 	@Override
 	public BioMatrix minus(BioMatrix m) {
-		SimpleMatrix b = m.getOriginal();
-		return new EjmlMatrix(mat.minus(b));
+		return new EjmlMatrix(mat.minus(toSimpleMatrix(m)));
 	}
 
 	/* (non-Javadoc)
@@ -166,8 +164,18 @@ public class EjmlMatrix implements BioMatrix{
 	/** {@inheritDoc} */
 	@Override
 	public BioMatrix mult(BioMatrix m) {
-		SimpleMatrix b = m.getOriginal();
-		return new EjmlMatrix(mat.mult(b));
+		return new EjmlMatrix(mat.mult(toSimpleMatrix(m)));
+	}
+
+	/**
+	 * Gets the ejml matrix backing a BioMatrix, converting it if it comes from another implementation
+	 *
+	 * @param m the matrix
+	 * @return the ejml matrix
+	 */
+	private static SimpleMatrix toSimpleMatrix(BioMatrix m){
+		if(m instanceof EjmlMatrix) return m.getOriginal();
+		return new EjmlMatrix(m).getOriginal();
 	}
 
 	/* (non-Javadoc)
@@ -0,0 +1,659 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map.Entry;
+
+/**
+ * Sparse matrix using a compressed row storage over primitive arrays.
+ * Each row holds its non-zero entries as column indexes sorted in ascending order, with the corresponding values.
+ * Rows keep some free capacity so that entries can be set one by one without rebuilding the whole structure.
+ * Operations that produce dense results (inversion, eigen decomposition, scalar addition) are delegated to {@link EjmlMatrix}.
+ *
+ * @author clement
+ */
+public class SparseMatrix implements BioMatrix{
+
+	/** the label to row index map */
+	private HashMap<String, Integer> rowLabelMap = new HashMap<String, Integer>();
+
+	/** the row index to label map */
+	private HashMap<Integer, String> rowIndexMap = new HashMap<Integer, String>();
+
+	/** the label to column index map */
+	private HashMap<String, Integer> columnLabelMap = new HashMap<String, Integer>();
+
+	/** the column index to label map */
+	private HashMap<Integer, String> columnIndexMap = new HashMap<Integer, String>();
+
+	/** shared storage for empty rows */
+	private static final int[] EMPTY_INDEX = new int[0];
+	private static final double[] EMPTY_VALUES = new double[0];
+
+	/** The number of rows */
+	private final int numRows;
+
+	/** The number of columns */
+	private final int numCols;
+
+	/** for each row, the sorted column indexes of non-zero entries */
+	private final int[][] colIndex;
+
+	/** for each row, the values of non-zero entries */
+	private final double[][] values;
+
+	/** for each row, the number of non-zero entries */
+	private final int[] rowSize;
+
+	/**
+	 * Instantiates a new empty sparse matrix.
+	 *
+	 * @param numRows the number of rows
+	 * @param numCols the number of columns
+	 */
+	public SparseMatrix(int numRows, int numCols){
+		if(numRows<0 || numCols<0) throw new IllegalArgumentException("matrix size must be positive");
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.colIndex = new int[numRows][];
+		this.values = new double[numRows][];
+		this.rowSize = new int[numRows];
+		Arrays.fill(colIndex, EMPTY_INDEX);
+		Arrays.fill(values, EMPTY_VALUES);
+	}
+
+	/**
+	 * Instantiates a new sparse matrix from another matrix, keeping only non-zero entries.
+	 *
+	 * @param m the matrix
+	 */
+	public SparseMatrix(BioMatrix m) {
+		this(m.numRows(), m.numCols());
+		if(m instanceof SparseMatrix){
+			SparseMatrix s = (SparseMatrix) m;
+			for(int i=0; i<numRows; i++){
+				colIndex[i] = Arrays.copyOf(s.colIndex[i], s.rowSize[i]);
+				values[i] = Arrays.copyOf(s.values[i], s.rowSize[i]);
+				rowSize[i] = s.rowSize[i];
+			}
+		}else{
+			for(int i=0; i<numRows; i++){
+				for(int j=0; j<numCols; j++){
+					double v = m.get(i, j);
+					if(v!=0.0) append(i, j, v);
+				}
+			}
+		}
+		this.columnLabelMap = m.getColumnLabelMap();
+		this.columnIndexMap = m.getColumnIndexMap();
+		this.rowLabelMap = m.getRowLabelMap();
+		this.rowIndexMap = m.getRowIndexMap();
+	}
+
+	/**
+	 * Check that the given entry is within matrix boundaries
+	 */
+	private void checkIndex(int row, int col){
+		if(row<0 || row>=numRows || col<0 || col>=numCols) throw new IllegalArgumentException("index out of matrix");
+	}
+
+	/**
+	 * Gets the position of a column in the storage of a row, or a negative insertion point if the entry is zero
+	 */
+	private int position(int row, int col){
+		return Arrays.binarySearch(colIndex[row], 0, rowSize[row], col);
+	}
+
+	/**
+	 * Ensure a row can store the given number of entries
+	 */
+	private void ensureCapacity(int row, int capacity){
+		if(colIndex[row].length<capacity){
+			int newCapacity = Math.max(capacity, Math.max(4, colIndex[row].length*2));
+			colIndex[row] = Arrays.copyOf(colIndex[row], newCapacity);
+			values[row] = Arrays.copyOf(values[row], newCapacity);
+		}
+	}
+
+	/**
+	 * Add a non-zero entry at the end of a row. Column index must be greater than the last one in the row.
+	 */
+	private void append(int row, int col, double value){
+		ensureCapacity(row, rowSize[row]+1);
+		colIndex[row][rowSize[row]] = col;
+		values[row][rowSize[row]] = value;
+		rowSize[row]++;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double get(int row, int col) {
+		checkIndex(row, col);
+		int k = position(row, col);
+		return k<0 ? 0.0 : values[row][k];
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void set(int row, int col, double value) {
+		checkIndex(row, col);
+		int k = position(row, col);
+		if(k>=0){
+			if(value!=0.0){
+				values[row][k] = value;
+			}else{
+				//remove entry
+				int tail = rowSize[row]-k-1;
+				System.arraycopy(colIndex[row], k+1, colIndex[row], k, tail);
+				System.arraycopy(values[row], k+1, values[row], k, tail);
+				rowSize[row]--;
+			}
+		}else if(value!=0.0){
+			//insert entry
+			int ins = -(k+1);
+			ensureCapacity(row, rowSize[row]+1);
+			int tail = rowSize[row]-ins;
+			System.arraycopy(colIndex[row], ins, colIndex[row], ins+1, tail);
+			System.arraycopy(values[row], ins, values[row], ins+1, tail);
+			colIndex[row][ins] = col;
+			values[row][ins] = value;
+			rowSize[row]++;
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int numRows() {
+		return numRows;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int numCols() {
+		return numCols;
+	}
+
+	/**
+	 * Gets the number of non-zero entries
+	 *
+	 * @return the number of non-zero entries
+	 */
+	public long nonZeros(){
+		long n = 0;
+		for(int size : rowSize){
+			n+=size;
+		}
+		return n;
+	}
+
+	/**
+	 * Gets the column indexes of non-zero entries in a row, in ascending order
+	 *
+	 * @param i the row index
+	 * @return the non-zero columns
+	 */
+	public int[] getNonZeroColumns(int i){
+		return Arrays.copyOf(colIndex[i], rowSize[i]);
+	}
+
+	/**
+	 * Compute the product x.A of a row vector x by this matrix, without building a dense copy of the matrix.
+	 *
+	 * @param x the row vector, with as many elements as the matrix has rows
+	 * @return the resulting row vector
+	 */
+	public double[] leftMult(double[] x){
+		if(x.length!=numRows) throw new IllegalArgumentException("vector size does not match matrix rows");
+		double[] res = new double[numCols];
+		for(int i=0; i<numRows; i++){
+			double xi = x[i];
+			if(xi==0.0) continue;
+			int[] cols = colIndex[i];
+			double[] vals = values[i];
+			for(int k=0; k<rowSize[i]; k++){
+				res[cols[k]]+=xi*vals[k];
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Merge two sparse matrices entry-wise, computing this + factor * m
+	 */
+	private SparseMatrix merge(SparseMatrix m, double factor){
+		if(m.numRows!=numRows || m.numCols!=numCols) throw new IllegalArgumentException("matrix dimensions do not match");
+		SparseMatrix res = new SparseMatrix(numRows, numCols);
+		for(int i=0; i<numRows; i++){
+			int a=0, b=0;
+			int na=rowSize[i], nb=m.rowSize[i];
+			res.ensureCapacity(i, na+nb);
+			while(a<na || b<nb){
+				int ca = a<na ? colIndex[i][a] : Integer.MAX_VALUE;
+				int cb = b<nb ? m.colIndex[i][b] : Integer.MAX_VALUE;
+				double v;
+				int col;
+				if(ca==cb){
+					col=ca; v=values[i][a++]+factor*m.values[i][b++];
+				}else if(ca<cb){
+					col=ca; v=values[i][a++];
+				}else{
+					col=cb; v=factor*m.values[i][b++];
+				}
+				if(v!=0.0) res.append(i, col, v);
+			}
+		}
+		return res;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BioMatrix plus(BioMatrix m) {
+		if(m instanceof SparseMatrix) return merge((SparseMatrix) m, 1.0);
+		return new EjmlMatrix(this).plus(m);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BioMatrix minus(BioMatrix m) {
+		if(m instanceof SparseMatrix) return merge((SparseMatrix) m, -1.0);
+		return new EjmlMatrix(this).minus(m);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BioMatrix mult(BioMatrix m) {
+		if(m.numRows()!=numCols) throw new IllegalArgumentException("matrix dimensions do not match");
+		if(m instanceof SparseMatrix){
+			//row-wise product, accumulating each result row in a dense buffer
+			SparseMatrix b = (SparseMatrix) m;
+			SparseMatrix res = new SparseMatrix(numRows, b.numCols);
+			double[] acc = new double[b.numCols];
+			int[] mark = new int[b.numCols];
+			Arrays.fill(mark, -1);
+			int[] touched = new int[b.numCols];
+			for(int i=0; i<numRows; i++){
+				int nTouched = 0;
+				for(int k=0; k<rowSize[i]; k++){
+					int r = colIndex[i][k];
+					double v = values[i][k];
+					for(int l=0; l<b.rowSize[r]; l++){
+						int j = b.colIndex[r][l];
+						if(mark[j]!=i){
+							mark[j]=i;
+							acc[j]=0.0;
+							touched[nTouched++]=j;
+						}
+						acc[j]+=v*b.values[r][l];
+					}
+				}
+				Arrays.sort(touched, 0, nTouched);
+				res.ensureCapacity(i, nTouched);
+				for(int t=0; t<nTouched; t++){
+					int j = touched[t];
+					if(acc[j]!=0.0) res.append(i, j, acc[j]);
+				}
+			}
+			return res;
+		}
+		//sparse by dense product, result is dense
+		EjmlMatrix res = new EjmlMatrix(numRows, m.numCols());
+		for(int i=0; i<numRows; i++){
+			for(int k=0; k<rowSize[i]; k++){
+				int r = colIndex[i][k];
+				double v = values[i][k];
+				for(int j=0; j<m.numCols(); j++){
+					double mv = m.get(r, j);
+					if(mv!=0.0) res.set(i, j, res.get(i, j)+v*mv);
+				}
+			}
+		}
+		return res;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BioMatrix add(double value) {
+		return new EjmlMatrix(this).add(value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BioMatrix scale(double value) {
+		SparseMatrix res = new SparseMatrix(numRows, numCols);
+		if(value==0.0) return res;
+		for(int i=0; i<numRows; i++){
+			res.colIndex[i] = Arrays.copyOf(colIndex[i], rowSize[i]);
+			res.values[i] = new double[rowSize[i]];
+			for(int k=0; k<rowSize[i]; k++){
+				res.values[i][k] = values[i][k]*value;
+			}
+			res.rowSize[i] = rowSize[i];
+		}
+		return res;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BioMatrix invert() {
+		return new EjmlMatrix(this).invert();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BioMatrix identity() {
+		SparseMatrix i = new SparseMatrix(numRows, numRows);
+		for(int k=0; k<numRows; k++){
+			i.append(k, k, 1.0);
+		}
+		return i;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BioMatrix transpose() {
+		SparseMatrix t = new SparseMatrix(numCols, numRows);
+		//count entries per column to allocate transposed rows at once
+		int[] count = new int[numCols];
+		for(int i=0; i<numRows; i++){
+			for(int k=0; k<rowSize[i]; k++){
+				count[colIndex[i][k]]++;
+			}
+		}
+		for(int j=0; j<numCols; j++){
+			t.ensureCapacity(j, count[j]);
+		}
+		//rows are visited in ascending order, so transposed rows remain sorted
+		for(int i=0; i<numRows; i++){
+			for(int k=0; k<rowSize[i]; k++){
+				t.append(colIndex[i][k], i, values[i][k]);
+			}
+		}
+		return t;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BioMatrix getSubMatrix(int[] rows, int[] cols) {
+		SparseMatrix sub = new SparseMatrix(rows.length, cols.length);
+		HashMap<Integer,String> subColumnIndexMap = new HashMap<>();
+		HashMap<String,Integer> subColumnLabelMap = new HashMap<>();
+		HashMap<Integer,String> subRowIndexMap = new HashMap<>();
+		HashMap<String,Integer> subRowLabelMap = new HashMap<>();
+		for(int j=0; j<cols.length; j++){
+			subColumnIndexMap.put(j, this.getColumnLabel(cols[j]));
+			subColumnLabelMap.put(this.getColumnLabel(cols[j]),j);
+		}
+		for(int i=0; i<rows.length; i++){
+			subRowIndexMap.put(i, this.getRowLabel(rows[i]));
+			subRowLabelMap.put(this.getRowLabel(rows[i]),i);
+			for(int j=0; j<cols.length; j++){
+				sub.set(i, j, this.get(rows[i], cols[j]));
+			}
+		}
+		sub.setColumnIndexMap(subColumnIndexMap);
+		sub.setColumnLabelMap(subColumnLabelMap);
+		sub.setRowIndexMap(subRowIndexMap);
+		sub.setRowLabelMap(subRowLabelMap);
+		return sub;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BioMatrix copy() {
+		return new SparseMatrix(this);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public <T> T getOriginal() {
+		return (T)this;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double[][] toDoubleArray() {
+		double[][] doubleArray = new double[numRows][];
+		for(int i=0; i<numRows; i++){
+			doubleArray[i]=getRow(i);
+		}
+		return doubleArray;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double[] getRow(int i) {
+		double[] row = new double[numCols];
+		for(int k=0; k<rowSize[i]; k++){
+			row[colIndex[i][k]]=values[i][k];
+		}
+		return row;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double[] getCol(int j) {
+		double[] col = new double[numRows];
+		for(int i=0; i<numRows; i++){
+			col[i]=get(i, j);
+		}
+		return col;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BioMatrix getPrincipalEigenVector() {
+		return new EjmlMatrix(this).getPrincipalEigenVector();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double getColSum(int j) {
+		double sum = 0;
+		for(int i=0; i<numRows; i++){
+			sum+=get(i, j);
+		}
+		return sum;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double getRowSum(int i) {
+		double sum = 0;
+		for(int k=0; k<rowSize[i]; k++){
+			sum+=values[i][k];
+		}
+		return sum;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void print() {
+		for (int i=0; i<numRows; i++){
+			double[] row = getRow(i);
+			for (int j=0; j<numCols; j++){
+				System.out.print(row[j]);
+				if (j!=numCols-1){
+					System.out.print(",");
+				}else{
+					System.out.print("\n");
+				}
+			}
+		}
+		System.out.print("\n");
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setRowLabel(int i, String label) {
+		//checking :
+		//if index out of matrix boundaries, throw exception.
+		if(i<0 || i>=numRows()) throw new IllegalArgumentException("index out of matrix");
+		//if label already used, throw exception.
+		if(rowLabelMap.containsKey(label))
+			throw new IllegalArgumentException("label must be unique for each row");
+		
+		//set index to label and label to index maps.
+		rowLabelMap.put(label, i);
+		rowIndexMap.put(i, label);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setColumnLabel(int j, String label) {
+		//checking :
+		//if index out of matrix boundaries, throw exception.
+		if(j<0 || j>=numCols()) throw new IllegalArgumentException("index out of matrix");
+		//if label already used, throw exception.
+		if(columnLabelMap.containsKey(label))
+			throw new IllegalArgumentException("label must be unique for each row");
+		
+		//set index to label and label to index maps.
+		columnLabelMap.put(label, j);
+		columnIndexMap.put(j, label);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getRowLabel(int i) {
+		return rowIndexMap.get(i);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getColumnLabel(int j) {
+		return columnIndexMap.get(j);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getRowFromLabel(String rowLabel) {
+		return rowLabelMap.get(rowLabel);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getColumnFromLabel(String columnLabel) {
+		return columnLabelMap.get(columnLabel);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public HashMap<String, Integer> getRowLabelMap() {
+		return new HashMap<String, Integer>(rowLabelMap);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public HashMap<Integer, String> getRowIndexMap() {
+		return new HashMap<Integer, String>(rowIndexMap);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setRowLabelMap(HashMap<String, Integer> rowLabelMap) {
+		//check no duplicate in values
+		HashSet<Integer> testSet =  new HashSet<Integer>(rowLabelMap.values());
+		if(testSet.size()!=rowLabelMap.values().size()) throw new IllegalArgumentException("duplicate index in row label map");
+				
+		//set new label to index map
+		this.rowLabelMap=rowLabelMap;
+		//update index to label map
+		for(Entry<String, Integer> rowLabelEntry : rowLabelMap.entrySet()){
+			rowIndexMap.put(rowLabelEntry.getValue(), rowLabelEntry.getKey());
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setRowIndexMap(HashMap<Integer, String> rowIndexMap) {
+		//check no duplicate in values
+		HashSet<String> testSet =  new HashSet<String>(rowIndexMap.values());
+		if(testSet.size()!=rowIndexMap.values().size()) throw new IllegalArgumentException("duplicate label in row index map");
+		
+		//set new index to label map
+		this.rowIndexMap=rowIndexMap;
+		//update label to index map
+		for(Entry<Integer, String> rowIndexEntry : rowIndexMap.entrySet()){
+			rowLabelMap.put(rowIndexEntry.getValue(), rowIndexEntry.getKey());
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public HashMap<String, Integer> getColumnLabelMap() {
+		return new HashMap<String, Integer>(this.columnLabelMap);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public HashMap<Integer, String> getColumnIndexMap() {
+		return new HashMap<Integer, String>(this.columnIndexMap);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setColumnLabelMap(HashMap<String, Integer> colLabelMap) {
+		//check no duplicate in values
+		HashSet<Integer> testSet =  new HashSet<Integer>(colLabelMap.values());
+		if(testSet.size()!=colLabelMap.values().size()) throw new IllegalArgumentException("duplicate index in column label map");
+		
+		//set new label to index map
+		this.columnLabelMap=colLabelMap;
+		//update index to label map
+		for(Entry<String, Integer> columnLabelEntry : columnLabelMap.entrySet()){
+			columnIndexMap.put(columnLabelEntry.getValue(), columnLabelEntry.getKey());
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setColumnIndexMap(HashMap<Integer, String> colIndexMap) {
+		//check no duplicate in values
+		HashSet<String> testSet =  new HashSet<String>(colIndexMap.values());
+		if(testSet.size()!=colIndexMap.values().size()) throw new IllegalArgumentException("duplicate label in column index map");
+		
+		//set new index to label map
+		this.columnIndexMap=colIndexMap;
+		//update label to index map
+		for(Entry<Integer, String> columnIndexEntry : columnIndexMap.entrySet()){
+			columnLabelMap.put(columnIndexEntry.getValue(), columnIndexEntry.getKey());
+		}
+	}
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.inrae.toulouse.metexplore.met4j_mathUtils.similarity;
+
+
+import java.util.BitSet;
+
+/**
+ * Immutable fixed-width bit vector, stored as an array of 64-bit words with a precomputed cardinality.
+ * Intended for repeated similarity computation, see {@link SimilarityComputor}: comparing two packed fingerprints
+ * requires no allocation and a single pass over their words.
+ *
+ * @author clement
+ */
+public final class PackedFingerprint {
+
+	/** the bits, by 64-bit words */
+	private final long[] words;
+
+	/** the number of bits */
+	private final int width;
+
+	/** the number of set bits */
+	private final int cardinality;
+
+	/**
+	 * Instantiates a new packed fingerprint, using the bitset size as width.
+	 *
+	 * @param fingerprint the fingerprint
+	 */
+	public PackedFingerprint(BitSet fingerprint) {
+		this(fingerprint, fingerprint.size());
+	}
+
+	/**
+	 * Instantiates a new packed fingerprint.
+	 *
+	 * @param fingerprint the fingerprint
+	 * @param width the number of bits
+	 * @throws java.lang.IllegalArgumentException if a bit beyond the width is set.
+	 */
+	public PackedFingerprint(BitSet fingerprint, int width) {
+		if(fingerprint.length()>width) throw new IllegalArgumentException("fingerprint larger than width");
+		this.width = width;
+		this.words = new long[(width+63)/64];
+		long[] bits = fingerprint.toLongArray();
+		System.arraycopy(bits, 0, words, 0, bits.length);
+		this.cardinality = fingerprint.cardinality();
+	}
+
+	/**
+	 * Pack an array of fingerprints, using the largest bitset size as common width.
+	 *
+	 * @param fingerprints the fingerprints
+	 * @return the packed fingerprints, null for null fingerprints
+	 */
+	public static PackedFingerprint[] pack(BitSet... fingerprints) {
+		int width = 0;
+		for(BitSet fingerprint : fingerprints){
+			if(fingerprint!=null) width = Math.max(width, fingerprint.size());
+		}
+		PackedFingerprint[] packed = new PackedFingerprint[fingerprints.length];
+		for(int i=0; i<fingerprints.length; i++){
+			if(fingerprints[i]!=null) packed[i] = new PackedFingerprint(fingerprints[i], width);
+		}
+		return packed;
+	}
+
+	/**
+	 * @return the number of bits
+	 */
+	public int width() {
+		return width;
+	}
+
+	/**
+	 * @return the number of set bits
+	 */
+	public int cardinality() {
+		return cardinality;
+	}
+
+	/**
+	 * @return the number of 64-bit words
+	 */
+	public int numWords() {
+		return words.length;
+	}
+
+	/**
+	 * @param i the word index
+	 * @return the 64-bit word
+	 */
+	public long word(int i) {
+		return words[i];
+	}
+
+	/**
+	 * @param i the bit index
+	 * @return if the bit is set
+	 */
+	public boolean get(int i) {
+		return (words[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * Count the bits set in both fingerprints
+	 *
+	 * @param other the other fingerprint
+	 * @return the size of the intersection
+	 * @throws java.lang.IllegalArgumentException if widths differ.
+	 */
+	public int intersectionCount(PackedFingerprint other) {
+		if(width!=other.width) throw new IllegalArgumentException("fingerprints must have the same width");
+		long[] w1 = words;
+		long[] w2 = other.words;
+		int c = 0;
+		for(int i=0; i<w1.length; i++){
+			c+=Long.bitCount(w1[i] & w2[i]);
+		}
+		return c;
+	}
+
+	/**
+	 * @return a new bitset with the same bits
+	 */
+	public BitSet toBitSet() {
+		BitSet bits = new BitSet(width);
+		bits.or(BitSet.valueOf(words));
+		return bits;
+	}
+}
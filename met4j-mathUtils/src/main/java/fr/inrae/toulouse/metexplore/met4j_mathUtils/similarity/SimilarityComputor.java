@@ -37,6 +37,8 @@
 package fr.inrae.toulouse.metexplore.met4j_mathUtils.similarity;
 
 
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.concurrent.ParallelLoop;
+
 import java.util.BitSet;
 
 /**
@@ -46,6 +48,18 @@ import java.util.BitSet;
  */
 public class SimilarityComputor {
 
+	/** Constant <code>TANIMOTO=0</code> */
+	public static final int TANIMOTO = 0;
+	/** Constant <code>DICE=1</code> */
+	public static final int DICE = 1;
+	/** Constant <code>COSINE=2</code> */
+	public static final int COSINE = 2;
+	/** Constant <code>SOERGEL=3</code> */
+	public static final int SOERGEL = 3;
+
+	/** the number of fingerprints per block in similarity matrix computation */
+	private static final int BLOCK_SIZE = 64;
+
 	/**
 	 * Instantiates a new similarity computor.
 	 */
@@ -66,9 +80,9 @@ public class SimilarityComputor {
 		if(fingerprint1.size()!=fingerprint2.size()) throw new IllegalArgumentException("bitSets must have the same size");
 		BitSet intersect = (BitSet) fingerprint1.clone();
 		intersect.and(fingerprint2);
-		double a = Integer.valueOf(fingerprint1.cardinality()).doubleValue();
-		double b = Integer.valueOf(fingerprint2.cardinality()).doubleValue();
-		double c = Integer.valueOf(intersect.cardinality()).doubleValue();
+		double a = fingerprint1.cardinality();
+		double b = fingerprint2.cardinality();
+		double c = intersect.cardinality();
 		double dist = c/(a+b-c);
 		return dist;
 	}
@@ -88,9 +102,9 @@ public class SimilarityComputor {
 		if(fingerprint1.size()!=fingerprint2.size()) throw new IllegalArgumentException("bitSets must have the same size");
 		BitSet intersect = (BitSet) fingerprint1.clone();
 		intersect.and(fingerprint2);
-		double a = Integer.valueOf(fingerprint1.cardinality()).doubleValue();
-		double b = Integer.valueOf(fingerprint2.cardinality()).doubleValue();
-		double c = Integer.valueOf(intersect.cardinality()).doubleValue();
+		double a = fingerprint1.cardinality();
+		double b = fingerprint2.cardinality();
+		double c = intersect.cardinality();
 		double dist = (2*c)/(a+b);
 		return dist;
 	}
@@ -110,9 +124,9 @@ public class SimilarityComputor {
 		if(fingerprint1.size()!=fingerprint2.size()) throw new IllegalArgumentException("bitSets must have the same size");
 		BitSet intersect = (BitSet) fingerprint1.clone();
 		intersect.and(fingerprint2);
-		double a = Integer.valueOf(fingerprint1.cardinality()).doubleValue();
-		double b = Integer.valueOf(fingerprint2.cardinality()).doubleValue();
-		double c = Integer.valueOf(intersect.cardinality()).doubleValue();
+		double a = fingerprint1.cardinality();
+		double b = fingerprint2.cardinality();
+		double c = intersect.cardinality();
 		double dist = c/(Math.sqrt(a*b));
 		return dist;
 	}
@@ -132,9 +146,9 @@ public class SimilarityComputor {
 		if(fingerprint1.size()!=fingerprint2.size()) throw new IllegalArgumentException("bitSets must have the same size");
 		BitSet intersect = (BitSet) fingerprint1.clone();
 		intersect.and(fingerprint2);
-		double a = Integer.valueOf(fingerprint1.cardinality()).doubleValue();
-		double b = Integer.valueOf(fingerprint2.cardinality()).doubleValue();
-		double c = Integer.valueOf(intersect.cardinality()).doubleValue();
+		double a = fingerprint1.cardinality();
+		double b = fingerprint2.cardinality();
+		double c = intersect.cardinality();
 		double dist = a+b-(2*c);
 		return dist;
 	}
@@ -153,9 +167,9 @@ public class SimilarityComputor {
 		if(fingerprint1.size()!=fingerprint2.size()) throw new IllegalArgumentException("bitSets must have the same size");
 		BitSet intersect = (BitSet) fingerprint1.clone();
 		intersect.and(fingerprint2);
-		double a = Integer.valueOf(fingerprint1.cardinality()).doubleValue();
-		double b = Integer.valueOf(fingerprint2.cardinality()).doubleValue();
-		double c = Integer.valueOf(intersect.cardinality()).doubleValue();
+		double a = fingerprint1.cardinality();
+		double b = fingerprint2.cardinality();
+		double c = intersect.cardinality();
 		double dist = Math.sqrt(a+b-(2*c));
 		return dist;
 	}
@@ -176,9 +190,9 @@ public class SimilarityComputor {
 		if(fingerprint1.size()!=fingerprint2.size()) throw new IllegalArgumentException("bitSets must have the same size");
 		BitSet intersect = (BitSet) fingerprint1.clone();
 		intersect.and(fingerprint2);
-		double a = Integer.valueOf(fingerprint1.cardinality()).doubleValue();
-		double b = Integer.valueOf(fingerprint2.cardinality()).doubleValue();
-		double c = Integer.valueOf(intersect.cardinality()).doubleValue();
+		double a = fingerprint1.cardinality();
+		double b = fingerprint2.cardinality();
+		double c = intersect.cardinality();
 		double dist = (a+b-(2*c))/(a+b-c);
 		return dist;
 	}
@@ -197,8 +211,183 @@ public class SimilarityComputor {
 		if(fingerprint1.size()!=fingerprint2.size()) throw new IllegalArgumentException("bitSets must have the same size");
 		BitSet xor = (BitSet) fingerprint1.clone();
 		xor.xor(fingerprint2);
-		return Integer.valueOf(xor.cardinality()).doubleValue();
+		return xor.cardinality();
 	}
 	
 	
+	/**
+	 * compute the Tanimoto coefficient between packed fingerprints, without allocation
+	 *
+	 * @param fingerprint1 the first chemical fingerprint
+	 * @param fingerprint2 the second chemical fingerprint
+	 * @return the tanimoto coefficient
+	 * @throws java.lang.IllegalArgumentException if fingerprints widths differ.
+	 */
+	public static double getTanimoto(PackedFingerprint fingerprint1, PackedFingerprint fingerprint2) throws IllegalArgumentException{
+		return compute(TANIMOTO, fingerprint1, fingerprint2);
+	}
+
+	/**
+	 * compute the Dice coefficient between packed fingerprints, without allocation
+	 *
+	 * @param fingerprint1 the first chemical fingerprint
+	 * @param fingerprint2 the second chemical fingerprint
+	 * @return the dice coefficient
+	 * @throws java.lang.IllegalArgumentException if fingerprints widths differ.
+	 */
+	public static double getDiceCoeff(PackedFingerprint fingerprint1, PackedFingerprint fingerprint2) throws IllegalArgumentException{
+		return compute(DICE, fingerprint1, fingerprint2);
+	}
+
+	/**
+	 * compute the cosine coefficient between packed fingerprints, without allocation
+	 *
+	 * @param fingerprint1 the first chemical fingerprint
+	 * @param fingerprint2 the second chemical fingerprint
+	 * @return the cosine coefficient
+	 * @throws java.lang.IllegalArgumentException if fingerprints widths differ.
+	 */
+	public static double getCosineCoeff(PackedFingerprint fingerprint1, PackedFingerprint fingerprint2) throws IllegalArgumentException{
+		return compute(COSINE, fingerprint1, fingerprint2);
+	}
+
+	/**
+	 * compute the Soergel distance between packed fingerprints, without allocation
+	 *
+	 * @param fingerprint1 the first chemical fingerprint
+	 * @param fingerprint2 the second chemical fingerprint
+	 * @return the soergel distance
+	 * @throws java.lang.IllegalArgumentException if fingerprints widths differ.
+	 */
+	public static double getSoergelDist(PackedFingerprint fingerprint1, PackedFingerprint fingerprint2) throws IllegalArgumentException{
+		return compute(SOERGEL, fingerprint1, fingerprint2);
+	}
+
+	/**
+	 * compute a similarity (or distance) between packed fingerprints
+	 *
+	 * @param measure the measure, one of {@link #TANIMOTO}, {@link #DICE}, {@link #COSINE} or {@link #SOERGEL}
+	 * @param fingerprint1 the first chemical fingerprint
+	 * @param fingerprint2 the second chemical fingerprint
+	 * @return the similarity
+	 * @throws java.lang.IllegalArgumentException if fingerprints widths differ or if the measure is unknown.
+	 */
+	public static double compute(int measure, PackedFingerprint fingerprint1, PackedFingerprint fingerprint2) throws IllegalArgumentException{
+		double c = fingerprint1.intersectionCount(fingerprint2);
+		return fromCounts(measure, fingerprint1.cardinality(), fingerprint2.cardinality(), c);
+	}
+
+	/**
+	 * compute a similarity (or distance) from bit counts
+	 *
+	 * @param measure the measure
+	 * @param a the number of bits set in the first fingerprint
+	 * @param b the number of bits set in the second fingerprint
+	 * @param c the number of bits set in both fingerprints
+	 * @return the similarity
+	 */
+	private static double fromCounts(int measure, double a, double b, double c){
+		switch (measure) {
+		case TANIMOTO:
+			return c/(a+b-c);
+		case DICE:
+			return (2*c)/(a+b);
+		case COSINE:
+			return c/(Math.sqrt(a*b));
+		case SOERGEL:
+			return (a+b-(2*c))/(a+b-c);
+		default:
+			throw new IllegalArgumentException("unknown similarity measure "+measure);
+		}
+	}
+
+	/**
+	 * @param measure the measure
+	 * @throws java.lang.IllegalArgumentException if the measure is unknown.
+	 */
+	private static void checkMeasure(int measure) throws IllegalArgumentException{
+		if(measure<TANIMOTO || measure>SOERGEL) throw new IllegalArgumentException("unknown similarity measure "+measure);
+	}
+
+	/**
+	 * compute the similarity (or distance) between a fingerprint and each fingerprint of an array
+	 *
+	 * @param measure the measure, one of {@link #TANIMOTO}, {@link #DICE}, {@link #COSINE} or {@link #SOERGEL}
+	 * @param query the query fingerprint
+	 * @param targets the target fingerprints, null entries are allowed
+	 * @return the similarities, in the same order as the targets, NaN for null targets
+	 * @throws java.lang.IllegalArgumentException if fingerprints widths differ or if the measure is unknown.
+	 */
+	public static double[] compute(int measure, PackedFingerprint query, PackedFingerprint[] targets) throws IllegalArgumentException{
+		checkMeasure(measure);
+		double[] sim = new double[targets.length];
+		for(int j=0; j<targets.length; j++){
+			sim[j] = targets[j]==null ? Double.NaN : compute(measure, query, targets[j]);
+		}
+		return sim;
+	}
+
+	/**
+	 * compute the similarity (or distance) matrix between all pairs of fingerprints. The matrix is filled by blocks,
+	 * blocks of rows being computed in parallel, and only one half is computed since measures are symmetric.
+	 *
+	 * @param measure the measure, one of {@link #TANIMOTO}, {@link #DICE}, {@link #COSINE} or {@link #SOERGEL}
+	 * @param fingerprints the fingerprints, null entries are allowed
+	 * @param threads the number of threads, 0 to use the common pool
+	 * @return the similarity matrix, NaN for null fingerprints
+	 * @throws java.lang.IllegalArgumentException if fingerprints widths differ or if the measure is unknown.
+	 */
+	public static double[][] computeMatrix(int measure, PackedFingerprint[] fingerprints, int threads) throws IllegalArgumentException{
+		return computeMatrix(measure, fingerprints, fingerprints, true, threads);
+	}
+
+	/**
+	 * compute the similarity (or distance) matrix between two arrays of fingerprints. The matrix is filled by blocks,
+	 * blocks of rows being computed in parallel.
+	 *
+	 * @param measure the measure, one of {@link #TANIMOTO}, {@link #DICE}, {@link #COSINE} or {@link #SOERGEL}
+	 * @param rows the fingerprints corresponding to the matrix rows, null entries are allowed
+	 * @param cols the fingerprints corresponding to the matrix columns, null entries are allowed
+	 * @param threads the number of threads, 0 to use the common pool
+	 * @return the similarity matrix, NaN for null fingerprints
+	 * @throws java.lang.IllegalArgumentException if fingerprints widths differ or if the measure is unknown.
+	 */
+	public static double[][] computeMatrix(int measure, PackedFingerprint[] rows, PackedFingerprint[] cols, int threads) throws IllegalArgumentException{
+		return computeMatrix(measure, rows, cols, false, threads);
+	}
+
+	/**
+	 * fill the similarity matrix, by blocks of rows and columns
+	 *
+	 * @param measure the measure
+	 * @param rows the fingerprints corresponding to the matrix rows
+	 * @param cols the fingerprints corresponding to the matrix columns
+	 * @param symmetric if rows and columns are the same fingerprints, in which case only one half is computed
+	 * @param threads the number of threads, 0 to use the common pool
+	 * @return the similarity matrix
+	 */
+	private static double[][] computeMatrix(int measure, PackedFingerprint[] rows, PackedFingerprint[] cols, boolean symmetric, int threads){
+		ParallelLoop.checkThreads(threads);
+		checkMeasure(measure);
+		double[][] sim = new double[rows.length][cols.length];
+		int nbOfBlocks = (rows.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		ParallelLoop.forEach(threads, nbOfBlocks, rb -> {
+			int rowStart = rb*BLOCK_SIZE;
+			int rowEnd = Math.min(rows.length, rowStart+BLOCK_SIZE);
+			for(int colStart = symmetric ? rowStart : 0; colStart<cols.length; colStart+=BLOCK_SIZE){
+				int colEnd = Math.min(cols.length, colStart+BLOCK_SIZE);
+				for(int i=rowStart; i<rowEnd; i++){
+					PackedFingerprint f1 = rows[i];
+					for(int j = symmetric ? Math.max(i, colStart) : colStart; j<colEnd; j++){
+						PackedFingerprint f2 = cols[j];
+						double s = (f1==null || f2==null) ? Double.NaN : compute(measure, f1, f2);
+						sim[i][j] = s;
+						if(symmetric) sim[j][i] = s;
+					}
+				}
+			}
+		});
+		return sim;
+	}
+
 }
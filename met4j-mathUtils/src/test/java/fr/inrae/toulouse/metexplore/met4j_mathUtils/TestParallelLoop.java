@@ -0,0 +1,85 @@
+/*
+ * Copyright INRAE (2020)
+ *
+ * contact-metexplore@inrae.fr
+ *
+ * This software is a computer program whose purpose is to [describe
+ * functionalities and technical features of your software].
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "https://cecill.info/licences/Licence_CeCILL_V2.1-en.html".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+package fr.inrae.toulouse.metexplore.met4j_mathUtils;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.concurrent.ParallelLoop;
+import org.junit.Test;
+
+/**
+ * Test {@link ParallelLoop}
+ * @author clement
+ */
+public class TestParallelLoop {
+
+	@Test
+	public void testForEachCommonPool() {
+		AtomicIntegerArray visits = new AtomicIntegerArray(1000);
+		ParallelLoop.forEach(0, visits.length(), visits::incrementAndGet);
+		for(int i=0; i<visits.length(); i++){
+			assertEquals("index "+i+" not visited once", 1, visits.get(i));
+		}
+	}
+
+	@Test
+	public void testForEachDedicatedPool() {
+		AtomicIntegerArray visits = new AtomicIntegerArray(1000);
+		ParallelLoop.forEach(3, visits.length(), visits::incrementAndGet);
+		for(int i=0; i<visits.length(); i++){
+			assertEquals("index "+i+" not visited once", 1, visits.get(i));
+		}
+	}
+
+	@Test
+	public void testForEachEmpty() {
+		ParallelLoop.forEach(2, 0, i -> fail("no task expected"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeThreads() {
+		ParallelLoop.forEach(-1, 10, i -> {});
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testForEachPropagatesError() {
+		ParallelLoop.forEach(2, 10, i -> {
+			if(i==5) throw new IllegalStateException("failed task");
+		});
+	}
+}
@@ -37,8 +37,11 @@ package fr.inrae.toulouse.metexplore.met4j_mathUtils;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Random;
 
+import fr.inrae.toulouse.metexplore.met4j_mathUtils.similarity.PackedFingerprint;
 import fr.inrae.toulouse.metexplore.met4j_mathUtils.similarity.SimilarityComputor;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -148,6 +151,67 @@ public class TestSimilarityComputor {
 	}
 	
 	
+	/**
+	 * Test the packed fingerprints kernels.
+	 */
+	@Test
+	public void testPackedFingerprint() {
+		PackedFingerprint p1 = new PackedFingerprint(set1);
+		PackedFingerprint p2 = new PackedFingerprint(set2);
+		assertEquals(5, p1.cardinality());
+		assertEquals(set1, p1.toBitSet());
+		assertEquals(set1.size(), p1.toBitSet().size());
+		assertEquals("error compting Cosine", expectedCosine, SimilarityComputor.getCosineCoeff(p1, p2),0.000001);
+		assertEquals("error compting Dice", expectedDice, SimilarityComputor.getDiceCoeff(p1, p2),0.000001);
+		assertEquals("error compting Soergel", expectedSoergel, SimilarityComputor.getSoergelDist(p1, p2),0.000001);
+		assertEquals("error compting Tanimoto", expectedTanimoto, SimilarityComputor.getTanimoto(p1, p2),0.000001);
+	}
+
+	/**
+	 * Test the packed fingerprints width check.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testPackedFingerprintWidth() {
+		SimilarityComputor.getTanimoto(new PackedFingerprint(set1, 64), new PackedFingerprint(set2, 128));
+	}
+
+	/**
+	 * Test the one-vs-many and many-vs-many similarity computation.
+	 */
+	@Test
+	public void testSimilarityMatrix() {
+		Random r = new Random(42);
+		BitSet[] sets = new BitSet[150];
+		for(int i=0; i<sets.length; i++){
+			sets[i] = new BitSet(166);
+			for(int j=0; j<166; j++){
+				if(r.nextDouble()<0.3) sets[i].set(j);
+			}
+		}
+		sets[7] = null;
+		PackedFingerprint[] packed = PackedFingerprint.pack(sets);
+		PackedFingerprint[] queries = Arrays.copyOf(packed, 70);
+
+		double[][] sim = SimilarityComputor.computeMatrix(SimilarityComputor.TANIMOTO, packed, 2);
+		double[][] rect = SimilarityComputor.computeMatrix(SimilarityComputor.DICE, queries, packed, 0);
+		assertEquals(packed.length, sim.length);
+		assertEquals(queries.length, rect.length);
+		for(int i=0; i<packed.length; i++){
+			if(i==7){
+				assertTrue(Double.isNaN(sim[i][0]));
+				assertTrue(Double.isNaN(sim[0][i]));
+				continue;
+			}
+			double[] oneVsMany = SimilarityComputor.compute(SimilarityComputor.TANIMOTO, packed[i], packed);
+			for(int j=0; j<packed.length; j++){
+				if(j==7) continue;
+				assertEquals(SimilarityComputor.getTanimoto(sets[i], sets[j]), sim[i][j], 1.0E-12);
+				assertEquals(sim[i][j], oneVsMany[j], 0.0);
+				if(i<queries.length) assertEquals(SimilarityComputor.getDiceCoeff(sets[i], sets[j]), rect[i][j], 1.0E-12);
+			}
+		}
+	}
+
 	/**
 	 * From string.
 	 *
@@ -35,16 +35,19 @@
  */
 package fr.inrae.toulouse.metexplore.met4j_reconstruction.check.balance;
 
-import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioEntity;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetwork;
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetworkSnapshot;
 import lombok.Getter;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
- * Performs the balance checking on all the reactions of a BioNetwork
+ * Performs the balance checking on all the reactions of a BioNetwork.
+ * The network is read through a {@link BioNetworkSnapshot}, and each metabolite formula is parsed only once.
  */
 public class NetworkBalanceAnalysis {
 
@@ -61,10 +64,25 @@ public class NetworkBalanceAnalysis {
      * @param network a BioNetwork
      */
     public NetworkBalanceAnalysis(BioNetwork network) {
+        this(new BioNetworkSnapshot(network));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param snapshot a BioNetwork snapshot
+     */
+    @SuppressWarnings("unchecked")
+    public NetworkBalanceAnalysis(BioNetworkSnapshot snapshot) {
+
+        Map<String, Double>[] atomCounts = new Map[snapshot.numMetabolites()];
+        for (int m = 0; m < atomCounts.length; m++) {
+            atomCounts[m] = ReactionBalanceAnalysis.countAtoms(snapshot.getMetabolite(m).getChemicalFormula());
+        }
 
-        this.allBalances = network.getReactionsView().stream()
-                .sorted(Comparator.comparing(BioEntity::getId))
-                .map(ReactionBalanceAnalysis::new)
+        this.allBalances = IntStream.range(0, snapshot.numReactions()).boxed()
+                .sorted(Comparator.comparing(r -> snapshot.getReaction(r).getId()))
+                .map(r -> new ReactionBalanceAnalysis(snapshot, r, atomCounts))
                 .collect(Collectors.toList());
 
         this.balanced = this.allBalances.stream().filter(ReactionBalanceAnalysis::isBalanced).collect(Collectors.toList());
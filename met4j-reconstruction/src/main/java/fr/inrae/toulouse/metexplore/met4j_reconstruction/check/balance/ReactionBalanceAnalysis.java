@@ -36,6 +36,7 @@
 package fr.inrae.toulouse.metexplore.met4j_reconstruction.check.balance;
 
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
+import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetworkSnapshot;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioReactant;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioReaction;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollection;
@@ -44,6 +45,7 @@ import fr.inrae.toulouse.metexplore.met4j_io.annotations.metabolite.MetaboliteAt
 import lombok.Getter;
 
 import java.util.HashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -52,6 +54,8 @@ import java.util.regex.Pattern;
  */
 public class ReactionBalanceAnalysis
 {
+    private static final Pattern ATOM_PATTERN = Pattern.compile("([A-Z][a-z]*)([0-9]*)");
+
     @Getter
     private HashMap<String, Double> balances;
     @Getter
@@ -67,6 +71,50 @@ public class ReactionBalanceAnalysis
         this.computeBalances();
     }
 
+    /**
+     * Constructor using a network snapshot and the atom counts of each metabolite, parsed once for all reactions
+     *
+     * @param snapshot the network snapshot
+     * @param reactionIndex the reaction index in the snapshot
+     * @param atomCounts the atom counts of each metabolite, by metabolite index, null for metabolites with bad formula
+     */
+    ReactionBalanceAnalysis(BioNetworkSnapshot snapshot, int reactionIndex, Map<String, Double>[] atomCounts) {
+        this.reaction = snapshot.getReaction(reactionIndex);
+        this.metabolitesWithBadFormula = new BioCollection<>();
+
+        HashMap<String, Double> tmpBalances = new HashMap<>();
+        for (int k = snapshot.reactantStart(reactionIndex); k < snapshot.reactantEnd(reactionIndex); k++) {
+            int m = snapshot.reactantMetabolite(k);
+            if (atomCounts[m] == null) {
+                metabolitesWithBadFormula.add(snapshot.getMetabolite(m));
+            } else {
+                double sto = snapshot.stoichiometry(k);
+                atomCounts[m].forEach((atom, number) -> tmpBalances.merge(atom, sto * number, Double::sum));
+            }
+        }
+        this.balances = tmpBalances;
+    }
+
+    /**
+     * Count the atoms of a chemical formula
+     *
+     * @param formula the chemical formula
+     * @return the number of each atom, or null if the formula is not valid
+     */
+    public static Map<String, Double> countAtoms(String formula) {
+        if (!StringUtils.checkMetaboliteFormula(formula)) {
+            return null;
+        }
+        HashMap<String, Double> counts = new HashMap<>();
+        Matcher matcher = ATOM_PATTERN.matcher(formula);
+        while (matcher.find()) {
+            String numStr = matcher.group(2);
+            double number = numStr.equals("") ? 1.0 : Double.parseDouble(numStr);
+            counts.merge(matcher.group(1), number, Double::sum);
+        }
+        return counts;
+    }
+
     private void computeBalances() {
 
         HashMap<String, Double> tmpBalances = new HashMap<>();
@@ -91,36 +139,13 @@ public class ReactionBalanceAnalysis
 
         Double sto = isRight ? reactant.getQuantity() : - reactant.getQuantity();
 
-        String formula = reactant.getMetabolite().getChemicalFormula();
+        Map<String, Double> counts = countAtoms(reactant.getMetabolite().getChemicalFormula());
 
-        if(! StringUtils.checkMetaboliteFormula(formula)) {
+        if(counts == null) {
             return false;
         }
 
-        String REGEX = "([A-Z][a-z]*)([0-9]*)";
-
-        Pattern pattern = Pattern.compile(REGEX);
-        Matcher matcher = pattern.matcher(formula);
-
-        while (matcher.find()) {
-
-            String atom = matcher.group(1);
-
-            String numStr = matcher.group(2);
-
-            if (numStr.equals("")) {
-                numStr = "1.0";
-            }
-
-            Double number = Double.parseDouble(numStr);
-
-            if (!tmpBalances.containsKey(atom)) {
-                tmpBalances.put(atom, sto * number);
-            } else {
-                tmpBalances.put(atom, tmpBalances.get(atom) + sto * number);
-            }
-
-        }
+        counts.forEach((atom, number) -> tmpBalances.merge(atom, sto * number, Double::sum));
 
         return true;
     }
@@ -46,6 +46,7 @@ import fr.inrae.toulouse.metexplore.met4j_toolbox.utils.Doi;
 import fr.inrae.toulouse.metexplore.met4j_toolbox.utils.IOUtils;
 import org.kohsuke.args4j.Option;
 
+import java.nio.file.Paths;
 import java.util.Set;
 
 import static fr.inrae.toulouse.metexplore.met4j_toolbox.generic.annotations.EnumFormats.*;
@@ -61,6 +62,9 @@ public class Kegg2Sbml  extends AbstractMet4jApplication  {
     @Option(name="-o", usage="[out.sbml] Out sbml file")
     public String sbml = "out.sbml";
 
+    @Option(name = "-cache", aliases = {"--cacheDir"}, usage = "Directory where Kegg API responses are cached. Later conversions using the same directory do not query Kegg again")
+    public String cacheDir = null;
+
     @Override
     public String getLabel() {
         return this.getClass().getSimpleName();
@@ -103,6 +107,10 @@ public class Kegg2Sbml  extends AbstractMet4jApplication  {
             System.exit(1);
         }
 
+        if (this.cacheDir != null) {
+            k.getKeggServices().setCacheDirectory(Paths.get(this.cacheDir));
+        }
+
         k.createBionetworkFromKegg();
 
         BioNetwork network = k.getNetwork();
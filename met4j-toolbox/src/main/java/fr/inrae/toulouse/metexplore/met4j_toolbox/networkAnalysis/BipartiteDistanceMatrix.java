@@ -5,7 +5,7 @@ import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetwork;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioReaction;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollection;
-import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.ShortestPath;
+import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.AllPairsShortestPath;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.weighting.UnweightedPolicy;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.weighting.WeightsFromFile;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.WeightingPolicy;
@@ -184,7 +184,7 @@ public class BipartiteDistanceMatrix extends AbstractMet4jApplication {
         if (removedRxns)
             System.err.println("One or more seed nodes removed due to being in the reaction to exclude list");
         //compute distance matrix
-        ShortestPath<BioEntity, BipartiteEdge, BipartiteGraph> matrixComputor = new ShortestPath<>(graph, !undirected);
+        AllPairsShortestPath<BioEntity, BipartiteEdge, BipartiteGraph> matrixComputor = new AllPairsShortestPath<>(graph, !undirected);
         distM = matrixComputor.getShortestPathDistanceMatrix(metSeeds, rxnSeeds);
         //export results
         ExportMatrix.toCSV(outputPath, distM);
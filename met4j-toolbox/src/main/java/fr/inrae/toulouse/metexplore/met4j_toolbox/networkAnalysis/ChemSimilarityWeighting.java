@@ -1,6 +1,7 @@
 package fr.inrae.toulouse.metexplore.met4j_toolbox.networkAnalysis;
 
 import fr.inrae.toulouse.metexplore.met4j_chemUtils.chemicalSimilarity.FingerprintBuilder;
+import fr.inrae.toulouse.metexplore.met4j_chemUtils.chemicalSimilarity.FingerprintCache;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetwork;
 import fr.inrae.toulouse.metexplore.met4j_core.utils.StringUtils;
@@ -15,6 +16,7 @@ import org.kohsuke.args4j.Option;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +35,11 @@ public class ChemSimilarityWeighting extends EdgeWeighting {
     public String inchiFile;
     @Option(name = "-d", aliases = {"--asDist"}, usage = "Use distance rather than similarity", required = false)
     public boolean dist = false;
+    @Option(name = "-fc", aliases = {"--fingerprintCache"}, usage = "Path to a fingerprint store file, created if absent, allowing chemical fingerprints to be reused across runs", required = false)
+    public String fingerprintCache;
+
+    /** the fingerprint cache backed by the store, closed once the weights are exported */
+    private FingerprintCache cache;
 
     public static void main(String[] args) throws Met4jSbmlReaderException, IOException {
 
@@ -60,9 +67,27 @@ public class ChemSimilarityWeighting extends EdgeWeighting {
                 wp.setFingerprintType(FingerprintBuilder.PUBCHEM);
         }
         wp.useDistance(dist);
+        if (fingerprintCache != null) {
+            try {
+                cache = new FingerprintCache(wp.getFingerprintType(), FingerprintCache.DEFAULT_CAPACITY, Paths.get(fingerprintCache));
+                wp.setFingerprintCache(cache);
+            } catch (IOException e) {
+                System.err.println("Error opening fingerprint store, fingerprints will not be reused");
+                System.err.println(e.getMessage());
+            }
+        }
         return wp;
     }
 
+    @Override
+    public void run() throws IOException, Met4jSbmlReaderException {
+        try {
+            super.run();
+        } finally {
+            if (cache != null) cache.close();
+        }
+    }
+
     @Override
     public BioNetwork processNetwork(BioNetwork bn) {
         if (inchiFile != null) {
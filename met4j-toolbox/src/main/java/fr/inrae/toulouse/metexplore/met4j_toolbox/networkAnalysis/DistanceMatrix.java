@@ -3,7 +3,7 @@ package fr.inrae.toulouse.metexplore.met4j_toolbox.networkAnalysis;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetwork;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollection;
-import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.ShortestPath;
+import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.AllPairsShortestPath;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.weighting.CustomWeightPolicy;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.weighting.DegreeWeightPolicy;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.weighting.UnweightedPolicy;
@@ -123,7 +123,7 @@ public class DistanceMatrix extends AbstractMet4jApplication {
         BioMatrix distM = null;
         if (seedFile == null) {
             //compute distance matrix
-            ShortestPath matrixComputor = new ShortestPath<>(graph, !undirected);
+            AllPairsShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> matrixComputor = new AllPairsShortestPath<>(graph, !undirected);
             //get All SPs
             distM = matrixComputor.getShortestPathDistanceMatrix();
         } else {
@@ -138,7 +138,7 @@ public class DistanceMatrix extends AbstractMet4jApplication {
                 System.exit(1);
             }
             //compute distance matrix
-            ShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> matrixComputor = new ShortestPath<>(graph, !undirected);
+            AllPairsShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> matrixComputor = new AllPairsShortestPath<>(graph, !undirected);
             //get SPs
             distM = matrixComputor.getShortestPathDistanceMatrix(seeds, seeds);
         }
@@ -75,6 +75,9 @@ public class ExtractSubNetwork extends AbstractMet4jApplication implements Graph
     @Option(name = "-k", usage = "Extract k-shortest paths", forbids = {"-st"})
     public int k = 1;
 
+    @Option(name = "-cpu", aliases = {"--threads"}, usage = "number of threads used to compute k-shortest paths. Use default parallelism if 0", forbids = {"-st"})
+    public int threads = 0;
+
     @Option(name = "-st", aliases = {"--steinertree"}, usage = "Extract Steiner Tree", forbids = {"-k"})
     public boolean st = false;
 
@@ -157,6 +160,7 @@ public class ExtractSubNetwork extends AbstractMet4jApplication implements Graph
             subnet = factory.createGraphFromEdgeList(stEdges);
         } else if (k > 1) {
             KShortestPath<BioMetabolite, ReactionEdge, CompoundGraph> kspComp = new KShortestPath<>(graph, !undirected);
+            kspComp.setThreads(threads);
             List<BioPath<BioMetabolite, ReactionEdge>> kspPath = kspComp.getKShortestPathsUnionList(sources, targets, k);
             subnet = factory.createGraphFromPathList(kspPath);
         } else {
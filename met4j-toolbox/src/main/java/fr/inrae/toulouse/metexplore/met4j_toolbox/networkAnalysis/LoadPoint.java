@@ -46,6 +46,9 @@ public class LoadPoint extends AbstractMet4jApplication {
     @Option(name = "-k", aliases = {"--npath"}, usage = "Number of alternative paths to consider between a pair of connected metabolites")
     public int k = 1;
 
+    @Option(name = "-cpu", aliases = {"--threads"}, usage = "number of threads used to compute paths. Use default parallelism if 0")
+    public int threads = 0;
+
     public static void main(String[] args) {
 
         LoadPoint app = new LoadPoint();
@@ -91,6 +94,7 @@ public class LoadPoint extends AbstractMet4jApplication {
         //compute loads
         System.out.println("Computing load points...");
         fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.LoadPoint computor = new fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.LoadPoint<BioMetabolite, ReactionEdge, CompoundGraph>(graph);
+        computor.setThreads(threads);
         HashMap<BioMetabolite, Double> loads = computor.getLoads(k);
 
         //export results
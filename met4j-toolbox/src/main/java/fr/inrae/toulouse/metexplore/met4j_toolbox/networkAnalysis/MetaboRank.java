@@ -39,7 +39,7 @@ import fr.inrae.toulouse.metexplore.met4j_chemUtils.chemicalSimilarity.Fingerpri
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetwork;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollection;
-import fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.centrality.EigenVectorCentrality;
+import fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.centrality.SparsePageRank;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.weighting.*;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.transform.GraphFilter;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.utils.RankUtils;
@@ -314,22 +314,25 @@ public class MetaboRank extends AbstractMet4jApplication {
 
     public void compute() {
 
-        globalPageRankScore = computeScore(firstGraph, dampingFactor, maxNbOfIter, tolerance);
+        //global and personalized ranks share the same transition matrix
+        List<HashMap<String, Double>> pageRankScores = computeScores(firstGraph, dampingFactor, seeds, maxNbOfIter, tolerance);
+        globalPageRankScore = pageRankScores.get(0);
         globalPageRank = getRankFromScore(globalPageRankScore, null);
         normalizeScore(globalPageRankScore);
         System.out.println("global pageRank computed");
 
-        globalCheiRankScore = computeScore(reverseGraph, dampingFactor, maxNbOfIter, tolerance);
+        List<HashMap<String, Double>> cheiRankScores = computeScores(reverseGraph, dampingFactor, seeds, maxNbOfIter, tolerance);
+        globalCheiRankScore = cheiRankScores.get(0);
         globalCheiRank = getRankFromScore(globalCheiRankScore, null);
         normalizeScore(globalCheiRankScore);
         System.out.println("global cheiRank computed");
 
-        pageRankScore = computeScore(firstGraph, dampingFactor, seeds, maxNbOfIter, tolerance);
+        pageRankScore = pageRankScores.get(1);
         pageRank = getRankFromScore(pageRankScore, seeds.keySet());
         normalizeScore(pageRankScore);
         System.out.println("pageRank computed");
 
-        cheiRankScore = computeScore(reverseGraph, dampingFactor, seeds, maxNbOfIter, tolerance);
+        cheiRankScore = cheiRankScores.get(1);
         cheiRank = getRankFromScore(cheiRankScore, seeds.keySet());
         normalizeScore(cheiRankScore);
         System.out.println("cheiRank computed");
@@ -342,6 +345,21 @@ public class MetaboRank extends AbstractMet4jApplication {
     }
 
     public HashMap<String, Double> computeScore(CompoundGraph graph, double dampingFactor, int maxNbOfIter, double tolerance) {
+        return new SparsePageRank(graph).compute(dampingFactor, maxNbOfIter, tolerance);
+    }
+
+
+    public HashMap<String, Double> computeScore(CompoundGraph graph, double dampingFactor, HashMap<String, Double> seeds, int maxNbOfIter, double tolerance) {
+        return new SparsePageRank(graph).compute(seeds, dampingFactor, maxNbOfIter, tolerance);
+    }
+
+
+    /*  COMPUTE GLOBAL AND PERSONALIZED SCORES
+     *
+     *  compute both the global score (uniform personalized vector) and the score relative to the seeds,
+     *  building the transition matrix only once
+     */
+    public List<HashMap<String, Double>> computeScores(CompoundGraph graph, double dampingFactor, HashMap<String, Double> seeds, int maxNbOfIter, double tolerance) {
 
         HashMap<String, Double> allNodes = new HashMap<>();
         double probability = 1.0 / (double) graph.vertexSet().size();
@@ -349,16 +367,7 @@ public class MetaboRank extends AbstractMet4jApplication {
             allNodes.put(v.getId(), probability);
         }
 
-        return computeScore(graph, dampingFactor, allNodes, maxNbOfIter, tolerance);
-    }
-
-
-    public HashMap<String, Double> computeScore(CompoundGraph graph, double dampingFactor, HashMap<String, Double> seeds, int maxNbOfIter, double tolerance) {
-
-        EigenVectorCentrality<BioMetabolite, ReactionEdge, CompoundGraph> scoreComputor
-                = new EigenVectorCentrality<>(graph);
-        scoreComputor.addJumpProb(seeds, 1 - dampingFactor);
-        return scoreComputor.powerIteration(seeds, maxNbOfIter, tolerance);
+        return new SparsePageRank(graph).compute(List.of(allNodes, seeds), dampingFactor, maxNbOfIter, tolerance);
     }
 
 
@@ -5,16 +5,14 @@ import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetwork;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollection;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.GraphLocalMeasure;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.GraphMeasure;
-import fr.inrae.toulouse.metexplore.met4j_graph.computation.analyze.centrality.PathBasedCentrality;
-import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.FloydWarshall;
+import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.DistanceStatistics;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.weighting.UnweightedPolicy;
-import fr.inrae.toulouse.metexplore.met4j_graph.computation.utils.ComputeAdjacencyMatrix;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.utils.RankUtils;
+import fr.inrae.toulouse.metexplore.met4j_graph.core.CsrGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.WeightingPolicy;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.compound.CompoundGraph;
 import fr.inrae.toulouse.metexplore.met4j_graph.core.compound.ReactionEdge;
 import fr.inrae.toulouse.metexplore.met4j_graph.io.Bionetwork2BioGraph;
-import fr.inrae.toulouse.metexplore.met4j_mathUtils.matrix.BioMatrix;
 import fr.inrae.toulouse.metexplore.met4j_toolbox.generic.AbstractMet4jApplication;
 import fr.inrae.toulouse.metexplore.met4j_toolbox.generic.annotations.EnumFormats;
 import fr.inrae.toulouse.metexplore.met4j_toolbox.generic.annotations.Format;
@@ -142,43 +140,16 @@ public class NetworkSummary extends AbstractMet4jApplication {
             //distances statistics
             if (!skipdist) {
                 System.out.println("Compute distances...");
-                //  compute distance matrix
-                ComputeAdjacencyMatrix adjBuilder = new ComputeAdjacencyMatrix(graph);
-                if (!directed) adjBuilder.asUndirected();
-                adjBuilder.parallelEdgeWeightsHandling((a, b) -> Math.min(a, b)); //keep lowest weight if parallel edges
-                FloydWarshall distComputor = new FloydWarshall<>(graph, adjBuilder);
-                BioMatrix distM = distComputor.getDistances();
-
-                //  compute distance stats
-                System.out.println("Compute distances statistics...");
-                DescriptiveStatistics distStats = new DescriptiveStatistics();
-                //  gather all elements in matrix, remove infinity
-                for (int i = 0; i < distM.numRows(); i++) {
-                    for (int j = 0; j < distM.numCols(); j++) {
-                        if (i != j) {
-                            Double d = distM.get(i, j);
-                            if (!d.equals(Double.POSITIVE_INFINITY)) {
-                                distStats.addValue(d);
-                            }
-                        }
-                    }
-                }
+                //  compute distances statistics, one search per node, without storing the distance matrix
+                DistanceStatistics<BioMetabolite, ReactionEdge> distStats = new DistanceStatistics<>(new CsrGraph<>(graph, !directed)).compute();
 
-                int diameter = (int) distStats.getMax();
+                int diameter = (int) distStats.getDiameter();
                 fw.write("Diameter:\t" + diameter + "\n");
-                fw.write("Average shortest path length:\t" + distStats.getMean() + "\n");
+                fw.write("Average shortest path length:\t" + distStats.getAverageDistance() + "\n");
 
                 //Centrality analysis
                 System.out.println("Compute centrality...");
-                PathBasedCentrality<BioMetabolite, ReactionEdge, CompoundGraph> cm = new PathBasedCentrality(graph);
-
-//            Set<BioPath<BioMetabolite,ReactionEdge>> sp = new HashSet<>(distComputor.getPaths().values());
-//            LinkedHashMap<BioMetabolite, Integer> betweenness = RankUtils.computeRank(cm.getBetweenness(sp).entrySet().stream().collect(
-//                    Collectors.toMap(Map.Entry::getKey, e -> e.getValue().doubleValue())
-//            ));
-//            System.out.println("\tBetweenness done.");
-
-                Map<BioMetabolite, Double> closenessRaw = cm.getCloseness(distM);
+                Map<BioMetabolite, Double> closenessRaw = distStats.getCloseness();
                 LinkedHashMap<BioMetabolite, Integer> closeness = RankUtils.computeRank(closenessRaw);
                 System.out.println("\tCloseness done.");
 
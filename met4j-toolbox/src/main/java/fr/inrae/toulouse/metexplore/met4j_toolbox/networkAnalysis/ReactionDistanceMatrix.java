@@ -4,7 +4,7 @@ import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioMetabolite;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioNetwork;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.BioReaction;
 import fr.inrae.toulouse.metexplore.met4j_core.biodata.collection.BioCollection;
-import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.ShortestPath;
+import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.AllPairsShortestPath;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.weighting.CustomWeightPolicy;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.weighting.DegreeWeightPolicy;
 import fr.inrae.toulouse.metexplore.met4j_graph.computation.connect.weighting.UnweightedPolicy;
@@ -147,7 +147,7 @@ public class ReactionDistanceMatrix extends AbstractMet4jApplication {
         BioMatrix distM = null;
         if (rxnFile == null) {
             //compute distance matrix
-            ShortestPath matrixComputor = new ShortestPath<>(graph, !undirected);
+            AllPairsShortestPath<BioReaction, CompoundEdge, ReactionGraph> matrixComputor = new AllPairsShortestPath<>(graph, !undirected);
             //get All SPs
             distM = matrixComputor.getShortestPathDistanceMatrix();
         } else {
@@ -162,14 +162,12 @@ public class ReactionDistanceMatrix extends AbstractMet4jApplication {
                 System.exit(1);
             }
             //compute distance matrix
-            ShortestPath<BioReaction, CompoundEdge, ReactionGraph> matrixComputor = new ShortestPath<>(graph, !undirected);
+            AllPairsShortestPath<BioReaction, CompoundEdge, ReactionGraph> matrixComputor = new AllPairsShortestPath<>(graph, !undirected);
             //get SPs
             distM = matrixComputor.getShortestPathDistanceMatrix(seeds, seeds);
         }
         //export results
         ExportMatrix.toCSV(outputPath, distM);
-        //export results
-        ExportMatrix.toCSV(outputPath, distM);
 
     }
 